@@ -1,27 +1,34 @@
 package com.spshpau.userservice.config;
 
 import com.github.benmanes.caffeine.cache.Caffeine;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.cache.CacheManager;
 import org.springframework.cache.caffeine.CaffeineCacheManager;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
-import java.util.concurrent.TimeUnit;
+import java.time.Duration;
 
 @Configuration
 public class CacheConfig {
 
     public static final String USER_MATCHES_CACHE = "userMatches";
 
+    /**
+     * Keys must be value-equal (see {@code MatchCacheKey}); weak keys would compare them by identity
+     * and never hit. Entries are evicted precisely by {@code MatchCacheEvictor} when a relevant write commits,
+     * so the TTL ({@code matching.cache.ttl}) is only a backstop.
+     */
     @Bean
-    public CacheManager cacheManager() {
+    public CacheManager cacheManager(@Value("${matching.cache.ttl:4h}") Duration matchesTtl) {
         CaffeineCacheManager cacheManager = new CaffeineCacheManager(USER_MATCHES_CACHE);
         cacheManager.setCaffeine(Caffeine.newBuilder()
-                .expireAfterWrite(15, TimeUnit.MINUTES)
+                .expireAfterWrite(matchesTtl)
                 .maximumSize(500)
-                .weakKeys()
                 .recordStats()
         );
+        // Async entries let MatchRankingCache coalesce concurrent computations of the same ranking
+        cacheManager.setAsyncCacheMode(true);
 
         return cacheManager;
     }
@@ -0,0 +1,44 @@
+package com.spshpau.userservice.config;
+
+import lombok.Getter;
+import lombok.Setter;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Match scoring weight profile, bound from {@code matching.weights.*}. Defaults are the original scoring rules.
+ * Compiled into lookup tables by {@code MatchWeights}; all weights must be non-negative.
+ */
+@Getter
+@Setter
+public class MatchWeightProperties {
+
+    public static final String PREFIX = "matching.weights";
+
+    /** Subtracted when the two users already have an accepted connection. */
+    private double connectedPenalty = 10.0;
+    /** For a producer meeting an artist, or the other way round. */
+    private double oppositeRole = 2.0;
+    /** For an opposite-role candidate whose profile is marked available. */
+    private double availability = 10.0;
+    /** Per genre shared between the caller's profile and the candidate's opposite profile. */
+    private double specificGenre = 5.0;
+    /** Per genre shared across any profiles. */
+    private double sharedGenre = 1.0;
+    /** Per artist skill shared between two artists. */
+    private double sharedSkill = 1.0;
+    /** Points by experience level distance (index 0 = same level); larger distances score 0. */
+    private List<Double> experienceByDistance = new ArrayList<>(List.of(20.0, 16.0, 12.0, 8.0));
+    /**
+     * Scales every shared genre and skill by its rarity (inverse profile frequency) instead of counting them
+     * flat; applies to the index engine only.
+     */
+    private boolean rarityWeighted = false;
+    /**
+     * For a candidate located within {@link #proximityRadiusKm} of the caller, scaled down linearly from the full
+     * weight at the same place to 0 at the radius; 0 turns the proximity boost off. Applies to the index engine only.
+     */
+    private double proximity = 0.0;
+    private double proximityRadiusKm = 50.0;
+}
@@ -0,0 +1,209 @@
+package com.spshpau.userservice.config;
+
+import com.spshpau.userservice.services.matching.IndexMatchEngine;
+import com.spshpau.userservice.services.matching.LshMatchEngine;
+import com.spshpau.userservice.services.matching.MatchEngine;
+import com.spshpau.userservice.services.matching.ShardedMatchEngine;
+import com.spshpau.userservice.services.matching.SqlMatchEngine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.binder.jvm.ExecutorServiceMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.scheduling.annotation.EnableScheduling;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+@Configuration
+@EnableScheduling
+public class MatchingConfig {
+
+    public static final String MATCH_SCORING_POOL = "matchScoringPool";
+    public static final String MATCH_STREAM_EXECUTOR = "matchStreamExecutor";
+    public static final String MATCH_REFRESH_EXECUTOR = "matchRefreshExecutor";
+    public static final String MATCH_BATCH_EXECUTOR = "matchBatchExecutor";
+    public static final String MATCH_SHARD_EXECUTOR = "matchShardExecutor";
+    public static final String MATCH_SHADOW_EXECUTOR = "matchShadowExecutor";
+    public static final String MATCH_PATCH_EXECUTOR = "matchPatchExecutor";
+    public static final String SHADOW_MATCH_ENGINE = "shadowMatchEngine";
+
+    /**
+     * Dedicated pool for partitioned match scoring, so large scoring runs neither pin a request thread
+     * nor compete with the common pool. Utilisation is published as {@code executor.*} metrics
+     * tagged {@code name=matchScoring}.
+     *
+     * @param poolSize parallelism of the pool; 0 means one worker per available processor.
+     */
+    @Bean(name = MATCH_SCORING_POOL, destroyMethod = "shutdown")
+    public ForkJoinPool matchScoringPool(@Value("${matching.parallel.pool-size:0}") int poolSize,
+                                         MeterRegistry meterRegistry) {
+        int parallelism = poolSize > 0 ? poolSize : Runtime.getRuntime().availableProcessors();
+        ForkJoinPool pool = new ForkJoinPool(parallelism, p -> {
+            ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(p);
+            thread.setName("match-scoring-" + thread.getPoolIndex());
+            return thread;
+        }, null, false);
+        new ExecutorServiceMetrics(pool, "matchScoring", Tags.empty()).bindTo(meterRegistry);
+        return pool;
+    }
+
+    /**
+     * Executor for the partitions of streamed rankings, which take the index read lock one at a time. They must not
+     * run on the scoring pool: with a writer queued, a worker waiting for the read lock would starve the scoring of
+     * a ranking that already holds it, and so the writer, and so itself. Published as {@code executor.*} metrics
+     * tagged {@code name=matchStream}.
+     *
+     * @param threads 0 means one thread per available processor.
+     */
+    @Bean(name = MATCH_STREAM_EXECUTOR, destroyMethod = "shutdown")
+    public ThreadPoolExecutor matchStreamExecutor(@Value("${matching.stream.threads:0}") int threads,
+                                                  MeterRegistry meterRegistry) {
+        int size = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(size, size, 60L, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(), daemonThreads("match-stream-", Thread.NORM_PRIORITY));
+        executor.allowCoreThreadTimeOut(true);
+        new ExecutorServiceMetrics(executor, "matchStream", Tags.empty()).bindTo(meterRegistry);
+        return executor;
+    }
+
+    /**
+     * Small, bounded executor for refreshing cached rankings ahead of expiry. Its threads run at minimum priority,
+     * and its size also caps how many database connections background refreshes can hold at once.
+     * A full queue rejects new work, which the refresh scheduler treats as "try again next run".
+     * Published as {@code executor.*} metrics tagged {@code name=matchRefresh}.
+     */
+    @Bean(name = MATCH_REFRESH_EXECUTOR, destroyMethod = "shutdown")
+    public ThreadPoolExecutor matchRefreshExecutor(@Value("${matching.refresh.threads:2}") int threads,
+                                                   @Value("${matching.refresh.queue-capacity:100}") int queueCapacity,
+                                                   MeterRegistry meterRegistry) {
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity), daemonThreads("match-refresh-", Thread.MIN_PRIORITY));
+        new ExecutorServiceMetrics(executor, "matchRefresh", Tags.empty()).bindTo(meterRegistry);
+        return executor;
+    }
+
+    /**
+     * Executor for the partitions of the match batch job. Its size is how many partitions, and so how many
+     * database connections, one instance works on at once. Published as {@code executor.*} metrics
+     * tagged {@code name=matchBatch}.
+     */
+    @Bean(name = MATCH_BATCH_EXECUTOR, destroyMethod = "shutdown")
+    public ThreadPoolExecutor matchBatchExecutor(@Value("${matching.batch.threads:2}") int threads,
+                                                 MeterRegistry meterRegistry) {
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<>(), daemonThreads("match-batch-", Thread.MIN_PRIORITY));
+        new ExecutorServiceMetrics(executor, "matchBatch", Tags.empty()).bindTo(meterRegistry);
+        return executor;
+    }
+
+    /**
+     * Executor for the remote shard calls of sharded matching; each request to another instance holds a thread
+     * until it answers or times out. Published as {@code executor.*} metrics tagged {@code name=matchShard}.
+     */
+    @Bean(name = MATCH_SHARD_EXECUTOR, destroyMethod = "shutdown")
+    public ThreadPoolExecutor matchShardExecutor(@Value("${matching.shard.threads:16}") int threads,
+                                                 MeterRegistry meterRegistry) {
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(threads, threads, 60L, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(), daemonThreads("match-shard-", Thread.NORM_PRIORITY));
+        executor.allowCoreThreadTimeOut(true);
+        new ExecutorServiceMetrics(executor, "matchShard", Tags.empty()).bindTo(meterRegistry);
+        return executor;
+    }
+
+    /**
+     * Executor for shadow rankings of {@link com.spshpau.userservice.services.matching.MatchShadowEvaluator}.
+     * It has no queue: with all {@code matching.shadow.max-concurrent} threads busy, a sampled request is simply not
+     * shadowed, so shadow work never piles up behind live traffic. Its threads run at minimum priority.
+     * Published as {@code executor.*} metrics tagged {@code name=matchShadow}.
+     */
+    @Bean(name = MATCH_SHADOW_EXECUTOR, destroyMethod = "shutdown")
+    public ThreadPoolExecutor matchShadowExecutor(@Value("${matching.shadow.max-concurrent:2}") int maxConcurrent,
+                                                  MeterRegistry meterRegistry) {
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(maxConcurrent, maxConcurrent, 60L, TimeUnit.SECONDS,
+                new SynchronousQueue<>(), daemonThreads("match-shadow-", Thread.MIN_PRIORITY));
+        executor.allowCoreThreadTimeOut(true);
+        new ExecutorServiceMetrics(executor, "matchShadow", Tags.empty()).bindTo(meterRegistry);
+        return executor;
+    }
+
+    /**
+     * Single thread patching other users' match lists after a profile change, off the request thread and in the order
+     * the changes were made. Its queue is bounded: a change arriving at a full queue is not patched in
+     * ({@code matching.patch.skipped}), and the lists it would have touched catch up once they expire and are
+     * ranked again.
+     * Its thread runs at minimum priority. Published as {@code executor.*} metrics tagged {@code name=matchPatch}.
+     */
+    @Bean(name = MATCH_PATCH_EXECUTOR, destroyMethod = "shutdown")
+    public ThreadPoolExecutor matchPatchExecutor(@Value("${matching.patch.queue-capacity:1000}") int queueCapacity,
+                                                 MeterRegistry meterRegistry) {
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity), daemonThreads("match-patch-", Thread.MIN_PRIORITY));
+        new ExecutorServiceMetrics(executor, "matchPatch", Tags.empty()).bindTo(meterRegistry);
+        return executor;
+    }
+
+    /**
+     * The engine behind {@code findMatches}: {@code index} (default) ranks in memory from the matching index,
+     * {@code sql} pushes scoring down into Postgres, {@code lsh} ranks only an approximate candidate pool from the
+     * matching index, {@code sharded} splits the index engine's work across the registered instances.
+     * All engines stay available as beans of their own.
+     */
+    @Bean
+    @Primary
+    public MatchEngine matchEngine(@Value("${matching.engine:index}") String engine,
+                                   IndexMatchEngine indexMatchEngine,
+                                   SqlMatchEngine sqlMatchEngine,
+                                   LshMatchEngine lshMatchEngine,
+                                   ShardedMatchEngine shardedMatchEngine) {
+        return select("matching.engine", engine, indexMatchEngine, sqlMatchEngine, lshMatchEngine, shardedMatchEngine);
+    }
+
+    /**
+     * The candidate engine run in shadow next to {@link #matchEngine}, named like {@code matching.engine}.
+     */
+    @Bean(name = SHADOW_MATCH_ENGINE)
+    @ConditionalOnProperty("matching.shadow.engine")
+    public MatchEngine shadowMatchEngine(@Value("${matching.shadow.engine}") String engine,
+                                         IndexMatchEngine indexMatchEngine,
+                                         SqlMatchEngine sqlMatchEngine,
+                                         LshMatchEngine lshMatchEngine,
+                                         ShardedMatchEngine shardedMatchEngine) {
+        return select("matching.shadow.engine", engine, indexMatchEngine, sqlMatchEngine, lshMatchEngine,
+                shardedMatchEngine);
+    }
+
+    private static MatchEngine select(String property, String engine,
+                                      IndexMatchEngine indexMatchEngine,
+                                      SqlMatchEngine sqlMatchEngine,
+                                      LshMatchEngine lshMatchEngine,
+                                      ShardedMatchEngine shardedMatchEngine) {
+        return switch (engine) {
+            case "index" -> indexMatchEngine;
+            case "sql" -> sqlMatchEngine;
+            case "lsh" -> lshMatchEngine;
+            case "sharded" -> shardedMatchEngine;
+            default -> throw new IllegalStateException("Unknown " + property + ": " + engine);
+        };
+    }
+
+    private static ThreadFactory daemonThreads(String namePrefix, int priority) {
+        AtomicInteger counter = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, namePrefix + counter.getAndIncrement());
+            thread.setDaemon(true);
+            thread.setPriority(priority);
+            return thread;
+        };
+    }
+}
@@ -2,6 +2,7 @@ package com.spshpau.userservice.config;
 
 import com.spshpau.userservice.JwtAuthConverter;
 import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.security.config.annotation.method.configuration.EnableMethodSecurity;
@@ -19,11 +20,15 @@ public class SecurityConfig {
 
     private final JwtAuthConverter jwtAuthConverter;
     @Bean
-    public SecurityFilterChain securityFilterChain(HttpSecurity http) throws Exception {
+    public SecurityFilterChain securityFilterChain(HttpSecurity http,
+                                                   @Value("${matching.shard.scope:matching-shard}") String shardScope)
+            throws Exception {
         http
                 .csrf(AbstractHttpConfigurer::disable)
                 .authorizeHttpRequests(authorize -> authorize
                         .requestMatchers("/", "/index.html", "/js/**", "/css/**", "/img/**", "/favicon.ico", "/api/v1/util/ping").permitAll()
+                        // Instance-to-instance calls: a client-credentials token with the shard scope, no user token
+                        .requestMatchers("/api/v1/internal/matching/**").hasAuthority("SCOPE_" + shardScope)
                         .anyRequest().authenticated()
                 );
 
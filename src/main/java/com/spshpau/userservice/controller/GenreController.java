@@ -1,12 +1,14 @@
 package com.spshpau.userservice.controller;
 
 import com.spshpau.userservice.dto.profiledto.GenreDto;
+import com.spshpau.userservice.dto.profiledto.GenreSimilarityDto;
 import com.spshpau.userservice.dto.profiledto.GenreSummaryDto;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
+import java.util.List;
 import java.util.UUID;
 
 public interface GenreController {
@@ -74,4 +76,47 @@ public interface GenreController {
      * }</pre>
      */
     ResponseEntity<Page<GenreSummaryDto>> getAllGenres(Pageable pageable);
+
+    /**
+     * Retrieves the genres related to a Genre, used by matching to give partial credit for related genres.
+     *
+     * @param genreId The UUID of the Genre.
+     * @return ResponseEntity containing a list of {@link GenreSimilarityDto}, most similar first,
+     * or a 404 Not Found status if the genre does not exist.
+     * Example Success Response (200 OK):
+     * <pre>{@code
+     * [
+     * {"relatedGenreId": "genre-uuid-2", "relatedGenreName": "House", "similarity": 0.8, "manual": true},
+     * {"relatedGenreId": "genre-uuid-3", "relatedGenreName": "Trance", "similarity": 0.35, "manual": false}
+     * ]
+     * }</pre>
+     */
+    ResponseEntity<List<GenreSimilarityDto>> getGenreSimilarities(@PathVariable UUID genreId);
+
+    /**
+     * Sets how closely two Genres are related. The relation is symmetric and overrides a computed similarity.
+     * This endpoint is restricted to users with administrative privileges.
+     *
+     * @param genreId        The UUID of one Genre.
+     * @param relatedGenreId The UUID of the other Genre.
+     * @param similarityDto  DTO carrying the similarity, greater than 0 and at most 1.
+     * @return ResponseEntity containing the resulting {@link GenreSimilarityDto} with a 200 OK status,
+     * a 400 Bad Request status for an invalid similarity or pair, or a 404 Not Found status if a genre does not exist.
+     * Example Request Body:
+     * <pre>{@code
+     * {"similarity": 0.8}
+     * }</pre>
+     */
+    ResponseEntity<GenreSimilarityDto> setGenreSimilarity(@PathVariable UUID genreId, @PathVariable UUID relatedGenreId,
+                                                          @RequestBody GenreSimilarityDto similarityDto);
+
+    /**
+     * Removes the similarity between two Genres, if any.
+     * This endpoint is restricted to users with administrative privileges.
+     *
+     * @param genreId        The UUID of one Genre.
+     * @param relatedGenreId The UUID of the other Genre.
+     * @return ResponseEntity with a 204 No Content status.
+     */
+    ResponseEntity<Void> removeGenreSimilarity(@PathVariable UUID genreId, @PathVariable UUID relatedGenreId);
 }
@@ -0,0 +1,32 @@
+package com.spshpau.userservice.controller;
+
+import com.spshpau.userservice.dto.matchdto.ShardTopKRequest;
+import com.spshpau.userservice.dto.matchdto.ShardTopKResponse;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.RequestBody;
+
+public interface MatchShardController {
+
+    /**
+     * Ranks the best matches for the described caller among the users this instance's shard ring assigns to
+     * {@code member}. Called by other instances of this service when {@code matching.engine=sharded};
+     * not meant for clients. Requests carry the shared {@code matching.shard.secret} instead of a user token.
+     *
+     * @param secret  Value of the {@code X-Match-Shard-Secret} header.
+     * @param request The caller's matching inputs, relations, K and the ring the sender used.
+     * @return ResponseEntity containing the shard's top K and candidate count,
+     * 403 Forbidden for a wrong secret, 404 Not Found when no secret is configured,
+     * or 409 Conflict if this instance currently has a different ring.
+     * Example Success Response (200 OK):
+     * <pre>{@code
+     * {
+     * "matches": [
+     * {"userId": "user1-uuid", "username": "userOne", "score": 12.0},
+     * {"userId": "user2-uuid", "username": "userTwo", "score": 9.5}
+     * ],
+     * "totalCandidates": 4211
+     * }
+     * }</pre>
+     */
+    ResponseEntity<ShardTopKResponse> findShardTopK(String secret, @RequestBody ShardTopKRequest request);
+}
@@ -5,9 +5,11 @@ import com.spshpau.userservice.dto.userdto.UserDetailDto;
 import com.spshpau.userservice.dto.userdto.UserSummaryDto;
 import com.spshpau.userservice.model.User;
 import com.spshpau.userservice.model.enums.ExperienceLevel;
+import com.spshpau.userservice.model.enums.ProfileType;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.http.ResponseEntity;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 import org.springframework.security.oauth2.jwt.Jwt;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.RequestBody;
@@ -186,6 +188,8 @@ public interface UserController {
      * @param artistAvailability      Optional boolean to filter artists by their availability.
      * @param producerExperienceLevel Optional experience level to filter producers by.
      * @param producerAvailability    Optional boolean to filter producers by their availability.
+     * @param withinKm                Optional radius in kilometres around the caller's location; users without a
+     *                                recognised location (including the caller) match nothing.
      * @param pageable                Pagination information (page number, size, sort).
      * @return A ResponseEntity containing a paginated list of {@link UserSummaryDto} objects
      * matching the criteria, or an error status.
@@ -222,6 +226,7 @@ public interface UserController {
             @RequestParam(required = false) Boolean artistAvailability,
             @RequestParam(required = false) ExperienceLevel producerExperienceLevel,
             @RequestParam(required = false) Boolean producerAvailability,
+            @RequestParam(required = false) Double withinKm,
             Pageable pageable
     );
 
@@ -229,11 +234,28 @@ public interface UserController {
      * Finds potential collaborators for the currently authenticated user.
      * The matching logic is based on criteria such as shared genres, complementary profile types (artist/producer),
      * and availability. Results are ranked by relevance.
+     * The first call freezes the ranking; the cursor returned in the {@code X-Next-Cursor} header fetches
+     * the next page of that same ranking. It expires after a while, after which the client starts over.
+     * <p>
+     * Ranking is limited to the {@code matching.budget} configured, which the {@code X-Match-Budget-Ms} header can
+     * lower. When the budget runs out, the page holds the best matches found so far and the response carries
+     * {@code X-Match-Partial: true}; the complete ranking replaces it in the background for later requests.
+     * <p>
+     * The optional filters narrow the candidates down before they are ranked, so {@code totalElements} counts only
+     * the users passing them. They hold on one and the same profile of a candidate: with {@code role=ARTIST} and
+     * {@code availableOnly=true}, only users with an available artist profile are matched. Pages fetched with a
+     * cursor keep the filters of the first page.
      *
-     * @param jwt      The JWT token representing the authenticated principal.
-     * @param pageable Pagination information.
+     * @param jwt                The JWT token representing the authenticated principal.
+     * @param cursor             Optional cursor from the {@code X-Next-Cursor} header of the previous page.
+     * @param availableOnly      Optional; {@code true} to match only users whose profile is available.
+     * @param minExperienceLevel Optional minimum experience level of the profile.
+     * @param role               Optional {@code ARTIST} or {@code PRODUCER}, to match only that kind of profile.
+     * @param genreIds           Optional list of Genre UUIDs; the profile must have at least one.
+     * @param budgetMs           Optional ranking budget in milliseconds from the {@code X-Match-Budget-Ms} header.
+     * @param pageable           Pagination information.
      * @return A ResponseEntity containing a paginated list of matched {@link UserSummaryDto} objects,
-     * ranked by relevance, or an error status.
+     * ranked by relevance, or an error status (400 Bad Request for an invalid cursor, 410 Gone for an expired one).
      * Example Success Response (200 OK):
      * <pre>{@code
      * {
@@ -256,5 +278,40 @@ public interface UserController {
      * }
      * }</pre>
      */
-    ResponseEntity<Page<UserSummaryDto>> findMatches(Jwt jwt, Pageable pageable);
+    ResponseEntity<Page<UserSummaryDto>> findMatches(Jwt jwt, String cursor, Boolean availableOnly,
+                                                     ExperienceLevel minExperienceLevel, ProfileType role,
+                                                     List<UUID> genreIds, Long budgetMs, Pageable pageable);
+
+    /**
+     * Streams the first page of matches for the currently authenticated user as Server-Sent Events, so a client
+     * can show good matches before the whole population is ranked.
+     * <p>
+     * While the ranking is computed, a {@code partial} event carries the best matches among the candidates scored
+     * so far whenever they change. The stream always ends with a {@code page} event holding what {@code /matches}
+     * returns for the same page, with the cursor for continuing there, or with an {@code error} event
+     * (status 404 if the user is not found). A ranking that is already cached is sent as the page event alone.
+     *
+     * @param jwt      The JWT token representing the authenticated principal.
+     * @param pageable Pagination information.
+     * @return A ResponseEntity streaming {@code text/event-stream}.
+     * Example stream:
+     * <pre>{@code
+     * event: partial
+     * data: {"type":"partial","matches":[{"id":"match2-uuid","username":"matchTwo", ...}],"completed":3,"partitions":16}
+     *
+     * event: page
+     * data: {"type":"page","matches":[{"id":"match1-uuid","username":"matchOne", ...}, ...],"totalElements":15,"nextCursor":"..."}
+     * }</pre>
+     */
+    ResponseEntity<StreamingResponseBody> streamMatchesAsEvents(Jwt jwt, Pageable pageable);
+
+    /**
+     * Same as {@link #streamMatchesAsEvents}, as newline-delimited JSON ({@code application/x-ndjson}): one event
+     * object per line.
+     *
+     * @param jwt      The JWT token representing the authenticated principal.
+     * @param pageable Pagination information.
+     * @return A ResponseEntity streaming {@code application/x-ndjson}.
+     */
+    ResponseEntity<StreamingResponseBody> streamMatchesAsNdjson(Jwt jwt, Pageable pageable);
 }
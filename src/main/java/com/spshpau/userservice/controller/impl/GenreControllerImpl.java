@@ -2,6 +2,7 @@ package com.spshpau.userservice.controller.impl;
 
 import com.spshpau.userservice.controller.GenreController;
 import com.spshpau.userservice.dto.profiledto.GenreDto;
+import com.spshpau.userservice.dto.profiledto.GenreSimilarityDto;
 import com.spshpau.userservice.dto.profiledto.GenreSummaryDto;
 import com.spshpau.userservice.model.Genre;
 import com.spshpau.userservice.services.GenreService;
@@ -21,6 +22,7 @@ import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
 
 
 import java.net.URI;
+import java.util.List;
 import java.util.UUID;
 
 @RestController
@@ -74,4 +76,45 @@ public class GenreControllerImpl implements GenreController {
             throw new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR, "Error retrieving genres", ex);
         }
     }
+
+    @Override
+    @GetMapping("/{genreId}/similar")
+    public ResponseEntity<List<GenreSimilarityDto>> getGenreSimilarities(@PathVariable UUID genreId) {
+        try {
+            return ResponseEntity.ok(genreService.getGenreSimilarities(genreId));
+        } catch (GenreNotFoundException ex) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, ex.getMessage(), ex);
+        } catch (Exception ex) {
+            throw new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR, "Error retrieving genre similarities", ex);
+        }
+    }
+
+    @Override
+    @PutMapping("/{genreId}/similar/{relatedGenreId}")
+    @PreAuthorize("hasRole('client_admin')")
+    public ResponseEntity<GenreSimilarityDto> setGenreSimilarity(@PathVariable UUID genreId,
+                                                                 @PathVariable UUID relatedGenreId,
+                                                                 @Valid @RequestBody GenreSimilarityDto similarityDto) {
+        try {
+            return ResponseEntity.ok(genreService.setGenreSimilarity(genreId, relatedGenreId, similarityDto.getSimilarity()));
+        } catch (GenreNotFoundException ex) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, ex.getMessage(), ex);
+        } catch (IllegalArgumentException ex) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, ex.getMessage(), ex);
+        } catch (Exception ex) {
+            throw new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR, "Error setting genre similarity", ex);
+        }
+    }
+
+    @Override
+    @DeleteMapping("/{genreId}/similar/{relatedGenreId}")
+    @PreAuthorize("hasRole('client_admin')")
+    public ResponseEntity<Void> removeGenreSimilarity(@PathVariable UUID genreId, @PathVariable UUID relatedGenreId) {
+        try {
+            genreService.removeGenreSimilarity(genreId, relatedGenreId);
+            return ResponseEntity.noContent().build();
+        } catch (Exception ex) {
+            throw new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR, "Error removing genre similarity", ex);
+        }
+    }
 }
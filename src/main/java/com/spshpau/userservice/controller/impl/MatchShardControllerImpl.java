@@ -0,0 +1,50 @@
+package com.spshpau.userservice.controller.impl;
+
+import com.spshpau.userservice.controller.MatchShardController;
+import com.spshpau.userservice.dto.matchdto.ShardTopKRequest;
+import com.spshpau.userservice.dto.matchdto.ShardTopKResponse;
+import com.spshpau.userservice.services.exceptions.ShardRingMismatchException;
+import com.spshpau.userservice.services.matching.MatchShardService;
+import com.spshpau.userservice.services.matching.ShardedMatchEngine;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.util.StringUtils;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+
+@RestController
+@RequestMapping("/api/v1/internal/matching")
+public class MatchShardControllerImpl implements MatchShardController {
+
+    private final MatchShardService matchShardService;
+    private final String secret;
+
+    public MatchShardControllerImpl(MatchShardService matchShardService,
+                                    @Value("${matching.shard.secret:}") String secret) {
+        this.matchShardService = matchShardService;
+        this.secret = secret;
+    }
+
+    @Override
+    @PostMapping("/shard-top-k")
+    public ResponseEntity<ShardTopKResponse> findShardTopK(
+            @RequestHeader(name = ShardedMatchEngine.SECRET_HEADER, required = false) String secret,
+            @RequestBody ShardTopKRequest request) {
+        if (!StringUtils.hasText(this.secret)) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND);
+        }
+        if (secret == null || !MessageDigest.isEqual(this.secret.getBytes(StandardCharsets.UTF_8),
+                secret.getBytes(StandardCharsets.UTF_8))) {
+            throw new ResponseStatusException(HttpStatus.FORBIDDEN, "Invalid shard secret");
+        }
+        try {
+            return ResponseEntity.ok(matchShardService.findShardTopK(request));
+        } catch (ShardRingMismatchException ex) {
+            throw new ResponseStatusException(HttpStatus.CONFLICT, ex.getMessage(), ex);
+        }
+    }
+}
@@ -1,26 +1,40 @@
 package com.spshpau.userservice.controller.impl;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.spshpau.userservice.controller.UserController;
+import com.spshpau.userservice.dto.matchdto.MatchCriteria;
+import com.spshpau.userservice.dto.matchdto.MatchStreamEvent;
 import com.spshpau.userservice.dto.userdto.LocationUpdateRequest;
 import com.spshpau.userservice.dto.userdto.UserDetailDto;
 import com.spshpau.userservice.dto.userdto.UserSearchCriteria;
 import com.spshpau.userservice.dto.userdto.UserSummaryDto;
 import com.spshpau.userservice.model.User;
 import com.spshpau.userservice.model.enums.ExperienceLevel;
+import com.spshpau.userservice.model.enums.ProfileType;
 import com.spshpau.userservice.services.UserService;
+import com.spshpau.userservice.services.exceptions.CursorExpiredException;
+import com.spshpau.userservice.services.exceptions.InvalidCursorException;
 import com.spshpau.userservice.services.exceptions.UserNotFoundException;
+import com.spshpau.userservice.services.wrappers.CursorPage;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.web.PageableDefault;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.security.oauth2.jwt.Jwt;
 import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
 import java.util.List;
 import java.util.UUID;
 
@@ -28,11 +42,21 @@ import java.util.UUID;
 @RequestMapping("/api/v1/users")
 public class UserControllerImpl implements UserController {
 
+    static final String NEXT_CURSOR_HEADER = "X-Next-Cursor";
+    static final String BUDGET_HEADER = "X-Match-Budget-Ms";
+    static final String PARTIAL_HEADER = "X-Match-Partial";
+
     private final UserService userService;
+    private final ObjectMapper objectMapper;
+    private final Duration matchBudget;
 
     @Autowired
-    public UserControllerImpl(UserService userService) {
+    public UserControllerImpl(UserService userService,
+                              ObjectMapper objectMapper,
+                              @Value("${matching.budget:0ms}") Duration matchBudget) {
         this.userService = userService;
+        this.objectMapper = objectMapper;
+        this.matchBudget = matchBudget;
     }
 
     // Helper method to extract UUID from JWT
@@ -187,6 +211,7 @@ public class UserControllerImpl implements UserController {
             @RequestParam(required = false) Boolean artistAvailability,
             @RequestParam(required = false) ExperienceLevel producerExperienceLevel,
             @RequestParam(required = false) Boolean producerAvailability,
+            @RequestParam(required = false) Double withinKm,
             @PageableDefault(size = 10, sort = "username") Pageable pageable) {
 
         UUID currentUserId = getUserIdFromJwt(jwt);
@@ -201,6 +226,7 @@ public class UserControllerImpl implements UserController {
         criteria.setArtistAvailability(artistAvailability);
         criteria.setProducerExperienceLevel(producerExperienceLevel);
         criteria.setProducerAvailability(producerAvailability);
+        criteria.setWithinKm(withinKm);
 
         try {
             Page<UserSummaryDto> results = userService.findActiveUsers(currentUserId, criteria, pageable);
@@ -214,17 +240,116 @@ public class UserControllerImpl implements UserController {
     @GetMapping("/matches")
     public ResponseEntity<Page<UserSummaryDto>> findMatches(
             @AuthenticationPrincipal Jwt jwt,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(required = false) Boolean availableOnly,
+            @RequestParam(required = false) ExperienceLevel minExperienceLevel,
+            @RequestParam(required = false) ProfileType role,
+            @RequestParam(required = false) List<UUID> genreIds,
+            @RequestHeader(value = BUDGET_HEADER, required = false) Long budgetMs,
             @PageableDefault(size = 10) Pageable pageable) {
 
         UUID currentUserId = getUserIdFromJwt(jwt);
 
+        MatchCriteria criteria = new MatchCriteria(availableOnly, minExperienceLevel, role, genreIds);
+
         try {
-            Page<UserSummaryDto> results = userService.findMatches(currentUserId, pageable);
-            return ResponseEntity.ok(results);
+            CursorPage<UserSummaryDto> results = userService.findMatches(currentUserId, criteria, cursor, pageable,
+                    matchBudget(budgetMs));
+            ResponseEntity.BodyBuilder response = ResponseEntity.ok();
+            if (results.getNextCursor() != null) {
+                response.header(NEXT_CURSOR_HEADER, results.getNextCursor());
+            }
+            if (results.isPartial()) {
+                response.header(PARTIAL_HEADER, "true");
+            }
+            return response.body(results.getPage());
         } catch (UserNotFoundException ex) {
             throw new ResponseStatusException(HttpStatus.NOT_FOUND, ex.getMessage(), ex);
+        } catch (InvalidCursorException ex) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, ex.getMessage(), ex);
+        } catch (CursorExpiredException ex) {
+            throw new ResponseStatusException(HttpStatus.GONE, ex.getMessage(), ex);
         } catch (Exception ex) {
             throw new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR, "Error finding matches", ex);
         }
     }
+
+    /**
+     * The configured {@code matching.budget} is a ceiling the header can only lower; zero or none means no limit.
+     */
+    private Duration matchBudget(Long budgetMs) {
+        Duration configured = matchBudget.isZero() || matchBudget.isNegative() ? null : matchBudget;
+        if (budgetMs == null || budgetMs <= 0) {
+            return configured;
+        }
+        Duration requested = Duration.ofMillis(budgetMs);
+        return configured == null || requested.compareTo(configured) < 0 ? requested : configured;
+    }
+
+    @Override
+    @GetMapping(value = "/matches/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public ResponseEntity<StreamingResponseBody> streamMatchesAsEvents(
+            @AuthenticationPrincipal Jwt jwt,
+            @PageableDefault(size = 10) Pageable pageable) {
+
+        UUID currentUserId = getUserIdFromJwt(jwt);
+        return ResponseEntity.ok()
+                .contentType(MediaType.TEXT_EVENT_STREAM)
+                .body(out -> streamMatches(currentUserId, pageable, out, true));
+    }
+
+    @Override
+    @GetMapping(value = "/matches/stream", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> streamMatchesAsNdjson(
+            @AuthenticationPrincipal Jwt jwt,
+            @PageableDefault(size = 10) Pageable pageable) {
+
+        UUID currentUserId = getUserIdFromJwt(jwt);
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .body(out -> streamMatches(currentUserId, pageable, out, false));
+    }
+
+    /**
+     * Runs on the MVC async executor once the response is committed, so failures become an error event.
+     * A client that went away only stops the writing; the ranking completes and is cached for the next request.
+     */
+    private void streamMatches(UUID currentUserId, Pageable pageable, OutputStream out, boolean sse) {
+        MatchStreamWriter writer = new MatchStreamWriter(out, sse);
+        try {
+            userService.streamMatches(currentUserId, pageable, writer::write);
+        } catch (UserNotFoundException ex) {
+            writer.write(MatchStreamEvent.error(HttpStatus.NOT_FOUND.value(), ex.getMessage()));
+        } catch (Exception ex) {
+            writer.write(MatchStreamEvent.error(HttpStatus.INTERNAL_SERVER_ERROR.value(), "Error finding matches"));
+        }
+    }
+
+    /**
+     * Writes events as SSE ({@code event:} and {@code data:} lines) or as one JSON object per line.
+     */
+    private class MatchStreamWriter {
+        private final OutputStream out;
+        private final boolean sse;
+        private boolean closed;
+
+        MatchStreamWriter(OutputStream out, boolean sse) {
+            this.out = out;
+            this.sse = sse;
+        }
+
+        void write(MatchStreamEvent event) {
+            if (closed) {
+                return;
+            }
+            try {
+                String json = objectMapper.writeValueAsString(event);
+                String frame = sse ? "event: " + event.getType() + "\ndata: " + json + "\n\n" : json + "\n";
+                out.write(frame.getBytes(StandardCharsets.UTF_8));
+                out.flush();
+            } catch (IOException ex) {
+                closed = true;
+            }
+        }
+    }
 }
@@ -0,0 +1,24 @@
+package com.spshpau.userservice.dto.matchdto;
+
+import com.spshpau.userservice.model.enums.ExperienceLevel;
+import com.spshpau.userservice.model.enums.ProfileType;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Restricts the candidates of a match ranking; every condition holds on one and the same profile of a candidate.
+ * Also carried by {@link ShardTopKRequest}, so every shard ranks the same restricted population.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class MatchCriteria {
+    private Boolean availableOnly; // true = the profile must be available, null/false = don't filter
+    private ExperienceLevel minExperienceLevel; // The profile must be at least this experienced
+    private ProfileType role; // Only this profile counts, null = either
+    private List<UUID> genreIds; // The profile must have ANY of these genres
+}
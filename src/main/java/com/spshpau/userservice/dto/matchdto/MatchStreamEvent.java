@@ -0,0 +1,47 @@
+package com.spshpau.userservice.dto.matchdto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.spshpau.userservice.dto.userdto.UserSummaryDto;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class MatchStreamEvent {
+    public static final String PARTIAL = "partial";
+    public static final String PAGE = "page";
+    public static final String ERROR = "error";
+
+    /** {@link #PARTIAL}, {@link #PAGE} or {@link #ERROR}; the stream ends after a page or an error. */
+    private String type;
+    /** The best matches so far (partial) or the final page, best first. */
+    private List<UserSummaryDto> matches;
+    /** Partitions of the population scored so far; partial events only. */
+    private Integer completed;
+    /** Partitions in total; partial events only. */
+    private Integer partitions;
+    /** Number of candidates in the final ranking; page events only. */
+    private Long totalElements;
+    /** Cursor for {@code /matches} to continue with the next page of the same ranking, if any. */
+    private String nextCursor;
+    /** HTTP status the non-streaming endpoint would have answered with; error events only. */
+    private Integer status;
+    private String message;
+
+    public static MatchStreamEvent partial(List<UserSummaryDto> matches, int completed, int partitions) {
+        return new MatchStreamEvent(PARTIAL, matches, completed, partitions, null, null, null, null);
+    }
+
+    public static MatchStreamEvent page(List<UserSummaryDto> matches, long totalElements, String nextCursor) {
+        return new MatchStreamEvent(PAGE, matches, null, null, totalElements, nextCursor, null, null);
+    }
+
+    public static MatchStreamEvent error(int status, String message) {
+        return new MatchStreamEvent(ERROR, null, null, null, null, null, status, message);
+    }
+}
@@ -0,0 +1,16 @@
+package com.spshpau.userservice.dto.matchdto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.UUID;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ShardMatchDto {
+    private UUID userId;
+    private String username;
+    private double score;
+}
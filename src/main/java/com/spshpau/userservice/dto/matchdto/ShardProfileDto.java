@@ -0,0 +1,19 @@
+package com.spshpau.userservice.dto.matchdto;
+
+import com.spshpau.userservice.model.enums.ExperienceLevel;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.Set;
+import java.util.UUID;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ShardProfileDto {
+    private boolean availability;
+    private ExperienceLevel experienceLevel;
+    private Set<UUID> genreIds;
+    private Set<UUID> skillIds;
+}
@@ -0,0 +1,35 @@
+package com.spshpau.userservice.dto.matchdto;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * Asks one instance for the best matches among the users it owns. The caller's matching inputs travel with
+ * the request, so the receiving instance ranks against the same caller as the instance that received the
+ * original request.
+ */
+@Data
+@NoArgsConstructor
+public class ShardTopKRequest {
+    /** Members of the shard ring the sender used; the receiver refuses if its own ring differs. */
+    private List<String> members;
+    /** The member whose users are to be ranked. */
+    private String member;
+    private int k;
+
+    private UUID callerId;
+    private String callerUsername;
+    private ShardProfileDto artistProfile;
+    private ShardProfileDto producerProfile;
+    private Double latitude;
+    private Double longitude;
+
+    private Set<UUID> excludedUserIds;
+    private Set<UUID> connectedUserIds;
+    /** Candidate filter of the ranking; {@code null} for none. */
+    private MatchCriteria filter;
+}
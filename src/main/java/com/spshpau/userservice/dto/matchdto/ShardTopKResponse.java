@@ -0,0 +1,17 @@
+package com.spshpau.userservice.dto.matchdto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ShardTopKResponse {
+    /** The shard's best matches, best first; at most K of them. */
+    private List<ShardMatchDto> matches;
+    /** Number of candidates in the shard. */
+    private long totalCandidates;
+}
@@ -0,0 +1,29 @@
+package com.spshpau.userservice.dto.profiledto;
+
+import jakarta.validation.constraints.DecimalMax;
+import jakarta.validation.constraints.DecimalMin;
+import jakarta.validation.constraints.NotNull;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.UUID;
+
+/**
+ * How closely a genre is related to another one, from 0 (exclusive) to 1.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class GenreSimilarityDto {
+    private UUID relatedGenreId;
+    private String relatedGenreName;
+
+    @NotNull(message = "Similarity is required")
+    @DecimalMin(value = "0.0", inclusive = false, message = "Similarity must be greater than 0")
+    @DecimalMax(value = "1.0", message = "Similarity cannot exceed 1")
+    private Float similarity;
+
+    /** Whether an administrator set the similarity, rather than it being computed from co-occurrence. */
+    private boolean manual;
+}
@@ -23,4 +23,6 @@ public class UserSearchCriteria {
     private Boolean producerAvailability; // Filter by producer availability
 
     private String searchTerm; // General text search
+
+    private Double withinKm; // Filter by distance from the caller's location
 }
@@ -0,0 +1,32 @@
+package com.spshpau.userservice.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+/**
+ * How closely two genres are related, from 0 (unrelated) to 1 (interchangeable); used by the matcher
+ * to give partial credit for related genres. Pairs are either set by an administrator ({@code manual})
+ * or computed from genre co-occurrence in profiles; computed pairs never override manual ones.
+ */
+@Entity
+@Table(name = "genre_similarities", indexes = {
+        @Index(name = "idx_genre_similarities_related", columnList = "related_genre_id")
+})
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+public class GenreSimilarity {
+
+    @EmbeddedId
+    private GenreSimilarityId id;
+
+    @Column(nullable = false)
+    private float similarity;
+
+    @Column(nullable = false)
+    private boolean manual;
+}
@@ -0,0 +1,37 @@
+package com.spshpau.userservice.model;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Embeddable;
+import lombok.AllArgsConstructor;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.io.Serializable;
+import java.util.UUID;
+
+/**
+ * Key of a {@link GenreSimilarity}: an unordered pair of genres, stored with the ids in Postgres uuid order
+ * (which is the order of their lowercase string forms), see {@link #of}.
+ */
+@Embeddable
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@EqualsAndHashCode
+public class GenreSimilarityId implements Serializable {
+
+    @Column(name = "genre_id", nullable = false)
+    private UUID genreId;
+
+    @Column(name = "related_genre_id", nullable = false)
+    private UUID relatedGenreId;
+
+    public static GenreSimilarityId of(UUID genreId, UUID otherGenreId) {
+        return genreId.toString().compareTo(otherGenreId.toString()) < 0
+                ? new GenreSimilarityId(genreId, otherGenreId)
+                : new GenreSimilarityId(otherGenreId, genreId);
+    }
+}
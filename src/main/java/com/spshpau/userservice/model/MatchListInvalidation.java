@@ -0,0 +1,32 @@
+package com.spshpau.userservice.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.time.Instant;
+import java.util.UUID;
+
+/**
+ * When a write last made a user's persisted match list stale. A list ranked from the index before that time is
+ * never served or saved, even if it is written after the write dropped the previous one.
+ */
+@Entity
+@Table(name = "match_list_invalidations", indexes = {
+        @Index(name = "idx_match_list_invalidations_at", columnList = "invalidated_at")
+})
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+public class MatchListInvalidation {
+
+    @Id
+    @Column(name = "user_id")
+    private UUID userId;
+
+    @Column(name = "invalidated_at", nullable = false)
+    private Instant invalidatedAt;
+}
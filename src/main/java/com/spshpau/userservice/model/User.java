@@ -36,6 +36,13 @@ public class User {
     @Column
     private String location;
 
+    // Coordinates of location, resolved through the gazetteer; null when unknown
+    @Column
+    private Double latitude;
+
+    @Column
+    private Double longitude;
+
     @Column(nullable = false)
     private boolean active = true; // For admin deactivation (ban)
 
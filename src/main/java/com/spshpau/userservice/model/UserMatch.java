@@ -0,0 +1,39 @@
+package com.spshpau.userservice.model;
+
+import jakarta.persistence.*;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.time.Instant;
+import java.util.UUID;
+
+/**
+ * One entry of a user's persisted top-N match list, written by the match batch job.
+ * Every row of a list carries the list's candidate count and computation time.
+ */
+@Entity
+@Table(name = "user_matches", indexes = {
+        @Index(name = "idx_user_matches_match_user", columnList = "match_user_id"),
+        @Index(name = "idx_user_matches_rank_score", columnList = "match_rank, score")
+})
+@Getter
+@Setter
+@NoArgsConstructor
+public class UserMatch {
+
+    @EmbeddedId
+    private UserMatchId id;
+
+    @Column(name = "match_user_id", nullable = false)
+    private UUID matchUserId;
+
+    @Column(nullable = false)
+    private float score;
+
+    @Column(name = "total_candidates", nullable = false)
+    private long totalCandidates;
+
+    @Column(name = "computed_at", nullable = false)
+    private Instant computedAt;
+}
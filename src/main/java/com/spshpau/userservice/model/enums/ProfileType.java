@@ -0,0 +1,6 @@
+package com.spshpau.userservice.model.enums;
+
+public enum ProfileType {
+    ARTIST,
+    PRODUCER
+}
@@ -1,13 +1,26 @@
 package com.spshpau.userservice.repositories;
 
 import com.spshpau.userservice.model.ArtistProfile;
+import com.spshpau.userservice.repositories.projections.MatchingLinkRow;
+import com.spshpau.userservice.repositories.projections.ProfileMatchingRow;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
 
+import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
 
 @Repository
 public interface ArtistProfileRepository extends JpaRepository<ArtistProfile, UUID> {
     Optional<ArtistProfile> findById(UUID userId);
+
+    @Query("SELECT ap.id AS id, ap.availability AS availability, ap.experienceLevel AS experienceLevel FROM ArtistProfile ap")
+    List<ProfileMatchingRow> findAllMatchingRows();
+
+    @Query("SELECT ap.id AS ownerId, g.id AS targetId FROM ArtistProfile ap JOIN ap.genres g")
+    List<MatchingLinkRow> findAllGenreLinks();
+
+    @Query("SELECT ap.id AS ownerId, s.id AS targetId FROM ArtistProfile ap JOIN ap.skills s")
+    List<MatchingLinkRow> findAllSkillLinks();
 }
@@ -0,0 +1,76 @@
+package com.spshpau.userservice.repositories;
+
+import com.spshpau.userservice.model.GenreSimilarity;
+import com.spshpau.userservice.model.GenreSimilarityId;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+import java.util.UUID;
+
+@Repository
+public interface GenreSimilarityRepository extends JpaRepository<GenreSimilarity, GenreSimilarityId> {
+
+    /**
+     * Finds every pair the genre is part of, on either side.
+     * @param genreId The UUID of the genre.
+     * @return The similarity pairs of the genre.
+     */
+    @Query("SELECT s FROM GenreSimilarity s WHERE s.id.genreId = :genreId OR s.id.relatedGenreId = :genreId")
+    List<GenreSimilarity> findAllOf(@Param("genreId") UUID genreId);
+
+    @Modifying
+    @Query("DELETE FROM GenreSimilarity s WHERE s.id.genreId = :genreId OR s.id.relatedGenreId = :genreId")
+    int deleteAllOf(@Param("genreId") UUID genreId);
+
+    @Modifying
+    @Query("DELETE FROM GenreSimilarity s WHERE s.manual = false")
+    int deleteComputed();
+
+    /**
+     * Inserts the Jaccard similarity of every pair of genres that co-occur in at least {@code minSupport} profiles
+     * (artist and producer profiles counted separately), capped at {@code maxSimilarity} and dropped below
+     * {@code minSimilarity}. Pairs that already exist, i.e. manual ones, are left alone.
+     * @return The number of pairs inserted.
+     */
+    @Modifying
+    @Query(value = """
+            WITH links AS (
+                SELECT 'A' AS kind, artist_profile_id AS profile_id, genre_id FROM artist_genres
+                UNION ALL
+                SELECT 'P', producer_profile_id, genre_id FROM producer_genres
+            ),
+            counts AS (
+                SELECT genre_id, COUNT(*) AS profiles FROM links GROUP BY genre_id
+            ),
+            pairs AS (
+                SELECT a.genre_id AS genre_id, b.genre_id AS related_genre_id, COUNT(*) AS together
+                FROM links a
+                JOIN links b ON b.kind = a.kind AND b.profile_id = a.profile_id AND a.genre_id < b.genre_id
+                GROUP BY a.genre_id, b.genre_id
+                HAVING COUNT(*) >= :minSupport
+            ),
+            scored AS (
+                SELECT p.genre_id, p.related_genre_id,
+                       CAST(p.together AS real) / (ca.profiles + cb.profiles - p.together) AS jaccard
+                FROM pairs p
+                JOIN counts ca ON ca.genre_id = p.genre_id
+                JOIN counts cb ON cb.genre_id = p.related_genre_id
+            )
+            INSERT INTO genre_similarities (genre_id, related_genre_id, similarity, manual)
+            SELECT genre_id, related_genre_id, LEAST(jaccard, :maxSimilarity), false
+            FROM scored
+            WHERE jaccard >= :minSimilarity
+            ON CONFLICT (genre_id, related_genre_id) DO NOTHING
+            """, nativeQuery = true)
+    int insertComputed(@Param("minSupport") int minSupport,
+                       @Param("minSimilarity") float minSimilarity,
+                       @Param("maxSimilarity") float maxSimilarity);
+
+    // Transaction-scoped, non-blocking lock, so only one instance recomputes at a time
+    @Query(value = "SELECT pg_try_advisory_xact_lock(:key)", nativeQuery = true)
+    boolean tryLock(@Param("key") long key);
+}
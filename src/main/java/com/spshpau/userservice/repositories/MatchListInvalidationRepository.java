@@ -0,0 +1,39 @@
+package com.spshpau.userservice.repositories;
+
+import com.spshpau.userservice.model.MatchListInvalidation;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.UUID;
+
+@Repository
+public interface MatchListInvalidationRepository extends JpaRepository<MatchListInvalidation, UUID> {
+
+    /**
+     * Records that the lists of the given users went stale at {@code at}, keeping the latest time per user.
+     */
+    @Modifying
+    @Transactional
+    @Query(value = """
+            INSERT INTO match_list_invalidations (user_id, invalidated_at)
+            SELECT u.id, :at FROM users u WHERE u.id IN (:userIds)
+            ON CONFLICT (user_id) DO UPDATE
+                SET invalidated_at = GREATEST(match_list_invalidations.invalidated_at, EXCLUDED.invalidated_at)
+            """, nativeQuery = true)
+    int invalidate(@Param("userIds") List<UUID> userIds, @Param("at") Instant at);
+
+    // Whether the user's list went stale since a list ranked at the given time, ties counting as stale
+    boolean existsByUserIdAndInvalidatedAtGreaterThanEqual(UUID userId, Instant rankedAt);
+
+    // Invalidations older than any list still served no longer matter
+    @Modifying
+    @Transactional
+    @Query("DELETE FROM MatchListInvalidation i WHERE i.invalidatedAt < :before")
+    int deleteOlderThan(@Param("before") Instant before);
+}
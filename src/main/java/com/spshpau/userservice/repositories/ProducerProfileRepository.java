@@ -1,13 +1,23 @@
 package com.spshpau.userservice.repositories;
 
 import com.spshpau.userservice.model.ProducerProfile;
+import com.spshpau.userservice.repositories.projections.MatchingLinkRow;
+import com.spshpau.userservice.repositories.projections.ProfileMatchingRow;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
 
+import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
 
 @Repository
 public interface ProducerProfileRepository extends JpaRepository<ProducerProfile, UUID> {
     Optional<ProducerProfile> findById(UUID userId);
+
+    @Query("SELECT pp.id AS id, pp.availability AS availability, pp.experienceLevel AS experienceLevel FROM ProducerProfile pp")
+    List<ProfileMatchingRow> findAllMatchingRows();
+
+    @Query("SELECT pp.id AS ownerId, g.id AS targetId FROM ProducerProfile pp JOIN pp.genres g")
+    List<MatchingLinkRow> findAllGenreLinks();
 }
@@ -12,6 +12,7 @@ import org.springframework.stereotype.Repository;
 
 import java.util.List;
 import java.util.Optional;
+import java.util.Set;
 import java.util.UUID;
 
 @Repository
@@ -43,6 +44,11 @@ public interface UserConnectionRepository extends JpaRepository<UserConnection,
     @Query("SELECT uc FROM UserConnection uc WHERE (uc.requester.id = :userId OR uc.addressee.id = :userId) AND uc.status = :status")
     List<UserConnection> findAllAcceptedConnectionsForUser(@Param("userId") UUID userId, @Param("status") ConnectionStatus status);
 
+    // Find the ids of everyone a user has a connection with in the given status, in either direction
+    @Query("SELECT CASE WHEN uc.requester.id = :userId THEN uc.addressee.id ELSE uc.requester.id END " +
+            "FROM UserConnection uc WHERE (uc.requester.id = :userId OR uc.addressee.id = :userId) AND uc.status = :status")
+    Set<UUID> findConnectedUserIds(@Param("userId") UUID userId, @Param("status") ConnectionStatus status);
+
     // Delete connection between two users
     void deleteByRequesterIdAndAddresseeId(UUID requesterId, UUID addresseeId);
 }
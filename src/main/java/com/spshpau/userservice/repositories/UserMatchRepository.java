@@ -0,0 +1,93 @@
+package com.spshpau.userservice.repositories;
+
+import com.spshpau.userservice.model.UserMatch;
+import com.spshpau.userservice.model.UserMatchId;
+import com.spshpau.userservice.repositories.projections.MatchListTailRow;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.UUID;
+
+@Repository
+public interface UserMatchRepository extends JpaRepository<UserMatch, UserMatchId> {
+
+    // Head of a user's persisted match list, in rank order; a range scan of the primary key
+    List<UserMatch> findByIdUserIdOrderByIdRankAsc(UUID userId, Pageable pageable);
+
+    /**
+     * Inserts a whole list in one statement by unnesting the ranked ids and scores; the previous list must be deleted first.
+     * @param matchIds Postgres array literal of the ranked match ids, e.g. {@code {id1,id2}}.
+     * @param scores Postgres array literal of their scores, in the same order.
+     */
+    @Modifying
+    @Transactional
+    @Query(value = """
+            INSERT INTO user_matches (user_id, match_rank, match_user_id, score, total_candidates, computed_at)
+            SELECT :userId, CAST(r.ord AS int) - 1, r.match_user_id, r.score, :totalCandidates, :computedAt
+            FROM unnest(CAST(:matchIds AS uuid[]), CAST(:scores AS real[])) WITH ORDINALITY AS r(match_user_id, score, ord)
+            """, nativeQuery = true)
+    int insertList(@Param("userId") UUID userId,
+                   @Param("matchIds") String matchIds,
+                   @Param("scores") String scores,
+                   @Param("totalCandidates") long totalCandidates,
+                   @Param("computedAt") Instant computedAt);
+
+    @Modifying
+    @Transactional
+    @Query(value = "DELETE FROM user_matches WHERE user_id IN (:userIds)", nativeQuery = true)
+    int deleteListsOf(@Param("userIds") List<UUID> userIds);
+
+    // Drops every list the given user appears in, since its rank within them may no longer hold
+    @Modifying
+    @Transactional
+    @Query(value = """
+            DELETE FROM user_matches WHERE user_id IN
+                (SELECT m.user_id FROM user_matches m WHERE m.match_user_id = :matchUserId)
+            """, nativeQuery = true)
+    int deleteListsContaining(@Param("matchUserId") UUID matchUserId);
+
+    // Owners of every persisted list the given user appears in
+    @Query(value = "SELECT DISTINCT m.user_id FROM user_matches m WHERE m.match_user_id = :matchUserId", nativeQuery = true)
+    List<UUID> findListOwnersContaining(@Param("matchUserId") UUID matchUserId);
+
+    /**
+     * Owners of the lists that hold all of their candidates, i.e. are at most {@code depth} long.
+     */
+    @Query(value = "SELECT m.user_id FROM user_matches m WHERE m.match_rank = 0 AND m.total_candidates <= :depth",
+            nativeQuery = true)
+    List<UUID> findCompleteListOwners(@Param("depth") int depth);
+
+    /**
+     * Last places, scoring at most {@code maxScore}, of the lists that hold fewer than all of their candidates,
+     * i.e. are exactly {@code depth} long; a range scan of the rank and score index.
+     */
+    @Query(value = """
+            SELECT m.user_id AS userId, m.score AS score FROM user_matches m
+            WHERE m.match_rank = :depth - 1 AND m.score <= :maxScore AND m.total_candidates > :depth
+            """, nativeQuery = true)
+    List<MatchListTailRow> findTruncatedListTailsAtMost(@Param("depth") int depth, @Param("maxScore") float maxScore);
+
+    /**
+     * Active users in the id range {@code [fromId, toId]} whose persisted list is missing or older than {@code staleBefore}.
+     */
+    @Query(value = """
+            SELECT u.id FROM users u
+            WHERE u.active AND u.id BETWEEN :fromId AND :toId
+              AND NOT EXISTS (SELECT 1 FROM user_matches m
+                              WHERE m.user_id = u.id AND m.match_rank = 0 AND m.computed_at >= :staleBefore)
+            """, nativeQuery = true)
+    List<UUID> findUserIdsDueForBatch(@Param("fromId") UUID fromId,
+                                      @Param("toId") UUID toId,
+                                      @Param("staleBefore") Instant staleBefore);
+
+    // Transaction-scoped, non-blocking lock, so each batch partition is computed by one instance at a time
+    @Query(value = "SELECT pg_try_advisory_xact_lock(:key)", nativeQuery = true)
+    boolean tryPartitionLock(@Param("key") long key);
+}
@@ -1,12 +1,16 @@
 package com.spshpau.userservice.repositories;
 
 import com.spshpau.userservice.model.User;
+import com.spshpau.userservice.repositories.projections.MatchScoreRow;
+import com.spshpau.userservice.repositories.projections.MatchingLinkRow;
+import com.spshpau.userservice.repositories.projections.UserMatchingRow;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.List;
 import java.util.Optional;
 import java.util.Set;
 import java.util.UUID;
@@ -43,4 +47,202 @@ public interface UserRepository extends JpaRepository<User, UUID>, JpaSpecificat
      */
     @Query("SELECT u.id FROM User u JOIN u.blockedUsers bu WHERE bu.id = :userId")
     Set<UUID> findBlockerUserIdsByBlockedId(@Param("userId") UUID userId);
+
+    /**
+     * Loads the scalar matching inputs of every user, active or not, for the matching index.
+     * @return One row per user.
+     */
+    @Query("SELECT u.id AS id, u.username AS username, u.active AS active, u.location AS location, "
+            + "u.latitude AS latitude, u.longitude AS longitude FROM User u")
+    List<UserMatchingRow> findAllMatchingRows();
+
+    /**
+     * Loads every block relation for the matching index.
+     * @return One row per block, with the blocker as owner and the blocked user as target.
+     */
+    @Query("SELECT u.id AS ownerId, bu.id AS targetId FROM User u JOIN u.blockedUsers bu")
+    List<MatchingLinkRow> findAllBlockLinks();
+
+    /**
+     * Scores and ranks every match candidate of a user in the database, with the same rules as
+     * {@code MatchScorer}, and returns only the requested slice.
+     * Candidates are all active users except the user itself and both directions of its block relations,
+     * narrowed down to those passing the filter before any of them is scored.
+     * @param userId The UUID of the user asking for matches.
+     * @param limit Maximum number of rows to return.
+     * @param offset Number of ranked rows to skip.
+     * @param connectedPenalty Weight of {@code MatchScorer}'s current profile, as are the following ones.
+     * @param oppositeRole Points for a candidate of the opposite role.
+     * @param experiencePoints Experience points by level distance, as a Postgres {@code float8[]} literal.
+     * @param specificGenre Points per genre shared across opposite roles.
+     * @param availability Points for an available opposite-role profile.
+     * @param sharedGenre Points per shared genre.
+     * @param sharedSkill Points per shared artist skill.
+     * @param filterEmpty Whether every candidate passes; the other filter parameters are ignored then.
+     * @param role Role a candidate's matching profile must have, {@code ARTIST} or {@code PRODUCER}; empty for either.
+     * @param availableOnly Whether the matching profile must be available.
+     * @param minExperience Minimum experience ordinal of the matching profile, -1 for none.
+     * @param genreIds Genres the matching profile must hold any of, as a Postgres {@code uuid[]} literal; {@code {}}
+     *        for any genre.
+     * @return Ranked rows, by score descending and then username (binary collation, as in Java).
+     */
+    @Query(value = """
+            WITH me AS (
+                SELECT ap.user_id IS NOT NULL AS is_artist,
+                       pp.user_id IS NOT NULL AS is_producer,
+                       CASE ap.experience_level WHEN 'BEGINNER' THEN 0 WHEN 'INTERMEDIATE' THEN 1
+                            WHEN 'ADVANCED' THEN 2 WHEN 'EXPERT' THEN 3 END AS artist_level,
+                       CASE pp.experience_level WHEN 'BEGINNER' THEN 0 WHEN 'INTERMEDIATE' THEN 1
+                            WHEN 'ADVANCED' THEN 2 WHEN 'EXPERT' THEN 3 END AS producer_level
+                FROM users u
+                LEFT JOIN artist_profiles ap ON ap.user_id = u.id
+                LEFT JOIN producer_profiles pp ON pp.user_id = u.id
+                WHERE u.id = :userId
+            ),
+            my_genres AS (
+                SELECT genre_id FROM artist_genres WHERE artist_profile_id = :userId
+                UNION
+                SELECT genre_id FROM producer_genres WHERE producer_profile_id = :userId
+            ),
+            shared_genres AS (
+                SELECT g.user_id, COUNT(*) AS shared
+                FROM (SELECT artist_profile_id AS user_id, genre_id FROM artist_genres
+                      WHERE genre_id IN (SELECT genre_id FROM my_genres)
+                      UNION
+                      SELECT producer_profile_id, genre_id FROM producer_genres
+                      WHERE genre_id IN (SELECT genre_id FROM my_genres)) g
+                GROUP BY g.user_id
+            ),
+            producer_to_artist_genres AS (
+                SELECT ag.artist_profile_id AS user_id, COUNT(*) AS shared
+                FROM artist_genres ag
+                JOIN producer_genres mine ON mine.genre_id = ag.genre_id AND mine.producer_profile_id = :userId
+                GROUP BY ag.artist_profile_id
+            ),
+            artist_to_producer_genres AS (
+                SELECT pg.producer_profile_id AS user_id, COUNT(*) AS shared
+                FROM producer_genres pg
+                JOIN artist_genres mine ON mine.genre_id = pg.genre_id AND mine.artist_profile_id = :userId
+                GROUP BY pg.producer_profile_id
+            ),
+            shared_skills AS (
+                SELECT s.artist_profile_id AS user_id, COUNT(*) AS shared
+                FROM artist_skills s
+                JOIN artist_skills mine ON mine.skill_id = s.skill_id AND mine.artist_profile_id = :userId
+                GROUP BY s.artist_profile_id
+            ),
+            connected AS (
+                SELECT CASE WHEN uc.requester_id = :userId THEN uc.addressee_id ELSE uc.requester_id END AS user_id
+                FROM user_connections uc
+                WHERE (uc.requester_id = :userId OR uc.addressee_id = :userId) AND uc.status = 'ACCEPTED'
+            ),
+            candidates AS (
+                SELECT u.id, u.username,
+                       CASE ap.experience_level WHEN 'BEGINNER' THEN 0 WHEN 'INTERMEDIATE' THEN 1
+                            WHEN 'ADVANCED' THEN 2 WHEN 'EXPERT' THEN 3 END AS artist_level,
+                       CASE pp.experience_level WHEN 'BEGINNER' THEN 0 WHEN 'INTERMEDIATE' THEN 1
+                            WHEN 'ADVANCED' THEN 2 WHEN 'EXPERT' THEN 3 END AS producer_level,
+                       ap.user_id IS NOT NULL AS is_artist, ap.availability AS artist_available,
+                       pp.user_id IS NOT NULL AS is_producer, pp.availability AS producer_available
+                FROM users u
+                LEFT JOIN artist_profiles ap ON ap.user_id = u.id
+                LEFT JOIN producer_profiles pp ON pp.user_id = u.id
+                WHERE u.active AND u.id <> :userId
+                  AND NOT EXISTS (SELECT 1 FROM user_blocks b
+                                  WHERE (b.blocker_id = :userId AND b.blocked_id = u.id)
+                                     OR (b.blocker_id = u.id AND b.blocked_id = :userId))
+                  AND (:filterEmpty
+                    OR (:role <> 'PRODUCER' AND ap.user_id IS NOT NULL
+                       AND (ap.availability OR NOT :availableOnly)
+                       AND COALESCE(CASE ap.experience_level WHEN 'BEGINNER' THEN 0 WHEN 'INTERMEDIATE' THEN 1
+                                WHEN 'ADVANCED' THEN 2 WHEN 'EXPERT' THEN 3 END, -1) >= :minExperience
+                       AND (cardinality(CAST(:genreIds AS uuid[])) = 0
+                            OR EXISTS (SELECT 1 FROM artist_genres fg WHERE fg.artist_profile_id = u.id
+                                       AND fg.genre_id = ANY (CAST(:genreIds AS uuid[])))))
+                    OR (:role <> 'ARTIST' AND pp.user_id IS NOT NULL
+                       AND (pp.availability OR NOT :availableOnly)
+                       AND COALESCE(CASE pp.experience_level WHEN 'BEGINNER' THEN 0 WHEN 'INTERMEDIATE' THEN 1
+                                WHEN 'ADVANCED' THEN 2 WHEN 'EXPERT' THEN 3 END, -1) >= :minExperience
+                       AND (cardinality(CAST(:genreIds AS uuid[])) = 0
+                            OR EXISTS (SELECT 1 FROM producer_genres fg WHERE fg.producer_profile_id = u.id
+                                       AND fg.genre_id = ANY (CAST(:genreIds AS uuid[]))))))
+            )
+            SELECT c.id AS id, c.username AS username, CAST(
+                   CASE WHEN cn.user_id IS NOT NULL THEN -:connectedPenalty ELSE 0 END
+                 + CASE WHEN me.is_producer AND c.is_artist THEN
+                       :oppositeRole
+                         + COALESCE((CAST(:experiencePoints AS float8[]))[ABS(me.producer_level - c.artist_level) + 1], 0)
+                         + :specificGenre * COALESCE(pta.shared, 0)
+                         + CASE WHEN c.artist_available THEN :availability ELSE 0 END
+                   ELSE 0 END
+                 + CASE WHEN me.is_artist AND c.is_producer THEN
+                       :oppositeRole
+                         + COALESCE((CAST(:experiencePoints AS float8[]))[ABS(me.artist_level - c.producer_level) + 1], 0)
+                         + :specificGenre * COALESCE(atp.shared, 0)
+                         + CASE WHEN c.producer_available THEN :availability ELSE 0 END
+                   ELSE 0 END
+                 + :sharedGenre * COALESCE(sg.shared, 0)
+                 + CASE WHEN me.is_artist AND c.is_artist THEN :sharedSkill * COALESCE(ss.shared, 0) ELSE 0 END
+                 AS double precision) AS score
+            FROM candidates c
+            CROSS JOIN me
+            LEFT JOIN connected cn ON cn.user_id = c.id
+            LEFT JOIN shared_genres sg ON sg.user_id = c.id
+            LEFT JOIN producer_to_artist_genres pta ON pta.user_id = c.id
+            LEFT JOIN artist_to_producer_genres atp ON atp.user_id = c.id
+            LEFT JOIN shared_skills ss ON ss.user_id = c.id
+            ORDER BY score DESC, c.username COLLATE "C"
+            LIMIT :limit OFFSET :offset
+            """, nativeQuery = true)
+    List<MatchScoreRow> findMatchPage(@Param("userId") UUID userId, @Param("limit") int limit, @Param("offset") int offset,
+                                      @Param("connectedPenalty") double connectedPenalty,
+                                      @Param("oppositeRole") double oppositeRole,
+                                      @Param("experiencePoints") String experiencePoints,
+                                      @Param("specificGenre") double specificGenre,
+                                      @Param("availability") double availability,
+                                      @Param("sharedGenre") double sharedGenre,
+                                      @Param("sharedSkill") double sharedSkill,
+                                      @Param("filterEmpty") boolean filterEmpty, @Param("role") String role,
+                                      @Param("availableOnly") boolean availableOnly,
+                                      @Param("minExperience") int minExperience, @Param("genreIds") String genreIds);
+
+    /**
+     * Counts the match candidates ranked by {@link #findMatchPage}.
+     * @param userId The UUID of the user asking for matches.
+     * @param filterEmpty The candidate filter, as passed to {@link #findMatchPage}, as are the following ones.
+     * @param role Role of the matching profile; empty for either.
+     * @param availableOnly Whether the matching profile must be available.
+     * @param minExperience Minimum experience ordinal, -1 for none.
+     * @param genreIds Genres as a Postgres {@code uuid[]} literal.
+     * @return Number of active users that are neither the user itself nor in a block relation with it,
+     * and pass the filter.
+     */
+    @Query(value = """
+            SELECT COUNT(*) FROM users u
+            LEFT JOIN artist_profiles ap ON ap.user_id = u.id
+            LEFT JOIN producer_profiles pp ON pp.user_id = u.id
+            WHERE u.active AND u.id <> :userId
+              AND NOT EXISTS (SELECT 1 FROM user_blocks b
+                              WHERE (b.blocker_id = :userId AND b.blocked_id = u.id)
+                                 OR (b.blocker_id = u.id AND b.blocked_id = :userId))
+              AND (:filterEmpty
+                OR (:role <> 'PRODUCER' AND ap.user_id IS NOT NULL
+                   AND (ap.availability OR NOT :availableOnly)
+                   AND COALESCE(CASE ap.experience_level WHEN 'BEGINNER' THEN 0 WHEN 'INTERMEDIATE' THEN 1
+                            WHEN 'ADVANCED' THEN 2 WHEN 'EXPERT' THEN 3 END, -1) >= :minExperience
+                   AND (cardinality(CAST(:genreIds AS uuid[])) = 0
+                        OR EXISTS (SELECT 1 FROM artist_genres fg WHERE fg.artist_profile_id = u.id
+                                   AND fg.genre_id = ANY (CAST(:genreIds AS uuid[])))))
+                OR (:role <> 'ARTIST' AND pp.user_id IS NOT NULL
+                   AND (pp.availability OR NOT :availableOnly)
+                   AND COALESCE(CASE pp.experience_level WHEN 'BEGINNER' THEN 0 WHEN 'INTERMEDIATE' THEN 1
+                            WHEN 'ADVANCED' THEN 2 WHEN 'EXPERT' THEN 3 END, -1) >= :minExperience
+                   AND (cardinality(CAST(:genreIds AS uuid[])) = 0
+                        OR EXISTS (SELECT 1 FROM producer_genres fg WHERE fg.producer_profile_id = u.id
+                                   AND fg.genre_id = ANY (CAST(:genreIds AS uuid[]))))))
+            """, nativeQuery = true)
+    long countMatchCandidates(@Param("userId") UUID userId,
+                              @Param("filterEmpty") boolean filterEmpty, @Param("role") String role,
+                              @Param("availableOnly") boolean availableOnly,
+                              @Param("minExperience") int minExperience, @Param("genreIds") String genreIds);
 }
@@ -0,0 +1,11 @@
+package com.spshpau.userservice.repositories.projections;
+
+import java.util.UUID;
+
+/**
+ * Last place of a truncated persisted match list: the list owner and the score a newcomer has to beat.
+ */
+public interface MatchListTailRow {
+    UUID getUserId();
+    Float getScore();
+}
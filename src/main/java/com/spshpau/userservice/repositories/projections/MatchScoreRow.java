@@ -0,0 +1,12 @@
+package com.spshpau.userservice.repositories.projections;
+
+import java.util.UUID;
+
+/**
+ * One ranked row of the SQL match scoring query.
+ */
+public interface MatchScoreRow {
+    UUID getId();
+    String getUsername();
+    Double getScore();
+}
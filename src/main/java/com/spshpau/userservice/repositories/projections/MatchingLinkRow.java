@@ -0,0 +1,11 @@
+package com.spshpau.userservice.repositories.projections;
+
+import java.util.UUID;
+
+/**
+ * One row of a many-to-many join table (e.g. {@code artist_genres}), as owner id / target id.
+ */
+public interface MatchingLinkRow {
+    UUID getOwnerId();
+    UUID getTargetId();
+}
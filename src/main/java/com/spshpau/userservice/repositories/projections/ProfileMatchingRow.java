@@ -0,0 +1,14 @@
+package com.spshpau.userservice.repositories.projections;
+
+import com.spshpau.userservice.model.enums.ExperienceLevel;
+
+import java.util.UUID;
+
+/**
+ * Scalar view of an artist or producer profile row used to load the matching index.
+ */
+public interface ProfileMatchingRow {
+    UUID getId();
+    Boolean getAvailability();
+    ExperienceLevel getExperienceLevel();
+}
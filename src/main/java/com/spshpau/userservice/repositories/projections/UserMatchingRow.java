@@ -0,0 +1,15 @@
+package com.spshpau.userservice.repositories.projections;
+
+import java.util.UUID;
+
+/**
+ * Scalar view of a {@code User} row used to load the matching index without hydrating entities.
+ */
+public interface UserMatchingRow {
+    UUID getId();
+    String getUsername();
+    Boolean getActive();
+    String getLocation();
+    Double getLatitude();
+    Double getLongitude();
+}
@@ -11,6 +11,7 @@ import org.springframework.util.StringUtils;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Set;
 import java.util.UUID;
 
 @RequiredArgsConstructor
@@ -18,6 +19,11 @@ public class UserSpecification implements Specification<User> {
 
     private final UserSearchCriteria criteria;
     private final UUID currentUserId;
+    private final Set<UUID> nearbyUserIds; // null = don't filter by distance
+
+    public UserSpecification(UserSearchCriteria criteria, UUID currentUserId) {
+        this(criteria, currentUserId, null);
+    }
 
     @Override
     public Predicate toPredicate(Root<User> root, CriteriaQuery<?> query, CriteriaBuilder cb) {
@@ -100,6 +106,11 @@ public class UserSpecification implements Specification<User> {
             predicates.add(artistSkillJoin.get("id").in(criteria.getSkillIds()));
         }
 
+        // --- Distance Filter (resolved against the matching index beforehand) ---
+        if (nearbyUserIds != null) {
+            predicates.add(nearbyUserIds.isEmpty() ? cb.disjunction() : root.get("id").in(nearbyUserIds));
+        }
+
 
         return cb.and(predicates.toArray(new Predicate[0]));
     }
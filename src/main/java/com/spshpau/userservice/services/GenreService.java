@@ -1,11 +1,13 @@
 package com.spshpau.userservice.services;
 
 import com.spshpau.userservice.dto.profiledto.GenreDto;
+import com.spshpau.userservice.dto.profiledto.GenreSimilarityDto;
 import com.spshpau.userservice.dto.profiledto.GenreSummaryDto;
 import com.spshpau.userservice.model.Genre;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 
+import java.util.List;
 import java.util.UUID;
 
 public interface GenreService {
@@ -38,4 +40,34 @@ public interface GenreService {
      * @return A {@link Page} of {@link GenreSummaryDto} objects. Returns an empty page if no genres are found.
      */
     Page<GenreSummaryDto> getAllGenres(Pageable pageable);
+
+    /**
+     * Retrieves every genre related to the given genre, with how closely it is related.
+     *
+     * @param genreId The unique identifier of the genre.
+     * @return A list of {@link GenreSimilarityDto}, most similar first. Returns an empty list if none are defined.
+     * @throws com.spshpau.userservice.services.exceptions.GenreNotFoundException if no genre with the given ID is found.
+     */
+    List<GenreSimilarityDto> getGenreSimilarities(UUID genreId);
+
+    /**
+     * Sets how closely two genres are related, so profiles with one of them get partial matching credit for the other.
+     * The relation is symmetric and overrides any similarity computed from genre co-occurrence.
+     *
+     * @param genreId        The unique identifier of one genre.
+     * @param relatedGenreId The unique identifier of the other genre.
+     * @param similarity     The similarity, greater than 0 and at most 1.
+     * @return A {@link GenreSimilarityDto} describing the related genre.
+     * @throws com.spshpau.userservice.services.exceptions.GenreNotFoundException if either genre is not found.
+     * @throws IllegalArgumentException if both ids are the same genre or the similarity is out of range.
+     */
+    GenreSimilarityDto setGenreSimilarity(UUID genreId, UUID relatedGenreId, float similarity);
+
+    /**
+     * Removes the similarity between two genres, if any.
+     *
+     * @param genreId        The unique identifier of one genre.
+     * @param relatedGenreId The unique identifier of the other genre.
+     */
+    void removeGenreSimilarity(UUID genreId, UUID relatedGenreId);
 }
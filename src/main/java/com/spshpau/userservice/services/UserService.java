@@ -1,14 +1,19 @@
 package com.spshpau.userservice.services;
 
+import com.spshpau.userservice.dto.matchdto.MatchCriteria;
+import com.spshpau.userservice.dto.matchdto.MatchStreamEvent;
 import com.spshpau.userservice.dto.userdto.UserDetailDto;
 import com.spshpau.userservice.dto.userdto.UserSearchCriteria;
 import com.spshpau.userservice.dto.userdto.UserSummaryDto;
 import com.spshpau.userservice.model.User;
+import com.spshpau.userservice.services.wrappers.CursorPage;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 
+import java.time.Duration;
 import java.util.Optional;
 import java.util.UUID;
+import java.util.function.Consumer;
 
 public interface UserService {
     /**
@@ -104,15 +109,59 @@ public interface UserService {
      * <li>Experience level compatibility.</li>
      * </ul>
      * The search excludes the current user, inactive users, and users with whom a block relationship exists.
-     * Results are typically ranked by a match score. This operation may be cached.
+     * Results are ranked by a match score.
+     * <p>
+     * A call without a cursor ranks the matches once and freezes the ranking in a short-lived snapshot;
+     * the returned cursor pages through that snapshot, so later pages neither re-rank nor shift.
      *
      * @param currentUserId The unique identifier of the user for whom matches are being sought.
      * This user must be active and have at least one profile (artist or producer) to find matches.
-     * @param pageable      Pagination information (page number, size, sort order).
-     * @return A {@link Page} of {@link UserSummaryDto} objects representing matched users,
-     * sorted by match score (descending) and then by username.
+     * @param cursor        Cursor returned with a previous page, or {@code null} to start a new ranking.
+     * @param pageable      Pagination information. The page size is always used; the page number only without a cursor.
+     * @return A {@link CursorPage} with a {@link Page} of {@link UserSummaryDto} objects representing matched users,
+     * sorted by match score (descending) and then by username, and the cursor of the next page, if any.
      * Returns an empty page if the current user has no profile or no matches are found.
      * @throws com.spshpau.userservice.services.exceptions.UserNotFoundException if an active user with the {@code currentUserId} is not found.
+     * @throws com.spshpau.userservice.services.exceptions.InvalidCursorException if the cursor is malformed or belongs to another user.
+     * @throws com.spshpau.userservice.services.exceptions.CursorExpiredException if the snapshot behind the cursor has expired.
+     */
+    default CursorPage<UserSummaryDto> findMatches(UUID currentUserId, String cursor, Pageable pageable) {
+        return findMatches(currentUserId, null, cursor, pageable, null);
+    }
+
+    /**
+     * Same as {@link #findMatches(UUID, String, Pageable)}, among the candidates passing {@code criteria} only, and
+     * with a new ranking to be done within {@code budget}.
+     * <p>
+     * Candidates failing the criteria are left out before scoring, so they neither count in the total nor take
+     * room in the ranking; each combination of criteria is ranked and cached on its own.
+     * <p>
+     * Once the budget runs out, the page comes from the best matches found so far, ranking the most promising
+     * candidates first, and is flagged {@link CursorPage#isPartial() partial}; the cursor pages through that same
+     * ranking. A partial ranking is replaced by the complete one in the background, so later requests get it.
+     *
+     * @param criteria Candidate filter, or {@code null} for all candidates; ignored with a cursor, which keeps the
+     *                 criteria of its ranking.
+     * @param budget   Time allowed for ranking, or {@code null} for no limit; ignored with a cursor.
+     */
+    CursorPage<UserSummaryDto> findMatches(UUID currentUserId, MatchCriteria criteria, String cursor, Pageable pageable,
+                                           Duration budget);
+
+    /**
+     * Streaming variant of {@link #findMatches} without a cursor, for clients that render matches as they come.
+     * <p>
+     * While the ranking is computed, {@code events} receives a {@link MatchStreamEvent#PARTIAL} event whenever the
+     * requested page of the running ranking changes, with the best matches among the candidates scored so far.
+     * It always ends with a {@link MatchStreamEvent#PAGE} event carrying exactly what {@link #findMatches} would
+     * have returned, and its cursor. A ranking that is already cached yields the page event only.
+     * <p>
+     * The ranking is shared with concurrent and later requests, so {@code events} must not throw, even once the
+     * client has gone.
+     *
+     * @param currentUserId The unique identifier of the user for whom matches are being sought.
+     * @param pageable      Pagination information; the page number and size select the streamed page.
+     * @param events        Receives the events on the calling thread, in order.
+     * @throws com.spshpau.userservice.services.exceptions.UserNotFoundException if an active user with the {@code currentUserId} is not found.
      */
-    Page<UserSummaryDto> findMatches(UUID currentUserId, Pageable pageable);
+    void streamMatches(UUID currentUserId, Pageable pageable, Consumer<MatchStreamEvent> events);
 }
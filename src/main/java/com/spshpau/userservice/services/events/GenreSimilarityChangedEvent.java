@@ -0,0 +1,7 @@
+package com.spshpau.userservice.services.events;
+
+/**
+ * Published when genre similarities are set, removed or recomputed, so the in-memory matrix can be reloaded.
+ */
+public class GenreSimilarityChangedEvent {
+}
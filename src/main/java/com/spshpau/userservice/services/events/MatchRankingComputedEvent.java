@@ -0,0 +1,19 @@
+package com.spshpau.userservice.services.events;
+
+import com.spshpau.userservice.services.matching.RankedMatches;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.time.Duration;
+
+/**
+ * Published on the request thread whenever a request ranked a user's matches with the live engine, i.e. the ranking
+ * came neither from the cache nor from the persisted lists. Background refreshes and batch runs do not publish it.
+ */
+@Getter
+@AllArgsConstructor
+public class MatchRankingComputedEvent {
+    private final RankedMatches ranking;
+    /** Time the live engine took to rank. */
+    private final Duration latency;
+}
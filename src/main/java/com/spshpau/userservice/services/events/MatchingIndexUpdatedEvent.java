@@ -0,0 +1,17 @@
+package com.spshpau.userservice.services.events;
+
+import com.spshpau.userservice.services.matching.IndexedUser;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * Published after commit once a {@link MatchingProfileChangedEvent} has been applied to the matching index, with the
+ * user as indexed before and after the write, so listeners can tell which rankings the user entered or left.
+ */
+@Getter
+@AllArgsConstructor
+public class MatchingIndexUpdatedEvent {
+    /** The user as indexed before the write; {@code null} for a user new to the index. */
+    private final IndexedUser previous;
+    private final IndexedUser current;
+}
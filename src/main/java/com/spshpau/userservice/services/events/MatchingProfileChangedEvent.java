@@ -0,0 +1,28 @@
+package com.spshpau.userservice.services.events;
+
+import com.spshpau.userservice.services.matching.MatchingSnapshot;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.util.UUID;
+
+/**
+ * Published whenever a write changes one of a user's matching inputs (profiles, genres, skills,
+ * availability, experience, activation, username or geocoded location). The snapshot is taken inside the writing
+ * transaction, so listeners running after commit never have to go back to the database.
+ * {@code activationChanged} tells whether the user became or stopped being a match candidate for everyone else.
+ */
+@Getter
+@AllArgsConstructor
+public class MatchingProfileChangedEvent {
+    private final MatchingSnapshot snapshot;
+    private final boolean activationChanged;
+
+    public MatchingProfileChangedEvent(MatchingSnapshot snapshot) {
+        this(snapshot, false);
+    }
+
+    public UUID getUserId() {
+        return snapshot.getUserId();
+    }
+}
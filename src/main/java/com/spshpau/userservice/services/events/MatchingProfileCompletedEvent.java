@@ -0,0 +1,17 @@
+package com.spshpau.userservice.services.events;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.util.UUID;
+
+/**
+ * Published when a user creates or completes an artist or producer profile, i.e. may have just become
+ * a strong match for others; routine edits of a complete profile do not publish it.
+ * Always published after the {@link MatchingProfileChangedEvent} of the same write.
+ */
+@Getter
+@AllArgsConstructor
+public class MatchingProfileCompletedEvent {
+    private final UUID userId;
+}
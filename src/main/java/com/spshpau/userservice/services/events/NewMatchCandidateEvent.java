@@ -0,0 +1,17 @@
+package com.spshpau.userservice.services.events;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.util.UUID;
+
+/**
+ * Published once {@code candidateId} has entered the top matches of {@code userId}, for a notifier to pick up.
+ */
+@Getter
+@AllArgsConstructor
+public class NewMatchCandidateEvent {
+    private final UUID userId;
+    private final UUID candidateId;
+    private final double score;
+}
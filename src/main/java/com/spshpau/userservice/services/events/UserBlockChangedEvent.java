@@ -0,0 +1,17 @@
+package com.spshpau.userservice.services.events;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.util.UUID;
+
+/**
+ * Published when {@code blockerId} blocks ({@code blocked == true}) or unblocks {@code blockedId}.
+ */
+@Getter
+@AllArgsConstructor
+public class UserBlockChangedEvent {
+    private final UUID blockerId;
+    private final UUID blockedId;
+    private final boolean blocked;
+}
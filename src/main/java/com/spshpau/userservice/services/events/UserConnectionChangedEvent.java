@@ -0,0 +1,17 @@
+package com.spshpau.userservice.services.events;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.util.UUID;
+
+/**
+ * Published when an accepted connection between two users is created ({@code connected == true}) or removed.
+ */
+@Getter
+@AllArgsConstructor
+public class UserConnectionChangedEvent {
+    private final UUID userId1;
+    private final UUID userId2;
+    private final boolean connected;
+}
@@ -0,0 +1,7 @@
+package com.spshpau.userservice.services.exceptions;
+
+public class InvalidCursorException extends RuntimeException {
+    public InvalidCursorException(String message) {
+        super(message);
+    }
+}
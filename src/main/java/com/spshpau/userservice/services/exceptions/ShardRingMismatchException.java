@@ -0,0 +1,7 @@
+package com.spshpau.userservice.services.exceptions;
+
+public class ShardRingMismatchException extends RuntimeException {
+    public ShardRingMismatchException(String message) {
+        super(message);
+    }
+}
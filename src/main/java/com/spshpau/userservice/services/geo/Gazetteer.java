@@ -0,0 +1,89 @@
+package com.spshpau.userservice.services.geo;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.Resource;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.text.Normalizer;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.regex.Pattern;
+
+/**
+ * Resolves free-text user locations to coordinates with a locally bundled gazetteer
+ * ({@code matching.geo.gazetteer}, by default {@code classpath:geo/gazetteer.csv}), without any remote lookup.
+ * <p>
+ * The file has one place per line: {@code name,country,latitude,longitude,aliases}, with aliases separated by
+ * {@code |}. Names, aliases and {@code "name, country"} are matched case- and accent-insensitively; for input like
+ * {@code "Brno, Moravia"} that has no exact entry, the part before the first comma is tried as well.
+ * The first line mentioning a name wins when a name is ambiguous.
+ */
+@Component
+@Slf4j
+public class Gazetteer {
+
+    private static final Pattern DIACRITICS = Pattern.compile("\\p{M}+");
+    private static final Pattern SPACES = Pattern.compile("\\s+");
+
+    private final Map<String, GeoPoint> places = new HashMap<>();
+
+    public Gazetteer(@Value("${matching.geo.gazetteer:classpath:geo/gazetteer.csv}") Resource gazetteer) {
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(gazetteer.getInputStream(), StandardCharsets.UTF_8))) {
+            String line = reader.readLine(); // header
+            while ((line = reader.readLine()) != null) {
+                if (!line.isBlank()) {
+                    add(line);
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot read gazetteer " + gazetteer, e);
+        }
+        log.info("Gazetteer loaded with {} names", places.size());
+    }
+
+    /**
+     * @return the coordinates of the place, or empty if the location is blank or unknown.
+     */
+    public Optional<GeoPoint> locate(String location) {
+        if (!StringUtils.hasText(location)) {
+            return Optional.empty();
+        }
+        String key = normalize(location);
+        GeoPoint point = places.get(key);
+        if (point == null && key.indexOf(',') > 0) {
+            point = places.get(key.substring(0, key.indexOf(',')).trim());
+        }
+        return Optional.ofNullable(point);
+    }
+
+    private void add(String line) {
+        String[] fields = line.split(",", -1);
+        GeoPoint point = new GeoPoint(Double.parseDouble(fields[2]), Double.parseDouble(fields[3]));
+        String country = fields[1];
+        put(fields[0], country, point);
+        if (fields.length > 4 && !fields[4].isBlank()) {
+            for (String alias : fields[4].split("\\|")) {
+                put(alias, country, point);
+            }
+        }
+    }
+
+    private void put(String name, String country, GeoPoint point) {
+        places.putIfAbsent(normalize(name), point);
+        places.putIfAbsent(normalize(name + ", " + country), point);
+    }
+
+    static String normalize(String text) {
+        String stripped = DIACRITICS.matcher(Normalizer.normalize(text, Normalizer.Form.NFD)).replaceAll("");
+        return SPACES.matcher(stripped.toLowerCase(Locale.ROOT).trim()).replaceAll(" ").replace(" ,", ",");
+    }
+}
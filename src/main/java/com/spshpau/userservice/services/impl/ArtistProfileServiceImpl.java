@@ -7,9 +7,13 @@ import com.spshpau.userservice.dto.profiledto.SkillSummaryDto;
 import com.spshpau.userservice.model.*;
 import com.spshpau.userservice.repositories.*;
 import com.spshpau.userservice.services.ArtistProfileService;
+import com.spshpau.userservice.services.events.MatchingProfileChangedEvent;
+import com.spshpau.userservice.services.events.MatchingProfileCompletedEvent;
 import com.spshpau.userservice.services.exceptions.*;
+import com.spshpau.userservice.services.matching.MatchingSnapshot;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
@@ -29,6 +33,7 @@ public class ArtistProfileServiceImpl implements ArtistProfileService {
     private final UserRepository userRepository;
     private final GenreRepository genreRepository;
     private final SkillRepository skillRepository;
+    private final ApplicationEventPublisher eventPublisher;
 
     private static final int MAX_GENRES = 10;
     private static final int MAX_SKILLS = 5;
@@ -49,6 +54,12 @@ public class ArtistProfileServiceImpl implements ArtistProfileService {
         return dto;
     }
 
+    private void publishMatchingProfileChanged(ArtistProfile profile) {
+        User user = profile.getUser();
+        eventPublisher.publishEvent(new MatchingProfileChangedEvent(
+                MatchingSnapshot.of(user, profile, user.getProducerProfile())));
+    }
+
     @Override
     @Transactional(readOnly = true)
     public Optional<ArtistProfileDetailDto> getArtistProfileByUserId(UUID userId) {
@@ -83,6 +94,8 @@ public class ArtistProfileServiceImpl implements ArtistProfileService {
                     return newProfile;
                 });
 
+        // Only a profile that just became usable for matching is announced to others, not every edit
+        boolean wasComplete = profile.getId() != null && profile.getExperienceLevel() != null;
         profile.setAvailability(profileData.getAvailability() != null ? profileData.getAvailability() : profile.isAvailability());
         profile.setBio(profileData.getBio() !=null ? profileData.getBio() : profile.getBio());
         if (profileData.getExperienceLevel() == null && profile.getId() == null) {
@@ -93,6 +106,10 @@ public class ArtistProfileServiceImpl implements ArtistProfileService {
         }
 
         ArtistProfile savedProfile = artistProfileRepository.save(profile);
+        publishMatchingProfileChanged(savedProfile);
+        if (!wasComplete && savedProfile.getExperienceLevel() != null) {
+            eventPublisher.publishEvent(new MatchingProfileCompletedEvent(userId));
+        }
         return mapEntityToDetailDto(savedProfile);
     }
 
@@ -114,6 +131,7 @@ public class ArtistProfileServiceImpl implements ArtistProfileService {
         }
 
         ArtistProfile savedProfile = artistProfileRepository.save(profile);
+        publishMatchingProfileChanged(savedProfile);
         return mapEntityToDetailDto(savedProfile);
     }
 
@@ -131,6 +149,7 @@ public class ArtistProfileServiceImpl implements ArtistProfileService {
         }
         profile.addGenre(genre);
         ArtistProfile savedProfile = artistProfileRepository.save(profile);
+        publishMatchingProfileChanged(savedProfile);
         return mapEntityToDetailDto(savedProfile);
     }
 
@@ -143,6 +162,7 @@ public class ArtistProfileServiceImpl implements ArtistProfileService {
                 .orElseThrow(() -> new GenreNotFoundException("Genre not found with ID: " + genreId));
         profile.removeGenre(genre);
         ArtistProfile savedProfile = artistProfileRepository.save(profile);
+        publishMatchingProfileChanged(savedProfile);
         return mapEntityToDetailDto(savedProfile);
     }
 
@@ -159,6 +179,7 @@ public class ArtistProfileServiceImpl implements ArtistProfileService {
         }
         profile.addSkill(skill);
         ArtistProfile savedProfile = artistProfileRepository.save(profile);
+        publishMatchingProfileChanged(savedProfile);
         return mapEntityToDetailDto(savedProfile);
     }
 
@@ -171,6 +192,7 @@ public class ArtistProfileServiceImpl implements ArtistProfileService {
                 .orElseThrow(() -> new SkillNotFoundException("Skill not found with ID: " + skillId));
         profile.removeSkill(skill);
         ArtistProfile savedProfile = artistProfileRepository.save(profile);
+        publishMatchingProfileChanged(savedProfile);
         return mapEntityToDetailDto(savedProfile);
     }
 
@@ -1,14 +1,20 @@
 package com.spshpau.userservice.services.impl;
 
 import com.spshpau.userservice.dto.profiledto.GenreDto;
+import com.spshpau.userservice.dto.profiledto.GenreSimilarityDto;
 import com.spshpau.userservice.dto.profiledto.GenreSummaryDto;
 import com.spshpau.userservice.model.Genre;
+import com.spshpau.userservice.model.GenreSimilarity;
+import com.spshpau.userservice.model.GenreSimilarityId;
 import com.spshpau.userservice.repositories.GenreRepository;
+import com.spshpau.userservice.repositories.GenreSimilarityRepository;
 import com.spshpau.userservice.services.GenreService;
+import com.spshpau.userservice.services.events.GenreSimilarityChangedEvent;
 import com.spshpau.userservice.services.exceptions.DuplicateException;
 import com.spshpau.userservice.services.exceptions.GenreNotFoundException;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
@@ -16,8 +22,12 @@ import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.UUID;
+import java.util.stream.Collectors;
 
 @Service
 @RequiredArgsConstructor
@@ -25,6 +35,8 @@ import java.util.UUID;
 public class GenreServiceImpl implements GenreService {
 
     private final GenreRepository genreRepository;
+    private final GenreSimilarityRepository genreSimilarityRepository;
+    private final ApplicationEventPublisher eventPublisher;
 
     private GenreSummaryDto mapEntityToSummaryDto(Genre entity) {
         if (entity == null) return null;
@@ -55,6 +67,9 @@ public class GenreServiceImpl implements GenreService {
             throw new GenreNotFoundException("Genre not found with ID: " + genreId);
         }
         try {
+            if (genreSimilarityRepository.deleteAllOf(genreId) > 0) {
+                eventPublisher.publishEvent(new GenreSimilarityChangedEvent());
+            }
             genreRepository.deleteById(genreId);
             log.info("Successfully deleted genre with ID: {}", genreId);
         } catch (Exception e) {
@@ -70,4 +85,63 @@ public class GenreServiceImpl implements GenreService {
         Page<Genre> genrePage = genreRepository.findAll(pageable);
         return genrePage.map(this::mapEntityToSummaryDto);
     }
+
+    @Override
+    @Transactional(readOnly = true)
+    public List<GenreSimilarityDto> getGenreSimilarities(UUID genreId) {
+        log.debug("Fetching similarities of genre with ID: {}", genreId);
+        if (!genreRepository.existsById(genreId)) {
+            throw new GenreNotFoundException("Genre not found with ID: " + genreId);
+        }
+        List<GenreSimilarity> similarities = genreSimilarityRepository.findAllOf(genreId);
+        Map<UUID, String> names = genreRepository.findAllById(similarities.stream()
+                        .map(similarity -> otherGenre(similarity, genreId))
+                        .toList()).stream()
+                .collect(Collectors.toMap(Genre::getId, Genre::getName));
+        return similarities.stream()
+                .sorted(Comparator.comparingDouble(GenreSimilarity::getSimilarity).reversed())
+                .map(similarity -> {
+                    UUID related = otherGenre(similarity, genreId);
+                    return new GenreSimilarityDto(related, names.get(related), similarity.getSimilarity(), similarity.isManual());
+                })
+                .toList();
+    }
+
+    @Override
+    @Transactional
+    public GenreSimilarityDto setGenreSimilarity(UUID genreId, UUID relatedGenreId, float similarity) {
+        log.info("Setting similarity of genres {} and {} to {}", genreId, relatedGenreId, similarity);
+        if (genreId.equals(relatedGenreId)) {
+            throw new IllegalArgumentException("A genre cannot be related to itself.");
+        }
+        if (!(similarity > 0.0f && similarity <= 1.0f)) {
+            throw new IllegalArgumentException("Similarity must be greater than 0 and at most 1.");
+        }
+        if (!genreRepository.existsById(genreId)) {
+            throw new GenreNotFoundException("Genre not found with ID: " + genreId);
+        }
+        Genre related = genreRepository.findById(relatedGenreId)
+                .orElseThrow(() -> new GenreNotFoundException("Genre not found with ID: " + relatedGenreId));
+
+        genreSimilarityRepository.save(new GenreSimilarity(GenreSimilarityId.of(genreId, relatedGenreId), similarity, true));
+        eventPublisher.publishEvent(new GenreSimilarityChangedEvent());
+        return new GenreSimilarityDto(related.getId(), related.getName(), similarity, true);
+    }
+
+    @Override
+    @Transactional
+    public void removeGenreSimilarity(UUID genreId, UUID relatedGenreId) {
+        log.info("Removing similarity of genres {} and {}", genreId, relatedGenreId);
+        GenreSimilarityId id = GenreSimilarityId.of(genreId, relatedGenreId);
+        if (genreSimilarityRepository.existsById(id)) {
+            genreSimilarityRepository.deleteById(id);
+            eventPublisher.publishEvent(new GenreSimilarityChangedEvent());
+        }
+    }
+
+    private UUID otherGenre(GenreSimilarity similarity, UUID genreId) {
+        return similarity.getId().getGenreId().equals(genreId)
+                ? similarity.getId().getRelatedGenreId()
+                : similarity.getId().getGenreId();
+    }
 }
@@ -6,12 +6,16 @@ import com.spshpau.userservice.dto.profiledto.ProducerProfileDetailDto;
 import com.spshpau.userservice.model.*;
 import com.spshpau.userservice.repositories.*;
 import com.spshpau.userservice.services.ProducerProfileService;
+import com.spshpau.userservice.services.events.MatchingProfileChangedEvent;
+import com.spshpau.userservice.services.events.MatchingProfileCompletedEvent;
 import com.spshpau.userservice.services.exceptions.GenreLimitExceededException;
 import com.spshpau.userservice.services.exceptions.GenreNotFoundException;
 import com.spshpau.userservice.services.exceptions.ProfileNotFoundException;
 import com.spshpau.userservice.services.exceptions.UserNotFoundException;
+import com.spshpau.userservice.services.matching.MatchingSnapshot;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
@@ -30,6 +34,7 @@ public class ProducerProfileServiceImpl implements ProducerProfileService {
     private final ProducerProfileRepository producerProfileRepository;
     private final UserRepository userRepository;
     private final GenreRepository genreRepository;
+    private final ApplicationEventPublisher eventPublisher;
 
     private static final int MAX_GENRES = 10;
 
@@ -58,6 +63,12 @@ public class ProducerProfileServiceImpl implements ProducerProfileService {
                 });
     }
 
+    private void publishMatchingProfileChanged(ProducerProfile profile) {
+        User user = profile.getUser();
+        eventPublisher.publishEvent(new MatchingProfileChangedEvent(
+                MatchingSnapshot.of(user, user.getArtistProfile(), profile)));
+    }
+
     @Override
     @Transactional(readOnly = true)
     public Optional<ProducerProfileDetailDto> getProducerProfileByUserId(UUID userId) {
@@ -79,6 +90,8 @@ public class ProducerProfileServiceImpl implements ProducerProfileService {
                     return newProfile;
                 });
 
+        // Only a profile that just became usable for matching is announced to others, not every edit
+        boolean wasComplete = profile.getId() != null && profile.getExperienceLevel() != null;
         profile.setAvailability(profileData.getAvailability() != null ? profileData.getAvailability() : profile.isAvailability());
         profile.setBio(profileData.getBio() != null ? profileData.getBio() : profile.getBio());
         if (profileData.getExperienceLevel() == null && profile.getId() == null) {
@@ -90,6 +103,10 @@ public class ProducerProfileServiceImpl implements ProducerProfileService {
 
 
         ProducerProfile savedProfile = producerProfileRepository.save(profile);
+        publishMatchingProfileChanged(savedProfile);
+        if (!wasComplete && savedProfile.getExperienceLevel() != null) {
+            eventPublisher.publishEvent(new MatchingProfileCompletedEvent(userId));
+        }
         return mapEntityToDetailDto(savedProfile);
     }
 
@@ -111,6 +128,7 @@ public class ProducerProfileServiceImpl implements ProducerProfileService {
         }
 
         ProducerProfile savedProfile = producerProfileRepository.save(profile);
+        publishMatchingProfileChanged(savedProfile);
         return mapEntityToDetailDto(savedProfile);
     }
 
@@ -128,6 +146,7 @@ public class ProducerProfileServiceImpl implements ProducerProfileService {
         }
         profile.addGenre(genre);
         ProducerProfile savedProfile = producerProfileRepository.save(profile);
+        publishMatchingProfileChanged(savedProfile);
         return mapEntityToDetailDto(savedProfile);
     }
 
@@ -140,6 +159,7 @@ public class ProducerProfileServiceImpl implements ProducerProfileService {
                 .orElseThrow(() -> new GenreNotFoundException("Genre not found with ID: " + genreId));
         profile.removeGenre(genre);
         ProducerProfile savedProfile = producerProfileRepository.save(profile);
+        publishMatchingProfileChanged(savedProfile);
         return mapEntityToDetailDto(savedProfile);
     }
 
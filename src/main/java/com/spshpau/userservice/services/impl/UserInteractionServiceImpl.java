@@ -8,9 +8,12 @@ import com.spshpau.userservice.repositories.UserConnectionRepository;
 import com.spshpau.userservice.repositories.UserRepository;
 import com.spshpau.userservice.services.UserInteractionService;
 import com.spshpau.userservice.services.enums.InteractionStatus;
+import com.spshpau.userservice.services.events.UserBlockChangedEvent;
+import com.spshpau.userservice.services.events.UserConnectionChangedEvent;
 import com.spshpau.userservice.services.exceptions.*;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.Pageable;
@@ -31,6 +34,7 @@ public class UserInteractionServiceImpl implements UserInteractionService {
 
     private final UserRepository userRepository;
     private final UserConnectionRepository userConnectionRepository;
+    private final ApplicationEventPublisher eventPublisher;
 
     private User findUserOrThrow(UUID userId) {
         log.debug("Attempting to find user with ID: {}", userId);
@@ -97,6 +101,7 @@ public class UserInteractionServiceImpl implements UserInteractionService {
         connection.setStatus(ConnectionStatus.ACCEPTED);
         connection.setAcceptTimestamp(LocalDateTime.now());
         UserConnection savedConnection = userConnectionRepository.save(connection);
+        eventPublisher.publishEvent(new UserConnectionChangedEvent(acceptorId, requesterId, true));
         log.info("Successfully accepted connection request. Connection ID: {}, Acceptor: {}, Requester: {}", savedConnection.getId(), acceptorId, requesterId);
         return savedConnection;
     }
@@ -128,6 +133,7 @@ public class UserInteractionServiceImpl implements UserInteractionService {
                 });
 
         userConnectionRepository.delete(connection);
+        eventPublisher.publishEvent(new UserConnectionChangedEvent(userId1, userId2, false));
         log.info("Successfully removed connection. Connection ID: {}, User1: {}, User2: {}", connection.getId(), userId1, userId2);
     }
 
@@ -208,6 +214,7 @@ public class UserInteractionServiceImpl implements UserInteractionService {
         boolean added = blocker.getBlockedUsers().add(blocked);
         if(added) {
             userRepository.save(blocker);
+            eventPublisher.publishEvent(new UserBlockChangedEvent(blockerId, blockedId, true));
             log.info("User ID: {} successfully blocked by user ID: {}", blockedId, blockerId);
         } else {
             log.info("User ID: {} was already blocked by user ID: {}. No changes made.", blockedId, blockerId);
@@ -224,6 +231,7 @@ public class UserInteractionServiceImpl implements UserInteractionService {
         boolean removed = blocker.getBlockedUsers().remove(blocked);
         if (removed) {
             userRepository.save(blocker);
+            eventPublisher.publishEvent(new UserBlockChangedEvent(blockerId, blockedId, false));
             log.info("User ID: {} successfully unblocked by user ID: {}", blockedId, blockerId);
         } else {
             log.info("User ID: {} was not blocked by user ID: {}. No changes made.", blockedId, blockerId);
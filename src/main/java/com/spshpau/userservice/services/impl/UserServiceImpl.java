@@ -1,6 +1,7 @@
 package com.spshpau.userservice.services.impl;
 
-import com.spshpau.userservice.config.CacheConfig;
+import com.spshpau.userservice.dto.matchdto.MatchCriteria;
+import com.spshpau.userservice.dto.matchdto.MatchStreamEvent;
 import com.spshpau.userservice.dto.profiledto.*;
 import com.spshpau.userservice.dto.userdto.UserDetailDto;
 import com.spshpau.userservice.dto.userdto.UserSearchCriteria;
@@ -8,29 +9,45 @@ import com.spshpau.userservice.dto.userdto.UserSummaryDto;
 import com.spshpau.userservice.model.ArtistProfile;
 import com.spshpau.userservice.model.ProducerProfile;
 import com.spshpau.userservice.model.User;
-import com.spshpau.userservice.model.Genre;
-import com.spshpau.userservice.model.enums.ConnectionStatus;
-import com.spshpau.userservice.model.enums.ExperienceLevel;
-import com.spshpau.userservice.repositories.UserConnectionRepository;
 import com.spshpau.userservice.repositories.UserRepository;
 import com.spshpau.userservice.repositories.specifications.UserSpecification;
 import com.spshpau.userservice.services.UserService;
+import com.spshpau.userservice.services.events.MatchRankingComputedEvent;
+import com.spshpau.userservice.services.events.MatchingProfileChangedEvent;
+import com.spshpau.userservice.services.exceptions.CursorExpiredException;
+import com.spshpau.userservice.services.exceptions.InvalidCursorException;
 import com.spshpau.userservice.services.exceptions.UserNotFoundException;
-import com.spshpau.userservice.services.wrappers.MatchedUser;
-import jakarta.persistence.criteria.JoinType;
-import jakarta.persistence.criteria.Predicate;
+import com.spshpau.userservice.services.geo.Gazetteer;
+import com.spshpau.userservice.services.geo.GeoPoint;
+import com.spshpau.userservice.services.matching.MatchCacheKey;
+import com.spshpau.userservice.services.matching.MatchCursor;
+import com.spshpau.userservice.services.matching.MatchDeadline;
+import com.spshpau.userservice.services.matching.MatchFilter;
+import com.spshpau.userservice.services.matching.MatchProgressListener;
+import com.spshpau.userservice.services.matching.MatchRanker;
+import com.spshpau.userservice.services.matching.MatchRankingCache;
+import com.spshpau.userservice.services.matching.MatchSnapshotStore;
+import com.spshpau.userservice.services.matching.MatchingIndex;
+import com.spshpau.userservice.services.matching.MatchingSnapshot;
+import com.spshpau.userservice.services.matching.UserMatchStore;
+import com.spshpau.userservice.services.matching.RankedMatches;
+import com.spshpau.userservice.services.wrappers.CursorPage;
+import com.spshpau.userservice.services.wrappers.RankedMatch;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.cache.annotation.Cacheable;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
 import org.springframework.data.domain.Pageable;
-import org.springframework.data.jpa.domain.Specification;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.time.Duration;
 import java.util.*;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
 
 @Service
@@ -38,7 +55,13 @@ import java.util.stream.Collectors;
 @Slf4j
 public class UserServiceImpl implements UserService {
     private final UserRepository userRepository;
-    private final UserConnectionRepository userConnectionRepository;
+    private final MatchRanker matchRanker;
+    private final MatchSnapshotStore matchSnapshotStore;
+    private final MatchRankingCache matchRankingCache;
+    private final UserMatchStore userMatchStore;
+    private final ApplicationEventPublisher eventPublisher;
+    private final Gazetteer gazetteer;
+    private final MatchingIndex matchingIndex;
 
 
     private UserDetailDto mapUserToDetailDto(User user) {
@@ -138,7 +161,12 @@ public class UserServiceImpl implements UserService {
     @Override
     @Transactional
     public UserDetailDto syncUserFromKeycloak(UUID keycloakId, String username, String email, String firstName, String lastName) {
-        User user = userRepository.findById(keycloakId)
+        Optional<User> existing = userRepository.findById(keycloakId);
+        boolean activationChanged = existing.map(existingUser -> !existingUser.isActive()).orElse(true);
+        // Sync leaves the location alone, so only the username can move the user in match rankings besides activation
+        boolean usernameChanged = existing.map(existingUser -> !Objects.equals(existingUser.getUsername(), username))
+                .orElse(true);
+        User user = existing
                 .map(existingUser -> {
                     existingUser.setUsername(username);
                     existingUser.setEmail(email);
@@ -162,6 +190,9 @@ public class UserServiceImpl implements UserService {
         User savedUser = userRepository.save(user);
         if (savedUser.getArtistProfile() != null) savedUser.getArtistProfile().getGenres().size();
         if (savedUser.getProducerProfile() != null) savedUser.getProducerProfile().getGenres().size();
+        if (activationChanged || usernameChanged) {
+            eventPublisher.publishEvent(new MatchingProfileChangedEvent(MatchingSnapshot.of(savedUser), activationChanged));
+        }
         return mapUserToDetailDto(savedUser);
     }
 
@@ -169,8 +200,16 @@ public class UserServiceImpl implements UserService {
     @Transactional
     public UserDetailDto updateUserLocation(UUID userId, String location) {
         User user = findUserOrThrow(userId);
+        Double latitude = user.getLatitude();
+        Double longitude = user.getLongitude();
         user.setLocation(location);
+        Optional<GeoPoint> point = gazetteer.locate(location);
+        user.setLatitude(point.map(GeoPoint::getLatitude).orElse(null));
+        user.setLongitude(point.map(GeoPoint::getLongitude).orElse(null));
         User updatedUser = userRepository.save(user);
+        if (!Objects.equals(latitude, updatedUser.getLatitude()) || !Objects.equals(longitude, updatedUser.getLongitude())) {
+            eventPublisher.publishEvent(new MatchingProfileChangedEvent(MatchingSnapshot.of(updatedUser)));
+        }
         return mapUserToDetailDto(updatedUser);
     }
 
@@ -216,6 +255,7 @@ public class UserServiceImpl implements UserService {
         User user = findUserOrThrow(userId);
         user.setActive(false);
         userRepository.save(user);
+        eventPublisher.publishEvent(new MatchingProfileChangedEvent(MatchingSnapshot.of(user), true));
         log.info("Deactivated user with ID: {}", userId);
     }
 
@@ -225,6 +265,7 @@ public class UserServiceImpl implements UserService {
         User user = findUserOrThrow(userId);
         user.setActive(true);
         userRepository.save(user);
+        eventPublisher.publishEvent(new MatchingProfileChangedEvent(MatchingSnapshot.of(user), true));
         log.info("Reactivated user with ID: {}", userId);
     }
 
@@ -232,6 +273,10 @@ public class UserServiceImpl implements UserService {
     @Transactional(readOnly = true)
     public Page<UserSummaryDto> findActiveUsers(UUID currentUserId, UserSearchCriteria criteria, Pageable pageable) {
         UserSpecification spec = new UserSpecification(criteria, currentUserId);
+        if (criteria.getWithinKm() != null) {
+            Set<UUID> nearby = matchingIndex.usersNear(currentUserId, criteria.getWithinKm()).orElse(Set.of());
+            spec = new UserSpecification(criteria, currentUserId, nearby);
+        }
         Page<User> userPage = userRepository.findAll(spec, pageable);
         if (userPage == null) {
             return Page.empty(pageable);
@@ -244,180 +289,120 @@ public class UserServiceImpl implements UserService {
 
     @Override
     @Transactional(readOnly = true)
-    @Cacheable(cacheNames = CacheConfig.USER_MATCHES_CACHE, key = "#currentUserId.toString() + ':' + #pageable.pageNumber + ':' + #pageable.pageSize + ':' + #pageable.sort.toString()")
-    public Page<UserSummaryDto> findMatches(UUID currentUserId, Pageable pageable) {
+    public CursorPage<UserSummaryDto> findMatches(UUID currentUserId, MatchCriteria criteria, String cursor,
+                                                  Pageable pageable, Duration budget) {
         log.info("--- Executing findMatches logic for user {} ---", currentUserId);
 
-        User currentUser = userRepository.findById(currentUserId)
-                .filter(User::isActive)
-                .orElseThrow(() -> new UserNotFoundException("Active user not found for ID: " + currentUserId));
-
-        ArtistProfile currentUserArtistProfile = currentUser.getArtistProfile();
-        ProducerProfile currentUserProducerProfile = currentUser.getProducerProfile();
-
-        // Collect all genres and skills for the current user
-        Set<UUID> allCurrentUserGenreIds = new HashSet<>();
-        Set<UUID> currentUserArtistSkillIds = new HashSet<>();
-
-        if (currentUserArtistProfile != null) {
-            currentUserArtistProfile.getGenres().forEach(g -> allCurrentUserGenreIds.add(g.getId()));
-            currentUserArtistProfile.getSkills().forEach(s -> currentUserArtistSkillIds.add(s.getId()));
-        }
-        if (currentUserProducerProfile != null) {
-            currentUserProducerProfile.getGenres().forEach(g -> allCurrentUserGenreIds.add(g.getId()));
-        }
-
-        Set<UUID> usersBlockingCurrentUser = userRepository.findBlockerUserIdsByBlockedId(currentUserId);
-        Set<UUID> usersBlockedByCurrentUser = userRepository.findBlockedUserIdsByBlockerId(currentUserId);
-        Set<UUID> excludedUserIds = new HashSet<>(usersBlockingCurrentUser);
-        excludedUserIds.addAll(usersBlockedByCurrentUser);
-        excludedUserIds.add(currentUserId);
-
-        Specification<User> spec = (root, query, cb) -> {
-            List<Predicate> predicates = new ArrayList<>();
-            predicates.add(cb.isTrue(root.get("active")));
-            if (!excludedUserIds.isEmpty()) {
-                predicates.add(root.get("id").in(excludedUserIds).not());
+        UUID snapshotId;
+        RankedMatches ranking;
+        long offset;
+        if (cursor == null) {
+            ranking = rankMatches(loadActiveUser(currentUserId), pageable.getSort(), MatchFilter.of(criteria),
+                    MatchProgressListener.NONE, MatchDeadline.after(budget));
+            snapshotId = matchSnapshotStore.put(ranking);
+            offset = pageable.getOffset();
+            log.info("Found {} total potential candidates for user {}{}", ranking.getTotalCandidates(), currentUserId,
+                    ranking.isPartial() ? " (ranking cut short by its budget)" : "");
+        } else {
+            MatchCursor position = MatchCursor.decode(cursor);
+            snapshotId = position.getSnapshotId();
+            ranking = matchSnapshotStore.get(snapshotId)
+                    .orElseThrow(() -> new CursorExpiredException("Match cursor has expired, start again from the first page"));
+            if (!ranking.getUserId().equals(currentUserId)) {
+                throw new InvalidCursorException("Match cursor belongs to another user");
             }
-            if (query.getResultType() != Long.class && query.getResultType() != long.class) {
-                root.fetch("artistProfile", JoinType.LEFT).fetch("genres", JoinType.LEFT);
-                root.fetch("artistProfile", JoinType.LEFT).fetch("skills", JoinType.LEFT);
-                root.fetch("producerProfile", JoinType.LEFT).fetch("genres", JoinType.LEFT);
-                query.distinct(true);
-            }
-            return cb.and(predicates.toArray(new Predicate[0]));
-        };
-
-        List<User> candidates = userRepository.findAll(spec);
-        log.info("Found {} total potential candidates for user {}", candidates.size(), currentUserId);
-
-        List<MatchedUser> scoredMatches = candidates.stream()
-                .map(candidate -> {
-                    boolean alreadyConnected = userConnectionRepository
-                            .findConnectionBetweenUsers(currentUserId, candidate.getId())
-                            .map(conn -> conn.getStatus() == ConnectionStatus.ACCEPTED)
-                            .orElse(false);
-
-                    return new MatchedUser(
-                            candidate,
-                            calculateMatchScore(
-                                    currentUser, currentUserArtistProfile, currentUserProducerProfile,
-                                    allCurrentUserGenreIds, currentUserArtistSkillIds,
-                                    candidate, alreadyConnected
-                            )
-                    );
-                })
-                .collect(Collectors.toList());
-
-        scoredMatches.sort(Comparator.comparing(MatchedUser::getScore).reversed()
-                .thenComparing(mu -> mu.getUser().getUsername()));
-
-        int totalMatches = scoredMatches.size();
-        int start = (int) pageable.getOffset();
-        int end = Math.min((start + pageable.getPageSize()), totalMatches);
-        List<User> paginatedUsers = (start < end) ? scoredMatches.subList(start, end).stream()
-                .map(MatchedUser::getUser)
-                .toList()
-                : List.of();
+            offset = position.getOffset();
+        }
 
-        List<UserSummaryDto> dtoList = paginatedUsers.stream()
-                .map(this::mapUserToSummaryDto)
-                .collect(Collectors.toList());
+        int pageSize = pageable.getPageSize();
+        List<UUID> pageIds = ranking.covers(offset, pageSize)
+                ? ranking.slice(offset, pageSize)
+                : matchRanker.rankSlice(loadActiveUser(currentUserId), (int) offset, pageSize, ranking.getFilter());
 
-        return new PageImpl<>(dtoList, pageable, totalMatches);
+        long total = ranking.getTotalCandidates();
+        String nextCursor = offset + pageSize < total ? new MatchCursor(snapshotId, offset + pageSize).encode() : null;
+        Page<UserSummaryDto> page = new PageImpl<>(loadSummariesInOrder(pageIds),
+                PageRequest.of((int) (offset / pageSize), pageSize, pageable.getSort()), total);
+        return new CursorPage<>(page, nextCursor, ranking.isPartial());
     }
 
-    private double calculateMatchScore(
-            User currentUser, ArtistProfile callerAp, ProducerProfile callerPp,
-            Set<UUID> allCallerGenreIds, Set<UUID> callerArtistSkillIds,
-            User candidate, boolean areAlreadyConnected) {
-
-        double score = 0.0;
-        ArtistProfile candidateAp = candidate.getArtistProfile();
-        ProducerProfile candidatePp = candidate.getProducerProfile();
-
-        // Rule 1: Already connected penalty
-        if (areAlreadyConnected) {
-            score -= 10.0;
-        }
-
-        // Rule 2: Profile genres
-        boolean matchedOppositeProfile = false;
-
-        // Scenario 1: Caller is Producer, Candidate is Artist
-        if (callerPp != null && candidateAp != null) {
-            matchedOppositeProfile = true;
-            score += 2.0;
-            score += calculateExperienceScore(callerPp.getExperienceLevel(), candidateAp.getExperienceLevel());
-            score += calculateSpecificGenreMatchScore(callerPp.getGenres(), candidateAp.getGenres());
-            if (candidateAp.isAvailability()) {
-                score += 10.0;
-            }
-        }
-
-        // Scenario 2: Caller is Artist, Candidate is Producer
-        if (callerAp != null && candidatePp != null) {
-            matchedOppositeProfile = true;
-            score += 2.0;
-            score += calculateExperienceScore(callerAp.getExperienceLevel(), candidatePp.getExperienceLevel());
-            score += calculateSpecificGenreMatchScore(callerAp.getGenres(), candidatePp.getGenres());
-            if (candidatePp.isAvailability()) {
-                score += 10.0;
+    @Override
+    @Transactional(readOnly = true)
+    public void streamMatches(UUID currentUserId, Pageable pageable, Consumer<MatchStreamEvent> events) {
+        User currentUser = loadActiveUser(currentUserId);
+        int offset = (int) pageable.getOffset();
+        int pageSize = pageable.getPageSize();
+
+        // Only a change of the visible page is worth a round of hydration and an event
+        List<UUID> lastSent = new ArrayList<>();
+        MatchProgressListener listener = (ranked, completed, partitions) -> {
+            if (completed == partitions) {
+                return;
             }
-        }
-
-        // Rule 3: General matching genre or skill
-
-        // Collect all candidate genres
-        Set<UUID> allCandidateGenreIds = new HashSet<>();
-        if (candidateAp != null) {
-            candidateAp.getGenres().forEach(g -> allCandidateGenreIds.add(g.getId()));
-        }
-        if (candidatePp != null) {
-            candidatePp.getGenres().forEach(g -> allCandidateGenreIds.add(g.getId()));
-        }
-
-        // Calculate general genre intersection
-        if (!allCallerGenreIds.isEmpty() && !allCandidateGenreIds.isEmpty()) {
-            Set<UUID> commonGenres = new HashSet<>(allCallerGenreIds);
-            commonGenres.retainAll(allCandidateGenreIds);
-            score += commonGenres.size() * 1.0;
-        }
-
-        // Calculate general skill intersection
-        if (callerAp != null && candidateAp != null && !callerArtistSkillIds.isEmpty()) {
-            Set<UUID> candidateArtistSkillIds = new HashSet<>();
-            candidateAp.getSkills().forEach(s -> candidateArtistSkillIds.add(s.getId()));
-            if(!candidateArtistSkillIds.isEmpty()){
-                Set<UUID> commonSkills = new HashSet<>(callerArtistSkillIds);
-                commonSkills.retainAll(candidateArtistSkillIds);
-                score += commonSkills.size() * 1.0;
+            List<UUID> pageIds = ranked.stream().skip(offset).limit(pageSize).map(RankedMatch::getUserId).toList();
+            if (!pageIds.equals(lastSent)) {
+                lastSent.clear();
+                lastSent.addAll(pageIds);
+                events.accept(MatchStreamEvent.partial(loadSummariesInOrder(pageIds), completed, partitions));
             }
-        }
+        };
+        RankedMatches ranking = rankMatches(currentUser, pageable.getSort(), MatchFilter.NONE, listener,
+                MatchDeadline.NONE);
+        UUID snapshotId = matchSnapshotStore.put(ranking);
+
+        List<UUID> pageIds = ranking.covers(offset, pageSize)
+                ? ranking.slice(offset, pageSize)
+                : matchRanker.rankSlice(currentUser, offset, pageSize, ranking.getFilter());
+        long total = ranking.getTotalCandidates();
+        String nextCursor = offset + pageSize < total ? new MatchCursor(snapshotId, offset + pageSize).encode() : null;
+        events.accept(MatchStreamEvent.page(loadSummariesInOrder(pageIds), total, nextCursor));
+    }
 
-        log.trace("Calculated score for candidate {}: {}", candidate.getUsername(), score);
-        return score;
+    private User loadActiveUser(UUID userId) {
+        return userRepository.findById(userId)
+                .filter(User::isActive)
+                .orElseThrow(() -> new UserNotFoundException("Active user not found for ID: " + userId));
     }
 
-    private double calculateSpecificGenreMatchScore(Set<Genre> callerGenres, Set<Genre> candidateProfileGenres) {
-        if (callerGenres == null || candidateProfileGenres == null || callerGenres.isEmpty() || candidateProfileGenres.isEmpty()) {
-            return 0.0;
-        }
-        Set<UUID> callerGenreIds = callerGenres.stream().map(Genre::getId).collect(Collectors.toSet());
-        long commonCount = candidateProfileGenres.stream().map(Genre::getId).filter(callerGenreIds::contains).count();
-        return commonCount * 5.0;
+    /**
+     * Returns the user's ranked match list, computing it at most once per cache lifetime;
+     * every page and page size is then a slice of the same list.
+     * A fresh list persisted by the batch job is used instead of computing one, unless {@code filter} narrows the
+     * candidates, since persisted lists are unfiltered.
+     * {@code listener} and {@code deadline} only apply to a ranking computed by this call, not to a cached, shared
+     * or persisted one; a ranking cut short by the deadline is cached as partial until the refresh replaces it.
+     */
+    private RankedMatches rankMatches(User currentUser, Sort sort, MatchFilter filter, MatchProgressListener listener,
+                                      MatchDeadline deadline) {
+        int window = matchSnapshotStore.getDepth();
+        MatchCacheKey key = new MatchCacheKey(currentUser.getId(), window, sort.toString(), filter);
+        return matchRankingCache.get(key, () -> {
+            Optional<RankedMatches> persisted = filter.isEmpty()
+                    ? userMatchStore.loadFresh(currentUser.getId(), window)
+                    : Optional.empty();
+            return persisted.orElseGet(() -> {
+                long started = System.nanoTime();
+                RankedMatches ranking = matchRanker.rank(currentUser, window, filter, listener, deadline);
+                eventPublisher.publishEvent(new MatchRankingComputedEvent(ranking,
+                        Duration.ofNanos(System.nanoTime() - started)));
+                return ranking;
+            });
+        });
     }
 
-    private double calculateExperienceScore(ExperienceLevel level1, ExperienceLevel level2) {
-        if (level1 == null || level2 == null) return 0.0;
-        int diff = Math.abs(level1.ordinal() - level2.ordinal());
-        return switch (diff) {
-            case 0 -> 20.0; // Exact match -> + 20 points
-            case 1 -> 16.0;  // 1 level difference -> + 16 points
-            case 2 -> 12.0;  // 2 levels difference -> + 12 points
-            case 3 -> 8.0;  // 3 levels difference -> + 8 points
-            case 4 -> 4.0; // Should not happen
-            default -> 0.0; // Should not happen
-        };
+    /**
+     * Hydrates only the users of the requested page, preserving the ranked order of {@code userIds}.
+     */
+    private List<UserSummaryDto> loadSummariesInOrder(List<UUID> userIds) {
+        if (userIds.isEmpty()) {
+            return List.of();
+        }
+        Map<UUID, User> usersById = userRepository.findAllById(userIds).stream()
+                .collect(Collectors.toMap(User::getId, user -> user));
+        return userIds.stream()
+                .map(usersById::get)
+                .filter(Objects::nonNull)
+                .map(this::mapUserToSummaryDto)
+                .collect(Collectors.toList());
     }
 }
@@ -0,0 +1,140 @@
+package com.spshpau.userservice.services.matching;
+
+import java.util.Arrays;
+import java.util.Collection;
+
+/**
+ * Static helpers for the {@code long[]} bitsets used by the matching index.
+ * Bit {@code i} lives in word {@code i >> 6}; arrays are sized to the highest set bit,
+ * so two bitsets may have different lengths and missing words are treated as zero.
+ */
+public final class Bitsets {
+
+    public static final long[] EMPTY = new long[0];
+
+    private Bitsets() {
+    }
+
+    public static long[] of(Collection<Integer> bits) {
+        if (bits == null || bits.isEmpty()) {
+            return EMPTY;
+        }
+        int max = 0;
+        for (int bit : bits) {
+            max = Math.max(max, bit);
+        }
+        long[] words = new long[(max >> 6) + 1];
+        for (int bit : bits) {
+            words[bit >> 6] |= 1L << bit;
+        }
+        return words;
+    }
+
+    public static boolean get(long[] words, int bit) {
+        int word = bit >> 6;
+        return word < words.length && (words[word] & (1L << bit)) != 0;
+    }
+
+    public static int intersectionCount(long[] a, long[] b) {
+        int n = Math.min(a.length, b.length);
+        int count = 0;
+        for (int i = 0; i < n; i++) {
+            count += Long.bitCount(a[i] & b[i]);
+        }
+        return count;
+    }
+
+    /**
+     * Sums {@code weights[bit]} over the bits set in both {@code a} and {@code b}; bits beyond
+     * {@code weights} weigh 1.
+     */
+    public static double weightedIntersection(long[] a, long[] b, float[] weights) {
+        int n = Math.min(a.length, b.length);
+        double sum = 0.0;
+        for (int i = 0; i < n; i++) {
+            long word = a[i] & b[i];
+            while (word != 0) {
+                int bit = (i << 6) + Long.numberOfTrailingZeros(word);
+                sum += bit < weights.length ? weights[bit] : 1.0f;
+                word &= word - 1;
+            }
+        }
+        return sum;
+    }
+
+    public static int cardinality(long[] words) {
+        int count = 0;
+        for (long word : words) {
+            count += Long.bitCount(word);
+        }
+        return count;
+    }
+
+    public static long[] or(long[] a, long[] b) {
+        if (a.length < b.length) {
+            long[] tmp = a;
+            a = b;
+            b = tmp;
+        }
+        if (b.length == 0) {
+            return a;
+        }
+        long[] result = a.clone();
+        for (int i = 0; i < b.length; i++) {
+            result[i] |= b[i];
+        }
+        return result;
+    }
+
+    /**
+     * @return a new array, as long as {@code a}, holding the bits set in both.
+     */
+    public static long[] and(long[] a, long[] b) {
+        long[] result = new long[a.length];
+        for (int i = 0; i < Math.min(a.length, b.length); i++) {
+            result[i] = a[i] & b[i];
+        }
+        return result;
+    }
+
+    /**
+     * Sets {@code bit}, growing the array if needed.
+     *
+     * @return {@code words} itself, or a larger copy if it had to grow.
+     */
+    public static long[] set(long[] words, int bit) {
+        int word = bit >> 6;
+        if (word >= words.length) {
+            words = Arrays.copyOf(words, Math.max(word + 1, words.length * 2));
+        }
+        words[word] |= 1L << bit;
+        return words;
+    }
+
+    public static void clear(long[] words, int bit) {
+        int word = bit >> 6;
+        if (word < words.length) {
+            words[word] &= ~(1L << bit);
+        }
+    }
+
+    /**
+     * Returns the index of the first set bit at or after {@code from}, or {@code -1} if there is none.
+     */
+    public static int nextSetBit(long[] words, int from) {
+        int word = from >> 6;
+        if (word >= words.length) {
+            return -1;
+        }
+        long current = words[word] & (-1L << from);
+        while (true) {
+            if (current != 0) {
+                return (word << 6) + Long.numberOfTrailingZeros(current);
+            }
+            if (++word == words.length) {
+                return -1;
+            }
+            current = words[word];
+        }
+    }
+}
@@ -0,0 +1,20 @@
+package com.spshpau.userservice.services.matching;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * Everything about the caller's existing relationships that match scoring needs, fetched once per request
+ * by {@link CallerRelationsLoader} instead of once per candidate.
+ */
+@Getter
+@AllArgsConstructor
+public class CallerRelations {
+    /** Users that must never be returned: the caller itself and both directions of its block relations. */
+    private final Set<UUID> excludedUserIds;
+    /** Users the caller has an accepted connection with. */
+    private final Set<UUID> connectedUserIds;
+}
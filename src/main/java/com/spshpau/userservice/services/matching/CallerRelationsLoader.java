@@ -0,0 +1,28 @@
+package com.spshpau.userservice.services.matching;
+
+import com.spshpau.userservice.model.enums.ConnectionStatus;
+import com.spshpau.userservice.repositories.UserConnectionRepository;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * Preloads {@link CallerRelations}: block relations come from the block graph mirrored in {@link MatchingIndex},
+ * accepted connections from a single id-only query.
+ */
+@Component
+@RequiredArgsConstructor
+public class CallerRelationsLoader {
+
+    private final MatchingIndex matchingIndex;
+    private final UserConnectionRepository userConnectionRepository;
+
+    public CallerRelations load(UUID callerId) {
+        Set<UUID> excludedUserIds = matchingIndex.blockRelations(callerId);
+        excludedUserIds.add(callerId);
+        Set<UUID> connectedUserIds = userConnectionRepository.findConnectedUserIds(callerId, ConnectionStatus.ACCEPTED);
+        return new CallerRelations(excludedUserIds, connectedUserIds);
+    }
+}
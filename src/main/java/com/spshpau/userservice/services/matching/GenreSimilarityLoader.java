@@ -0,0 +1,123 @@
+package com.spshpau.userservice.services.matching;
+
+import com.spshpau.userservice.model.GenreSimilarity;
+import com.spshpau.userservice.repositories.GenreSimilarityRepository;
+import com.spshpau.userservice.services.events.GenreSimilarityChangedEvent;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+
+/**
+ * Keeps the {@link GenreSimilarityMatrix} of {@link MatchingIndex} in line with {@code genre_similarities}.
+ * <p>
+ * The matrix is loaded at startup, after an administrator changes a similarity on this instance, and every
+ * {@code matching.genre-similarity.interval}, which also picks up changes made through other instances.
+ * With {@code matching.genre-similarity.compute} enabled, that periodic run first recomputes the non-manual
+ * similarities from genre co-occurrence in profiles (Jaccard index, see
+ * {@link GenreSimilarityRepository#insertComputed}), under an advisory lock so one instance does it at a time.
+ * <p>
+ * A matrix that differs from the current one changes scores, so it drops the cached rankings, cursor snapshots,
+ * top-K thresholds and persisted match lists, like a weight change does in {@link MatchWeightsRefresher}.
+ */
+@Component
+@Slf4j
+public class GenreSimilarityLoader implements SmartInitializingSingleton {
+
+    /** Advisory lock key of the co-occurrence recomputation. */
+    static final long COMPUTE_LOCK_KEY = 0x67656e72_65000000L;
+
+    private final GenreSimilarityRepository genreSimilarityRepository;
+    private final MatchingIndex matchingIndex;
+    private final MatchCacheEvictor matchCacheEvictor;
+    private final MatchThresholds matchThresholds;
+    private final UserMatchStore userMatchStore;
+    private final TransactionTemplate transaction;
+    private final boolean compute;
+    private final int minSupport;
+    private final float minSimilarity;
+    private final float maxSimilarity;
+
+    public GenreSimilarityLoader(GenreSimilarityRepository genreSimilarityRepository,
+                                 MatchingIndex matchingIndex,
+                                 MatchCacheEvictor matchCacheEvictor,
+                                 MatchThresholds matchThresholds,
+                                 UserMatchStore userMatchStore,
+                                 PlatformTransactionManager transactionManager,
+                                 @Value("${matching.genre-similarity.compute:false}") boolean compute,
+                                 @Value("${matching.genre-similarity.min-support:5}") int minSupport,
+                                 @Value("${matching.genre-similarity.min-similarity:0.1}") float minSimilarity,
+                                 @Value("${matching.genre-similarity.max-similarity:0.8}") float maxSimilarity) {
+        this.genreSimilarityRepository = genreSimilarityRepository;
+        this.matchingIndex = matchingIndex;
+        this.matchCacheEvictor = matchCacheEvictor;
+        this.matchThresholds = matchThresholds;
+        this.userMatchStore = userMatchStore;
+        // Also runs after commit, where joining the finished transaction would drop the writes
+        this.transaction = new TransactionTemplate(transactionManager);
+        this.transaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.compute = compute;
+        this.minSupport = minSupport;
+        this.minSimilarity = minSimilarity;
+        this.maxSimilarity = maxSimilarity;
+    }
+
+    @Override
+    public void afterSingletonsInstantiated() {
+        matchingIndex.replaceGenreSimilarity(build(genreSimilarityRepository.findAll()));
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onGenreSimilarityChanged(GenreSimilarityChangedEvent event) {
+        reload();
+    }
+
+    @Scheduled(fixedDelayString = "${matching.genre-similarity.interval:PT6H}",
+            initialDelayString = "${matching.genre-similarity.interval:PT6H}")
+    public void refresh() {
+        if (compute) {
+            Integer computed = transaction.execute(status -> {
+                if (!genreSimilarityRepository.tryLock(COMPUTE_LOCK_KEY)) {
+                    return null;
+                }
+                genreSimilarityRepository.deleteComputed();
+                return genreSimilarityRepository.insertComputed(minSupport, minSimilarity, maxSimilarity);
+            });
+            if (computed != null) {
+                log.info("Recomputed {} genre similarities from co-occurrence", computed);
+            }
+        }
+        reload();
+    }
+
+    void reload() {
+        List<GenreSimilarity> similarities = transaction.execute(status -> genreSimilarityRepository.findAll());
+        if (!matchingIndex.replaceGenreSimilarity(build(similarities))) {
+            return;
+        }
+        matchCacheEvictor.evictAll();
+        matchThresholds.clear();
+        transaction.executeWithoutResult(status -> userMatchStore.deleteAll());
+        log.info("Genre similarity matrix reloaded with {} pairs; match caches and persisted match lists dropped",
+                similarities.size());
+    }
+
+    private GenreSimilarityMatrix build(List<GenreSimilarity> similarities) {
+        int[][] pairs = new int[similarities.size()][];
+        float[] values = new float[similarities.size()];
+        for (int i = 0; i < similarities.size(); i++) {
+            GenreSimilarity similarity = similarities.get(i);
+            pairs[i] = new int[]{matchingIndex.genreId(similarity.getId().getGenreId()),
+                    matchingIndex.genreId(similarity.getId().getRelatedGenreId())};
+            values[i] = similarity.getSimilarity();
+        }
+        return GenreSimilarityMatrix.of(pairs, values);
+    }
+}
@@ -0,0 +1,123 @@
+package com.spshpau.userservice.services.matching;
+
+import java.util.Arrays;
+
+/**
+ * Dense genre-to-genre similarity over the dense genre ids of {@link MatchingIndex}: one float per ordered pair,
+ * symmetric, with every genre fully similar to itself. Genres that got an id after the matrix was built are only
+ * similar to themselves. Immutable; a new matrix is swapped in as a whole by {@link GenreSimilarityLoader}.
+ */
+public final class GenreSimilarityMatrix {
+
+    /** No related genres: matching counts exact genre overlap only. */
+    public static final GenreSimilarityMatrix NONE = new GenreSimilarityMatrix(0, new float[0]);
+
+    private final int stride;
+    private final float[] values;
+
+    private GenreSimilarityMatrix(int stride, float[] values) {
+        this.stride = stride;
+        this.values = values;
+    }
+
+    /**
+     * @param pairs dense genre id pairs {@code [a, b]}, with {@code similarities[i]} the similarity of {@code pairs[i]}.
+     */
+    static GenreSimilarityMatrix of(int[][] pairs, float[] similarities) {
+        int stride = 0;
+        for (int[] pair : pairs) {
+            stride = Math.max(stride, Math.max(pair[0], pair[1]) + 1);
+        }
+        if (stride == 0) {
+            return NONE;
+        }
+        float[] values = new float[stride * stride];
+        for (int i = 0; i < pairs.length; i++) {
+            int a = pairs[i][0];
+            int b = pairs[i][1];
+            if (a != b) {
+                values[a * stride + b] = similarities[i];
+                values[b * stride + a] = similarities[i];
+            }
+        }
+        return new GenreSimilarityMatrix(stride, values);
+    }
+
+    public boolean isEmpty() {
+        return stride == 0;
+    }
+
+    float get(int a, int b) {
+        if (a == b) {
+            return 1.0f;
+        }
+        return a < stride && b < stride ? values[a * stride + b] : 0.0f;
+    }
+
+    /**
+     * Partial-credit overlap: for every genre of the caller, its best similarity to any genre of the candidate
+     * (1 when the candidate has it), times its rarity weight if {@code rarity} is given.
+     */
+    double credit(long[] callerGenres, long[] candidateGenres, float[] rarity) {
+        double credit = 0.0;
+        for (int p = Bitsets.nextSetBit(callerGenres, 0); p >= 0; p = Bitsets.nextSetBit(callerGenres, p + 1)) {
+            float best = 0.0f;
+            if (Bitsets.get(candidateGenres, p)) {
+                best = 1.0f;
+            } else if (p < stride) {
+                int row = p * stride;
+                for (int b = Bitsets.nextSetBit(candidateGenres, 0); b >= 0 && b < stride;
+                     b = Bitsets.nextSetBit(candidateGenres, b + 1)) {
+                    best = Math.max(best, values[row + b]);
+                }
+            }
+            credit += best * weight(rarity, p);
+        }
+        return credit;
+    }
+
+    /**
+     * Adds, for every genre {@code b}, what a candidate holding it can earn from {@link #credit}:
+     * {@code weight * rarity(p) * similarity(p, b)} summed over the caller genres {@code p}.
+     * The sum over a candidate's genres bounds its credit from above, since each best similarity is one of the terms.
+     *
+     * @param bounds per genre id; must be at least {@link #span} long for {@code callerGenres}.
+     */
+    void addBounds(long[] callerGenres, double weight, float[] rarity, double[] bounds) {
+        for (int p = Bitsets.nextSetBit(callerGenres, 0); p >= 0; p = Bitsets.nextSetBit(callerGenres, p + 1)) {
+            double scaled = weight * weight(rarity, p);
+            bounds[p] += scaled;
+            if (p < stride) {
+                int row = p * stride;
+                for (int b = 0; b < stride; b++) {
+                    float similarity = values[row + b];
+                    if (similarity > 0.0f) {
+                        bounds[b] += scaled * similarity;
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * The length a {@link #addBounds} array needs for callers with genre bitset {@code callerGenres}.
+     */
+    int span(long[] callerGenres) {
+        return Math.max(stride, callerGenres.length << 6);
+    }
+
+    private static float weight(float[] rarity, int genre) {
+        return rarity == null || genre >= rarity.length ? 1.0f : rarity[genre];
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return this == o || o instanceof GenreSimilarityMatrix other
+                && stride == other.stride && Arrays.equals(values, other.values);
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * stride + Arrays.hashCode(values);
+    }
+}
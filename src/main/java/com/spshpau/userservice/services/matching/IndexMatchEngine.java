@@ -0,0 +1,48 @@
+package com.spshpau.userservice.services.matching;
+
+import com.spshpau.userservice.model.User;
+import com.spshpau.userservice.services.wrappers.MatchPage;
+import com.spshpau.userservice.services.wrappers.RankedMatch;
+import com.spshpau.userservice.services.wrappers.TopKMatches;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+/**
+ * Ranks candidates in memory, from the resident {@link MatchingIndex}, with {@link TopKMatchEvaluator}.
+ */
+@Component
+@RequiredArgsConstructor
+public class IndexMatchEngine implements MatchEngine {
+
+    private final MatchingIndex matchingIndex;
+    private final CallerRelationsLoader callerRelationsLoader;
+    private final TopKMatchEvaluator topKMatchEvaluator;
+
+    @Override
+    public MatchPage findMatches(User caller, int offset, int limit, MatchFilter filter) {
+        return findMatches(caller, offset, limit, filter, MatchProgressListener.NONE, MatchDeadline.NONE);
+    }
+
+    @Override
+    public MatchPage findMatches(User caller, int offset, int limit, MatchFilter filter,
+                                 MatchProgressListener listener, MatchDeadline deadline) {
+        // A caller the index has not caught up with yet is scored as it is now; MatchingIndexMaintainer indexes it
+        IndexedUser indexedCaller = matchingIndex.get(caller.getId())
+                .orElseGet(() -> matchingIndex.encodeDetached(MatchingSnapshot.of(caller)));
+        CallerRelations relations = callerRelationsLoader.load(caller.getId());
+
+        TopKMatches topMatches = listener == MatchProgressListener.NONE
+                ? topKMatchEvaluator.findTopK(indexedCaller, relations, offset + limit, filter, deadline)
+                : topKMatchEvaluator.findTopK(indexedCaller, relations, offset + limit, filter,
+                        (ranked, completed, partitions) -> listener.onProgress(
+                                ranked.subList(Math.min(offset, ranked.size()), ranked.size()), completed, partitions),
+                        deadline);
+        List<RankedMatch> page = topMatches.getRanked().stream()
+                .skip(offset)
+                .map(mu -> new RankedMatch(mu.getUser().getId(), mu.getUser().getUsername(), mu.getScore()))
+                .toList();
+        return new MatchPage(page, topMatches.getTotalCandidates(), deadline.wasReached());
+    }
+}
@@ -0,0 +1,58 @@
+package com.spshpau.userservice.services.matching;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.util.UUID;
+
+/**
+ * Compact, immutable record of everything the match scorer needs to know about one user.
+ * Genres and skills are stored as bitsets over the dictionary-encoded ids of {@link MatchingIndex},
+ * so scoring two users never touches a JPA entity.
+ */
+@Getter
+@AllArgsConstructor
+public final class IndexedUser {
+
+    public static final int ACTIVE = 1;
+    public static final int ARTIST = 1 << 1;
+    public static final int PRODUCER = 1 << 2;
+    public static final int ARTIST_AVAILABLE = 1 << 3;
+    public static final int PRODUCER_AVAILABLE = 1 << 4;
+
+    /** Experience ordinal used when a profile is missing or has no level set. */
+    public static final byte NO_EXPERIENCE = -1;
+
+    private final UUID id;
+    private final String username;
+    private final int flags;
+    private final byte artistExperience;
+    private final byte producerExperience;
+    private final long[] artistGenres;
+    private final long[] producerGenres;
+    private final long[] allGenres;
+    private final long[] artistSkills;
+    /** Coordinates of the user's location; {@code NaN} when unknown. */
+    private final double latitude;
+    private final double longitude;
+
+    public boolean has(int flag) {
+        return (flags & flag) != 0;
+    }
+
+    public boolean isActive() {
+        return has(ACTIVE);
+    }
+
+    public boolean isArtist() {
+        return has(ARTIST);
+    }
+
+    public boolean isProducer() {
+        return has(PRODUCER);
+    }
+
+    public boolean hasLocation() {
+        return !Double.isNaN(latitude);
+    }
+}
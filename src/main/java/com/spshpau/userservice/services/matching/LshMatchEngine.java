@@ -0,0 +1,129 @@
+package com.spshpau.userservice.services.matching;
+
+import com.spshpau.userservice.model.User;
+import com.spshpau.userservice.services.wrappers.MatchPage;
+import com.spshpau.userservice.services.wrappers.MatchedUser;
+import com.spshpau.userservice.services.wrappers.RankedMatch;
+import com.spshpau.userservice.services.wrappers.TopKMatches;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.UUID;
+
+/**
+ * Approximate engine for very large populations: takes the candidate pool from the MinHash LSH buckets of
+ * {@link MatchingIndex} and ranks only that pool, with the exact {@link MatchScorer}.
+ * <p>
+ * Users sharing little of the caller's genres and skills are never considered, so the ranking can miss matches the
+ * exact engine finds, e.g. ones that score on role and experience alone; {@link LshRecallSampler} measures how many.
+ * The total is the size of the pool. A caller without genres or skills has nothing to hash and is ranked exactly.
+ * A {@link MatchFilter} is applied to the pool before scoring, like the exact engine applies it to the index.
+ * <p>
+ * The LSH buckets are maintained when {@code matching.engine=lsh} or {@code matching.lsh.enabled=true}, the latter
+ * for measuring recall before switching over. Their shape is {@code matching.lsh.bands} bands of
+ * {@code matching.lsh.rows} rows.
+ */
+@Component
+public class LshMatchEngine implements MatchEngine {
+
+    private final MatchingIndex matchingIndex;
+    private final CallerRelationsLoader callerRelationsLoader;
+    private final TopKMatchEvaluator topKMatchEvaluator;
+    private final MatchScorer matchScorer;
+    private final boolean enabled;
+    private final int bands;
+    private final int rows;
+
+    public LshMatchEngine(MatchingIndex matchingIndex,
+                          CallerRelationsLoader callerRelationsLoader,
+                          TopKMatchEvaluator topKMatchEvaluator,
+                          MatchScorer matchScorer,
+                          @Value("${matching.engine:index}") String engine,
+                          @Value("${matching.lsh.enabled:false}") boolean enabled,
+                          @Value("${matching.lsh.bands:20}") int bands,
+                          @Value("${matching.lsh.rows:2}") int rows) {
+        this.matchingIndex = matchingIndex;
+        this.callerRelationsLoader = callerRelationsLoader;
+        this.topKMatchEvaluator = topKMatchEvaluator;
+        this.matchScorer = matchScorer;
+        this.enabled = enabled || "lsh".equals(engine);
+        this.bands = bands;
+        this.rows = rows;
+    }
+
+    @PostConstruct
+    void enableBuckets() {
+        if (enabled) {
+            matchingIndex.enableLsh(bands, rows);
+        }
+    }
+
+    @Override
+    public MatchPage findMatches(User caller, int offset, int limit, MatchFilter filter) {
+        IndexedUser indexedCaller = matchingIndex.get(caller.getId())
+                .orElseGet(() -> matchingIndex.put(MatchingSnapshot.of(caller)));
+        CallerRelations relations = callerRelationsLoader.load(caller.getId());
+
+        TopKMatches topMatches = findTopK(indexedCaller, relations, offset + limit, filter);
+        List<RankedMatch> page = topMatches.getRanked().stream()
+                .skip(offset)
+                .map(mu -> new RankedMatch(mu.getUser().getId(), mu.getUser().getUsername(), mu.getScore()))
+                .toList();
+        return new MatchPage(page, topMatches.getTotalCandidates());
+    }
+
+    /**
+     * Same contract as {@link TopKMatchEvaluator#findTopK}, over the LSH candidate pool only.
+     */
+    public TopKMatches findTopK(IndexedUser caller, CallerRelations relations, int k) {
+        return findTopK(caller, relations, k, MatchFilter.NONE);
+    }
+
+    /**
+     * Same as {@link #findTopK(IndexedUser, CallerRelations, int)}, over the part of the pool passing {@code filter}.
+     */
+    public TopKMatches findTopK(IndexedUser caller, CallerRelations relations, int k, MatchFilter filter) {
+        TopKMatches approximate = matchingIndex.readLocked(() -> rankPool(caller, relations, k, filter));
+        return approximate != null ? approximate
+                : topKMatchEvaluator.findTopK(caller, relations, k, filter, MatchDeadline.NONE);
+    }
+
+    /**
+     * @return the ranking of the pool, or {@code null} when LSH has nothing to go on for this caller.
+     */
+    private TopKMatches rankPool(IndexedUser caller, CallerRelations relations, int k, MatchFilter filter) {
+        if (!matchingIndex.isLshEnabled() || MinHashLsh.isEmpty(caller)) {
+            return null;
+        }
+        MatchWeights weights = matchScorer.getWeights();
+        long[] genres = matchingIndex.knownGenreIds(filter.getGenreIds());
+        PriorityQueue<MatchedUser> heap = new PriorityQueue<>(Math.max(1, k) + 1, TopKMatchEvaluator.RANKING.reversed());
+        int total = 0;
+        for (int slot : matchingIndex.lshCandidates(caller)) {
+            IndexedUser candidate = matchingIndex.userAt(slot);
+            UUID candidateId = candidate.getId();
+            if (relations.getExcludedUserIds().contains(candidateId) || !filter.accepts(candidate, genres)) {
+                continue;
+            }
+            total++;
+            if (k <= 0) {
+                continue;
+            }
+            MatchedUser match = new MatchedUser(candidate, matchScorer.calculateMatchScore(weights, caller, candidate,
+                    relations.getConnectedUserIds().contains(candidateId)));
+            if (heap.size() < k) {
+                heap.add(match);
+            } else if (TopKMatchEvaluator.RANKING.compare(match, heap.peek()) < 0) {
+                heap.poll();
+                heap.add(match);
+            }
+        }
+        List<MatchedUser> ranked = new ArrayList<>(heap);
+        ranked.sort(TopKMatchEvaluator.RANKING);
+        return new TopKMatches(ranked, total);
+    }
+}
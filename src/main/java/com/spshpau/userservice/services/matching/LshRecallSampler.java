@@ -0,0 +1,118 @@
+package com.spshpau.userservice.services.matching;
+
+import com.spshpau.userservice.services.wrappers.MatchedUser;
+import com.spshpau.userservice.services.wrappers.TopKMatches;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.Random;
+import java.util.Set;
+import java.util.UUID;
+import java.util.stream.Collectors;
+
+/**
+ * Measures how close {@link LshMatchEngine} gets to the exact {@link TopKMatchEvaluator}, to tune the LSH banding.
+ * <p>
+ * Every {@code matching.lsh.recall.interval} (while the LSH buckets are maintained) it ranks
+ * {@code matching.lsh.recall.sample-size} random active users both ways and records, per user, the share of the exact
+ * top {@code matching.lsh.recall.k} that the approximate top K also holds ({@code matching.lsh.recall}) and the size
+ * of the LSH pool relative to all candidates ({@code matching.lsh.pool.fraction}).
+ */
+@Component
+@Slf4j
+public class LshRecallSampler {
+
+    private final MatchingIndex matchingIndex;
+    private final CallerRelationsLoader callerRelationsLoader;
+    private final TopKMatchEvaluator topKMatchEvaluator;
+    private final LshMatchEngine lshMatchEngine;
+    private final int sampleSize;
+    private final int k;
+    private final DistributionSummary recall;
+    private final DistributionSummary poolFraction;
+    private final Random random = new Random();
+
+    public LshRecallSampler(MatchingIndex matchingIndex,
+                            CallerRelationsLoader callerRelationsLoader,
+                            TopKMatchEvaluator topKMatchEvaluator,
+                            LshMatchEngine lshMatchEngine,
+                            @Value("${matching.lsh.recall.sample-size:100}") int sampleSize,
+                            @Value("${matching.lsh.recall.k:10}") int k,
+                            MeterRegistry meterRegistry) {
+        this.matchingIndex = matchingIndex;
+        this.callerRelationsLoader = callerRelationsLoader;
+        this.topKMatchEvaluator = topKMatchEvaluator;
+        this.lshMatchEngine = lshMatchEngine;
+        this.sampleSize = sampleSize;
+        this.k = k;
+        this.recall = DistributionSummary.builder("matching.lsh.recall")
+                .description("Share of the exact top K matches also found by the LSH engine, per sampled user")
+                .register(meterRegistry);
+        this.poolFraction = DistributionSummary.builder("matching.lsh.pool.fraction")
+                .description("LSH candidate pool size relative to all match candidates, per sampled user")
+                .register(meterRegistry);
+    }
+
+    @Scheduled(fixedDelayString = "${matching.lsh.recall.interval:PT1H}",
+            initialDelayString = "${matching.lsh.recall.interval:PT1H}")
+    public void sample() {
+        if (!matchingIndex.isReady() || !matchingIndex.isLshEnabled()) {
+            return;
+        }
+        Recall result = measure(sampleSize, k);
+        log.info("LSH recall@{} over {} sampled users: {} (pool {} of candidates)", k, result.getSampled(),
+                String.format("%.3f", result.getRecall()), String.format("%.3f", result.getPoolFraction()));
+    }
+
+    /**
+     * Compares both rankings for up to {@code sampleSize} random active users.
+     */
+    public Recall measure(int sampleSize, int k) {
+        int sampled = 0;
+        double recallSum = 0.0;
+        double poolSum = 0.0;
+        for (int i = 0; i < sampleSize; i++) {
+            IndexedUser caller = matchingIndex.randomActiveUser(random).orElse(null);
+            if (caller == null) {
+                break;
+            }
+            CallerRelations relations = callerRelationsLoader.load(caller.getId());
+            TopKMatches exact = topKMatchEvaluator.findTopK(caller, relations, k);
+            if (exact.getRanked().isEmpty()) {
+                continue;
+            }
+            TopKMatches approximate = lshMatchEngine.findTopK(caller, relations, k);
+            Set<UUID> found = ids(approximate);
+            double hits = exact.getRanked().stream().filter(mu -> found.contains(mu.getUser().getId())).count();
+            double userRecall = hits / exact.getRanked().size();
+            double userPool = (double) approximate.getTotalCandidates() / exact.getTotalCandidates();
+            recall.record(userRecall);
+            poolFraction.record(userPool);
+            recallSum += userRecall;
+            poolSum += userPool;
+            sampled++;
+        }
+        return sampled == 0 ? new Recall(0, 1.0, 1.0) : new Recall(sampled, recallSum / sampled, poolSum / sampled);
+    }
+
+    private static Set<UUID> ids(TopKMatches matches) {
+        return matches.getRanked().stream().map(MatchedUser::getUser).map(IndexedUser::getId).collect(Collectors.toSet());
+    }
+
+    @Getter
+    @AllArgsConstructor
+    public static class Recall {
+        /** Users compared; callers without any candidate are skipped. */
+        private final int sampled;
+        /** Mean share of the exact top K found by the LSH engine. */
+        private final double recall;
+        /** Mean LSH pool size relative to all candidates. */
+        private final double poolFraction;
+    }
+}
@@ -0,0 +1,79 @@
+package com.spshpau.userservice.services.matching;
+
+import com.spshpau.userservice.config.CacheConfig;
+import com.spshpau.userservice.services.events.MatchingProfileChangedEvent;
+import com.spshpau.userservice.services.events.UserBlockChangedEvent;
+import com.spshpau.userservice.services.events.UserConnectionChangedEvent;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.Set;
+import java.util.UUID;
+import java.util.function.Predicate;
+
+/**
+ * Evicts exactly the cached match rankings a committed write makes stale, from
+ * {@link CacheConfig#USER_MATCHES_CACHE} and from the cursor snapshots of {@link MatchSnapshotStore}:
+ * <ul>
+ *     <li>a block or unblock, or an accepted or removed connection: the rankings of both parties,</li>
+ *     <li>a profile, availability or experience change: the user's own ranking; {@link MatchListPatcher} re-places
+ *     the user in the rankings of others,</li>
+ *     <li>a deactivation: the user's own ranking and every ranking the user appears in,</li>
+ *     <li>an activation: the user's own ranking; {@link MatchListPatcher} adds the user to the rankings of others.</li>
+ * </ul>
+ * Runs after {@link MatchingIndexMaintainer}, so the recomputed rankings already see the write.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class MatchCacheEvictor {
+
+    private final CacheManager cacheManager;
+    private final MatchSnapshotStore matchSnapshotStore;
+
+    @TransactionalEventListener(fallbackExecution = true)
+    @Order(Ordered.LOWEST_PRECEDENCE)
+    public void onMatchingProfileChanged(MatchingProfileChangedEvent event) {
+        UUID userId = event.getUserId();
+        if (event.isActivationChanged() && !event.getSnapshot().isActive()) {
+            evict(ranking -> ranking.getUserId().equals(userId) || ranking.contains(userId));
+        } else {
+            evict(ranking -> ranking.getUserId().equals(userId));
+        }
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    @Order(Ordered.LOWEST_PRECEDENCE)
+    public void onUserBlockChanged(UserBlockChangedEvent event) {
+        Set<UUID> parties = Set.of(event.getBlockerId(), event.getBlockedId());
+        evict(ranking -> parties.contains(ranking.getUserId()));
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    @Order(Ordered.LOWEST_PRECEDENCE)
+    public void onUserConnectionChanged(UserConnectionChangedEvent event) {
+        Set<UUID> parties = Set.of(event.getUserId1(), event.getUserId2());
+        evict(ranking -> parties.contains(ranking.getUserId()));
+    }
+
+    /**
+     * Drops every cached ranking and snapshot, e.g. after the scoring weights changed.
+     */
+    public void evictAll() {
+        evict(ranking -> true);
+    }
+
+    private void evict(Predicate<RankedMatches> stale) {
+        Cache cache = cacheManager.getCache(CacheConfig.USER_MATCHES_CACHE);
+        if (cache != null && cache.getNativeCache() instanceof com.github.benmanes.caffeine.cache.Cache<?, ?> rankings) {
+            rankings.asMap().values().removeIf(value -> value instanceof RankedMatches ranking && stale.test(ranking));
+        }
+        matchSnapshotStore.invalidateIf(stale);
+    }
+}
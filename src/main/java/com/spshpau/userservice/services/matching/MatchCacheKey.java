@@ -0,0 +1,26 @@
+package com.spshpau.userservice.services.matching;
+
+import lombok.AllArgsConstructor;
+import lombok.Value;
+
+import java.util.UUID;
+
+/**
+ * Value-equal key of {@code CacheConfig.USER_MATCHES_CACHE}: whose ranking, how deep it was ranked,
+ * under which sort and among which candidates.
+ */
+@Value
+@AllArgsConstructor
+public class MatchCacheKey {
+    UUID userId;
+    int window;
+    String sort;
+    MatchFilter filter;
+
+    /**
+     * Key of an unfiltered ranking.
+     */
+    public MatchCacheKey(UUID userId, int window, String sort) {
+        this(userId, window, sort, MatchFilter.NONE);
+    }
+}
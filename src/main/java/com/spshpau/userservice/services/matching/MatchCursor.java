@@ -0,0 +1,49 @@
+package com.spshpau.userservice.services.matching;
+
+import com.spshpau.userservice.services.exceptions.InvalidCursorException;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.nio.ByteBuffer;
+import java.util.Base64;
+import java.util.UUID;
+
+/**
+ * Position in a frozen ranking snapshot of {@link MatchSnapshotStore}.
+ * Clients only ever see it as an opaque, URL-safe token.
+ */
+@Getter
+@AllArgsConstructor
+public class MatchCursor {
+    private static final int TOKEN_BYTES = 16 + 8;
+
+    private final UUID snapshotId;
+    private final long offset;
+
+    public String encode() {
+        ByteBuffer buffer = ByteBuffer.allocate(TOKEN_BYTES)
+                .putLong(snapshotId.getMostSignificantBits())
+                .putLong(snapshotId.getLeastSignificantBits())
+                .putLong(offset);
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(buffer.array());
+    }
+
+    public static MatchCursor decode(String token) {
+        byte[] bytes;
+        try {
+            bytes = Base64.getUrlDecoder().decode(token);
+        } catch (IllegalArgumentException e) {
+            throw new InvalidCursorException("Malformed match cursor");
+        }
+        if (bytes.length != TOKEN_BYTES) {
+            throw new InvalidCursorException("Malformed match cursor");
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        UUID snapshotId = new UUID(buffer.getLong(), buffer.getLong());
+        long offset = buffer.getLong();
+        if (offset < 0) {
+            throw new InvalidCursorException("Malformed match cursor");
+        }
+        return new MatchCursor(snapshotId, offset);
+    }
+}
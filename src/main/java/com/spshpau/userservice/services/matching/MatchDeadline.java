@@ -0,0 +1,44 @@
+package com.spshpau.userservice.services.matching;
+
+import java.time.Duration;
+
+/**
+ * Point in time by which a ranking has to be returned, with the best matches found so far if need be.
+ * Ranking loops poll {@link #isReached()}; once it has answered {@code true} it stays reached, so afterwards
+ * {@link #wasReached()} tells whether the ranking was cut short. Safe to poll from several scoring threads.
+ */
+public final class MatchDeadline {
+
+    /** No deadline: rankings always run to completion. */
+    public static final MatchDeadline NONE = new MatchDeadline(0L, false);
+
+    private final long deadlineNanos;
+    private final boolean bounded;
+    private volatile boolean reached;
+
+    private MatchDeadline(long deadlineNanos, boolean bounded) {
+        this.deadlineNanos = deadlineNanos;
+        this.bounded = bounded;
+    }
+
+    /**
+     * @param budget time allowed from now on; {@code null} for {@link #NONE}.
+     */
+    public static MatchDeadline after(Duration budget) {
+        return budget == null ? NONE : new MatchDeadline(System.nanoTime() + budget.toNanos(), true);
+    }
+
+    public boolean isReached() {
+        if (!reached && bounded && System.nanoTime() - deadlineNanos >= 0) {
+            reached = true;
+        }
+        return reached;
+    }
+
+    /**
+     * Whether a ranking under this deadline stopped early, i.e. returned a best-so-far result.
+     */
+    public boolean wasReached() {
+        return reached;
+    }
+}
@@ -0,0 +1,38 @@
+package com.spshpau.userservice.services.matching;
+
+import com.spshpau.userservice.model.User;
+import com.spshpau.userservice.services.wrappers.MatchPage;
+
+/**
+ * Ranks match candidates for a user with the rules of {@link MatchScorer}: score descending, then username.
+ * The implementation used by {@code findMatches} is chosen with {@code matching.engine}.
+ */
+public interface MatchEngine {
+
+    /**
+     * @param caller the active user asking for matches; managed, so lazy profile data may be read.
+     * @param offset number of ranked matches to skip.
+     * @param limit  maximum number of matches to return.
+     */
+    default MatchPage findMatches(User caller, int offset, int limit) {
+        return findMatches(caller, offset, limit, MatchFilter.NONE);
+    }
+
+    /**
+     * Same as {@link #findMatches(User, int, int)}, among the candidates passing {@code filter} only; the total
+     * counts those candidates too. Filtered-out candidates are dropped before scoring, never after.
+     */
+    MatchPage findMatches(User caller, int offset, int limit, MatchFilter filter);
+
+    /**
+     * Same as {@link #findMatches(User, int, int, MatchFilter)}, reporting the running ranking to {@code listener}
+     * while scoring, and returning a {@link MatchPage#isPartial() partial} page once {@code deadline} is reached.
+     * Engines that cannot rank incrementally report once, with the final page, and always rank completely.
+     */
+    default MatchPage findMatches(User caller, int offset, int limit, MatchFilter filter,
+                                  MatchProgressListener listener, MatchDeadline deadline) {
+        MatchPage page = findMatches(caller, offset, limit, filter);
+        listener.onProgress(page.getMatches(), 1, 1);
+        return page;
+    }
+}
@@ -0,0 +1,94 @@
+package com.spshpau.userservice.services.matching;
+
+import com.spshpau.userservice.dto.matchdto.MatchCriteria;
+import com.spshpau.userservice.model.enums.ExperienceLevel;
+import com.spshpau.userservice.model.enums.ProfileType;
+import lombok.Value;
+
+import java.util.Set;
+import java.util.StringJoiner;
+import java.util.UUID;
+
+/**
+ * Restricts the candidates of a ranking before any of them is scored, so a narrower request ranks, counts and caches
+ * a smaller population rather than filtering a full ranking afterwards.
+ * <p>
+ * A candidate passes when one of its profiles ({@link #getRole()} only, if set) satisfies every condition at once:
+ * available, at least {@link #getMinExperience()}, and holding any of {@link #getGenreIds()}. Users without a
+ * profile never pass a non-empty filter. Part of {@link MatchCacheKey} and of {@link RankedMatches}, so every
+ * filter has its own ranking and pages beyond it are ranked with the same filter.
+ */
+@Value
+public class MatchFilter {
+
+    public static final MatchFilter NONE = new MatchFilter(false, null, null, Set.of());
+
+    boolean availableOnly;
+    ExperienceLevel minExperience;
+    ProfileType role;
+    Set<UUID> genreIds;
+
+    public static MatchFilter of(MatchCriteria criteria) {
+        if (criteria == null) {
+            return NONE;
+        }
+        MatchFilter filter = new MatchFilter(Boolean.TRUE.equals(criteria.getAvailableOnly()),
+                criteria.getMinExperienceLevel(), criteria.getRole(),
+                criteria.getGenreIds() == null ? Set.of() : Set.copyOf(criteria.getGenreIds()));
+        return filter.isEmpty() ? NONE : filter;
+    }
+
+    public MatchCriteria toCriteria() {
+        return new MatchCriteria(availableOnly, minExperience, role, genreIds.isEmpty() ? null : genreIds.stream().toList());
+    }
+
+    public boolean isEmpty() {
+        return !availableOnly && minExperience == null && role == null && genreIds.isEmpty();
+    }
+
+    /**
+     * @param genres dense ids of the {@link #getGenreIds() genres} known to the index; ignored without genres.
+     */
+    boolean accepts(IndexedUser user, long[] genres) {
+        if (isEmpty()) {
+            return true;
+        }
+        return (role != ProfileType.PRODUCER && user.isArtist()
+                && profileAccepts(user.has(IndexedUser.ARTIST_AVAILABLE), user.getArtistExperience(),
+                user.getArtistGenres(), genres))
+                || (role != ProfileType.ARTIST && user.isProducer()
+                && profileAccepts(user.has(IndexedUser.PRODUCER_AVAILABLE), user.getProducerExperience(),
+                user.getProducerGenres(), genres));
+    }
+
+    private boolean profileAccepts(boolean available, byte experience, long[] profileGenres, long[] genres) {
+        return (!availableOnly || available)
+                && (minExperience == null || experience >= minExperience.ordinal())
+                && (genreIds.isEmpty() || Bitsets.intersectionCount(profileGenres, genres) > 0);
+    }
+
+    // Parameters of the filter in UserRepository#findMatchPage, which only takes plain values
+
+    /**
+     * @return the role, or an empty string for either.
+     */
+    public String getRoleName() {
+        return role == null ? "" : role.name();
+    }
+
+    /**
+     * @return the ordinal of the minimum experience, or -1 for none.
+     */
+    public int getMinExperienceOrdinal() {
+        return minExperience == null ? -1 : minExperience.ordinal();
+    }
+
+    /**
+     * @return the genre ids as a Postgres array literal; {@code {}} for any genre.
+     */
+    public String getGenreArray() {
+        StringJoiner array = new StringJoiner(",", "{", "}");
+        genreIds.forEach(genreId -> array.add(genreId.toString()));
+        return array.toString();
+    }
+}
@@ -0,0 +1,188 @@
+package com.spshpau.userservice.services.matching;
+
+import com.spshpau.userservice.config.MatchingConfig;
+import com.spshpau.userservice.model.enums.ConnectionStatus;
+import com.spshpau.userservice.repositories.UserConnectionRepository;
+import com.spshpau.userservice.services.events.MatchingIndexUpdatedEvent;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.Objects;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.Function;
+
+/**
+ * Keeps other users' match lists current when one user's profile, availability or experience changes,
+ * without recomputing them: only the changed user's score moves, so it is re-scored against each list owner
+ * and re-placed in the cached rankings of {@link MatchRankingCache} and the persisted lists of {@link UserMatchStore}.
+ * The changed user's own list is evicted by {@link MatchCacheEvictor} and {@link UserMatchStore} as before.
+ * A user just activated is a new candidate of every list and is inserted where it now belongs
+ * ({@link RankedMatches#withCandidate}); a deactivated one is left to eviction.
+ * In a ranking under a {@link MatchFilter}, a user the change takes out of the filter is dropped and one it
+ * brings into the filter is inserted the same way, so the candidate count follows either.
+ * <p>
+ * Only rankings the change can move are touched: a cached ranking is re-placed only if the user's score for its owner
+ * or its place under the filter changed, checked in constant time, and a persisted one is read only if it holds
+ * the user or its last place scores at most the user's best score for anyone.
+ * <p>
+ * Hands off on the {@link MatchingIndexUpdatedEvent} of {@link MatchingIndexMaintainer}, i.e. after commit, once the
+ * change is in the index, and patches on {@link MatchingConfig#MATCH_PATCH_EXECUTOR}, off the request thread; the
+ * event's previous state tells which rankings held the user. Changes arriving at its full queue are not patched in
+ * and counted as {@code matching.patch.skipped}. Cursor snapshots stay frozen.
+ */
+@Component
+@Slf4j
+public class MatchListPatcher {
+
+    private final MatchingIndex matchingIndex;
+    private final MatchScorer matchScorer;
+    private final UserConnectionRepository userConnectionRepository;
+    private final MatchRankingCache matchRankingCache;
+    private final UserMatchStore userMatchStore;
+    private final MatchThresholds matchThresholds;
+    private final TransactionTemplate transaction;
+    private final Executor patchExecutor;
+    private final Counter skipped;
+
+    public MatchListPatcher(MatchingIndex matchingIndex,
+                            MatchScorer matchScorer,
+                            UserConnectionRepository userConnectionRepository,
+                            MatchRankingCache matchRankingCache,
+                            UserMatchStore userMatchStore,
+                            MatchThresholds matchThresholds,
+                            PlatformTransactionManager transactionManager,
+                            @Qualifier(MatchingConfig.MATCH_PATCH_EXECUTOR) Executor patchExecutor,
+                            MeterRegistry meterRegistry) {
+        this.matchingIndex = matchingIndex;
+        this.matchScorer = matchScorer;
+        this.userConnectionRepository = userConnectionRepository;
+        this.matchRankingCache = matchRankingCache;
+        this.userMatchStore = userMatchStore;
+        this.matchThresholds = matchThresholds;
+        // After commit the finished transaction is still bound; joining it would silently drop the writes
+        this.transaction = new TransactionTemplate(transactionManager);
+        this.transaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.patchExecutor = patchExecutor;
+        this.skipped = Counter.builder("matching.patch.skipped")
+                .description("Profile changes not patched into other users' match lists because the patch queue was full")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Called on the thread of the committed write; the patching itself is queued.
+     */
+    @EventListener
+    public void onMatchingIndexUpdated(MatchingIndexUpdatedEvent event) {
+        if (!event.getCurrent().isActive()) {
+            return;
+        }
+        try {
+            patchExecutor.execute(() -> patch(event.getPrevious(), event.getCurrent()));
+        } catch (RejectedExecutionException e) {
+            skipped.increment();
+            log.debug("Patch queue full, left the match lists of user {} to expire", event.getCurrent().getId());
+        }
+    }
+
+    private void patch(IndexedUser previous, IndexedUser changed) {
+        try {
+            UUID changedId = changed.getId();
+            boolean activated = previous == null || !previous.isActive();
+            Set<UUID> connected = userConnectionRepository.findConnectedUserIds(changedId, ConnectionStatus.ACCEPTED);
+            Set<UUID> blocked = matchingIndex.blockRelations(changedId);
+            Function<IndexedUser, Function<UUID, Float>> scoresOf = candidate -> ownerId -> {
+                if (ownerId.equals(changedId) || blocked.contains(ownerId)) {
+                    return null;
+                }
+                return matchingIndex.get(ownerId)
+                        .map(owner -> (float) matchScorer.calculateMatchScore(owner, candidate, connected.contains(ownerId)))
+                        .orElse(null);
+            };
+            Function<UUID, Float> scores = scoresOf.apply(changed);
+            Function<UUID, String> usernames = userId -> matchingIndex.get(userId).map(IndexedUser::getUsername).orElse("");
+
+            int cached = patchCached(activated ? null : previous, changed,
+                    activated ? null : scoresOf.apply(previous), scores, usernames);
+            float bestScore = bestScore(changed, blocked, connected);
+            Integer persisted = transaction.execute(status ->
+                    userMatchStore.patch(changedId, activated, bestScore, scores, usernames));
+            log.debug("Re-placed user {} in {} cached and {} persisted match lists", changedId, cached, persisted);
+        } catch (RuntimeException e) {
+            log.warn("Failed to patch the match lists holding user {}", changed.getId(), e);
+        }
+    }
+
+    /**
+     * The highest score {@code changed} has for any owner. Only owners sharing a term with it or, with the
+     * proximity boost on, located near it can score it above zero; everyone else scores it at most zero.
+     */
+    private float bestScore(IndexedUser changed, Set<UUID> blocked, Set<UUID> connected) {
+        MatchWeights weights = matchScorer.getWeights();
+        return matchingIndex.readLocked(() -> {
+            long[] reach = matchingIndex.slotsSharingATerm(changed);
+            if (weights.getProximity() > 0.0 && changed.hasLocation()) {
+                reach = Bitsets.or(reach, matchingIndex.slotsWithin(changed.getLatitude(), changed.getLongitude(),
+                        weights.getProximityRadiusKm()));
+            }
+            float best = 0.0f;
+            for (int slot = Bitsets.nextSetBit(reach, 0); slot >= 0; slot = Bitsets.nextSetBit(reach, slot + 1)) {
+                IndexedUser owner = matchingIndex.userAt(slot);
+                if (owner.getId().equals(changed.getId()) || blocked.contains(owner.getId())) {
+                    continue;
+                }
+                best = Math.max(best, (float) matchScorer.calculateMatchScore(weights, owner, changed,
+                        connected.contains(owner.getId())));
+            }
+            return best;
+        });
+    }
+
+    /**
+     * @param previous       the user as it was a candidate before the change, or {@code null} if it was none.
+     * @param previousScores its scores then, or {@code null} if it was no candidate.
+     */
+    private int patchCached(IndexedUser previous, IndexedUser changed, Function<UUID, Float> previousScores,
+                            Function<UUID, Float> scores, Function<UUID, String> usernames) {
+        boolean renamed = previous != null && !previous.getUsername().equals(changed.getUsername());
+        int patched = 0;
+        for (var entry : matchRankingCache.completed().entrySet()) {
+            RankedMatches ranking = entry.getValue();
+            Float score = scores.apply(ranking.getUserId());
+            if (score == null) {
+                continue;
+            }
+            MatchFilter filter = ranking.getFilter();
+            boolean passed = previous != null && (filter.isEmpty() || matchingIndex.accepts(filter, previous));
+            boolean passes = filter.isEmpty() || matchingIndex.accepts(filter, changed);
+            if (passed == passes && !renamed && Objects.equals(score, previous == null ? null
+                    : previousScores.apply(ranking.getUserId()))) {
+                // Neither its score nor its place under the filter moved
+                continue;
+            }
+            RankedMatches rescored;
+            if (passes) {
+                rescored = passed ? ranking.rescored(changed.getId(), score, usernames)
+                        : ranking.withCandidate(changed.getId(), score, usernames);
+            } else {
+                rescored = passed ? ranking.without(changed.getId()) : ranking;
+            }
+            if (rescored != ranking && matchRankingCache.replace(entry.getKey(), ranking, rescored)) {
+                if (filter.isEmpty()) {
+                    matchThresholds.record(rescored);
+                }
+                patched++;
+            }
+        }
+        return patched;
+    }
+}
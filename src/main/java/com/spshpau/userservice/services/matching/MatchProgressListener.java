@@ -0,0 +1,24 @@
+package com.spshpau.userservice.services.matching;
+
+import com.spshpau.userservice.services.wrappers.RankedMatch;
+
+import java.util.List;
+
+/**
+ * Receives the running ranking while a {@link MatchEngine} is still scoring, for streaming it to the client.
+ * Called on the ranking thread and outside the index lock, so it may block on IO.
+ */
+@FunctionalInterface
+public interface MatchProgressListener {
+
+    MatchProgressListener NONE = (ranked, completed, partitions) -> {
+    };
+
+    /**
+     * @param ranked     best matches among the candidates scored so far, best first; final once
+     *                   {@code completed == partitions}.
+     * @param completed  partitions of the population scored so far.
+     * @param partitions partitions in total.
+     */
+    void onProgress(List<RankedMatch> ranked, int completed, int partitions);
+}
@@ -0,0 +1,63 @@
+package com.spshpau.userservice.services.matching;
+
+import com.spshpau.userservice.model.User;
+import com.spshpau.userservice.services.wrappers.MatchPage;
+import com.spshpau.userservice.services.wrappers.RankedMatch;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Turns the output of the configured {@link MatchEngine} into what callers keep: compact {@link RankedMatches}
+ * for caching and snapshots, or plain id slices for pages beyond them.
+ * Shared by request-time ranking and background refreshes.
+ */
+@Component
+@RequiredArgsConstructor
+public class MatchRanker {
+
+    private final MatchEngine matchEngine;
+    private final MatchThresholds matchThresholds;
+
+    /**
+     * Ranks the top {@code window} matches of {@code caller}; must run inside a transaction.
+     */
+    public RankedMatches rank(User caller, int window) {
+        return rank(caller, window, MatchFilter.NONE, MatchProgressListener.NONE, MatchDeadline.NONE);
+    }
+
+    /**
+     * Same as {@link #rank(User, int)}, among the candidates passing {@code filter}, reporting the running ranking
+     * to {@code listener} while the engine scores, and settling for a {@link RankedMatches#isPartial() partial}
+     * ranking once {@code deadline} is reached. Only complete, unfiltered rankings feed {@link MatchThresholds}.
+     */
+    public RankedMatches rank(User caller, int window, MatchFilter filter, MatchProgressListener listener,
+                              MatchDeadline deadline) {
+        MatchPage top = matchEngine.findMatches(caller, 0, window, filter, listener, deadline);
+        List<RankedMatch> matches = top.getMatches();
+        UUID[] matchIds = new UUID[matches.size()];
+        float[] scores = new float[matches.size()];
+        for (int i = 0; i < matches.size(); i++) {
+            matchIds[i] = matches.get(i).getUserId();
+            scores[i] = (float) matches.get(i).getScore();
+        }
+        RankedMatches ranking = new RankedMatches(caller.getId(), matchIds, scores, top.getTotalCandidates(), Instant.now(),
+                top.isPartial(), filter);
+        if (!ranking.isPartial() && filter.isEmpty()) {
+            matchThresholds.record(ranking);
+        }
+        return ranking;
+    }
+
+    /**
+     * Ranks a slice directly, for pages that lie beyond a cached ranking computed under {@code filter}.
+     */
+    public List<UUID> rankSlice(User caller, int offset, int limit, MatchFilter filter) {
+        return matchEngine.findMatches(caller, offset, limit, filter).getMatches().stream()
+                .map(RankedMatch::getUserId)
+                .toList();
+    }
+}
@@ -0,0 +1,108 @@
+package com.spshpau.userservice.services.matching;
+
+import com.github.benmanes.caffeine.cache.AsyncCache;
+import com.spshpau.userservice.config.CacheConfig;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.caffeine.CaffeineCache;
+import org.springframework.stereotype.Component;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.Supplier;
+
+/**
+ * Single-flight access to {@link CacheConfig#USER_MATCHES_CACHE}.
+ * The cache is async, so an in-flight computation is visible as a pending future: concurrent misses for the
+ * same key wait for it instead of ranking again, and unrelated keys are never blocked while it runs.
+ * The computation itself runs on the first caller's thread, inside its transaction.
+ * <p>
+ * Publishes {@code matching.ranking.computed} and {@code matching.ranking.coalesced}, the number of callers
+ * that joined a computation already in flight.
+ */
+@Component
+@Slf4j
+public class MatchRankingCache {
+
+    private final AsyncCache<Object, Object> rankings;
+    private final Counter computed;
+    private final Counter coalesced;
+
+    public MatchRankingCache(CacheManager cacheManager, MeterRegistry meterRegistry) {
+        this.rankings = ((CaffeineCache) cacheManager.getCache(CacheConfig.USER_MATCHES_CACHE)).getAsyncCache();
+        this.computed = Counter.builder("matching.ranking.computed")
+                .description("Match rankings computed on a cache miss")
+                .register(meterRegistry);
+        this.coalesced = Counter.builder("matching.ranking.coalesced")
+                .description("Match ranking requests that joined a computation already in flight")
+                .register(meterRegistry);
+    }
+
+    public RankedMatches get(MatchCacheKey key, Supplier<RankedMatches> computation) {
+        CompletableFuture<Object> mine = new CompletableFuture<>();
+        CompletableFuture<Object> shared = rankings.get(key, (k, executor) -> mine);
+        if (shared != mine) {
+            if (!shared.isDone()) {
+                coalesced.increment();
+                log.debug("Joining in-flight match ranking for {}", key);
+            }
+            RankedMatches ranking = join(shared);
+            ranking.markServed();
+            return ranking;
+        }
+        try {
+            RankedMatches ranking = computation.get();
+            computed.increment();
+            mine.complete(ranking);
+            return ranking;
+        } catch (RuntimeException | Error e) {
+            // Waiters see the same failure; Caffeine drops the failed entry on its own
+            mine.completeExceptionally(e);
+            throw e;
+        }
+    }
+
+    /**
+     * Completed rankings currently in the cache; computations still in flight are left out.
+     */
+    public Map<MatchCacheKey, RankedMatches> completed() {
+        Map<MatchCacheKey, RankedMatches> completed = new HashMap<>();
+        rankings.asMap().forEach((key, future) -> {
+            if (key instanceof MatchCacheKey matchKey && future.isDone() && !future.isCompletedExceptionally()
+                    && future.getNow(null) instanceof RankedMatches ranking) {
+                completed.put(matchKey, ranking);
+            }
+        });
+        return completed;
+    }
+
+    /**
+     * Swaps in a recomputed ranking, but only while {@code previous} is still the cached one:
+     * an entry evicted or recomputed meanwhile is never overwritten with a possibly stale result.
+     *
+     * @return whether the fresh ranking was installed.
+     */
+    public boolean replace(MatchCacheKey key, RankedMatches previous, RankedMatches fresh) {
+        CompletableFuture<Object> current = rankings.asMap().get(key);
+        if (current == null || !current.isDone() || current.isCompletedExceptionally() || current.getNow(null) != previous) {
+            return false;
+        }
+        fresh.inheritLastServedAt(previous);
+        return rankings.asMap().replace(key, current, CompletableFuture.completedFuture(fresh));
+    }
+
+    private RankedMatches join(CompletableFuture<Object> future) {
+        try {
+            return (RankedMatches) future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+}
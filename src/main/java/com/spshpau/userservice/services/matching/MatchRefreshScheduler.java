@@ -0,0 +1,141 @@
+package com.spshpau.userservice.services.matching;
+
+import com.spshpau.userservice.config.MatchingConfig;
+import com.spshpau.userservice.model.User;
+import com.spshpau.userservice.repositories.UserRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Refreshes cached match rankings of recently active users before they expire, so their next request
+ * is served from the cache instead of ranking on the request thread.
+ * <p>
+ * A ranking is due once it is older than {@code matching.refresh.after}, or right away when it is
+ * {@link RankedMatches#isPartial() partial}, and was served within {@code matching.refresh.active-window};
+ * rankings nobody asks for are left to expire. Refreshing always ranks completely, so a best-so-far ranking cut
+ * short by a request deadline is replaced by the exact one within a run or two.
+ * Refreshes run on the bounded, low-priority {@link MatchingConfig#MATCH_REFRESH_EXECUTOR} and are spaced to at most
+ * {@code matching.refresh.max-per-second}, so a wave of due entries neither competes with interactive requests
+ * nor holds more database connections than the executor has threads.
+ * When the executor's queue is full, the remaining due entries wait for the next run.
+ */
+@Component
+@Slf4j
+public class MatchRefreshScheduler {
+
+    private final MatchRankingCache matchRankingCache;
+    private final MatchRanker matchRanker;
+    private final UserRepository userRepository;
+    private final TransactionTemplate readOnlyTransaction;
+    private final Executor refreshExecutor;
+    private final Duration refreshAfter;
+    private final Duration activeWindow;
+    private final long permitIntervalNanos;
+    private final Set<MatchCacheKey> inFlight = ConcurrentHashMap.newKeySet();
+    private final Counter refreshed;
+    private final Counter skipped;
+    private long nextPermitNanos = System.nanoTime();
+
+    public MatchRefreshScheduler(MatchRankingCache matchRankingCache,
+                                 MatchRanker matchRanker,
+                                 UserRepository userRepository,
+                                 PlatformTransactionManager transactionManager,
+                                 @Qualifier(MatchingConfig.MATCH_REFRESH_EXECUTOR) Executor refreshExecutor,
+                                 @Value("${matching.refresh.after:3h}") Duration refreshAfter,
+                                 @Value("${matching.refresh.active-window:30m}") Duration activeWindow,
+                                 @Value("${matching.refresh.max-per-second:5}") int maxPerSecond,
+                                 MeterRegistry meterRegistry) {
+        this.matchRankingCache = matchRankingCache;
+        this.matchRanker = matchRanker;
+        this.userRepository = userRepository;
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+        this.refreshExecutor = refreshExecutor;
+        this.refreshAfter = refreshAfter;
+        this.activeWindow = activeWindow;
+        this.permitIntervalNanos = TimeUnit.SECONDS.toNanos(1) / Math.max(1, maxPerSecond);
+        this.refreshed = Counter.builder("matching.ranking.refreshed")
+                .description("Cached match rankings recomputed ahead of expiry")
+                .register(meterRegistry);
+        this.skipped = Counter.builder("matching.ranking.refresh.skipped")
+                .description("Due match ranking refreshes postponed because the refresh queue was full")
+                .register(meterRegistry);
+    }
+
+    @Scheduled(fixedDelayString = "${matching.refresh.interval:PT1M}",
+            initialDelayString = "${matching.refresh.interval:PT1M}")
+    public void refreshDueRankings() {
+        Instant now = Instant.now();
+        Instant staleBefore = now.minus(refreshAfter);
+        Instant activeSince = now.minus(activeWindow);
+        matchRankingCache.completed().forEach((key, ranking) -> {
+            if ((ranking.isPartial() || ranking.getComputedAt().isBefore(staleBefore))
+                    && !ranking.getLastServedAt().isBefore(activeSince)
+                    && inFlight.add(key)) {
+                submit(key, ranking);
+            }
+        });
+    }
+
+    private void submit(MatchCacheKey key, RankedMatches ranking) {
+        try {
+            refreshExecutor.execute(() -> {
+                try {
+                    awaitPermit();
+                    refresh(key, ranking);
+                } catch (RuntimeException e) {
+                    log.warn("Background refresh of matches for user {} failed", key.getUserId(), e);
+                } finally {
+                    inFlight.remove(key);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            inFlight.remove(key);
+            skipped.increment();
+        }
+    }
+
+    private void refresh(MatchCacheKey key, RankedMatches ranking) {
+        Optional<RankedMatches> fresh = readOnlyTransaction.execute(status -> userRepository.findById(key.getUserId())
+                .filter(User::isActive)
+                .map(user -> matchRanker.rank(user, key.getWindow(), key.getFilter(), MatchProgressListener.NONE,
+                        MatchDeadline.NONE)));
+        if (fresh != null && fresh.isPresent() && matchRankingCache.replace(key, ranking, fresh.get())) {
+            refreshed.increment();
+            log.debug("Refreshed cached matches for user {}", key.getUserId());
+        }
+    }
+
+    /**
+     * Spaces refreshes evenly across all refresh threads; waiting happens on the refresh thread, never on the
+     * scheduler.
+     */
+    private void awaitPermit() {
+        long permit;
+        synchronized (this) {
+            permit = Math.max(nextPermitNanos, System.nanoTime());
+            nextPermitNanos = permit + permitIntervalNanos;
+        }
+        long wait;
+        while ((wait = permit - System.nanoTime()) > 0) {
+            LockSupport.parkNanos(wait);
+        }
+    }
+}
@@ -0,0 +1,143 @@
+package com.spshpau.userservice.services.matching;
+
+import com.spshpau.userservice.services.geo.GeoPoint;
+import org.springframework.stereotype.Component;
+
+/**
+ * Match scoring rules, evaluated over {@link IndexedUser} records.
+ * Set intersections are popcounts over the dictionary-encoded genre and skill bitsets; the weights come from
+ * the current {@link MatchWeights}, which {@link MatchWeightsRefresher} can swap at runtime.
+ * With {@link MatchWeights#isRarityWeighted()} each shared genre or skill counts its rarity weight from
+ * {@link MatchingIndex} instead of 1. When related genres are defined (see {@link GenreSimilarityMatrix}),
+ * the specific genre match gives partial credit for related genres instead of counting exact matches only.
+ * With a proximity weight, candidates located near the caller get a boost that fades out at the radius.
+ */
+@Component
+public class MatchScorer {
+
+    private final MatchingIndex matchingIndex;
+
+    private volatile MatchWeights weights = MatchWeights.DEFAULTS;
+
+    public MatchScorer(MatchingIndex matchingIndex) {
+        this.matchingIndex = matchingIndex;
+    }
+
+    public MatchWeights getWeights() {
+        return weights;
+    }
+
+    public void setWeights(MatchWeights weights) {
+        this.weights = weights;
+    }
+
+    /**
+     * Scores {@code candidate} from the point of view of {@code caller} with the current weights.
+     *
+     * @param alreadyConnected whether the two users have an accepted connection.
+     */
+    public double calculateMatchScore(IndexedUser caller, IndexedUser candidate, boolean alreadyConnected) {
+        return calculateMatchScore(weights, caller, candidate, alreadyConnected);
+    }
+
+    /**
+     * Scores with the given weights, so a caller that derived bounds from them scores consistently
+     * even if the weights are swapped meanwhile.
+     */
+    public double calculateMatchScore(MatchWeights w, IndexedUser caller, IndexedUser candidate, boolean alreadyConnected) {
+        if (w.isRarityWeighted()) {
+            return calculateRarityWeightedScore(w, caller, candidate, alreadyConnected);
+        }
+        double score = 0.0;
+
+        // Rule 1: Already connected penalty
+        if (alreadyConnected) {
+            score -= w.getConnectedPenalty();
+        }
+
+        // Rule 2: Opposite profiles
+        // Scenario 1: Caller is Producer, Candidate is Artist
+        if (caller.isProducer() && candidate.isArtist()) {
+            score += w.getOppositeRole();
+            score += w.experience(caller.getProducerExperience(), candidate.getArtistExperience());
+            score += calculateSpecificGenreMatchScore(w, caller.getProducerGenres(), candidate.getArtistGenres());
+            score += flag(candidate, IndexedUser.ARTIST_AVAILABLE) * w.getAvailability();
+        }
+
+        // Scenario 2: Caller is Artist, Candidate is Producer
+        if (caller.isArtist() && candidate.isProducer()) {
+            score += w.getOppositeRole();
+            score += w.experience(caller.getArtistExperience(), candidate.getProducerExperience());
+            score += calculateSpecificGenreMatchScore(w, caller.getArtistGenres(), candidate.getProducerGenres());
+            score += flag(candidate, IndexedUser.PRODUCER_AVAILABLE) * w.getAvailability();
+        }
+
+        // Rule 3: General matching genre or skill
+        score += Bitsets.intersectionCount(caller.getAllGenres(), candidate.getAllGenres()) * w.getSharedGenre();
+        if (caller.isArtist() && candidate.isArtist()) {
+            score += Bitsets.intersectionCount(caller.getArtistSkills(), candidate.getArtistSkills()) * w.getSharedSkill();
+        }
+
+        // Rule 4: Nearby candidates
+        score += calculateProximityScore(w, caller, candidate);
+        return score;
+    }
+
+    // Same rules as above, with every overlap weighted by rarity
+    private double calculateRarityWeightedScore(MatchWeights w, IndexedUser caller, IndexedUser candidate,
+                                                boolean alreadyConnected) {
+        float[] genreRarity = matchingIndex.genreRarity();
+        double score = alreadyConnected ? -w.getConnectedPenalty() : 0.0;
+        if (caller.isProducer() && candidate.isArtist()) {
+            score += w.getOppositeRole();
+            score += w.experience(caller.getProducerExperience(), candidate.getArtistExperience());
+            score += specificGenreCredit(caller.getProducerGenres(), candidate.getArtistGenres(), genreRarity)
+                    * w.getSpecificGenre();
+            score += flag(candidate, IndexedUser.ARTIST_AVAILABLE) * w.getAvailability();
+        }
+        if (caller.isArtist() && candidate.isProducer()) {
+            score += w.getOppositeRole();
+            score += w.experience(caller.getArtistExperience(), candidate.getProducerExperience());
+            score += specificGenreCredit(caller.getArtistGenres(), candidate.getProducerGenres(), genreRarity)
+                    * w.getSpecificGenre();
+            score += flag(candidate, IndexedUser.PRODUCER_AVAILABLE) * w.getAvailability();
+        }
+        score += Bitsets.weightedIntersection(caller.getAllGenres(), candidate.getAllGenres(), genreRarity)
+                * w.getSharedGenre();
+        if (caller.isArtist() && candidate.isArtist()) {
+            score += Bitsets.weightedIntersection(caller.getArtistSkills(), candidate.getArtistSkills(),
+                    matchingIndex.skillRarity()) * w.getSharedSkill();
+        }
+        score += calculateProximityScore(w, caller, candidate);
+        return score;
+    }
+
+    double calculateProximityScore(MatchWeights w, IndexedUser caller, IndexedUser candidate) {
+        if (w.getProximity() == 0.0 || !caller.hasLocation() || !candidate.hasLocation()) {
+            return 0.0;
+        }
+        return w.proximity(GeoPoint.distanceKm(caller.getLatitude(), caller.getLongitude(),
+                candidate.getLatitude(), candidate.getLongitude()));
+    }
+
+    double calculateSpecificGenreMatchScore(MatchWeights w, long[] callerGenres, long[] candidateProfileGenres) {
+        GenreSimilarityMatrix similarity = matchingIndex.genreSimilarity();
+        if (similarity.isEmpty()) {
+            return Bitsets.intersectionCount(callerGenres, candidateProfileGenres) * w.getSpecificGenre();
+        }
+        return similarity.credit(callerGenres, candidateProfileGenres, null) * w.getSpecificGenre();
+    }
+
+    private double specificGenreCredit(long[] callerGenres, long[] candidateProfileGenres, float[] genreRarity) {
+        GenreSimilarityMatrix similarity = matchingIndex.genreSimilarity();
+        if (similarity.isEmpty()) {
+            return Bitsets.weightedIntersection(callerGenres, candidateProfileGenres, genreRarity);
+        }
+        return similarity.credit(callerGenres, candidateProfileGenres, genreRarity);
+    }
+
+    // 1 if the single-bit flag is set, else 0, without a branch
+    private static int flag(IndexedUser user, int flag) {
+        return (user.getFlags() >>> Integer.numberOfTrailingZeros(flag)) & 1;
+    }
+}
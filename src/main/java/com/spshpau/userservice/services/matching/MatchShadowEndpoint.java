@@ -0,0 +1,25 @@
+package com.spshpau.userservice.services.matching;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+/**
+ * {@code /actuator/matchshadow}: how the shadow engine compares with the live one so far, see
+ * {@link MatchShadowEvaluator}. Exposed over the web once listed in {@code management.endpoints.web.exposure.include}.
+ */
+@Component
+@ConditionalOnProperty("matching.shadow.engine")
+@Endpoint(id = "matchshadow")
+@RequiredArgsConstructor
+public class MatchShadowEndpoint {
+
+    private final MatchShadowEvaluator matchShadowEvaluator;
+
+    @ReadOperation
+    public MatchShadowEvaluator.Report report() {
+        return matchShadowEvaluator.report();
+    }
+}
@@ -0,0 +1,225 @@
+package com.spshpau.userservice.services.matching;
+
+import com.spshpau.userservice.config.MatchingConfig;
+import com.spshpau.userservice.model.User;
+import com.spshpau.userservice.repositories.UserRepository;
+import com.spshpau.userservice.services.events.MatchRankingComputedEvent;
+import com.spshpau.userservice.services.wrappers.MatchPage;
+import com.spshpau.userservice.services.wrappers.RankedMatch;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs a candidate engine ({@code matching.shadow.engine}, named like {@code matching.engine}) in shadow next to the
+ * live one, to judge it on real traffic before switching over.
+ * <p>
+ * A share {@code matching.shadow.sample-rate} of the rankings requests compute with the live engine are ranked
+ * again with the candidate, for the same user and {@link MatchFilter}, and the top {@code matching.shadow.k} of both
+ * are compared:
+ * <ul>
+ *     <li>{@code matching.shadow.overlap}: share of the live top K the candidate also returns,</li>
+ *     <li>{@code matching.shadow.rank.correlation}: Spearman correlation of the positions of the users both return
+ *     (recorded when they share at least two),</li>
+ *     <li>{@code matching.shadow.latency}, tagged {@code side=live} or {@code side=shadow}: time spent ranking.</li>
+ * </ul>
+ * Shadow rankings run on {@link MatchingConfig#MATCH_SHADOW_EXECUTOR}, never on the request thread; with all of its
+ * threads busy a sample is dropped ({@code matching.shadow.skipped}). Partial rankings cut short by a request budget
+ * are not compared. The {@code matchshadow} actuator endpoint reports the same figures.
+ */
+@Component
+@ConditionalOnProperty("matching.shadow.engine")
+@Slf4j
+public class MatchShadowEvaluator {
+
+    private final MatchEngine shadowEngine;
+    private final UserRepository userRepository;
+    private final TransactionTemplate readOnlyTransaction;
+    private final Executor shadowExecutor;
+    private final String engine;
+    private final double sampleRate;
+    private final int k;
+    private final DistributionSummary overlap;
+    private final DistributionSummary rankCorrelation;
+    private final Timer liveLatency;
+    private final Timer shadowLatency;
+    private final Counter skipped;
+    private final Counter failures;
+
+    public MatchShadowEvaluator(@Qualifier(MatchingConfig.SHADOW_MATCH_ENGINE) MatchEngine shadowEngine,
+                                UserRepository userRepository,
+                                PlatformTransactionManager transactionManager,
+                                @Qualifier(MatchingConfig.MATCH_SHADOW_EXECUTOR) Executor shadowExecutor,
+                                @Value("${matching.shadow.engine}") String engine,
+                                @Value("${matching.shadow.sample-rate:0.01}") double sampleRate,
+                                @Value("${matching.shadow.k:10}") int k,
+                                MeterRegistry meterRegistry) {
+        this.shadowEngine = shadowEngine;
+        this.userRepository = userRepository;
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+        this.shadowExecutor = shadowExecutor;
+        this.engine = engine;
+        this.sampleRate = sampleRate;
+        this.k = k;
+        this.overlap = DistributionSummary.builder("matching.shadow.overlap")
+                .description("Share of the live top K matches the shadow engine also returned")
+                .tag("engine", engine)
+                .register(meterRegistry);
+        this.rankCorrelation = DistributionSummary.builder("matching.shadow.rank.correlation")
+                .description("Spearman correlation of the positions of matches both engines returned in their top K")
+                .tag("engine", engine)
+                .register(meterRegistry);
+        this.liveLatency = Timer.builder("matching.shadow.latency")
+                .description("Time spent ranking the matches of shadowed requests")
+                .tags("engine", engine, "side", "live")
+                .register(meterRegistry);
+        this.shadowLatency = Timer.builder("matching.shadow.latency")
+                .description("Time spent ranking the matches of shadowed requests")
+                .tags("engine", engine, "side", "shadow")
+                .register(meterRegistry);
+        this.skipped = Counter.builder("matching.shadow.skipped")
+                .description("Sampled rankings not shadowed because all shadow threads were busy")
+                .tag("engine", engine)
+                .register(meterRegistry);
+        this.failures = Counter.builder("matching.shadow.failures")
+                .description("Shadow rankings that failed")
+                .tag("engine", engine)
+                .register(meterRegistry);
+    }
+
+    /**
+     * Runs on the request thread, so it only samples and hands off.
+     */
+    @EventListener
+    public void onRankingComputed(MatchRankingComputedEvent event) {
+        RankedMatches live = event.getRanking();
+        if (live.isPartial() || ThreadLocalRandom.current().nextDouble() >= sampleRate) {
+            return;
+        }
+        try {
+            shadowExecutor.execute(() -> shadow(live, event.getLatency()));
+        } catch (RejectedExecutionException e) {
+            skipped.increment();
+        }
+    }
+
+    private void shadow(RankedMatches live, Duration liveTook) {
+        try {
+            Optional<Shadowed> shadowed = readOnlyTransaction.execute(status -> userRepository.findById(live.getUserId())
+                    .filter(User::isActive)
+                    .map(user -> {
+                        long started = System.nanoTime();
+                        MatchPage page = shadowEngine.findMatches(user, 0, k, live.getFilter());
+                        return new Shadowed(page, Duration.ofNanos(System.nanoTime() - started));
+                    }));
+            if (shadowed == null || shadowed.isEmpty()) {
+                return;
+            }
+            Comparison comparison = compare(live.slice(0, k),
+                    shadowed.get().page().getMatches().stream().map(RankedMatch::getUserId).toList());
+            liveLatency.record(liveTook);
+            shadowLatency.record(shadowed.get().took());
+            if (comparison.getOverlap() >= 0.0) {
+                overlap.record(comparison.getOverlap());
+            }
+            if (comparison.getSharedMatches() >= 2) {
+                rankCorrelation.record(comparison.getRankCorrelation());
+            }
+        } catch (RuntimeException e) {
+            failures.increment();
+            log.warn("Shadow ranking with the {} engine failed for user {}", engine, live.getUserId(), e);
+        }
+    }
+
+    /**
+     * @param live   the live top K, best first.
+     * @param shadow the shadow top K, best first.
+     */
+    static Comparison compare(List<UUID> live, List<UUID> shadow) {
+        Map<UUID, Integer> shadowPositions = new HashMap<>();
+        for (int i = 0; i < shadow.size(); i++) {
+            shadowPositions.put(shadow.get(i), i);
+        }
+        // Positions in the shadow list of the users both returned, in live order
+        int[] shared = live.stream().filter(shadowPositions::containsKey).mapToInt(shadowPositions::get).toArray();
+        int n = shared.length;
+        double overlap = live.isEmpty() ? -1.0 : (double) n / live.size();
+        if (n < 2) {
+            return new Comparison(overlap, n, Double.NaN);
+        }
+        // Live ranks are 0..n-1 by construction; shadow ranks are the order of the shadow positions
+        double squaredDifferences = 0.0;
+        for (int liveRank = 0; liveRank < n; liveRank++) {
+            int shadowRank = 0;
+            for (int other : shared) {
+                if (other < shared[liveRank]) {
+                    shadowRank++;
+                }
+            }
+            squaredDifferences += (double) (liveRank - shadowRank) * (liveRank - shadowRank);
+        }
+        return new Comparison(overlap, n, 1.0 - 6.0 * squaredDifferences / ((double) n * ((double) n * n - 1)));
+    }
+
+    /**
+     * What has been compared so far, as served by the {@code matchshadow} actuator endpoint.
+     */
+    public Report report() {
+        return new Report(engine, sampleRate, k, overlap.count(), overlap.mean(), rankCorrelation.mean(),
+                liveLatency.mean(TimeUnit.MILLISECONDS), shadowLatency.mean(TimeUnit.MILLISECONDS),
+                shadowLatency.max(TimeUnit.MILLISECONDS), (long) skipped.count(), (long) failures.count());
+    }
+
+    private record Shadowed(MatchPage page, Duration took) {
+    }
+
+    @Getter
+    @AllArgsConstructor
+    public static class Comparison {
+        /** Share of the live top K also in the shadow top K; negative when the live ranking is empty. */
+        private final double overlap;
+        /** Users in both top K lists. */
+        private final int sharedMatches;
+        /** Spearman correlation over the shared users; {@code NaN} with fewer than two. */
+        private final double rankCorrelation;
+    }
+
+    @Getter
+    @AllArgsConstructor
+    public static class Report {
+        private final String engine;
+        private final double sampleRate;
+        private final int k;
+        private final long compared;
+        private final double meanOverlap;
+        private final double meanRankCorrelation;
+        private final double meanLiveLatencyMs;
+        private final double meanShadowLatencyMs;
+        private final double maxShadowLatencyMs;
+        private final long skipped;
+        private final long failures;
+    }
+}
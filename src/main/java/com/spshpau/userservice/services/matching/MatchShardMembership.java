@@ -0,0 +1,100 @@
+package com.spshpau.userservice.services.matching;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.cloud.client.ServiceInstance;
+import org.springframework.cloud.client.discovery.DiscoveryClient;
+import org.springframework.cloud.client.discovery.event.HeartbeatEvent;
+import org.springframework.cloud.client.discovery.event.InstanceRegisteredEvent;
+import org.springframework.cloud.client.serviceregistry.Registration;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Keeps the {@link MatchShardRing} of {@link MatchingIndex} in step with the instances of this service registered in
+ * discovery (Eureka), when {@code matching.engine=sharded}. The member list is re-read whenever the discovery client
+ * refreshes its registry ({@link HeartbeatEvent}), so instances joining or leaving reshard every instance within a
+ * refresh interval.
+ * <p>
+ * This instance is identified by {@code matching.shard.instance-id} if set, else by its service registration, and is
+ * always a member of its own ring, even before its registration shows up in discovery.
+ */
+@Component
+@Slf4j
+public class MatchShardMembership {
+
+    private static final String LOCAL = "local";
+
+    private final MatchingIndex matchingIndex;
+    private final DiscoveryClient discoveryClient;
+    private final ObjectProvider<Registration> registration;
+    private final String serviceId;
+    private final String instanceId;
+    private final boolean enabled;
+    private volatile Map<String, URI> memberUris = Map.of();
+
+    public MatchShardMembership(MatchingIndex matchingIndex,
+                                DiscoveryClient discoveryClient,
+                                ObjectProvider<Registration> registration,
+                                @Value("${spring.application.name}") String serviceId,
+                                @Value("${matching.shard.instance-id:}") String instanceId,
+                                @Value("${matching.engine:index}") String engine) {
+        this.matchingIndex = matchingIndex;
+        this.discoveryClient = discoveryClient;
+        this.registration = registration;
+        this.serviceId = serviceId;
+        this.instanceId = instanceId;
+        this.enabled = "sharded".equals(engine);
+    }
+
+    @EventListener({ApplicationReadyEvent.class, InstanceRegisteredEvent.class, HeartbeatEvent.class})
+    public void onDiscoveryChange() {
+        if (enabled) {
+            refresh();
+        }
+    }
+
+    /**
+     * Re-reads the registered instances and reshards the index if the member list changed.
+     */
+    public void refresh() {
+        String self = selfId();
+        Map<String, URI> uris = new HashMap<>();
+        for (ServiceInstance instance : discoveryClient.getInstances(serviceId)) {
+            String id = StringUtils.hasText(instance.getInstanceId()) ? instance.getInstanceId()
+                    : instance.getHost() + ":" + instance.getPort();
+            uris.put(id, instance.getUri());
+        }
+        List<String> members = new ArrayList<>(uris.keySet());
+        if (!uris.containsKey(self)) {
+            members.add(self);
+        }
+        memberUris = Map.copyOf(uris);
+        MatchShardRing ring = new MatchShardRing(members);
+        if (matchingIndex.reshard(ring)) {
+            log.info("Matching shard ring is now {} (this instance: {})", ring, self);
+        }
+    }
+
+    public String selfId() {
+        if (StringUtils.hasText(instanceId)) {
+            return instanceId;
+        }
+        Registration own = registration.getIfAvailable();
+        return own != null && StringUtils.hasText(own.getInstanceId()) ? own.getInstanceId() : LOCAL;
+    }
+
+    public Optional<URI> uriOf(String member) {
+        return Optional.ofNullable(memberUris.get(member));
+    }
+}
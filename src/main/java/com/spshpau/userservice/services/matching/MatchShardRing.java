@@ -0,0 +1,86 @@
+package com.spshpau.userservice.services.matching;
+
+import lombok.EqualsAndHashCode;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Assigns every user to one of the current service instances by rendezvous (highest random weight) hashing:
+ * each instance scores the user id and the highest score owns it. When an instance joins or leaves, only the users
+ * it gains or loses change owner, and every instance that sees the same member list computes the same owners.
+ */
+@EqualsAndHashCode(of = "members")
+public final class MatchShardRing {
+
+    private final List<String> members;
+    private final long[] memberSeeds;
+
+    /**
+     * @param members instance ids, in any order; they are sorted so that equal sets give equal rings.
+     */
+    public MatchShardRing(List<String> members) {
+        if (members.isEmpty()) {
+            throw new IllegalArgumentException("A shard ring needs at least one member");
+        }
+        this.members = members.stream().distinct().sorted().toList();
+        this.memberSeeds = new long[this.members.size()];
+        for (int i = 0; i < memberSeeds.length; i++) {
+            memberSeeds[i] = seed(this.members.get(i));
+        }
+    }
+
+    public List<String> getMembers() {
+        return members;
+    }
+
+    public int size() {
+        return members.size();
+    }
+
+    public int indexOf(String member) {
+        return members.indexOf(member);
+    }
+
+    /**
+     * @return the index in {@link #getMembers()} of the instance owning {@code userId}.
+     */
+    public int ownerIndex(UUID userId) {
+        long id = userId.getMostSignificantBits() * 31 + userId.getLeastSignificantBits();
+        int owner = 0;
+        long best = Long.MIN_VALUE;
+        for (int i = 0; i < memberSeeds.length; i++) {
+            long score = mix(memberSeeds[i] ^ id);
+            if (score > best) {
+                best = score;
+                owner = i;
+            }
+        }
+        return owner;
+    }
+
+    public String owner(UUID userId) {
+        return members.get(ownerIndex(userId));
+    }
+
+    @Override
+    public String toString() {
+        return members.toString();
+    }
+
+    private static long seed(String member) {
+        long hash = 0xcbf29ce484222325L;
+        for (byte b : member.getBytes(StandardCharsets.UTF_8)) {
+            hash = (hash ^ (b & 0xff)) * 0x100000001b3L;
+        }
+        return mix(hash);
+    }
+
+    /** Finalizer of SplitMix64. */
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+        z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+        return z ^ (z >>> 31);
+    }
+}
@@ -0,0 +1,105 @@
+package com.spshpau.userservice.services.matching;
+
+import com.spshpau.userservice.dto.matchdto.ShardMatchDto;
+import com.spshpau.userservice.dto.matchdto.ShardProfileDto;
+import com.spshpau.userservice.dto.matchdto.ShardTopKRequest;
+import com.spshpau.userservice.dto.matchdto.ShardTopKResponse;
+import com.spshpau.userservice.services.exceptions.ShardRingMismatchException;
+import com.spshpau.userservice.services.geo.GeoPoint;
+import com.spshpau.userservice.services.wrappers.TopKMatches;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+
+import java.util.Set;
+
+/**
+ * The shard side of sharded matching: ranks the users one member of the {@link MatchShardRing} owns, for a caller
+ * described entirely by the request. Serves both requests from other instances and the local shards of
+ * {@link ShardedMatchEngine}.
+ */
+@Component
+@RequiredArgsConstructor
+public class MatchShardService {
+
+    private final MatchingIndex matchingIndex;
+    private final TopKMatchEvaluator topKMatchEvaluator;
+
+    /**
+     * @throws ShardRingMismatchException if the request was split by a ring other than this instance's current one,
+     *                                    e.g. while a membership change has not reached every instance yet.
+     */
+    public ShardTopKResponse findShardTopK(ShardTopKRequest request) {
+        IndexedUser caller = matchingIndex.encodeDetached(toSnapshot(request));
+        CallerRelations relations = relations(request);
+        MatchFilter filter = MatchFilter.of(request.getFilter());
+        TopKMatches top = matchingIndex.readLocked(() -> {
+            MatchShardRing ring = matchingIndex.shardRing();
+            if (ring == null || !ring.getMembers().equals(request.getMembers())) {
+                throw new ShardRingMismatchException("Shard ring " + request.getMembers() + " does not match " + ring);
+            }
+            return topKMatchEvaluator.findShardTopK(caller, relations, request.getK(), filter, request.getMember());
+        });
+        return toResponse(top);
+    }
+
+    /**
+     * Ranks every user of the local index as a single shard, whatever the ring of the request, e.g. while this
+     * instance has no ring because the registry could not be read yet.
+     */
+    public ShardTopKResponse findUnshardedTopK(ShardTopKRequest request) {
+        IndexedUser caller = matchingIndex.encodeDetached(toSnapshot(request));
+        return toResponse(topKMatchEvaluator.findTopK(caller, relations(request), request.getK(),
+                MatchFilter.of(request.getFilter()), MatchDeadline.NONE));
+    }
+
+    private static CallerRelations relations(ShardTopKRequest request) {
+        return new CallerRelations(orEmpty(request.getExcludedUserIds()), orEmpty(request.getConnectedUserIds()));
+    }
+
+    private static ShardTopKResponse toResponse(TopKMatches top) {
+        return new ShardTopKResponse(top.getRanked().stream()
+                .map(mu -> new ShardMatchDto(mu.getUser().getId(), mu.getUser().getUsername(), mu.getScore()))
+                .toList(), top.getTotalCandidates());
+    }
+
+    static ShardTopKRequest toRequest(MatchingSnapshot caller, CallerRelations relations, MatchFilter filter,
+                                      MatchShardRing ring, String member, int k) {
+        ShardTopKRequest request = new ShardTopKRequest();
+        request.setMembers(ring.getMembers());
+        request.setMember(member);
+        request.setK(k);
+        request.setCallerId(caller.getUserId());
+        request.setCallerUsername(caller.getUsername());
+        request.setArtistProfile(toDto(caller.getArtistProfile()));
+        request.setProducerProfile(toDto(caller.getProducerProfile()));
+        if (caller.getLocation() != null) {
+            request.setLatitude(caller.getLocation().getLatitude());
+            request.setLongitude(caller.getLocation().getLongitude());
+        }
+        request.setExcludedUserIds(relations.getExcludedUserIds());
+        request.setConnectedUserIds(relations.getConnectedUserIds());
+        request.setFilter(filter.isEmpty() ? null : filter.toCriteria());
+        return request;
+    }
+
+    private static MatchingSnapshot toSnapshot(ShardTopKRequest request) {
+        GeoPoint location = request.getLatitude() == null || request.getLongitude() == null ? null
+                : new GeoPoint(request.getLatitude(), request.getLongitude());
+        return new MatchingSnapshot(request.getCallerId(), request.getCallerUsername(), true,
+                toProfile(request.getArtistProfile()), toProfile(request.getProducerProfile()), location);
+    }
+
+    private static ShardProfileDto toDto(MatchingSnapshot.Profile profile) {
+        return profile == null ? null : new ShardProfileDto(profile.isAvailability(), profile.getExperienceLevel(),
+                profile.getGenreIds(), profile.getSkillIds());
+    }
+
+    private static MatchingSnapshot.Profile toProfile(ShardProfileDto dto) {
+        return dto == null ? null : new MatchingSnapshot.Profile(dto.isAvailability(), dto.getExperienceLevel(),
+                orEmpty(dto.getGenreIds()), orEmpty(dto.getSkillIds()));
+    }
+
+    private static <T> Set<T> orEmpty(Set<T> set) {
+        return set == null ? Set.of() : set;
+    }
+}
@@ -0,0 +1,97 @@
+package com.spshpau.userservice.services.matching;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.util.LinkedMultiValueMap;
+import org.springframework.util.MultiValueMap;
+import org.springframework.util.StringUtils;
+import org.springframework.web.client.RestClient;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Optional;
+
+/**
+ * Access token that {@link ShardedMatchEngine} sends to the shard endpoint of other instances, obtained from the
+ * identity provider with the client-credentials grant and carrying the {@code matching.shard.scope} scope the
+ * endpoint requires. The token is reused until shortly before it expires.
+ * Without {@code matching.shard.token-uri} no token is sent, so other instances refuse the calls and every shard
+ * is ranked locally.
+ */
+@Component
+@Slf4j
+public class MatchShardTokenProvider {
+
+    // Renew this long before expiry, so a token never runs out while a shard call is in flight
+    private static final Duration EXPIRY_MARGIN = Duration.ofSeconds(30);
+
+    private final RestClient restClient;
+    private final String tokenUri;
+    private final String clientId;
+    private final String clientSecret;
+    private final String scope;
+    private volatile IssuedToken issued;
+
+    public MatchShardTokenProvider(RestClient.Builder restClientBuilder,
+                                   @Value("${matching.shard.token-uri:}") String tokenUri,
+                                   @Value("${matching.shard.client-id:}") String clientId,
+                                   @Value("${matching.shard.client-secret:}") String clientSecret,
+                                   @Value("${matching.shard.scope:matching-shard}") String scope) {
+        this.restClient = restClientBuilder.build();
+        this.tokenUri = tokenUri;
+        this.clientId = clientId;
+        this.clientSecret = clientSecret;
+        this.scope = scope;
+    }
+
+    /**
+     * @return the token, or empty if no token endpoint is configured.
+     */
+    public Optional<String> token() {
+        if (!StringUtils.hasText(tokenUri)) {
+            return Optional.empty();
+        }
+        IssuedToken current = issued;
+        if (current == null || current.isExpiring()) {
+            current = renew();
+        }
+        return Optional.of(current.value());
+    }
+
+    private synchronized IssuedToken renew() {
+        IssuedToken current = issued;
+        if (current != null && !current.isExpiring()) {
+            return current;
+        }
+        MultiValueMap<String, String> form = new LinkedMultiValueMap<>();
+        form.add("grant_type", "client_credentials");
+        form.add("client_id", clientId);
+        form.add("client_secret", clientSecret);
+        form.add("scope", scope);
+        TokenResponse response = restClient.post()
+                .uri(tokenUri)
+                .contentType(MediaType.APPLICATION_FORM_URLENCODED)
+                .body(form)
+                .retrieve()
+                .body(TokenResponse.class);
+        if (response == null || !StringUtils.hasText(response.accessToken())) {
+            throw new IllegalStateException("No access token from " + tokenUri);
+        }
+        issued = new IssuedToken(response.accessToken(), Instant.now().plusSeconds(response.expiresIn()));
+        log.debug("Obtained a shard access token valid for {}s", response.expiresIn());
+        return issued;
+    }
+
+    private record IssuedToken(String value, Instant expiresAt) {
+        boolean isExpiring() {
+            return Instant.now().plus(EXPIRY_MARGIN).isAfter(expiresAt);
+        }
+    }
+
+    private record TokenResponse(@JsonProperty("access_token") String accessToken,
+                                 @JsonProperty("expires_in") long expiresIn) {
+    }
+}
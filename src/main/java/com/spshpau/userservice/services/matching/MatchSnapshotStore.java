@@ -0,0 +1,54 @@
+package com.spshpau.userservice.services.matching;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import lombok.Getter;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.function.Predicate;
+
+/**
+ * Short-lived store of frozen {@link RankedMatches}, addressed by the snapshot id inside a {@link MatchCursor}.
+ * Snapshots expire {@code matching.snapshot.ttl} after they were taken; a client holding an expired cursor
+ * has to start over from the first page.
+ */
+@Component
+public class MatchSnapshotStore {
+
+    private final Cache<UUID, RankedMatches> snapshots;
+
+    /** How many ranked matches a ranking holds; pages beyond it are ranked on demand. */
+    @Getter
+    private final int depth;
+
+    public MatchSnapshotStore(@Value("${matching.snapshot.ttl:10m}") Duration ttl,
+                              @Value("${matching.snapshot.depth:500}") int depth,
+                              @Value("${matching.snapshot.max-entries:10000}") long maxEntries) {
+        this.depth = depth;
+        this.snapshots = Caffeine.newBuilder()
+                .expireAfterWrite(ttl)
+                .maximumSize(maxEntries)
+                .build();
+    }
+
+    public UUID put(RankedMatches ranking) {
+        UUID snapshotId = UUID.randomUUID();
+        snapshots.put(snapshotId, ranking);
+        return snapshotId;
+    }
+
+    public Optional<RankedMatches> get(UUID snapshotId) {
+        return Optional.ofNullable(snapshots.getIfPresent(snapshotId));
+    }
+
+    /**
+     * Drops every snapshot matching {@code stale}; cursors into them then report as expired.
+     */
+    public void invalidateIf(Predicate<RankedMatches> stale) {
+        snapshots.asMap().values().removeIf(stale);
+    }
+}
@@ -0,0 +1,71 @@
+package com.spshpau.userservice.services.matching;
+
+import com.spshpau.userservice.services.events.MatchingProfileChangedEvent;
+import com.spshpau.userservice.services.events.UserBlockChangedEvent;
+import com.spshpau.userservice.services.events.UserConnectionChangedEvent;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The K-th best match score of every user whose ranking has been computed or loaded, i.e. the score
+ * a newcomer has to beat to enter that user's top {@code matching.notify.top-k}. Used by {@link ReverseTopKFinder}.
+ * A user's threshold is forgotten when a write changes their own ranking, until it is ranked again.
+ */
+@Component
+public class MatchThresholds {
+
+    private final Map<UUID, Float> kthScores = new ConcurrentHashMap<>();
+    private final int topK;
+
+    public MatchThresholds(@Value("${matching.notify.top-k:10}") int topK) {
+        this.topK = topK;
+    }
+
+    public int getTopK() {
+        return topK;
+    }
+
+    public void record(RankedMatches ranking) {
+        if (ranking.size() >= topK) {
+            kthScores.put(ranking.getUserId(), ranking.getScores()[topK - 1]);
+        } else if (ranking.isComplete()) {
+            // Fewer than K candidates in total: anyone new gets in
+            kthScores.put(ranking.getUserId(), Float.NEGATIVE_INFINITY);
+        } else {
+            kthScores.remove(ranking.getUserId());
+        }
+    }
+
+    /**
+     * @return the K-th best score of the user, or {@code null} if the user's ranking is not known.
+     */
+    public Float kthScore(UUID userId) {
+        return kthScores.get(userId);
+    }
+
+    public void clear() {
+        kthScores.clear();
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onMatchingProfileChanged(MatchingProfileChangedEvent event) {
+        kthScores.remove(event.getUserId());
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onUserBlockChanged(UserBlockChangedEvent event) {
+        kthScores.remove(event.getBlockerId());
+        kthScores.remove(event.getBlockedId());
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onUserConnectionChanged(UserConnectionChangedEvent event) {
+        kthScores.remove(event.getUserId1());
+        kthScores.remove(event.getUserId2());
+    }
+}
@@ -0,0 +1,113 @@
+package com.spshpau.userservice.services.matching;
+
+import com.spshpau.userservice.config.MatchWeightProperties;
+import com.spshpau.userservice.model.enums.ExperienceLevel;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+
+import java.util.StringJoiner;
+
+/**
+ * A weight profile compiled for {@link MatchScorer}: scalar weights plus a flat table of experience points for
+ * every pair of experience ordinals, including {@link IndexedUser#NO_EXPERIENCE}, so scoring an experience pair
+ * is one array load instead of a distance switch. Immutable; a new profile is swapped in as a whole.
+ */
+@Getter
+@EqualsAndHashCode
+public final class MatchWeights {
+
+    private static final int STRIDE = ExperienceLevel.values().length + 1;
+
+    public static final MatchWeights DEFAULTS = compile(new MatchWeightProperties());
+
+    private final double connectedPenalty;
+    private final double oppositeRole;
+    private final double availability;
+    private final double specificGenre;
+    private final double sharedGenre;
+    private final double sharedSkill;
+    private final boolean rarityWeighted;
+    private final double proximity;
+    private final double proximityRadiusKm;
+    @Getter(lombok.AccessLevel.NONE)
+    private final double[] experienceByDistance;
+    @Getter(lombok.AccessLevel.NONE)
+    private final double[] experiencePairs;
+    private final double maxExperience;
+
+    private MatchWeights(MatchWeightProperties properties, double[] experienceByDistance) {
+        this.connectedPenalty = properties.getConnectedPenalty();
+        this.oppositeRole = properties.getOppositeRole();
+        this.availability = properties.getAvailability();
+        this.specificGenre = properties.getSpecificGenre();
+        this.sharedGenre = properties.getSharedGenre();
+        this.sharedSkill = properties.getSharedSkill();
+        this.rarityWeighted = properties.isRarityWeighted();
+        this.proximity = properties.getProximity();
+        this.proximityRadiusKm = properties.getProximityRadiusKm();
+        this.experienceByDistance = experienceByDistance;
+
+        // Row and column 0 stand for NO_EXPERIENCE and stay 0
+        this.experiencePairs = new double[STRIDE * STRIDE];
+        double max = 0.0;
+        for (int a = 1; a < STRIDE; a++) {
+            for (int b = 1; b < STRIDE; b++) {
+                int distance = Math.abs(a - b);
+                double points = distance < experienceByDistance.length ? experienceByDistance[distance] : 0.0;
+                experiencePairs[a * STRIDE + b] = points;
+                max = Math.max(max, points);
+            }
+        }
+        this.maxExperience = max;
+    }
+
+    /**
+     * @throws IllegalArgumentException if a weight is negative, which would break the pruning bounds of
+     *                                  {@link TopKMatchEvaluator}.
+     */
+    public static MatchWeights compile(MatchWeightProperties properties) {
+        double[] experience = properties.getExperienceByDistance().stream().mapToDouble(Double::doubleValue).toArray();
+        boolean negative = properties.getConnectedPenalty() < 0 || properties.getOppositeRole() < 0
+                || properties.getAvailability() < 0 || properties.getSpecificGenre() < 0
+                || properties.getSharedGenre() < 0 || properties.getSharedSkill() < 0 || properties.getProximity() < 0;
+        for (double points : experience) {
+            negative |= points < 0;
+        }
+        if (negative) {
+            throw new IllegalArgumentException("Match weights must not be negative");
+        }
+        if (!(properties.getProximityRadiusKm() > 0)) {
+            throw new IllegalArgumentException("Match proximity radius must be positive");
+        }
+        return new MatchWeights(properties, experience);
+    }
+
+    public double experience(byte level1, byte level2) {
+        return experiencePairs[(level1 + 1) * STRIDE + level2 + 1];
+    }
+
+    /**
+     * The most an opposite-role candidate can add through role, experience and availability.
+     */
+    public double roleBound() {
+        return oppositeRole + maxExperience + availability;
+    }
+
+    /**
+     * Proximity points of a candidate {@code distanceKm} away: the full weight at 0, falling linearly to 0 at the radius.
+     */
+    public double proximity(double distanceKm) {
+        return distanceKm < proximityRadiusKm ? proximity * (1.0 - distanceKm / proximityRadiusKm) : 0.0;
+    }
+
+    /**
+     * The experience points as a Postgres array literal, for the SQL engine.
+     */
+    public String getExperienceArray() {
+        StringJoiner array = new StringJoiner(",", "{", "}");
+        for (double points : experienceByDistance) {
+            array.add(Double.toString(points));
+        }
+        return array.toString();
+    }
+}
@@ -0,0 +1,62 @@
+package com.spshpau.userservice.services.matching;
+
+import com.spshpau.userservice.config.MatchWeightProperties;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.cloud.context.environment.EnvironmentChangeEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Component;
+
+/**
+ * Loads the {@code matching.weights.*} profile into {@link MatchScorer} and swaps it when the config server
+ * pushes a change ({@link EnvironmentChangeEvent} after {@code /actuator/refresh} or a bus refresh), without
+ * a restart. A swap invalidates only what was scored with the old weights: cached rankings and cursor snapshots,
+ * the top-K thresholds and the persisted match lists. A profile that fails to compile is logged and ignored.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class MatchWeightsRefresher {
+
+    private final Environment environment;
+    private final MatchScorer matchScorer;
+    private final MatchCacheEvictor matchCacheEvictor;
+    private final MatchThresholds matchThresholds;
+    private final UserMatchStore userMatchStore;
+
+    @PostConstruct
+    void load() {
+        matchScorer.setWeights(MatchWeights.compile(bind()));
+    }
+
+    @EventListener
+    public void onEnvironmentChange(EnvironmentChangeEvent event) {
+        if (event.getKeys().stream().noneMatch(key -> key.startsWith(MatchWeightProperties.PREFIX))) {
+            return;
+        }
+        MatchWeights weights;
+        try {
+            weights = MatchWeights.compile(bind());
+        } catch (IllegalArgumentException e) {
+            log.warn("Ignoring invalid match weights, keeping the current ones: {}", e.getMessage());
+            return;
+        }
+        if (weights.equals(matchScorer.getWeights())) {
+            return;
+        }
+        matchScorer.setWeights(weights);
+        matchCacheEvictor.evictAll();
+        matchThresholds.clear();
+        userMatchStore.deleteAll();
+        log.info("Match weights swapped; match caches and persisted match lists dropped");
+    }
+
+    private MatchWeightProperties bind() {
+        return Binder.get(environment)
+                .bind(MatchWeightProperties.PREFIX, MatchWeightProperties.class)
+                .orElseGet(MatchWeightProperties::new);
+    }
+}
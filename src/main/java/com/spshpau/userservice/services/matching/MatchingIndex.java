@@ -0,0 +1,789 @@
+package com.spshpau.userservice.services.matching;
+
+import com.spshpau.userservice.model.enums.ProfileType;
+import com.spshpau.userservice.services.geo.GeoPoint;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Supplier;
+
+/**
+ * Resident matching index.
+ * Every {@code Genre}/{@code Skill} UUID is mapped to a dense int the first time it is seen, and every user
+ * is kept as an {@link IndexedUser} in a dense slot array, so the match scorer works on primitives only.
+ * The block graph is mirrored as well, so candidate exclusion needs no query either.
+ * Dictionary ids and user slots are never reused or reassigned.
+ * <p>
+ * For candidate generation the index also keeps posting lists of the <em>active</em> users per genre,
+ * per artist skill and per role, as bitsets over user slots. {@link TopKMatchEvaluator} walks them
+ * inside {@link #readLocked(Supplier)}. The same postings narrow the candidates down to a {@link MatchFilter}
+ * before any of them is scored ({@link #retain}).
+ * <p>
+ * Alongside the postings it counts, per genre and per skill, the active profiles holding it, adjusting the counts
+ * as each user is posted or unposted. After every write these are turned into rarity weights
+ * ({@link #genreRarity()}, {@link #skillRarity()}): {@code 1 + ln((1 + profiles) / (1 + profiles holding it))},
+ * i.e. a smoothed inverse document frequency that is 1 for a genre everybody has and grows as it gets rarer.
+ * The arrays are replaced, never modified, so a scorer may hold on to one.
+ * The index also carries the current {@link GenreSimilarityMatrix}, keyed by the same genre ids.
+ * <p>
+ * Active users with a known location are also posted into a fixed grid of {@value #CELL_DEGREES}-degree cells,
+ * so the users within a radius ({@link #slotsWithin}, {@link #usersNear}) are found by visiting the few cells the
+ * radius overlaps and checking exact distances there, instead of measuring the distance to everyone.
+ * <p>
+ * Once {@link #enableLsh} has been called, active users are also filed under the MinHash band keys of their combined
+ * genre and skill set ({@link MinHashLsh}), so {@link #lshCandidates} returns the users likely to share much of the
+ * caller's set from a few bucket lookups, for approximate ranking of very large populations.
+ * <p>
+ * With a {@link MatchShardRing} set ({@link #reshard}), every slot is also assigned to the instance owning the user,
+ * so an instance can rank just its own share ({@link #shardSlots}). The index itself stays complete on every
+ * instance, which is what lets any instance encode any caller, stand in for an unreachable one and reshard
+ * without reloading.
+ * <p>
+ * The index is loaded once at startup by {@link MatchingIndexLoader} and then kept current in place
+ * by {@link MatchingIndexMaintainer}.
+ */
+@Component
+@Slf4j
+public class MatchingIndex {
+
+    static final double CELL_DEGREES = 0.5;
+    private static final int GRID_COLUMNS = (int) (360 / CELL_DEGREES);
+    private static final int GRID_ROWS = (int) (180 / CELL_DEGREES);
+    private static final double KM_PER_DEGREE = 111.195;
+
+    private final Map<UUID, Integer> genreIds = new ConcurrentHashMap<>();
+    private final Map<UUID, Integer> skillIds = new ConcurrentHashMap<>();
+    private final AtomicInteger nextGenreId = new AtomicInteger();
+    private final AtomicInteger nextSkillId = new AtomicInteger();
+    private final Map<UUID, Integer> userSlots = new HashMap<>();
+    private final Map<UUID, Set<UUID>> blocking = new HashMap<>();
+    private final Map<UUID, Set<UUID>> blockedBy = new HashMap<>();
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private IndexedUser[] users = new IndexedUser[1024];
+    private int userCount;
+    private volatile boolean ready;
+
+    // Posting lists over user slots; active users only.
+    private long[] activeSlots = Bitsets.EMPTY;
+    private long[] artistSlots = Bitsets.EMPTY;
+    private long[] producerSlots = Bitsets.EMPTY;
+    private long[][] genrePostings = new long[64][];
+    private long[][] skillPostings = new long[64][];
+
+    // Active profiles holding each genre (artist and producer profiles count separately) or artist skill
+    private int[] genreCounts = new int[64];
+    private int[] skillCounts = new int[64];
+    private int genreProfiles;
+    private int skillProfiles;
+    private volatile float[] genreRarity = new float[0];
+    private volatile float[] skillRarity = new float[0];
+    private volatile GenreSimilarityMatrix genreSimilarity = GenreSimilarityMatrix.NONE;
+    // Grid cell to active located users in it, over user slots
+    private final Map<Integer, long[]> geoCells = new HashMap<>();
+    // LSH band key to the active users filed under it; only maintained once enabled
+    private MinHashLsh lsh;
+    private final Map<Long, SlotList> lshBuckets = new HashMap<>();
+    // Slots owned by each member of the shard ring, in ring order; only maintained once a ring is set
+    private MatchShardRing shardRing;
+    private long[][] shardSlots = new long[0][];
+
+    public boolean isReady() {
+        return ready;
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return userCount;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public int genreId(UUID genreId) {
+        return genreIds.computeIfAbsent(genreId, id -> nextGenreId.getAndIncrement());
+    }
+
+    public int skillId(UUID skillId) {
+        return skillIds.computeIfAbsent(skillId, id -> nextSkillId.getAndIncrement());
+    }
+
+    public Optional<IndexedUser> get(UUID userId) {
+        lock.readLock().lock();
+        try {
+            Integer slot = userSlots.get(userId);
+            return slot == null ? Optional.empty() : Optional.of(users[slot]);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Runs {@code reader} while holding the read lock, so the slot-level accessors below
+     * all see the same version of the index.
+     */
+    public <T> T readLocked(Supplier<T> reader) {
+        lock.readLock().lock();
+        try {
+            return reader.get();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Slot-level accessors; callers must hold the read lock.
+
+    int slotOf(UUID userId) {
+        Integer slot = userSlots.get(userId);
+        return slot == null ? -1 : slot;
+    }
+
+    IndexedUser userAt(int slot) {
+        return users[slot];
+    }
+
+    long[] activeSlots() {
+        return activeSlots;
+    }
+
+    long[] artistSlots() {
+        return artistSlots;
+    }
+
+    long[] producerSlots() {
+        return producerSlots;
+    }
+
+    long[] genrePosting(int genreId) {
+        return posting(genrePostings, genreId);
+    }
+
+    long[] skillPosting(int skillId) {
+        return posting(skillPostings, skillId);
+    }
+
+    /**
+     * Users sharing a term with {@code candidate}: the opposite role, a genre, or an artist skill. Apart from a
+     * proximity boost, only they can score it above zero.
+     */
+    long[] slotsSharingATerm(IndexedUser candidate) {
+        long[] reach = Bitsets.EMPTY;
+        if (candidate.isArtist()) {
+            reach = Bitsets.or(reach, producerSlots);
+        }
+        if (candidate.isProducer()) {
+            reach = Bitsets.or(reach, artistSlots);
+        }
+        long[] genres = candidate.getAllGenres();
+        for (int g = Bitsets.nextSetBit(genres, 0); g >= 0; g = Bitsets.nextSetBit(genres, g + 1)) {
+            reach = Bitsets.or(reach, genrePosting(g));
+        }
+        if (candidate.isArtist()) {
+            long[] skills = candidate.getArtistSkills();
+            for (int s = Bitsets.nextSetBit(skills, 0); s >= 0; s = Bitsets.nextSetBit(skills, s + 1)) {
+                reach = Bitsets.or(reach, skillPosting(s));
+            }
+        }
+        return reach;
+    }
+
+    /**
+     * Rarity weight per dense genre id; ids beyond the array weigh 1.
+     */
+    float[] genreRarity() {
+        return genreRarity;
+    }
+
+    /**
+     * Rarity weight per dense skill id; ids beyond the array weigh 1.
+     */
+    float[] skillRarity() {
+        return skillRarity;
+    }
+
+    /**
+     * Clears the slots in words {@code [fromWord, toWord)} of {@code slots} whose user does not pass {@code filter};
+     * callers must hold the read lock. The role and genre postings rule out most slots word by word, so only the
+     * slots left are checked one by one.
+     */
+    void retain(MatchFilter filter, long[] slots, int fromWord, int toWord) {
+        if (filter.isEmpty()) {
+            return;
+        }
+        long[] genres = knownGenreIds(filter.getGenreIds());
+        long[] candidates = filter.getRole() == ProfileType.ARTIST ? artistSlots
+                : filter.getRole() == ProfileType.PRODUCER ? producerSlots
+                : Bitsets.or(artistSlots, producerSlots);
+        if (!filter.getGenreIds().isEmpty()) {
+            long[] anyGenre = Bitsets.EMPTY;
+            for (int g = Bitsets.nextSetBit(genres, 0); g >= 0; g = Bitsets.nextSetBit(genres, g + 1)) {
+                anyGenre = Bitsets.or(anyGenre, genrePosting(g));
+            }
+            candidates = Bitsets.and(candidates, anyGenre);
+        }
+        int to = Math.min(toWord, slots.length);
+        for (int w = fromWord; w < to; w++) {
+            long word = w < candidates.length ? slots[w] & candidates[w] : 0L;
+            for (long rest = word; rest != 0; rest &= rest - 1) {
+                int slot = (w << 6) + Long.numberOfTrailingZeros(rest);
+                if (!filter.accepts(users[slot], genres)) {
+                    word &= ~(1L << slot);
+                }
+            }
+            slots[w] = word;
+        }
+    }
+
+    /**
+     * Whether {@code user} passes {@code filter}, e.g. for patching a filtered ranking after a profile change.
+     */
+    public boolean accepts(MatchFilter filter, IndexedUser user) {
+        return filter.accepts(user, knownGenreIds(filter.getGenreIds()));
+    }
+
+    /**
+     * Dense ids of the genres the index has met; unknown genres are left out rather than allocated an id.
+     */
+    long[] knownGenreIds(Set<UUID> ids) {
+        List<Integer> bits = new ArrayList<>(ids.size());
+        for (UUID id : ids) {
+            Integer bit = genreIds.get(id);
+            if (bit != null) {
+                bits.add(bit);
+            }
+        }
+        return Bitsets.of(bits);
+    }
+
+    /**
+     * Active users within {@code km} of the point; callers must hold the read lock.
+     */
+    long[] slotsWithin(double latitude, double longitude, double km) {
+        long[] result = Bitsets.EMPTY;
+        double latitudeSpan = km / KM_PER_DEGREE;
+        int fromRow = Math.max(0, row(latitude - latitudeSpan));
+        int toRow = Math.min(GRID_ROWS - 1, row(latitude + latitudeSpan));
+        double widestLatitude = Math.min(90.0, Math.abs(latitude) + latitudeSpan);
+        double longitudeSpan = widestLatitude >= 89.0 ? 180.0 : latitudeSpan / Math.cos(Math.toRadians(widestLatitude));
+        int fromColumn = column(longitude - longitudeSpan);
+        int toColumn = column(longitude + longitudeSpan);
+        if (longitudeSpan >= 180.0 || toColumn - fromColumn + 1 >= GRID_COLUMNS) {
+            fromColumn = 0;
+            toColumn = GRID_COLUMNS - 1;
+        }
+        for (int row = fromRow; row <= toRow; row++) {
+            for (int column = fromColumn; column <= toColumn; column++) {
+                long[] cell = geoCells.get(row * GRID_COLUMNS + Math.floorMod(column, GRID_COLUMNS));
+                if (cell == null) {
+                    continue;
+                }
+                for (int slot = Bitsets.nextSetBit(cell, 0); slot >= 0; slot = Bitsets.nextSetBit(cell, slot + 1)) {
+                    IndexedUser user = users[slot];
+                    if (GeoPoint.distanceKm(latitude, longitude, user.getLatitude(), user.getLongitude()) <= km) {
+                        result = Bitsets.set(result, slot);
+                    }
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Returns the ids of the active users within {@code km} of the user, other than the user itself,
+     * or empty if the user is unknown or has no known location.
+     */
+    public Optional<Set<UUID>> usersNear(UUID userId, double km) {
+        lock.readLock().lock();
+        try {
+            Integer slot = userSlots.get(userId);
+            if (slot == null || !users[slot].hasLocation()) {
+                return Optional.empty();
+            }
+            long[] near = slotsWithin(users[slot].getLatitude(), users[slot].getLongitude(), km);
+            Set<UUID> result = new HashSet<>();
+            for (int s = Bitsets.nextSetBit(near, 0); s >= 0; s = Bitsets.nextSetBit(near, s + 1)) {
+                if (s != slot) {
+                    result.add(users[s].getId());
+                }
+            }
+            return Optional.of(result);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Starts maintaining MinHash LSH buckets with the given banding, filing every active user already present.
+     * Calling it again with another banding rebuilds the buckets.
+     */
+    public void enableLsh(int bands, int rows) {
+        MinHashLsh banding = new MinHashLsh(bands, rows);
+        lock.writeLock().lock();
+        try {
+            lsh = banding;
+            lshBuckets.clear();
+            for (int slot = 0; slot < userCount; slot++) {
+                if (users[slot].isActive()) {
+                    fileLsh(slot, users[slot]);
+                }
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+        log.info("Matching index LSH enabled with {} bands of {} rows", bands, rows);
+    }
+
+    public boolean isLshEnabled() {
+        lock.readLock().lock();
+        try {
+            return lsh != null;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Active users sharing at least one LSH band key with {@code caller}, as ascending distinct slots;
+     * callers must hold the read lock. Empty when LSH is not enabled or the caller has no genres or skills.
+     */
+    int[] lshCandidates(IndexedUser caller) {
+        if (lsh == null) {
+            return new int[0];
+        }
+        long[] keys = lsh.bandKeys(caller);
+        int size = 0;
+        int[] slots = new int[0];
+        for (long key : keys) {
+            SlotList bucket = lshBuckets.get(key);
+            if (bucket != null) {
+                slots = Arrays.copyOf(slots, Math.max(slots.length, size + bucket.size));
+                System.arraycopy(bucket.slots, 0, slots, size, bucket.size);
+                size += bucket.size;
+            }
+        }
+        Arrays.sort(slots, 0, size);
+        int distinct = 0;
+        for (int i = 0; i < size; i++) {
+            if (distinct == 0 || slots[i] != slots[distinct - 1]) {
+                slots[distinct++] = slots[i];
+            }
+        }
+        return Arrays.copyOf(slots, distinct);
+    }
+
+    /**
+     * Picks an active user uniformly at random, or empty if none turns up after a few tries.
+     */
+    public Optional<IndexedUser> randomActiveUser(Random random) {
+        lock.readLock().lock();
+        try {
+            for (int attempt = 0; attempt < 64 && userCount > 0; attempt++) {
+                IndexedUser user = users[random.nextInt(userCount)];
+                if (user.isActive()) {
+                    return Optional.of(user);
+                }
+            }
+            return Optional.empty();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Assigns every user to its owner in {@code ring}; users added later are assigned as they arrive.
+     *
+     * @return whether the ring differs from the current one.
+     */
+    public boolean reshard(MatchShardRing ring) {
+        lock.writeLock().lock();
+        try {
+            if (ring.equals(shardRing)) {
+                return false;
+            }
+            shardRing = ring;
+            shardSlots = new long[ring.size()][];
+            Arrays.fill(shardSlots, Bitsets.EMPTY);
+            for (int slot = 0; slot < userCount; slot++) {
+                assignShard(slot, users[slot].getId());
+            }
+            return true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public MatchShardRing shardRing() {
+        lock.readLock().lock();
+        try {
+            return shardRing;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Slots owned by {@code member} of the current ring; callers must hold the read lock.
+     * Empty if there is no ring or the member is not in it.
+     */
+    long[] shardSlots(String member) {
+        int index = shardRing == null ? -1 : shardRing.indexOf(member);
+        return index < 0 ? Bitsets.EMPTY : shardSlots[index];
+    }
+
+    private void assignShard(int slot, UUID userId) {
+        int owner = shardRing.ownerIndex(userId);
+        shardSlots[owner] = Bitsets.set(shardSlots[owner], slot);
+    }
+
+    public GenreSimilarityMatrix genreSimilarity() {
+        return genreSimilarity;
+    }
+
+    /**
+     * Swaps in a new similarity matrix, under the write lock so a read-locked evaluation sees one matrix throughout.
+     *
+     * @return whether it differs from the current one.
+     */
+    public boolean replaceGenreSimilarity(GenreSimilarityMatrix matrix) {
+        lock.writeLock().lock();
+        try {
+            if (matrix.equals(genreSimilarity)) {
+                return false;
+            }
+            genreSimilarity = matrix;
+            return true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Returns the ids of every user {@code userId} has blocked or is blocked by.
+     */
+    public Set<UUID> blockRelations(UUID userId) {
+        lock.readLock().lock();
+        try {
+            Set<UUID> result = new HashSet<>(blocking.getOrDefault(userId, Set.of()));
+            result.addAll(blockedBy.getOrDefault(userId, Set.of()));
+            return result;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public void addBlock(UUID blockerId, UUID blockedId) {
+        lock.writeLock().lock();
+        try {
+            storeBlock(blockerId, blockedId);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void removeBlock(UUID blockerId, UUID blockedId) {
+        lock.writeLock().lock();
+        try {
+            removeLink(blocking, blockerId, blockedId);
+            removeLink(blockedBy, blockedId, blockerId);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public IndexedUser put(MatchingSnapshot snapshot) {
+        IndexedUser encoded = encode(snapshot);
+        lock.writeLock().lock();
+        try {
+            store(encoded);
+            updateRarity();
+        } finally {
+            lock.writeLock().unlock();
+        }
+        return encoded;
+    }
+
+    /**
+     * Replaces the whole population and block graph, e.g. on the initial load from the database.
+     * Encoding happens outside the write lock so readers are only blocked for the final swap.
+     *
+     * @param blocks blocker id to blocked ids.
+     */
+    public void replaceAll(Collection<MatchingSnapshot> snapshots, Map<UUID, Set<UUID>> blocks) {
+        List<IndexedUser> encoded = new ArrayList<>(snapshots.size());
+        for (MatchingSnapshot snapshot : snapshots) {
+            encoded.add(encode(snapshot));
+        }
+        lock.writeLock().lock();
+        try {
+            userSlots.clear();
+            users = new IndexedUser[Math.max(1024, encoded.size() * 2)];
+            userCount = 0;
+            Arrays.fill(shardSlots, Bitsets.EMPTY);
+            activeSlots = Bitsets.EMPTY;
+            artistSlots = Bitsets.EMPTY;
+            producerSlots = Bitsets.EMPTY;
+            genrePostings = new long[Math.max(64, genreIds.size())][];
+            skillPostings = new long[Math.max(64, skillIds.size())][];
+            genreCounts = new int[Math.max(64, genreIds.size())];
+            skillCounts = new int[Math.max(64, skillIds.size())];
+            geoCells.clear();
+            lshBuckets.clear();
+            genreProfiles = 0;
+            skillProfiles = 0;
+            encoded.forEach(this::store);
+            updateRarity();
+            blocking.clear();
+            blockedBy.clear();
+            blocks.forEach((blockerId, blockedIds) -> blockedIds.forEach(blockedId -> storeBlock(blockerId, blockedId)));
+            ready = true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+        log.info("Matching index loaded with {} users, {} genres, {} skills", encoded.size(), genreIds.size(), skillIds.size());
+    }
+
+    private void store(IndexedUser user) {
+        Integer slot = userSlots.get(user.getId());
+        if (slot == null) {
+            slot = userCount++;
+            if (slot == users.length) {
+                users = Arrays.copyOf(users, users.length * 2);
+            }
+            userSlots.put(user.getId(), slot);
+            if (shardRing != null) {
+                assignShard(slot, user.getId());
+            }
+        }
+        IndexedUser previous = users[slot];
+        if (previous != null) {
+            unpost(slot, previous);
+        }
+        users[slot] = user;
+        post(slot, user);
+    }
+
+    private void post(int slot, IndexedUser user) {
+        if (!user.isActive()) {
+            return;
+        }
+        activeSlots = Bitsets.set(activeSlots, slot);
+        if (user.isArtist()) {
+            artistSlots = Bitsets.set(artistSlots, slot);
+        }
+        if (user.isProducer()) {
+            producerSlots = Bitsets.set(producerSlots, slot);
+        }
+        long[] genres = user.getAllGenres();
+        for (int g = Bitsets.nextSetBit(genres, 0); g >= 0; g = Bitsets.nextSetBit(genres, g + 1)) {
+            genrePostings = ensureCapacity(genrePostings, g);
+            genrePostings[g] = Bitsets.set(genrePosting(g), slot);
+        }
+        long[] skills = user.getArtistSkills();
+        for (int s = Bitsets.nextSetBit(skills, 0); s >= 0; s = Bitsets.nextSetBit(skills, s + 1)) {
+            skillPostings = ensureCapacity(skillPostings, s);
+            skillPostings[s] = Bitsets.set(skillPosting(s), slot);
+        }
+        count(user, 1);
+        if (user.hasLocation()) {
+            geoCells.compute(cell(user), (cell, located) -> Bitsets.set(located == null ? Bitsets.EMPTY : located, slot));
+        }
+        if (lsh != null) {
+            fileLsh(slot, user);
+        }
+    }
+
+    private void fileLsh(int slot, IndexedUser user) {
+        for (long key : lsh.bandKeys(user)) {
+            lshBuckets.computeIfAbsent(key, k -> new SlotList()).add(slot);
+        }
+    }
+
+    private void unpost(int slot, IndexedUser user) {
+        if (user.isActive()) {
+            count(user, -1);
+        }
+        if (user.hasLocation()) {
+            long[] cell = geoCells.get(cell(user));
+            if (cell != null) {
+                Bitsets.clear(cell, slot);
+            }
+        }
+        if (lsh != null && user.isActive()) {
+            for (long key : lsh.bandKeys(user)) {
+                SlotList bucket = lshBuckets.get(key);
+                if (bucket != null && bucket.remove(slot) && bucket.size == 0) {
+                    lshBuckets.remove(key);
+                }
+            }
+        }
+        Bitsets.clear(activeSlots, slot);
+        Bitsets.clear(artistSlots, slot);
+        Bitsets.clear(producerSlots, slot);
+        long[] genres = user.getAllGenres();
+        for (int g = Bitsets.nextSetBit(genres, 0); g >= 0; g = Bitsets.nextSetBit(genres, g + 1)) {
+            Bitsets.clear(genrePosting(g), slot);
+        }
+        long[] skills = user.getArtistSkills();
+        for (int s = Bitsets.nextSetBit(skills, 0); s >= 0; s = Bitsets.nextSetBit(skills, s + 1)) {
+            Bitsets.clear(skillPosting(s), slot);
+        }
+    }
+
+    private static int cell(IndexedUser user) {
+        return Math.min(GRID_ROWS - 1, row(user.getLatitude())) * GRID_COLUMNS
+                + Math.floorMod(column(user.getLongitude()), GRID_COLUMNS);
+    }
+
+    private static int row(double latitude) {
+        return (int) Math.floor((latitude + 90.0) / CELL_DEGREES);
+    }
+
+    private static int column(double longitude) {
+        return (int) Math.floor((longitude + 180.0) / CELL_DEGREES);
+    }
+
+    private void count(IndexedUser user, int delta) {
+        if (user.isArtist()) {
+            genreProfiles += delta;
+            skillProfiles += delta;
+            genreCounts = count(genreCounts, user.getArtistGenres(), delta);
+            skillCounts = count(skillCounts, user.getArtistSkills(), delta);
+        }
+        if (user.isProducer()) {
+            genreProfiles += delta;
+            genreCounts = count(genreCounts, user.getProducerGenres(), delta);
+        }
+    }
+
+    private static int[] count(int[] counts, long[] ids, int delta) {
+        for (int id = Bitsets.nextSetBit(ids, 0); id >= 0; id = Bitsets.nextSetBit(ids, id + 1)) {
+            if (id >= counts.length) {
+                counts = Arrays.copyOf(counts, Math.max(id + 1, counts.length * 2));
+            }
+            counts[id] += delta;
+        }
+        return counts;
+    }
+
+    private void updateRarity() {
+        genreRarity = rarity(genreCounts, genreProfiles, genreIds.size());
+        skillRarity = rarity(skillCounts, skillProfiles, skillIds.size());
+    }
+
+    private static float[] rarity(int[] counts, int profiles, int ids) {
+        float[] rarity = new float[Math.max(ids, counts.length)];
+        for (int id = 0; id < rarity.length; id++) {
+            int count = id < counts.length ? counts[id] : 0;
+            rarity[id] = (float) (1.0 + Math.log((1.0 + profiles) / (1.0 + count)));
+        }
+        return rarity;
+    }
+
+    private static long[] posting(long[][] postings, int id) {
+        long[] posting = id < postings.length ? postings[id] : null;
+        return posting == null ? Bitsets.EMPTY : posting;
+    }
+
+    private static long[][] ensureCapacity(long[][] postings, int id) {
+        return id < postings.length ? postings : Arrays.copyOf(postings, Math.max(id + 1, postings.length * 2));
+    }
+
+    private void storeBlock(UUID blockerId, UUID blockedId) {
+        blocking.computeIfAbsent(blockerId, id -> new HashSet<>()).add(blockedId);
+        blockedBy.computeIfAbsent(blockedId, id -> new HashSet<>()).add(blockerId);
+    }
+
+    private void removeLink(Map<UUID, Set<UUID>> links, UUID from, UUID to) {
+        Set<UUID> targets = links.get(from);
+        if (targets != null && targets.remove(to) && targets.isEmpty()) {
+            links.remove(from);
+        }
+    }
+
+    /**
+     * Encodes a user without storing it, e.g. a caller whose snapshot came from another instance.
+     */
+    public IndexedUser encodeDetached(MatchingSnapshot snapshot) {
+        return encode(snapshot);
+    }
+
+    private IndexedUser encode(MatchingSnapshot snapshot) {
+        int flags = snapshot.isActive() ? IndexedUser.ACTIVE : 0;
+        byte artistExperience = IndexedUser.NO_EXPERIENCE;
+        byte producerExperience = IndexedUser.NO_EXPERIENCE;
+        long[] artistGenres = Bitsets.EMPTY;
+        long[] artistSkills = Bitsets.EMPTY;
+        long[] producerGenres = Bitsets.EMPTY;
+
+        MatchingSnapshot.Profile artist = snapshot.getArtistProfile();
+        if (artist != null) {
+            flags |= IndexedUser.ARTIST;
+            if (artist.isAvailability()) {
+                flags |= IndexedUser.ARTIST_AVAILABLE;
+            }
+            artistExperience = experienceOrdinal(artist);
+            artistGenres = encodeIds(artist.getGenreIds(), true);
+            artistSkills = encodeIds(artist.getSkillIds(), false);
+        }
+        MatchingSnapshot.Profile producer = snapshot.getProducerProfile();
+        if (producer != null) {
+            flags |= IndexedUser.PRODUCER;
+            if (producer.isAvailability()) {
+                flags |= IndexedUser.PRODUCER_AVAILABLE;
+            }
+            producerExperience = experienceOrdinal(producer);
+            producerGenres = encodeIds(producer.getGenreIds(), true);
+        }
+        GeoPoint location = snapshot.getLocation();
+        return new IndexedUser(snapshot.getUserId(), snapshot.getUsername(), flags,
+                artistExperience, producerExperience,
+                artistGenres, producerGenres, Bitsets.or(artistGenres, producerGenres), artistSkills,
+                location == null ? Double.NaN : location.getLatitude(),
+                location == null ? Double.NaN : location.getLongitude());
+    }
+
+    private byte experienceOrdinal(MatchingSnapshot.Profile profile) {
+        return profile.getExperienceLevel() == null
+                ? IndexedUser.NO_EXPERIENCE
+                : (byte) profile.getExperienceLevel().ordinal();
+    }
+
+    private long[] encodeIds(Set<UUID> ids, boolean genres) {
+        if (ids == null || ids.isEmpty()) {
+            return Bitsets.EMPTY;
+        }
+        List<Integer> bits = new ArrayList<>(ids.size());
+        for (UUID id : ids) {
+            bits.add(genres ? genreId(id) : skillId(id));
+        }
+        return Bitsets.of(bits);
+    }
+
+    /** Unordered, growable list of slots; removal scans the list. */
+    private static final class SlotList {
+        private int[] slots = new int[4];
+        private int size;
+
+        void add(int slot) {
+            if (size == slots.length) {
+                slots = Arrays.copyOf(slots, size * 2);
+            }
+            slots[size++] = slot;
+        }
+
+        boolean remove(int slot) {
+            for (int i = 0; i < size; i++) {
+                if (slots[i] == slot) {
+                    slots[i] = slots[--size];
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+}
@@ -0,0 +1,89 @@
+package com.spshpau.userservice.services.matching;
+
+import com.spshpau.userservice.repositories.ArtistProfileRepository;
+import com.spshpau.userservice.repositories.ProducerProfileRepository;
+import com.spshpau.userservice.repositories.UserRepository;
+import com.spshpau.userservice.repositories.projections.MatchingLinkRow;
+import com.spshpau.userservice.repositories.projections.ProfileMatchingRow;
+import com.spshpau.userservice.repositories.projections.UserMatchingRow;
+import com.spshpau.userservice.services.geo.Gazetteer;
+import com.spshpau.userservice.services.geo.GeoPoint;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.stereotype.Component;
+
+import java.util.*;
+
+/**
+ * Fills {@link MatchingIndex} from the database with a handful of scalar queries (no entity graphs).
+ * The load runs once, before the web server starts accepting requests; afterwards the index is kept
+ * current by {@link MatchingIndexMaintainer}.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class MatchingIndexLoader implements SmartInitializingSingleton {
+
+    private final MatchingIndex matchingIndex;
+    private final UserRepository userRepository;
+    private final ArtistProfileRepository artistProfileRepository;
+    private final ProducerProfileRepository producerProfileRepository;
+    private final Gazetteer gazetteer;
+
+    @Override
+    public void afterSingletonsInstantiated() {
+        load();
+    }
+
+    public void load() {
+        long start = System.currentTimeMillis();
+        Map<UUID, MatchingSnapshot.Profile> artistProfiles = loadProfiles(
+                artistProfileRepository.findAllMatchingRows(),
+                groupLinks(artistProfileRepository.findAllGenreLinks()),
+                groupLinks(artistProfileRepository.findAllSkillLinks()));
+        Map<UUID, MatchingSnapshot.Profile> producerProfiles = loadProfiles(
+                producerProfileRepository.findAllMatchingRows(),
+                groupLinks(producerProfileRepository.findAllGenreLinks()),
+                Map.of());
+
+        List<UserMatchingRow> userRows = userRepository.findAllMatchingRows();
+        List<MatchingSnapshot> snapshots = new ArrayList<>(userRows.size());
+        for (UserMatchingRow row : userRows) {
+            snapshots.add(new MatchingSnapshot(row.getId(), row.getUsername(), Boolean.TRUE.equals(row.getActive()),
+                    artistProfiles.get(row.getId()), producerProfiles.get(row.getId()), location(row)));
+        }
+        matchingIndex.replaceAll(snapshots, groupLinks(userRepository.findAllBlockLinks()));
+        log.debug("Matching index load took {} ms", System.currentTimeMillis() - start);
+    }
+
+    // Rows saved before coordinates were stored fall back to resolving the location text
+    private GeoPoint location(UserMatchingRow row) {
+        if (row.getLatitude() != null && row.getLongitude() != null) {
+            return new GeoPoint(row.getLatitude(), row.getLongitude());
+        }
+        return gazetteer.locate(row.getLocation()).orElse(null);
+    }
+
+    private Map<UUID, MatchingSnapshot.Profile> loadProfiles(List<ProfileMatchingRow> rows,
+                                                             Map<UUID, Set<UUID>> genres,
+                                                             Map<UUID, Set<UUID>> skills) {
+        Map<UUID, MatchingSnapshot.Profile> profiles = new HashMap<>(rows.size() * 2);
+        for (ProfileMatchingRow row : rows) {
+            profiles.put(row.getId(), new MatchingSnapshot.Profile(
+                    Boolean.TRUE.equals(row.getAvailability()),
+                    row.getExperienceLevel(),
+                    genres.getOrDefault(row.getId(), Set.of()),
+                    skills.getOrDefault(row.getId(), Set.of())));
+        }
+        return profiles;
+    }
+
+    private Map<UUID, Set<UUID>> groupLinks(List<MatchingLinkRow> links) {
+        Map<UUID, Set<UUID>> grouped = new HashMap<>();
+        for (MatchingLinkRow link : links) {
+            grouped.computeIfAbsent(link.getOwnerId(), id -> new HashSet<>()).add(link.getTargetId());
+        }
+        return grouped;
+    }
+}
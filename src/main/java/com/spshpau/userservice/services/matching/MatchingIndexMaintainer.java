@@ -0,0 +1,47 @@
+package com.spshpau.userservice.services.matching;
+
+import com.spshpau.userservice.services.events.MatchingIndexUpdatedEvent;
+import com.spshpau.userservice.services.events.MatchingProfileChangedEvent;
+import com.spshpau.userservice.services.events.UserBlockChangedEvent;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+/**
+ * Applies committed writes to {@link MatchingIndex} in place, so the index never needs a full reload.
+ * Listeners run after commit, ahead of other after-commit listeners such as {@link MatchCacheEvictor},
+ * so a ranking recomputed after an eviction already sees the write. Rolled-back writes are never applied.
+ * Each applied profile change is passed on as a {@link MatchingIndexUpdatedEvent}.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class MatchingIndexMaintainer {
+
+    private final MatchingIndex matchingIndex;
+    private final ApplicationEventPublisher eventPublisher;
+
+    @TransactionalEventListener(fallbackExecution = true)
+    @Order(Ordered.HIGHEST_PRECEDENCE)
+    public void onMatchingProfileChanged(MatchingProfileChangedEvent event) {
+        IndexedUser previous = matchingIndex.get(event.getUserId()).orElse(null);
+        IndexedUser current = matchingIndex.put(event.getSnapshot());
+        log.debug("Matching index updated for user {}", event.getUserId());
+        eventPublisher.publishEvent(new MatchingIndexUpdatedEvent(previous, current));
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    @Order(Ordered.HIGHEST_PRECEDENCE)
+    public void onUserBlockChanged(UserBlockChangedEvent event) {
+        if (event.isBlocked()) {
+            matchingIndex.addBlock(event.getBlockerId(), event.getBlockedId());
+        } else {
+            matchingIndex.removeBlock(event.getBlockerId(), event.getBlockedId());
+        }
+        log.debug("Matching index block relation {} -> {} set to {}", event.getBlockerId(), event.getBlockedId(), event.isBlocked());
+    }
+}
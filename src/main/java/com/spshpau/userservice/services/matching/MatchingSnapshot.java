@@ -0,0 +1,76 @@
+package com.spshpau.userservice.services.matching;
+
+import com.spshpau.userservice.model.ArtistProfile;
+import com.spshpau.userservice.model.Genre;
+import com.spshpau.userservice.model.ProducerProfile;
+import com.spshpau.userservice.model.Skill;
+import com.spshpau.userservice.model.User;
+import com.spshpau.userservice.model.enums.ExperienceLevel;
+import com.spshpau.userservice.services.geo.GeoPoint;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.util.Set;
+import java.util.UUID;
+import java.util.stream.Collectors;
+
+/**
+ * Plain, UUID-level copy of a user's matching inputs.
+ * This is the hand-off format between JPA (entities or projection rows) and {@link MatchingIndex},
+ * which dictionary-encodes it into an {@link IndexedUser}.
+ */
+@Getter
+@AllArgsConstructor
+public class MatchingSnapshot {
+    private final UUID userId;
+    private final String username;
+    private final boolean active;
+    private final Profile artistProfile;
+    private final Profile producerProfile;
+    /** Coordinates of the user's location, or {@code null} when unknown. */
+    private final GeoPoint location;
+
+    public MatchingSnapshot(UUID userId, String username, boolean active, Profile artistProfile, Profile producerProfile) {
+        this(userId, username, active, artistProfile, producerProfile, null);
+    }
+
+    @Getter
+    @AllArgsConstructor
+    public static class Profile {
+        private final boolean availability;
+        private final ExperienceLevel experienceLevel;
+        private final Set<UUID> genreIds;
+        private final Set<UUID> skillIds;
+    }
+
+    /**
+     * Copies the matching inputs out of a managed {@link User}.
+     * Must be called inside a transaction, since profile genres and skills are lazy.
+     */
+    public static MatchingSnapshot of(User user) {
+        return of(user, user.getArtistProfile(), user.getProducerProfile());
+    }
+
+    /**
+     * Same as {@link #of(User)}, but with explicitly supplied profiles, for writes where the
+     * {@link User} side of the association has not been updated yet (e.g. a newly created profile).
+     */
+    public static MatchingSnapshot of(User user, ArtistProfile ap, ProducerProfile pp) {
+        Profile artist = null;
+        if (ap != null) {
+            artist = new Profile(ap.isAvailability(), ap.getExperienceLevel(),
+                    ap.getGenres().stream().map(Genre::getId).collect(Collectors.toSet()),
+                    ap.getSkills().stream().map(Skill::getId).collect(Collectors.toSet()));
+        }
+        Profile producer = null;
+        if (pp != null) {
+            producer = new Profile(pp.isAvailability(), pp.getExperienceLevel(),
+                    pp.getGenres().stream().map(Genre::getId).collect(Collectors.toSet()),
+                    Set.of());
+        }
+        GeoPoint location = user.getLatitude() == null || user.getLongitude() == null
+                ? null
+                : new GeoPoint(user.getLatitude(), user.getLongitude());
+        return new MatchingSnapshot(user.getId(), user.getUsername(), user.isActive(), artist, producer, location);
+    }
+}
@@ -0,0 +1,96 @@
+package com.spshpau.userservice.services.matching;
+
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+/**
+ * MinHash signatures of a user's combined genre and artist-skill set, cut into LSH bands.
+ * <p>
+ * Each of the {@code bands * rows} hash functions maps the set to its minimum hash. Two sets agree on one of them
+ * with probability equal to their Jaccard similarity {@code s}, so they share at least one band key with probability
+ * {@code 1 - (1 - s^rows)^bands}: more rows make a collision stricter, more bands make it likelier.
+ * The hash functions are derived from a fixed seed, so keys are stable across restarts and instances.
+ */
+final class MinHashLsh {
+
+    private static final long SEED = 0x6d696e68617368L;
+
+    private final int bands;
+    private final int rows;
+    private final long[] multipliers;
+    private final long[] increments;
+
+    MinHashLsh(int bands, int rows) {
+        if (bands < 1 || rows < 1) {
+            throw new IllegalArgumentException("LSH needs at least one band of at least one row, got "
+                    + bands + " x " + rows);
+        }
+        this.bands = bands;
+        this.rows = rows;
+        SplittableRandom random = new SplittableRandom(SEED);
+        this.multipliers = new long[bands * rows];
+        this.increments = new long[bands * rows];
+        for (int i = 0; i < multipliers.length; i++) {
+            multipliers[i] = random.nextLong() | 1L;
+            increments[i] = random.nextLong();
+        }
+    }
+
+    int getBands() {
+        return bands;
+    }
+
+    int getRows() {
+        return rows;
+    }
+
+    /**
+     * @return one key per band, or an empty array when the user has neither genres nor skills to hash.
+     */
+    long[] bandKeys(IndexedUser user) {
+        if (isEmpty(user)) {
+            return new long[0];
+        }
+        long[] genres = user.getAllGenres();
+        long[] skills = user.getArtistSkills();
+        long[] signature = new long[multipliers.length];
+        Arrays.fill(signature, Long.MAX_VALUE);
+        // Genre g and skill s become the distinct elements 2g and 2s + 1 of one set
+        for (int g = Bitsets.nextSetBit(genres, 0); g >= 0; g = Bitsets.nextSetBit(genres, g + 1)) {
+            hashInto(signature, 2L * g);
+        }
+        for (int s = Bitsets.nextSetBit(skills, 0); s >= 0; s = Bitsets.nextSetBit(skills, s + 1)) {
+            hashInto(signature, 2L * s + 1);
+        }
+        long[] keys = new long[bands];
+        for (int band = 0; band < bands; band++) {
+            long key = band;
+            for (int row = 0; row < rows; row++) {
+                key = mix(key * 31 + signature[band * rows + row]);
+            }
+            keys[band] = key;
+        }
+        return keys;
+    }
+
+    /** Whether the user has neither genres nor skills, i.e. no set to hash. */
+    static boolean isEmpty(IndexedUser user) {
+        return Bitsets.nextSetBit(user.getAllGenres(), 0) < 0 && Bitsets.nextSetBit(user.getArtistSkills(), 0) < 0;
+    }
+
+    private void hashInto(long[] signature, long element) {
+        for (int i = 0; i < signature.length; i++) {
+            long hash = mix(element * multipliers[i] + increments[i]);
+            if (hash < signature[i]) {
+                signature[i] = hash;
+            }
+        }
+    }
+
+    /** Finalizer of SplitMix64: spreads every input bit over the whole output. */
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+        z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+        return z ^ (z >>> 31);
+    }
+}
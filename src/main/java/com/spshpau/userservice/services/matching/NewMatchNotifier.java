@@ -0,0 +1,76 @@
+package com.spshpau.userservice.services.matching;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.spshpau.userservice.model.enums.ConnectionStatus;
+import com.spshpau.userservice.repositories.UserConnectionRepository;
+import com.spshpau.userservice.services.events.MatchingProfileCompletedEvent;
+import com.spshpau.userservice.services.events.NewMatchCandidateEvent;
+import com.spshpau.userservice.services.wrappers.MatchedUser;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * Publishes a {@link NewMatchCandidateEvent} to every user who would now rank a user with a newly created or
+ * completed profile in their top K, as found by {@link ReverseTopKFinder}.
+ * Each pair is announced at most once per {@code matching.notify.dedupe-ttl}.
+ * Runs after commit, once {@link MatchingIndexMaintainer} and {@link MatchListPatcher} have applied the change.
+ */
+@Component
+@Slf4j
+public class NewMatchNotifier {
+
+    private final MatchingIndex matchingIndex;
+    private final ReverseTopKFinder reverseTopKFinder;
+    private final UserConnectionRepository userConnectionRepository;
+    private final ApplicationEventPublisher eventPublisher;
+    private final Cache<Pair, Boolean> announced;
+
+    public NewMatchNotifier(MatchingIndex matchingIndex,
+                            ReverseTopKFinder reverseTopKFinder,
+                            UserConnectionRepository userConnectionRepository,
+                            ApplicationEventPublisher eventPublisher,
+                            @Value("${matching.notify.dedupe-ttl:24h}") Duration dedupeTtl) {
+        this.matchingIndex = matchingIndex;
+        this.reverseTopKFinder = reverseTopKFinder;
+        this.userConnectionRepository = userConnectionRepository;
+        this.eventPublisher = eventPublisher;
+        this.announced = Caffeine.newBuilder()
+                .expireAfterWrite(dedupeTtl)
+                .maximumSize(100_000)
+                .build();
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    @Order(10)
+    public void onMatchingProfileCompleted(MatchingProfileCompletedEvent event) {
+        UUID candidateId = event.getUserId();
+        IndexedUser candidate = matchingIndex.get(candidateId).orElse(null);
+        if (candidate == null || !candidate.isActive()) {
+            return;
+        }
+        Set<UUID> connected = userConnectionRepository.findConnectedUserIds(candidateId, ConnectionStatus.ACCEPTED);
+        List<MatchedUser> owners = reverseTopKFinder.findOwnersRanking(candidate,
+                matchingIndex.blockRelations(candidateId), connected);
+        int published = 0;
+        for (MatchedUser owner : owners) {
+            if (announced.asMap().putIfAbsent(new Pair(owner.getUser().getId(), candidateId), Boolean.TRUE) == null) {
+                eventPublisher.publishEvent(new NewMatchCandidateEvent(owner.getUser().getId(), candidateId, owner.getScore()));
+                published++;
+            }
+        }
+        log.debug("User {} entered the top matches of {} users", candidateId, published);
+    }
+
+    private record Pair(UUID userId, UUID candidateId) {
+    }
+}
@@ -0,0 +1,218 @@
+package com.spshpau.userservice.services.matching;
+
+import lombok.Getter;
+
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+import java.util.function.Function;
+
+/**
+ * Frozen, compact ranking of one user's matches: ids and scores in ranked order, up to a fixed depth.
+ * Pages are slices of it, so paging through it never re-ranks and never shifts or repeats users.
+ */
+@Getter
+public class RankedMatches {
+    private final UUID userId;
+    private final UUID[] matchIds;
+    private final float[] scores;
+    private final long totalCandidates;
+    private final Instant computedAt;
+    /**
+     * Whether the ranking stopped at a deadline: the best of the candidates met by then rather than of all of them.
+     * Refreshed in the background like a stale ranking.
+     */
+    private final boolean partial;
+    /** The candidate filter the ranking was computed under; pages beyond it are ranked with the same one. */
+    private final MatchFilter filter;
+    /** When the ranking was last handed to a request; drives refresh-ahead of rankings still in use. */
+    private volatile Instant lastServedAt;
+
+    public RankedMatches(UUID userId, UUID[] matchIds, float[] scores, long totalCandidates, Instant computedAt) {
+        this(userId, matchIds, scores, totalCandidates, computedAt, false);
+    }
+
+    public RankedMatches(UUID userId, UUID[] matchIds, float[] scores, long totalCandidates, Instant computedAt,
+                         boolean partial) {
+        this(userId, matchIds, scores, totalCandidates, computedAt, partial, MatchFilter.NONE);
+    }
+
+    public RankedMatches(UUID userId, UUID[] matchIds, float[] scores, long totalCandidates, Instant computedAt,
+                         boolean partial, MatchFilter filter) {
+        this.userId = userId;
+        this.matchIds = matchIds;
+        this.scores = scores;
+        this.totalCandidates = totalCandidates;
+        this.computedAt = computedAt;
+        this.partial = partial;
+        this.filter = filter;
+        this.lastServedAt = computedAt;
+    }
+
+    public void markServed() {
+        lastServedAt = Instant.now();
+    }
+
+    /**
+     * Carries the last access of the ranking this one replaces over, so a background refresh
+     * does not count as the user being active.
+     */
+    void inheritLastServedAt(RankedMatches previous) {
+        lastServedAt = previous.lastServedAt;
+    }
+
+    public int size() {
+        return matchIds.length;
+    }
+
+    /**
+     * Whether the ranking holds every candidate, i.e. no page can lie beyond it.
+     */
+    public boolean isComplete() {
+        return matchIds.length >= totalCandidates;
+    }
+
+    /**
+     * Whether {@code [offset, offset + limit)} can be served from this ranking alone.
+     */
+    public boolean covers(long offset, int limit) {
+        return isComplete() || offset + limit <= matchIds.length;
+    }
+
+    public boolean contains(UUID matchId) {
+        return indexOf(matchId) >= 0;
+    }
+
+    /**
+     * Re-places {@code matchId} at {@code score}, keeping the ranking order: score descending, then username.
+     * A truncated ranking that {@code matchId} drops to the end of, below the old last place, comes back one shorter,
+     * since the candidate that would move up into the last place is unknown; it stays a valid prefix of the full
+     * ranking.
+     * A candidate missing from a truncated ranking only enters it by beating the last place.
+     *
+     * @param usernames resolves usernames of tied candidates.
+     * @return the patched ranking, or this one when nothing changes.
+     */
+    public RankedMatches rescored(UUID matchId, float score, Function<UUID, String> usernames) {
+        int current = indexOf(matchId);
+        int n = matchIds.length;
+        if (current < 0 && (isComplete() || n == 0)) {
+            return this;
+        }
+        String username = usernames.apply(matchId);
+        int position = 0;
+        for (int i = 0; i < n; i++) {
+            if (i == current) {
+                continue;
+            }
+            if (scores[i] > score || (scores[i] == score && usernames.apply(matchIds[i]).compareTo(username) < 0)) {
+                position++;
+            } else {
+                break;
+            }
+        }
+        if (current == position && scores[current] == score) {
+            return this;
+        }
+        if (current < 0 && position >= n) {
+            return this;
+        }
+        // Unranked candidates rank below the old last place, so only a user that was that place and did not fall
+        // is sure to stay ahead of them
+        if (current >= 0 && !isComplete() && position == n - 1 && (current != n - 1 || score < scores[n - 1])) {
+            return without(current);
+        }
+
+        UUID[] ids = new UUID[n];
+        float[] patched = new float[n];
+        int j = 0;
+        boolean placed = false;
+        for (int i = 0; i < n && j < n; i++) {
+            if (i == current) {
+                continue;
+            }
+            if (!placed && j == position) {
+                ids[j] = matchId;
+                patched[j++] = score;
+                placed = true;
+                if (j == n) {
+                    break;
+                }
+            }
+            ids[j] = matchIds[i];
+            patched[j++] = scores[i];
+        }
+        if (!placed) {
+            ids[j] = matchId;
+            patched[j] = score;
+        }
+        return new RankedMatches(userId, ids, patched, totalCandidates, computedAt, partial, filter);
+    }
+
+    /**
+     * Counts {@code matchId} as a candidate the ranking did not have before, e.g. a user just activated or now passing
+     * the {@link #getFilter() filter}, and places
+     * it at {@code score}. A complete ranking grows by one; a truncated one only takes it in by beating the last place.
+     *
+     * @param usernames resolves usernames of tied candidates.
+     * @return the ranking with it, or {@link #rescored} when it is already ranked.
+     */
+    public RankedMatches withCandidate(UUID matchId, float score, Function<UUID, String> usernames) {
+        if (contains(matchId)) {
+            return rescored(matchId, score, usernames);
+        }
+        int n = matchIds.length;
+        if (!isComplete()) {
+            return new RankedMatches(userId, matchIds, scores, totalCandidates + 1, computedAt, partial, filter)
+                    .rescored(matchId, score, usernames);
+        }
+        // Appended last, then moved up to its place
+        UUID[] ids = Arrays.copyOf(matchIds, n + 1);
+        float[] grown = Arrays.copyOf(scores, n + 1);
+        ids[n] = matchId;
+        grown[n] = score;
+        return new RankedMatches(userId, ids, grown, totalCandidates + 1, computedAt, partial, filter)
+                .rescored(matchId, score, usernames);
+    }
+
+    /**
+     * Stops counting {@code matchId} as a candidate, e.g. once it no longer passes the {@link #getFilter() filter},
+     * and drops it from the ranking if it is ranked.
+     *
+     * @return the ranking without it.
+     */
+    public RankedMatches without(UUID matchId) {
+        int index = indexOf(matchId);
+        RankedMatches shorter = index < 0 ? this : without(index);
+        return new RankedMatches(userId, shorter.matchIds, shorter.scores, Math.max(0, totalCandidates - 1),
+                computedAt, partial, filter);
+    }
+
+    private RankedMatches without(int index) {
+        UUID[] ids = new UUID[matchIds.length - 1];
+        float[] remaining = new float[scores.length - 1];
+        System.arraycopy(matchIds, 0, ids, 0, index);
+        System.arraycopy(matchIds, index + 1, ids, index, ids.length - index);
+        System.arraycopy(scores, 0, remaining, 0, index);
+        System.arraycopy(scores, index + 1, remaining, index, remaining.length - index);
+        return new RankedMatches(userId, ids, remaining, totalCandidates, computedAt, partial, filter);
+    }
+
+    private int indexOf(UUID matchId) {
+        for (int i = 0; i < matchIds.length; i++) {
+            if (matchIds[i].equals(matchId)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    public List<UUID> slice(long offset, int limit) {
+        if (offset >= matchIds.length) {
+            return List.of();
+        }
+        int from = (int) offset;
+        return Arrays.asList(matchIds).subList(from, Math.min(matchIds.length, from + limit));
+    }
+}
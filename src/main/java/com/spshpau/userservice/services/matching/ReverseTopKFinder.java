@@ -0,0 +1,56 @@
+package com.spshpau.userservice.services.matching;
+
+import com.spshpau.userservice.services.wrappers.MatchedUser;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * Reverse top-K: finds the users who would now rank a given candidate in their top K.
+ * <p>
+ * Only users sharing a term with the candidate can score it above zero: the opposite role, a genre, or an artist
+ * skill. Their slots are the union of the candidate's posting lists in {@link MatchingIndex}, so only those users
+ * are scored, and each pair is checked against the owner's K-th score from {@link MatchThresholds}.
+ * A candidate has to beat that score strictly. Users whose ranking is not known yet are skipped; they see the
+ * candidate the next time they ask for matches.
+ */
+@Component
+@RequiredArgsConstructor
+public class ReverseTopKFinder {
+
+    private final MatchingIndex matchingIndex;
+    private final MatchScorer matchScorer;
+    private final MatchThresholds matchThresholds;
+
+    /**
+     * @param excluded  users that must not be returned, e.g. those in a block relation with the candidate.
+     * @param connected users with an accepted connection to the candidate.
+     * @return the owners that now rank {@code candidate} in their top K, each with the candidate's score for them.
+     */
+    public List<MatchedUser> findOwnersRanking(IndexedUser candidate, Set<UUID> excluded, Set<UUID> connected) {
+        return matchingIndex.readLocked(() -> {
+            long[] reach = matchingIndex.slotsSharingATerm(candidate);
+
+            List<MatchedUser> owners = new ArrayList<>();
+            for (int slot = Bitsets.nextSetBit(reach, 0); slot >= 0; slot = Bitsets.nextSetBit(reach, slot + 1)) {
+                IndexedUser owner = matchingIndex.userAt(slot);
+                if (owner.getId().equals(candidate.getId()) || excluded.contains(owner.getId())) {
+                    continue;
+                }
+                Float threshold = matchThresholds.kthScore(owner.getId());
+                if (threshold == null) {
+                    continue;
+                }
+                double score = matchScorer.calculateMatchScore(owner, candidate, connected.contains(owner.getId()));
+                if ((float) score > threshold) {
+                    owners.add(new MatchedUser(owner, score));
+                }
+            }
+            return owners;
+        });
+    }
+}
@@ -0,0 +1,190 @@
+package com.spshpau.userservice.services.matching;
+
+import com.spshpau.userservice.config.MatchingConfig;
+import com.spshpau.userservice.dto.matchdto.ShardMatchDto;
+import com.spshpau.userservice.dto.matchdto.ShardTopKRequest;
+import com.spshpau.userservice.dto.matchdto.ShardTopKResponse;
+import com.spshpau.userservice.model.User;
+import com.spshpau.userservice.services.exceptions.ShardRingMismatchException;
+import com.spshpau.userservice.services.wrappers.MatchPage;
+import com.spshpau.userservice.services.wrappers.RankedMatch;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.client.SimpleClientHttpRequestFactory;
+import org.springframework.stereotype.Component;
+import org.springframework.web.client.RestClient;
+
+import java.net.URI;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Scatter-gather ranking across the instances of this service: every member of the current {@link MatchShardRing}
+ * ranks the top {@code offset + limit} among the users it owns ({@link MatchShardService}), and the instance that
+ * received the request merges the partial rankings with the usual order, score descending then username.
+ * Since every shard returns its own top K, the merge is exactly what the index engine would have returned.
+ * <p>
+ * The own shard is ranked locally while the others are asked over HTTP, authenticated with a client-credentials
+ * token of {@link MatchShardTokenProvider} and, as a second layer, the shared {@code matching.shard.secret}. A shard that fails, takes longer than {@code matching.shard.timeout} or disagrees
+ * about the ring is ranked locally instead, from the complete local index, so an unreachable instance costs time
+ * but never matches ({@code matching.shard.fallbacks}). A {@link MatchFilter} travels with every shard request.
+ * Without a ring, e.g. while the registry cannot be read, the whole local index is ranked as a single shard.
+ */
+@Component
+@Slf4j
+public class ShardedMatchEngine implements MatchEngine {
+
+    /** Path of the shard endpoint, relative to an instance's base URI. */
+    public static final String SHARD_TOP_K_PATH = "/api/v1/internal/matching/shard-top-k";
+    /** Header carrying {@code matching.shard.secret} on shard requests. */
+    public static final String SECRET_HEADER = "X-Match-Shard-Secret";
+
+    private final MatchingIndex matchingIndex;
+    private final MatchShardMembership membership;
+    private final MatchShardService matchShardService;
+    private final CallerRelationsLoader callerRelationsLoader;
+    private final MatchShardTokenProvider tokenProvider;
+    private final Executor shardExecutor;
+    private final RestClient restClient;
+    private final String secret;
+    private final Duration timeout;
+    private final Counter fallbacks;
+
+    public ShardedMatchEngine(MatchingIndex matchingIndex,
+                              MatchShardMembership membership,
+                              MatchShardService matchShardService,
+                              CallerRelationsLoader callerRelationsLoader,
+                              MatchShardTokenProvider tokenProvider,
+                              @Qualifier(MatchingConfig.MATCH_SHARD_EXECUTOR) Executor shardExecutor,
+                              RestClient.Builder restClientBuilder,
+                              @Value("${matching.shard.secret:}") String secret,
+                              @Value("${matching.shard.timeout:2s}") Duration timeout,
+                              MeterRegistry meterRegistry) {
+        this.matchingIndex = matchingIndex;
+        this.membership = membership;
+        this.matchShardService = matchShardService;
+        this.callerRelationsLoader = callerRelationsLoader;
+        this.tokenProvider = tokenProvider;
+        this.shardExecutor = shardExecutor;
+        SimpleClientHttpRequestFactory requestFactory = new SimpleClientHttpRequestFactory();
+        requestFactory.setConnectTimeout(timeout);
+        requestFactory.setReadTimeout(timeout);
+        this.restClient = restClientBuilder.requestFactory(requestFactory).build();
+        this.secret = secret;
+        this.timeout = timeout;
+        this.fallbacks = Counter.builder("matching.shard.fallbacks")
+                .description("Shards ranked locally because their owner failed, timed out or had another ring")
+                .register(meterRegistry);
+    }
+
+    @Override
+    public MatchPage findMatches(User caller, int offset, int limit, MatchFilter filter) {
+        return findMatches(MatchingSnapshot.of(caller), callerRelationsLoader.load(caller.getId()), offset, limit, filter);
+    }
+
+    MatchPage findMatches(MatchingSnapshot snapshot, CallerRelations relations, int offset, int limit,
+                          MatchFilter filter) {
+        List<ShardTopKResponse> shards;
+        try {
+            shards = scatter(snapshot, relations, offset + limit, filter);
+        } catch (ShardRingMismatchException e) {
+            // Resharded while the request was in flight; the next attempt sees the new ring throughout
+            shards = scatter(snapshot, relations, offset + limit, filter);
+        }
+
+        List<ShardMatchDto> merged = new ArrayList<>();
+        long total = 0;
+        for (ShardTopKResponse shard : shards) {
+            merged.addAll(shard.getMatches());
+            total += shard.getTotalCandidates();
+        }
+        merged.sort(Comparator.comparingDouble(ShardMatchDto::getScore).reversed()
+                .thenComparing(ShardMatchDto::getUsername));
+        List<RankedMatch> page = merged.stream()
+                .skip(offset)
+                .limit(limit)
+                .map(match -> new RankedMatch(match.getUserId(), match.getUsername(), match.getScore()))
+                .toList();
+        return new MatchPage(page, total);
+    }
+
+    private List<ShardTopKResponse> scatter(MatchingSnapshot caller, CallerRelations relations, int k,
+                                            MatchFilter filter) {
+        MatchShardRing ring = matchingIndex.shardRing();
+        if (ring == null) {
+            try {
+                membership.refresh();
+            } catch (RuntimeException e) {
+                log.warn("Could not read the shard ring members: {}", e.toString());
+            }
+            ring = matchingIndex.shardRing();
+        }
+        String self = membership.selfId();
+        if (ring == null) {
+            // No ring to split by yet: this instance is the only shard it knows of
+            MatchShardRing alone = new MatchShardRing(List.of(self));
+            return List.of(matchShardService.findUnshardedTopK(
+                    MatchShardService.toRequest(caller, relations, filter, alone, self, k)));
+        }
+
+        List<RemoteShard> remote = new ArrayList<>();
+        List<ShardTopKRequest> local = new ArrayList<>();
+        for (String member : ring.getMembers()) {
+            ShardTopKRequest request = MatchShardService.toRequest(caller, relations, filter, ring, member, k);
+            Optional<URI> uri = member.equals(self) ? Optional.empty() : membership.uriOf(member);
+            if (uri.isPresent()) {
+                remote.add(new RemoteShard(request,
+                        CompletableFuture.supplyAsync(() -> fetch(uri.get(), request), shardExecutor)));
+            } else {
+                local.add(request);
+            }
+        }
+
+        List<ShardTopKResponse> shards = new ArrayList<>(ring.size());
+        for (ShardTopKRequest request : local) {
+            shards.add(matchShardService.findShardTopK(request));
+        }
+        for (RemoteShard shard : remote) {
+            shards.add(await(shard));
+        }
+        return shards;
+    }
+
+    private ShardTopKResponse fetch(URI uri, ShardTopKRequest request) {
+        return restClient.post()
+                .uri(uri.resolve(SHARD_TOP_K_PATH))
+                .headers(headers -> tokenProvider.token().ifPresent(headers::setBearerAuth))
+                .header(SECRET_HEADER, secret)
+                .body(request)
+                .retrieve()
+                .body(ShardTopKResponse.class);
+    }
+
+    private ShardTopKResponse await(RemoteShard shard) {
+        try {
+            ShardTopKResponse response = shard.response().get(timeout.toMillis(), TimeUnit.MILLISECONDS);
+            if (response != null) {
+                return response;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            log.warn("Shard {} did not answer, ranking it locally: {}", shard.request().getMember(), e.toString());
+        }
+        shard.response().cancel(true);
+        fallbacks.increment();
+        return matchShardService.findShardTopK(shard.request());
+    }
+
+    private record RemoteShard(ShardTopKRequest request, CompletableFuture<ShardTopKResponse> response) {
+    }
+}
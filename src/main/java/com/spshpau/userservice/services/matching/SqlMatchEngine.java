@@ -0,0 +1,39 @@
+package com.spshpau.userservice.services.matching;
+
+import com.spshpau.userservice.model.User;
+import com.spshpau.userservice.repositories.UserRepository;
+import com.spshpau.userservice.services.wrappers.MatchPage;
+import com.spshpau.userservice.services.wrappers.RankedMatch;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+/**
+ * Ranks candidates inside Postgres with {@link UserRepository#findMatchPage}, so only the requested page
+ * leaves the database. Needs neither the matching index nor any per-candidate query. A {@link MatchFilter} becomes
+ * part of the candidate query.
+ */
+@Component
+@RequiredArgsConstructor
+public class SqlMatchEngine implements MatchEngine {
+
+    private final UserRepository userRepository;
+    private final MatchScorer matchScorer;
+
+    @Override
+    public MatchPage findMatches(User caller, int offset, int limit, MatchFilter filter) {
+        MatchWeights w = matchScorer.getWeights();
+        List<RankedMatch> page = userRepository.findMatchPage(caller.getId(), limit, offset,
+                        w.getConnectedPenalty(), w.getOppositeRole(), w.getExperienceArray(), w.getSpecificGenre(),
+                        w.getAvailability(), w.getSharedGenre(), w.getSharedSkill(),
+                        filter.isEmpty(), filter.getRoleName(), filter.isAvailableOnly(),
+                        filter.getMinExperienceOrdinal(), filter.getGenreArray())
+                .stream()
+                .map(row -> new RankedMatch(row.getId(), row.getUsername(), row.getScore()))
+                .toList();
+        long total = userRepository.countMatchCandidates(caller.getId(), filter.isEmpty(), filter.getRoleName(),
+                filter.isAvailableOnly(), filter.getMinExperienceOrdinal(), filter.getGenreArray());
+        return new MatchPage(page, total);
+    }
+}
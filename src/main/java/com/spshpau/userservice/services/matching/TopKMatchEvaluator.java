@@ -0,0 +1,446 @@
+package com.spshpau.userservice.services.matching;
+
+import com.spshpau.userservice.services.wrappers.MatchedUser;
+import com.spshpau.userservice.services.wrappers.RankedMatch;
+import com.spshpau.userservice.services.wrappers.TopKMatches;
+import com.spshpau.userservice.config.MatchingConfig;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.*;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Finds the K best matches for a caller without scoring the whole population.
+ * <p>
+ * The score of {@link MatchScorer} is split into terms, each backed by a posting list of {@link MatchingIndex}
+ * and an upper bound of what it can add to a candidate's score, taken from the current {@link MatchWeights}
+ * (genre and skill terms scaled by their rarity when {@link MatchWeights#isRarityWeighted()}):
+ * <ul>
+ *     <li>the opposite role (artists for a producer, producers for an artist): role points + the best experience
+ *     points + availability,</li>
+ *     <li>every genre of the caller: the shared-genre weight, plus the specific-genre weight per caller profile
+ *     that could meet it on the opposite profile of the candidate,</li>
+ *     <li>with a {@link GenreSimilarityMatrix}, also every genre related to a genre of a caller profile: the
+ *     specific-genre weight times the similarity, summed over the related caller genres,</li>
+ *     <li>every artist skill of an artist caller: the shared-skill weight,</li>
+ *     <li>with a proximity weight and a located caller, the users within the proximity radius (from the spatial
+ *     grid of the index): the proximity weight.</li>
+ * </ul>
+ * Terms are walked heaviest first. Once the heap holds K matches, the walk stops as soon as the remaining terms
+ * together cannot reach the current K-th score, and a newly met candidate is only scored if the terms it appears in
+ * can. Candidates in no posting list at all score 0 (or less, when already connected).
+ * Ties are broken by username, so pruning only ever drops candidates that are strictly below the K-th score.
+ * <p>
+ * When more than {@code matching.parallel.threshold} candidates are eligible, the slot range is split into
+ * partitions that are walked on the dedicated scoring pool, each with its own heap, and the heaps are merged
+ * with the same ranking, so the result is identical to the sequential walk.
+ * <p>
+ * For streaming, {@link #findTopK(IndexedUser, CallerRelations, int, MatchFilter, MatchProgressListener, MatchDeadline)}
+ * always partitions and reports the running ranking as the partitions finish. Its partitions take the read lock
+ * themselves, so they run on {@link MatchingConfig#MATCH_STREAM_EXECUTOR}; the scoring pool only ever runs
+ * lock-free work for a caller that holds the lock.
+ * <p>
+ * A {@link MatchFilter} narrows the eligible slots before the walk ({@link MatchingIndex#retain}), so filtered-out
+ * users are neither scored nor counted in the total.
+ * <p>
+ * Under a {@link MatchDeadline}, the walk stops where it is once the deadline is reached and it holds K matches.
+ * Since the heaviest terms (the opposite role with availability and experience, then the most valuable genres)
+ * come first, the matches met by then are the most promising ones, and the result is the best of them.
+ */
+@Component
+public class TopKMatchEvaluator {
+
+    // Rarity and similarity weights are floats the scorer sums in another order; the slack keeps bounds above rounding
+    private static final double ROUNDING_SLACK = 1e-6;
+    // 4096 slots between clock reads keeps the polling cost negligible next to the walk
+    private static final int DEADLINE_POLL_WORDS = 64;
+
+    /** Best match first: score descending, then username ascending. */
+    public static final Comparator<MatchedUser> RANKING = Comparator.comparingDouble(MatchedUser::getScore).reversed()
+            .thenComparing(mu -> mu.getUser().getUsername());
+
+    private final MatchingIndex matchingIndex;
+    private final MatchScorer matchScorer;
+    private final ForkJoinPool scoringPool;
+    private final Executor streamExecutor;
+    private final int parallelThreshold;
+
+    public TopKMatchEvaluator(MatchingIndex matchingIndex,
+                              MatchScorer matchScorer,
+                              @Qualifier(MatchingConfig.MATCH_SCORING_POOL) ForkJoinPool scoringPool,
+                              @Qualifier(MatchingConfig.MATCH_STREAM_EXECUTOR) Executor streamExecutor,
+                              @Value("${matching.parallel.threshold:50000}") int parallelThreshold) {
+        this.matchingIndex = matchingIndex;
+        this.matchScorer = matchScorer;
+        this.scoringPool = scoringPool;
+        this.streamExecutor = streamExecutor;
+        this.parallelThreshold = parallelThreshold;
+    }
+
+    /**
+     * @param relations the caller's exclusions and accepted connections.
+     * @param k         how many matches to return.
+     */
+    public TopKMatches findTopK(IndexedUser caller, CallerRelations relations, int k) {
+        return findTopK(caller, relations, k, MatchFilter.NONE, MatchDeadline.NONE);
+    }
+
+    /**
+     * Same as {@link #findTopK(IndexedUser, CallerRelations, int)}, among the candidates passing {@code filter}, and
+     * stopping the walk once {@code deadline} is reached with the best matches met until then; the total is still
+     * exact. Terms are walked heaviest first, so the candidates met early are the most promising ones.
+     */
+    public TopKMatches findTopK(IndexedUser caller, CallerRelations relations, int k, MatchFilter filter,
+                                MatchDeadline deadline) {
+        return matchingIndex.readLocked(() -> evaluate(caller, relations, k, filter,
+                matchingIndex.activeSlots().clone(), deadline));
+    }
+
+    /**
+     * Same as {@link #findTopK}, over the users {@code member} owns in the current {@link MatchShardRing} only.
+     */
+    public TopKMatches findShardTopK(IndexedUser caller, CallerRelations relations, int k, MatchFilter filter,
+                                     String member) {
+        return matchingIndex.readLocked(() -> evaluate(caller, relations, k, filter,
+                Bitsets.and(matchingIndex.activeSlots(), matchingIndex.shardSlots(member)), MatchDeadline.NONE));
+    }
+
+    /**
+     * Same result as {@link #findTopK}, computed in slot-range partitions on the stream executor that take the read
+     * lock one at a time, so writers are never held up for a whole ranking. After every partition, {@code listener} gets
+     * the best matches among the partitions done so far, on the calling thread and without the lock.
+     * <p>
+     * Each partition sees the index as of its own turn: a user moving between partitions while the ranking runs may
+     * be met twice or not at all, as with a ranking taken a moment earlier or later.
+     */
+    public TopKMatches findTopK(IndexedUser caller, CallerRelations relations, int k, MatchFilter filter,
+                                MatchProgressListener listener, MatchDeadline deadline) {
+        MatchWeights weights = matchScorer.getWeights();
+        int words = matchingIndex.readLocked(() -> matchingIndex.activeSlots().length);
+        int partitions = Math.max(1, Math.min(words, scoringPool.getParallelism() * 2));
+        int step = Math.max(1, (words + partitions - 1) / partitions);
+        CompletionService<Partition> completion = new ExecutorCompletionService<>(streamExecutor);
+        for (int p = 0; p < partitions; p++) {
+            int fromWord = p * step;
+            // The last partition also takes slots allocated after the split
+            int toWord = p == partitions - 1 ? Integer.MAX_VALUE : fromWord + step;
+            completion.submit(() -> matchingIndex.readLocked(
+                    () -> evaluatePartition(weights, caller, relations, k, filter, fromWord, toWord, deadline)));
+        }
+
+        PriorityQueue<MatchedUser> heap = new PriorityQueue<>(Math.max(1, k) + 1, RANKING.reversed());
+        List<MatchedUser> ranked = List.of();
+        int total = 0;
+        for (int completed = 1; completed <= partitions; completed++) {
+            Partition partition = take(completion);
+            total += partition.eligible();
+            for (MatchedUser match : partition.heap()) {
+                offer(heap, k, match);
+            }
+            ranked = new ArrayList<>(heap);
+            ranked.sort(RANKING);
+            listener.onProgress(ranked.stream()
+                    .map(mu -> new RankedMatch(mu.getUser().getId(), mu.getUser().getUsername(), mu.getScore()))
+                    .toList(), completed, partitions);
+        }
+        return new TopKMatches(ranked, total);
+    }
+
+    /**
+     * @param eligible candidate slots; modified in place.
+     */
+    private TopKMatches evaluate(IndexedUser caller, CallerRelations relations, int k, MatchFilter filter,
+                                 long[] eligible, MatchDeadline deadline) {
+        exclude(relations, eligible);
+        matchingIndex.retain(filter, eligible, 0, eligible.length);
+        long[] connected = connected(relations);
+        int total = Bitsets.cardinality(eligible);
+        if (k <= 0 || total == 0) {
+            return new TopKMatches(List.of(), total);
+        }
+
+        MatchWeights weights = matchScorer.getWeights();
+        List<Term> terms = terms(caller, weights);
+        double[] remaining = remaining(terms);
+
+        PriorityQueue<MatchedUser> heap;
+        if (total > parallelThreshold) {
+            int leafWords = Math.max(1, eligible.length / (scoringPool.getParallelism() * 4));
+            heap = scoringPool.invoke(new PartitionTask(weights, caller, terms, remaining, eligible, connected, k,
+                    0, eligible.length, leafWords, deadline));
+        } else {
+            heap = walk(weights, caller, terms, remaining, eligible, connected, k, 0, eligible.length, deadline);
+        }
+
+        List<MatchedUser> ranked = new ArrayList<>(heap);
+        ranked.sort(RANKING);
+        return new TopKMatches(ranked, total);
+    }
+
+    /**
+     * One partition of
+     * {@link #findTopK(IndexedUser, CallerRelations, int, MatchFilter, MatchProgressListener, MatchDeadline)};
+     * under the read lock.
+     */
+    private Partition evaluatePartition(MatchWeights weights, IndexedUser caller, CallerRelations relations, int k,
+                                        MatchFilter filter, int fromWord, int toWord, MatchDeadline deadline) {
+        long[] eligible = matchingIndex.activeSlots().clone();
+        exclude(relations, eligible);
+        int to = Math.min(toWord, eligible.length);
+        matchingIndex.retain(filter, eligible, fromWord, to);
+        int total = 0;
+        for (int w = fromWord; w < to; w++) {
+            total += Long.bitCount(eligible[w]);
+        }
+        if (k <= 0 || total == 0) {
+            return new Partition(new PriorityQueue<>(), total);
+        }
+        List<Term> terms = terms(caller, weights);
+        return new Partition(walk(weights, caller, terms, remaining(terms), eligible, connected(relations), k,
+                fromWord, to, deadline), total);
+    }
+
+    private static Partition take(CompletionService<Partition> completion) {
+        try {
+            return completion.take().get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while ranking matches", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw new IllegalStateException("Ranking a partition failed", e.getCause());
+        }
+    }
+
+    private void exclude(CallerRelations relations, long[] eligible) {
+        for (UUID excludedId : relations.getExcludedUserIds()) {
+            int slot = matchingIndex.slotOf(excludedId);
+            if (slot >= 0) {
+                Bitsets.clear(eligible, slot);
+            }
+        }
+    }
+
+    private long[] connected(CallerRelations relations) {
+        long[] connected = Bitsets.EMPTY;
+        for (UUID connectedId : relations.getConnectedUserIds()) {
+            int slot = matchingIndex.slotOf(connectedId);
+            if (slot >= 0) {
+                connected = Bitsets.set(connected, slot);
+            }
+        }
+        return connected;
+    }
+
+    /**
+     * @return at {@code i}, the sum of the weights of the terms from {@code i} on.
+     */
+    private static double[] remaining(List<Term> terms) {
+        double[] remaining = new double[terms.size() + 1];
+        for (int i = terms.size() - 1; i >= 0; i--) {
+            remaining[i] = remaining[i + 1] + terms.get(i).weight;
+        }
+        return remaining;
+    }
+
+    /**
+     * Pruned walk over the eligible slots in words {@code [fromWord, toWord)}.
+     * Once the heap is full, the deadline is polled every {@link #DEADLINE_POLL_WORDS} words of a posting list,
+     * so a walk cut short still returns {@code k} matches whenever there are that many.
+     *
+     * @return heap of the best {@code k} matches in that range, worst first.
+     */
+    private PriorityQueue<MatchedUser> walk(MatchWeights weights, IndexedUser caller, List<Term> terms, double[] remaining,
+                                            long[] eligible, long[] connected, int k, int fromWord, int toWord,
+                                            MatchDeadline deadline) {
+        PriorityQueue<MatchedUser> heap = new PriorityQueue<>(k + 1, RANKING.reversed());
+        long[] seen = new long[toWord - fromWord];
+        boolean exhausted = true;
+        terms:
+        for (int i = 0; i < terms.size(); i++) {
+            if (heap.size() == k && remaining[i] < heap.peek().getScore()) {
+                exhausted = false;
+                break;
+            }
+            long[] posting = terms.get(i).posting;
+            int words = Math.min(posting.length, toWord);
+            for (int w = fromWord; w < words; w++) {
+                if (heap.size() == k && (w - fromWord) % DEADLINE_POLL_WORDS == 0 && deadline.isReached()) {
+                    exhausted = false;
+                    break terms;
+                }
+                long fresh = posting[w] & eligible[w] & ~seen[w - fromWord];
+                seen[w - fromWord] |= fresh;
+                while (fresh != 0) {
+                    int slot = (w << 6) + Long.numberOfTrailingZeros(fresh);
+                    fresh &= fresh - 1;
+                    if (heap.size() == k && upperBound(terms, i, slot) < heap.peek().getScore()) {
+                        continue;
+                    }
+                    offer(heap, k, score(weights, caller, slot, connected));
+                }
+            }
+        }
+
+        // Everyone left shares no term with the caller; they can only fill up a short list or win a tie at 0.
+        if (exhausted && (heap.size() < k || heap.peek().getScore() <= 0.0)) {
+            for (int w = fromWord; w < toWord; w++) {
+                if (heap.size() == k && (w - fromWord) % DEADLINE_POLL_WORDS == 0 && deadline.isReached()) {
+                    break;
+                }
+                long rest = eligible[w] & ~seen[w - fromWord];
+                while (rest != 0) {
+                    int slot = (w << 6) + Long.numberOfTrailingZeros(rest);
+                    rest &= rest - 1;
+                    offer(heap, k, score(weights, caller, slot, connected));
+                }
+            }
+        }
+        return heap;
+    }
+
+    private MatchedUser score(MatchWeights weights, IndexedUser caller, int slot, long[] connected) {
+        IndexedUser candidate = matchingIndex.userAt(slot);
+        return new MatchedUser(candidate,
+                matchScorer.calculateMatchScore(weights, caller, candidate, Bitsets.get(connected, slot)));
+    }
+
+    private void offer(PriorityQueue<MatchedUser> heap, int k, MatchedUser match) {
+        if (heap.size() < k) {
+            heap.add(match);
+        } else if (RANKING.compare(match, heap.peek()) < 0) {
+            heap.poll();
+            heap.add(match);
+        }
+    }
+
+    /**
+     * Best score {@code slot} can reach, given it appears in no term before {@code from}.
+     */
+    private double upperBound(List<Term> terms, int from, int slot) {
+        double bound = 0.0;
+        for (int i = from; i < terms.size(); i++) {
+            Term term = terms.get(i);
+            if (Bitsets.get(term.posting, slot)) {
+                bound += term.weight;
+            }
+        }
+        return bound;
+    }
+
+    private List<Term> terms(IndexedUser caller, MatchWeights weights) {
+        List<Term> terms = new ArrayList<>();
+        if (caller.isProducer()) {
+            terms.add(new Term(matchingIndex.artistSlots(), weights.roleBound()));
+        }
+        if (caller.isArtist()) {
+            terms.add(new Term(matchingIndex.producerSlots(), weights.roleBound()));
+        }
+        if (weights.getProximity() > 0.0 && caller.hasLocation()) {
+            terms.add(new Term(matchingIndex.slotsWithin(caller.getLatitude(), caller.getLongitude(),
+                    weights.getProximityRadiusKm()), weights.getProximity()));
+        }
+        float[] genreRarity = weights.isRarityWeighted() ? matchingIndex.genreRarity() : null;
+        float[] skillRarity = weights.isRarityWeighted() ? matchingIndex.skillRarity() : null;
+        GenreSimilarityMatrix similarity = matchingIndex.genreSimilarity();
+        double slack = genreRarity != null || !similarity.isEmpty() ? 1.0 + ROUNDING_SLACK : 1.0;
+
+        long[] genres = caller.getAllGenres();
+        double[] genreBounds = new double[similarity.span(genres)];
+        for (int g = Bitsets.nextSetBit(genres, 0); g >= 0; g = Bitsets.nextSetBit(genres, g + 1)) {
+            genreBounds[g] += weights.getSharedGenre() * rarity(genreRarity, g);
+        }
+        if (caller.isProducer()) {
+            similarity.addBounds(caller.getProducerGenres(), weights.getSpecificGenre(), genreRarity, genreBounds);
+        }
+        if (caller.isArtist()) {
+            similarity.addBounds(caller.getArtistGenres(), weights.getSpecificGenre(), genreRarity, genreBounds);
+        }
+        for (int g = 0; g < genreBounds.length; g++) {
+            if (genreBounds[g] > 0.0) {
+                terms.add(new Term(matchingIndex.genrePosting(g), genreBounds[g] * slack));
+            }
+        }
+        if (caller.isArtist()) {
+            long[] skills = caller.getArtistSkills();
+            for (int s = Bitsets.nextSetBit(skills, 0); s >= 0; s = Bitsets.nextSetBit(skills, s + 1)) {
+                terms.add(new Term(matchingIndex.skillPosting(s), weights.getSharedSkill() * rarity(skillRarity, s) * slack));
+            }
+        }
+        terms.sort(Comparator.comparingDouble((Term term) -> term.weight).reversed());
+        return terms;
+    }
+
+    private static double rarity(float[] rarity, int id) {
+        return rarity == null || id >= rarity.length ? 1.0 : rarity[id];
+    }
+
+    /**
+     * Splits the word range in halves down to {@code leafWords}, walks the leaves and merges their heaps.
+     * The caller's read lock on the index is held for the whole {@code invoke}, so workers see a stable index.
+     */
+    private class PartitionTask extends RecursiveTask<PriorityQueue<MatchedUser>> {
+        private final MatchWeights weights;
+        private final IndexedUser caller;
+        private final List<Term> terms;
+        private final double[] remaining;
+        private final long[] eligible;
+        private final long[] connected;
+        private final int k;
+        private final int fromWord;
+        private final int toWord;
+        private final int leafWords;
+        private final MatchDeadline deadline;
+
+        PartitionTask(MatchWeights weights, IndexedUser caller, List<Term> terms, double[] remaining, long[] eligible,
+                      long[] connected, int k, int fromWord, int toWord, int leafWords, MatchDeadline deadline) {
+            this.weights = weights;
+            this.caller = caller;
+            this.terms = terms;
+            this.remaining = remaining;
+            this.eligible = eligible;
+            this.connected = connected;
+            this.k = k;
+            this.fromWord = fromWord;
+            this.toWord = toWord;
+            this.leafWords = leafWords;
+            this.deadline = deadline;
+        }
+
+        @Override
+        protected PriorityQueue<MatchedUser> compute() {
+            if (toWord - fromWord <= leafWords) {
+                return walk(weights, caller, terms, remaining, eligible, connected, k, fromWord, toWord, deadline);
+            }
+            int mid = (fromWord + toWord) >>> 1;
+            PartitionTask right = new PartitionTask(weights, caller, terms, remaining, eligible, connected, k,
+                    mid, toWord, leafWords, deadline);
+            right.fork();
+            PriorityQueue<MatchedUser> heap = new PartitionTask(weights, caller, terms, remaining, eligible, connected, k,
+                    fromWord, mid, leafWords, deadline).compute();
+            for (MatchedUser match : right.join()) {
+                offer(heap, k, match);
+            }
+            return heap;
+        }
+    }
+
+    private record Term(long[] posting, double weight) {
+    }
+
+    /**
+     * @param heap     best matches of the partition, worst first.
+     * @param eligible candidates in the partition.
+     */
+    private record Partition(PriorityQueue<MatchedUser> heap, int eligible) {
+    }
+}
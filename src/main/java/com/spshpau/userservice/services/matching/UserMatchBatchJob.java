@@ -0,0 +1,147 @@
+package com.spshpau.userservice.services.matching;
+
+import com.spshpau.userservice.config.MatchingConfig;
+import com.spshpau.userservice.model.User;
+import com.spshpau.userservice.repositories.UserMatchRepository;
+import com.spshpau.userservice.repositories.UserRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.stream.IntStream;
+
+/**
+ * Computes the top-N match lists of all active users into {@code user_matches}, see {@link UserMatchStore}.
+ * <p>
+ * The user-id space is split into {@code matching.batch.partitions} ranges by the leading 16 bits of the id,
+ * and the ranges are computed in parallel on {@link MatchingConfig#MATCH_BATCH_EXECUTOR}.
+ * A range is only computed while holding a transaction-scoped Postgres advisory lock on it, so with a fleet of
+ * instances every range is computed by one of them, and only lists missing or older than
+ * {@code matching.batch.refresh-after} are recomputed.
+ * <p>
+ * Each list is ranked and saved in a short transaction of its own, stamped with the time ranking started, so a
+ * write committing meanwhile only costs that one list ({@link UserMatchStore#saveIfCurrent}); it is recomputed
+ * on the next run.
+ */
+@Component
+@Slf4j
+public class UserMatchBatchJob {
+
+    /** Namespace of the advisory lock keys, one key per partition. */
+    static final long PARTITION_LOCK_BASE = 0x75736572_6d000000L;
+    private static final int PREFIXES = 1 << 16;
+
+    private final UserMatchRepository userMatchRepository;
+    private final UserRepository userRepository;
+    private final UserMatchStore userMatchStore;
+    private final MatchRanker matchRanker;
+    private final TransactionTemplate transaction;
+    private final TransactionTemplate listTransaction;
+    private final Executor batchExecutor;
+    private final boolean enabled;
+    private final int partitions;
+    private final Duration refreshAfter;
+    private final Counter computed;
+
+    public UserMatchBatchJob(UserMatchRepository userMatchRepository,
+                             UserRepository userRepository,
+                             UserMatchStore userMatchStore,
+                             MatchRanker matchRanker,
+                             PlatformTransactionManager transactionManager,
+                             @Qualifier(MatchingConfig.MATCH_BATCH_EXECUTOR) Executor batchExecutor,
+                             @Value("${matching.batch.enabled:true}") boolean enabled,
+                             @Value("${matching.batch.partitions:64}") int partitions,
+                             @Value("${matching.batch.refresh-after:3h}") Duration refreshAfter,
+                             MeterRegistry meterRegistry) {
+        this.userMatchRepository = userMatchRepository;
+        this.userRepository = userRepository;
+        this.userMatchStore = userMatchStore;
+        this.matchRanker = matchRanker;
+        this.transaction = new TransactionTemplate(transactionManager);
+        // Commits each list on its own while the partition transaction keeps holding the lock
+        this.listTransaction = new TransactionTemplate(transactionManager);
+        this.listTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.batchExecutor = batchExecutor;
+        this.enabled = enabled;
+        this.partitions = Math.max(1, Math.min(partitions, PREFIXES));
+        this.refreshAfter = refreshAfter;
+        this.computed = Counter.builder("matching.batch.computed")
+                .description("Match lists computed and persisted by the batch job")
+                .register(meterRegistry);
+    }
+
+    @Scheduled(fixedDelayString = "${matching.batch.interval:PT1H}",
+            initialDelayString = "${matching.batch.initial-delay:PT5M}")
+    public void run() {
+        if (!enabled) {
+            return;
+        }
+        Instant staleBefore = Instant.now().minus(refreshAfter);
+        List<CompletableFuture<Integer>> runs = IntStream.range(0, partitions)
+                .mapToObj(partition -> CompletableFuture.supplyAsync(() -> computePartition(partition, staleBefore), batchExecutor)
+                        .exceptionally(e -> {
+                            log.warn("Match batch partition {} failed", partition, e);
+                            return 0;
+                        }))
+                .toList();
+        int lists = runs.stream().mapToInt(CompletableFuture::join).sum();
+        int pruned = userMatchStore.pruneInvalidations();
+        log.info("Match batch computed {} lists over {} partitions, pruned {} invalidations", lists, partitions, pruned);
+    }
+
+    /**
+     * @return how many lists were computed; 0 when another instance holds the partition.
+     */
+    int computePartition(int partition, Instant staleBefore) {
+        Integer lists = transaction.execute(status -> {
+            if (!userMatchRepository.tryPartitionLock(PARTITION_LOCK_BASE + partition)) {
+                log.debug("Match batch partition {} is being computed elsewhere", partition);
+                return 0;
+            }
+            List<UUID> due = userMatchRepository.findUserIdsDueForBatch(lowerBound(partition), upperBound(partition), staleBefore);
+            int count = 0;
+            for (UUID userId : due) {
+                if (Boolean.TRUE.equals(listTransaction.execute(list -> computeList(userId)))) {
+                    computed.increment();
+                    count++;
+                }
+            }
+            return count;
+        });
+        return lists == null ? 0 : lists;
+    }
+
+    private boolean computeList(UUID userId) {
+        User user = userRepository.findById(userId).filter(User::isActive).orElse(null);
+        if (user == null) {
+            return false;
+        }
+        Instant rankedAt = Instant.now();
+        return userMatchStore.saveIfCurrent(matchRanker.rank(user, userMatchStore.getDepth()), rankedAt);
+    }
+
+    UUID lowerBound(int partition) {
+        return new UUID(prefixStart(partition) << 48, 0L);
+    }
+
+    UUID upperBound(int partition) {
+        return new UUID(((prefixStart(partition + 1) - 1) << 48) | 0x0000_FFFF_FFFF_FFFFL, -1L);
+    }
+
+    private long prefixStart(int partition) {
+        return (long) partition * PREFIXES / partitions;
+    }
+}
@@ -0,0 +1,235 @@
+package com.spshpau.userservice.services.matching;
+
+import com.spshpau.userservice.model.UserMatch;
+import com.spshpau.userservice.repositories.MatchListInvalidationRepository;
+import com.spshpau.userservice.repositories.UserMatchRepository;
+import com.spshpau.userservice.repositories.projections.MatchListTailRow;
+import com.spshpau.userservice.services.events.MatchingProfileChangedEvent;
+import com.spshpau.userservice.services.events.UserBlockChangedEvent;
+import com.spshpau.userservice.services.events.UserConnectionChangedEvent;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.StringJoiner;
+import java.util.UUID;
+import java.util.function.Function;
+
+/**
+ * Persisted top-N match lists in {@code user_matches}, shared by every instance and kept across restarts.
+ * Lists are written by {@link UserMatchBatchJob} and read back when younger than {@code matching.batch.max-age}.
+ * <p>
+ * Writes that change rankings delete the affected lists before their transaction commits, so a list never
+ * outlives the write that made it stale: the user's own list on a profile change, plus every list it appears in
+ * when it is activated or deactivated, and the lists of both parties on a block or connection change.
+ * Other lists are patched in place after a profile change instead, see {@link #patch}.
+ * <p>
+ * Those writes also record when each deleted list went stale, so a list the batch job ranked from the index before
+ * the write cannot come back: {@link #saveIfCurrent} skips it, and {@link #loadFresh} ignores it if it was saved
+ * just as the write committed.
+ */
+@Component
+@Slf4j
+public class UserMatchStore {
+
+    private final UserMatchRepository userMatchRepository;
+    private final MatchListInvalidationRepository invalidationRepository;
+    private final Duration maxAge;
+    private final int depth;
+    private final MatchThresholds matchThresholds;
+
+    public UserMatchStore(UserMatchRepository userMatchRepository,
+                          MatchListInvalidationRepository invalidationRepository,
+                          @Value("${matching.batch.max-age:6h}") Duration maxAge,
+                          @Value("${matching.batch.depth:500}") int depth,
+                          MatchThresholds matchThresholds) {
+        this.userMatchRepository = userMatchRepository;
+        this.invalidationRepository = invalidationRepository;
+        this.matchThresholds = matchThresholds;
+        this.maxAge = maxAge;
+        this.depth = depth;
+    }
+
+    /**
+     * How many matches a persisted list holds at most.
+     */
+    public int getDepth() {
+        return depth;
+    }
+
+    /**
+     * Reads the head of the user's persisted list with one indexed range query.
+     *
+     * @return the list, if it is fresh enough and deep enough to fill a {@code window} of matches.
+     */
+    public Optional<RankedMatches> loadFresh(UUID userId, int window) {
+        List<UserMatch> rows = userMatchRepository.findByIdUserIdOrderByIdRankAsc(userId, PageRequest.of(0, window));
+        if (rows.isEmpty()) {
+            return Optional.empty();
+        }
+        UserMatch head = rows.get(0);
+        if (head.getComputedAt().isBefore(Instant.now().minus(maxAge))
+                || rows.size() < Math.min(window, head.getTotalCandidates())
+                || invalidationRepository.existsByUserIdAndInvalidatedAtGreaterThanEqual(userId, head.getComputedAt())) {
+            return Optional.empty();
+        }
+        RankedMatches ranking = toRanking(userId, rows);
+        matchThresholds.record(ranking);
+        return Optional.of(ranking);
+    }
+
+    /**
+     * Re-places {@code matchUserId} in every persisted list it is in or now belongs in, see
+     * {@link RankedMatches#rescored}; must run inside a transaction. Candidates are the lists holding it and the
+     * truncated lists whose last place it beats, found through the match-user and rank indexes: only last places
+     * up to {@code bestScore} are read, so a user scoring low for everyone touches few lists.
+     * A list it drops out of the end of is deleted, since only lists of full depth can be found again this way.
+     * <p>
+     * A user just {@code activated} is a new candidate of every list instead ({@link RankedMatches#withCandidate}):
+     * it joins every complete list and the truncated lists whose last place it beats. Every active user is a
+     * candidate of every list, so complete lists only exist while there are at most {@code depth} of them.
+     *
+     * @param bestScore the highest score {@code matchUserId} has in any owner's list.
+     * @param scores    the pair score of {@code matchUserId} in a given owner's list, or {@code null} if it is no
+     *                  candidate of that owner.
+     * @param usernames resolves usernames of tied candidates.
+     * @return how many lists were rewritten or deleted.
+     */
+    public int patch(UUID matchUserId, boolean activated, float bestScore, Function<UUID, Float> scores,
+                     Function<UUID, String> usernames) {
+        Set<UUID> owners = new LinkedHashSet<>(activated
+                ? userMatchRepository.findCompleteListOwners(depth)
+                : userMatchRepository.findListOwnersContaining(matchUserId));
+        for (MatchListTailRow tail : userMatchRepository.findTruncatedListTailsAtMost(depth, bestScore)) {
+            Float score = scores.apply(tail.getUserId());
+            if (score != null && score >= tail.getScore()) {
+                owners.add(tail.getUserId());
+            }
+        }
+        owners.remove(matchUserId);
+
+        int patched = 0;
+        for (UUID ownerId : owners) {
+            Float score = scores.apply(ownerId);
+            List<UserMatch> rows = userMatchRepository.findByIdUserIdOrderByIdRankAsc(ownerId, PageRequest.of(0, depth));
+            if (score == null || rows.isEmpty()) {
+                continue;
+            }
+            RankedMatches ranking = toRanking(ownerId, rows);
+            RankedMatches rescored = activated
+                    ? ranking.withCandidate(matchUserId, score, usernames)
+                    : ranking.rescored(matchUserId, score, usernames);
+            if (rescored == ranking) {
+                continue;
+            }
+            if (!rescored.isComplete() && rescored.size() < depth) {
+                userMatchRepository.deleteListsOf(List.of(ownerId));
+            } else {
+                save(rescored);
+            }
+            patched++;
+        }
+        return patched;
+    }
+
+    private RankedMatches toRanking(UUID userId, List<UserMatch> rows) {
+        UserMatch head = rows.get(0);
+        UUID[] matchIds = new UUID[rows.size()];
+        float[] scores = new float[rows.size()];
+        for (int i = 0; i < rows.size(); i++) {
+            matchIds[i] = rows.get(i).getMatchUserId();
+            scores[i] = rows.get(i).getScore();
+        }
+        return new RankedMatches(userId, matchIds, scores, head.getTotalCandidates(), head.getComputedAt());
+    }
+
+    /**
+     * Replaces the user's persisted list; must run inside a transaction.
+     */
+    public void save(RankedMatches ranking) {
+        save(ranking, ranking.getComputedAt());
+    }
+
+    /**
+     * Replaces the user's persisted list with one ranked from the index as of {@code rankedAt}, stamped with that
+     * time, unless a write has made the user's list stale since; must run inside a short transaction of its own.
+     *
+     * @return whether the list was saved.
+     */
+    public boolean saveIfCurrent(RankedMatches ranking, Instant rankedAt) {
+        if (invalidationRepository.existsByUserIdAndInvalidatedAtGreaterThanEqual(ranking.getUserId(), rankedAt)) {
+            log.debug("Discarded the match list of user {}, invalidated while it was ranked", ranking.getUserId());
+            return false;
+        }
+        save(ranking, rankedAt);
+        return true;
+    }
+
+    /**
+     * Forgets invalidations older than any list {@link #loadFresh} still serves.
+     */
+    public int pruneInvalidations() {
+        return invalidationRepository.deleteOlderThan(Instant.now().minus(maxAge));
+    }
+
+    private void save(RankedMatches ranking, Instant computedAt) {
+        userMatchRepository.deleteListsOf(List.of(ranking.getUserId()));
+        if (ranking.size() == 0) {
+            return;
+        }
+        StringJoiner matchIds = new StringJoiner(",", "{", "}");
+        StringJoiner scores = new StringJoiner(",", "{", "}");
+        for (int i = 0; i < ranking.size(); i++) {
+            matchIds.add(ranking.getMatchIds()[i].toString());
+            scores.add(Float.toString(ranking.getScores()[i]));
+        }
+        userMatchRepository.insertList(ranking.getUserId(), matchIds.toString(), scores.toString(),
+                ranking.getTotalCandidates(), computedAt);
+    }
+
+    /**
+     * Drops every persisted list, e.g. after the scoring weights changed; {@link UserMatchBatchJob} rebuilds them.
+     */
+    public void deleteAll() {
+        userMatchRepository.deleteAllInBatch();
+    }
+
+    @TransactionalEventListener(phase = TransactionPhase.BEFORE_COMMIT, fallbackExecution = true)
+    public void onMatchingProfileChanged(MatchingProfileChangedEvent event) {
+        drop(List.of(event.getUserId()));
+        if (event.isActivationChanged()) {
+            List<UUID> owners = userMatchRepository.findListOwnersContaining(event.getUserId());
+            if (owners.isEmpty()) {
+                // Usually so on activation: an inactive user is in no list
+                return;
+            }
+            invalidationRepository.invalidate(owners, Instant.now());
+            int deleted = userMatchRepository.deleteListsContaining(event.getUserId());
+            log.debug("Dropped persisted match lists containing user {} ({} rows)", event.getUserId(), deleted);
+        }
+    }
+
+    @TransactionalEventListener(phase = TransactionPhase.BEFORE_COMMIT, fallbackExecution = true)
+    public void onUserBlockChanged(UserBlockChangedEvent event) {
+        drop(List.of(event.getBlockerId(), event.getBlockedId()));
+    }
+
+    @TransactionalEventListener(phase = TransactionPhase.BEFORE_COMMIT, fallbackExecution = true)
+    public void onUserConnectionChanged(UserConnectionChangedEvent event) {
+        drop(List.of(event.getUserId1(), event.getUserId2()));
+    }
+
+    private void drop(List<UUID> userIds) {
+        invalidationRepository.invalidate(userIds, Instant.now());
+        userMatchRepository.deleteListsOf(userIds);
+    }
+}
@@ -0,0 +1,19 @@
+package com.spshpau.userservice.services.wrappers;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import org.springframework.data.domain.Page;
+
+@Getter
+@AllArgsConstructor
+public class CursorPage<T> {
+    private Page<T> page;
+    /** Opaque cursor of the following page, or {@code null} if this is the last one. */
+    private String nextCursor;
+    /** Whether the ranking behind the page stopped at its deadline, with the best matches found until then. */
+    private boolean partial;
+
+    public CursorPage(Page<T> page, String nextCursor) {
+        this(page, nextCursor, false);
+    }
+}
@@ -0,0 +1,21 @@
+package com.spshpau.userservice.services.wrappers;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.util.List;
+
+@Getter
+@AllArgsConstructor
+public class MatchPage {
+    /** The requested slice of the ranking, best match first. */
+    private List<RankedMatch> matches;
+    /** Number of users in the full ranking. */
+    private long totalCandidates;
+    /** Whether the ranking stopped at its deadline, with the best matches found until then. */
+    private boolean partial;
+
+    public MatchPage(List<RankedMatch> matches, long totalCandidates) {
+        this(matches, totalCandidates, false);
+    }
+}
@@ -1,12 +1,12 @@
 package com.spshpau.userservice.services.wrappers;
 
-import com.spshpau.userservice.model.User;
+import com.spshpau.userservice.services.matching.IndexedUser;
 import lombok.AllArgsConstructor;
 import lombok.Getter;
 
 @Getter
 @AllArgsConstructor
 public class MatchedUser {
-    private User user;
+    private IndexedUser user;
     private double score;
 }
@@ -0,0 +1,14 @@
+package com.spshpau.userservice.services.wrappers;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.util.UUID;
+
+@Getter
+@AllArgsConstructor
+public class RankedMatch {
+    private UUID userId;
+    private String username;
+    private double score;
+}
@@ -0,0 +1,15 @@
+package com.spshpau.userservice.services.wrappers;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.util.List;
+
+@Getter
+@AllArgsConstructor
+public class TopKMatches {
+    /** The best matches, in ranked order; at most K of them. */
+    private List<MatchedUser> ranked;
+    /** Number of users that would have been ranked without the K limit. */
+    private int totalCandidates;
+}
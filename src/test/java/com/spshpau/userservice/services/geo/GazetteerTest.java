@@ -0,0 +1,47 @@
+package com.spshpau.userservice.services.geo;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.core.io.ClassPathResource;
+
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class GazetteerTest {
+
+    private final Gazetteer gazetteer = new Gazetteer(new ClassPathResource("geo/gazetteer.csv"));
+
+    @Test
+    void locate_ignoresCaseAccentsAndSpacing() {
+        GeoPoint plzen = gazetteer.locate("Plzen").orElseThrow();
+
+        assertEquals(Optional.of(plzen), gazetteer.locate("  PLZEŇ "));
+        assertEquals(Optional.of(plzen), gazetteer.locate("Pilsen"));
+        assertEquals(gazetteer.locate("Ceske Budejovice"), gazetteer.locate("české   budějovice"));
+    }
+
+    @Test
+    void locate_acceptsCountryOrRegionAfterComma() {
+        GeoPoint munich = gazetteer.locate("Munich").orElseThrow();
+
+        assertEquals(Optional.of(munich), gazetteer.locate("München, Germany"));
+        assertEquals(Optional.of(munich), gazetteer.locate("Munich, Bavaria"));
+        assertEquals(48.1351, munich.getLatitude(), 1e-9);
+    }
+
+    @Test
+    void locate_returnsEmptyForUnknownOrBlankLocations() {
+        assertTrue(gazetteer.locate("Atlantis").isEmpty());
+        assertTrue(gazetteer.locate("   ").isEmpty());
+        assertTrue(gazetteer.locate(null).isEmpty());
+    }
+
+    @Test
+    void distanceKm_matchesKnownCityDistance() {
+        GeoPoint prague = gazetteer.locate("Prague").orElseThrow();
+        GeoPoint vienna = gazetteer.locate("Vienna").orElseThrow();
+
+        assertEquals(252, prague.distanceKm(vienna), 5);
+        assertEquals(0, prague.distanceKm(prague), 1e-9);
+    }
+}
@@ -10,8 +10,11 @@ import com.spshpau.userservice.repositories.ArtistProfileRepository;
 import com.spshpau.userservice.repositories.GenreRepository;
 import com.spshpau.userservice.repositories.SkillRepository;
 import com.spshpau.userservice.repositories.UserRepository;
+import com.spshpau.userservice.services.events.MatchingProfileChangedEvent;
+import com.spshpau.userservice.services.events.MatchingProfileCompletedEvent;
 import com.spshpau.userservice.services.exceptions.*;
 
+import org.springframework.context.ApplicationEventPublisher;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
@@ -41,6 +44,9 @@ class ArtistProfileServiceImplTest {
     @Mock
     private SkillRepository skillRepository;
 
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+
     @InjectMocks
     private ArtistProfileServiceImpl artistProfileService;
 
@@ -148,6 +154,7 @@ class ArtistProfileServiceImplTest {
         ArtistProfile capturedProfileForSave = profileCaptor.getValue();
 
         assertEquals(user, capturedProfileForSave.getUser());
+        verify(eventPublisher).publishEvent(any(MatchingProfileCompletedEvent.class));
     }
 
     @Test
@@ -163,6 +170,18 @@ class ArtistProfileServiceImplTest {
         verify(artistProfileRepository).save(artistProfile);
     }
 
+    @Test
+    void createOrUpdateArtistProfile_existingCompleteProfile_shouldNotAnnounceItAsNewMatch() {
+        when(userRepository.findById(userId)).thenReturn(Optional.of(user));
+        when(artistProfileRepository.findById(userId)).thenReturn(Optional.of(artistProfile));
+        when(artistProfileRepository.save(any(ArtistProfile.class))).thenReturn(artistProfile);
+
+        artistProfileService.createOrUpdateArtistProfile(userId, profileUpdateDto);
+
+        verify(eventPublisher).publishEvent(any(MatchingProfileChangedEvent.class));
+        verify(eventPublisher, never()).publishEvent(any(MatchingProfileCompletedEvent.class));
+    }
+
     @Test
     void createOrUpdateArtistProfile_userNotFound_shouldThrowUserNotFoundException() {
         when(userRepository.findById(userId)).thenReturn(Optional.empty());
@@ -209,6 +228,11 @@ class ArtistProfileServiceImplTest {
         assertTrue(result.getGenres().stream().anyMatch(g -> g.getId().equals(genre1Id)));
         assertTrue(artistProfile.getGenres().contains(genre1));
         assertTrue(genre1.getArtistProfiles().contains(artistProfile));
+
+        ArgumentCaptor<MatchingProfileChangedEvent> eventCaptor = ArgumentCaptor.forClass(MatchingProfileChangedEvent.class);
+        verify(eventPublisher).publishEvent(eventCaptor.capture());
+        assertEquals(userId, eventCaptor.getValue().getUserId());
+        assertTrue(eventCaptor.getValue().getSnapshot().getArtistProfile().getGenreIds().contains(genre1Id));
     }
 
     @Test
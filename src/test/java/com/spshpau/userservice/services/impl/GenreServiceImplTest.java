@@ -1,9 +1,14 @@
 package com.spshpau.userservice.services.impl;
 
 import com.spshpau.userservice.dto.profiledto.GenreDto;
+import com.spshpau.userservice.dto.profiledto.GenreSimilarityDto;
 import com.spshpau.userservice.dto.profiledto.GenreSummaryDto;
 import com.spshpau.userservice.model.Genre;
+import com.spshpau.userservice.model.GenreSimilarity;
+import com.spshpau.userservice.model.GenreSimilarityId;
 import com.spshpau.userservice.repositories.GenreRepository;
+import com.spshpau.userservice.repositories.GenreSimilarityRepository;
+import com.spshpau.userservice.services.events.GenreSimilarityChangedEvent;
 import com.spshpau.userservice.services.exceptions.DuplicateException;
 import com.spshpau.userservice.services.exceptions.GenreNotFoundException;
 
@@ -14,6 +19,7 @@ import org.mockito.ArgumentCaptor;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageImpl;
@@ -35,6 +41,12 @@ class GenreServiceImplTest {
     @Mock
     private GenreRepository genreRepository;
 
+    @Mock
+    private GenreSimilarityRepository genreSimilarityRepository;
+
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+
     @InjectMocks
     private GenreServiceImpl genreService;
 
@@ -168,4 +180,70 @@ class GenreServiceImplTest {
 
         verify(genreRepository).findAll(pageable);
     }
-}
\ No newline at end of file
+
+    // --- Tests for genre similarities ---
+    @Test
+    void setGenreSimilarity_whenBothGenresExist_shouldSaveManualPairAndPublishEvent() {
+        Genre house = new Genre("House");
+        house.setId(UUID.randomUUID());
+        when(genreRepository.existsById(genreId)).thenReturn(true);
+        when(genreRepository.findById(house.getId())).thenReturn(Optional.of(house));
+
+        GenreSimilarityDto result = genreService.setGenreSimilarity(genreId, house.getId(), 0.75f);
+
+        ArgumentCaptor<GenreSimilarity> captor = ArgumentCaptor.forClass(GenreSimilarity.class);
+        verify(genreSimilarityRepository).save(captor.capture());
+        assertEquals(GenreSimilarityId.of(house.getId(), genreId), captor.getValue().getId());
+        assertEquals(0.75f, captor.getValue().getSimilarity());
+        assertTrue(captor.getValue().isManual());
+        assertEquals("House", result.getRelatedGenreName());
+        verify(eventPublisher).publishEvent(any(GenreSimilarityChangedEvent.class));
+    }
+
+    @Test
+    void setGenreSimilarity_whenSameGenre_shouldThrowIllegalArgumentException() {
+        assertThrows(IllegalArgumentException.class, () -> genreService.setGenreSimilarity(genreId, genreId, 0.5f));
+        verify(genreSimilarityRepository, never()).save(any());
+    }
+
+    @Test
+    void setGenreSimilarity_whenRelatedGenreDoesNotExist_shouldThrowGenreNotFoundException() {
+        UUID missing = UUID.randomUUID();
+        when(genreRepository.existsById(genreId)).thenReturn(true);
+        when(genreRepository.findById(missing)).thenReturn(Optional.empty());
+
+        assertThrows(GenreNotFoundException.class, () -> genreService.setGenreSimilarity(genreId, missing, 0.5f));
+        verify(genreSimilarityRepository, never()).save(any());
+        verifyNoInteractions(eventPublisher);
+    }
+
+    @Test
+    void getGenreSimilarities_shouldReturnRelatedGenresMostSimilarFirst() {
+        Genre house = new Genre("House");
+        house.setId(UUID.randomUUID());
+        Genre trance = new Genre("Trance");
+        trance.setId(UUID.randomUUID());
+        when(genreRepository.existsById(genreId)).thenReturn(true);
+        when(genreSimilarityRepository.findAllOf(genreId)).thenReturn(List.of(
+                new GenreSimilarity(GenreSimilarityId.of(genreId, trance.getId()), 0.3f, false),
+                new GenreSimilarity(GenreSimilarityId.of(genreId, house.getId()), 0.8f, true)));
+        when(genreRepository.findAllById(any())).thenReturn(List.of(house, trance));
+
+        List<GenreSimilarityDto> result = genreService.getGenreSimilarities(genreId);
+
+        assertEquals(List.of(house.getId(), trance.getId()), result.stream().map(GenreSimilarityDto::getRelatedGenreId).toList());
+        assertEquals("Trance", result.get(1).getRelatedGenreName());
+        assertTrue(result.get(0).isManual());
+    }
+
+    @Test
+    void deleteGenre_whenGenreHasSimilarities_shouldDropThemAndPublishEvent() {
+        when(genreRepository.existsById(genreId)).thenReturn(true);
+        when(genreSimilarityRepository.deleteAllOf(genreId)).thenReturn(2);
+
+        genreService.deleteGenre(genreId);
+
+        verify(genreRepository).deleteById(genreId);
+        verify(eventPublisher).publishEvent(any(GenreSimilarityChangedEvent.class));
+    }
+}
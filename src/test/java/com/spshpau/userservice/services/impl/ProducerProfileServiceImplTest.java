@@ -10,11 +10,14 @@ import com.spshpau.userservice.model.enums.ExperienceLevel;
 import com.spshpau.userservice.repositories.GenreRepository;
 import com.spshpau.userservice.repositories.ProducerProfileRepository;
 import com.spshpau.userservice.repositories.UserRepository;
+import com.spshpau.userservice.services.events.MatchingProfileChangedEvent;
+import com.spshpau.userservice.services.events.MatchingProfileCompletedEvent;
 import com.spshpau.userservice.services.exceptions.GenreLimitExceededException;
 import com.spshpau.userservice.services.exceptions.GenreNotFoundException;
 import com.spshpau.userservice.services.exceptions.ProfileNotFoundException;
 import com.spshpau.userservice.services.exceptions.UserNotFoundException;
 
+import org.springframework.context.ApplicationEventPublisher;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
@@ -44,6 +47,9 @@ class ProducerProfileServiceImplTest {
     @Mock
     private GenreRepository genreRepository;
 
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+
     @InjectMocks
     private ProducerProfileServiceImpl producerProfileService;
 
@@ -135,6 +141,7 @@ class ProducerProfileServiceImplTest {
         verify(producerProfileRepository).save(profileCaptor.capture());
         assertEquals(user, profileCaptor.getValue().getUser());
         assertEquals(ExperienceLevel.BEGINNER, profileCaptor.getValue().getExperienceLevel());
+        verify(eventPublisher).publishEvent(any(MatchingProfileCompletedEvent.class));
     }
 
     @Test
@@ -154,6 +161,18 @@ class ProducerProfileServiceImplTest {
         verify(producerProfileRepository).save(producerProfile);
     }
 
+    @Test
+    void createOrUpdateProducerProfile_whenProfileIsAlreadyComplete_shouldNotAnnounceItAsNewMatch() {
+        when(userRepository.findById(userId)).thenReturn(Optional.of(user));
+        when(producerProfileRepository.findById(userId)).thenReturn(Optional.of(producerProfile));
+        when(producerProfileRepository.save(any(ProducerProfile.class))).thenReturn(producerProfile);
+
+        producerProfileService.createOrUpdateProducerProfile(userId, profileUpdateDto);
+
+        verify(eventPublisher).publishEvent(any(MatchingProfileChangedEvent.class));
+        verify(eventPublisher, never()).publishEvent(any(MatchingProfileCompletedEvent.class));
+    }
+
     @Test
     void createOrUpdateProducerProfile_whenUserDoesNotExist_shouldThrowUserNotFoundException() {
         when(userRepository.findById(userId)).thenReturn(Optional.empty());
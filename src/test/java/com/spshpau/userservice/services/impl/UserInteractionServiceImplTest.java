@@ -7,8 +7,11 @@ import com.spshpau.userservice.model.enums.ConnectionStatus;
 import com.spshpau.userservice.repositories.UserConnectionRepository;
 import com.spshpau.userservice.repositories.UserRepository;
 import com.spshpau.userservice.services.enums.InteractionStatus;
+import com.spshpau.userservice.services.events.UserBlockChangedEvent;
+import com.spshpau.userservice.services.events.UserConnectionChangedEvent;
 import com.spshpau.userservice.services.exceptions.*;
 
+import org.springframework.context.ApplicationEventPublisher;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
@@ -43,6 +46,9 @@ class UserInteractionServiceImplTest {
     @Mock
     private UserConnectionRepository userConnectionRepository;
 
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+
     @InjectMocks
     private UserInteractionServiceImpl userInteractionService;
 
@@ -207,6 +213,12 @@ class UserInteractionServiceImplTest {
 
         UserConnection captured = connectionCaptor.getValue();
         assertEquals(ConnectionStatus.ACCEPTED, captured.getStatus());
+
+        ArgumentCaptor<UserConnectionChangedEvent> eventCaptor = ArgumentCaptor.forClass(UserConnectionChangedEvent.class);
+        verify(eventPublisher).publishEvent(eventCaptor.capture());
+        assertEquals(addresseeId, eventCaptor.getValue().getUserId1());
+        assertEquals(requesterId, eventCaptor.getValue().getUserId2());
+        assertTrue(eventCaptor.getValue().isConnected());
     }
 
     @Test
@@ -257,6 +269,10 @@ class UserInteractionServiceImplTest {
 
         userInteractionService.removeConnection(requesterId, addresseeId);
         verify(userConnectionRepository).delete(acceptedConnection);
+
+        ArgumentCaptor<UserConnectionChangedEvent> eventCaptor = ArgumentCaptor.forClass(UserConnectionChangedEvent.class);
+        verify(eventPublisher).publishEvent(eventCaptor.capture());
+        assertFalse(eventCaptor.getValue().isConnected());
     }
 
     // --- Tests for getConnectionsDto ---
@@ -307,6 +323,12 @@ class UserInteractionServiceImplTest {
         assertTrue(blocker.getBlockedUsers().contains(blocked));
         verify(userConnectionRepository, never()).delete(any());
         verify(userRepository).save(blocker);
+
+        ArgumentCaptor<UserBlockChangedEvent> eventCaptor = ArgumentCaptor.forClass(UserBlockChangedEvent.class);
+        verify(eventPublisher).publishEvent(eventCaptor.capture());
+        assertEquals(blockerId, eventCaptor.getValue().getBlockerId());
+        assertEquals(blockedId, eventCaptor.getValue().getBlockedId());
+        assertTrue(eventCaptor.getValue().isBlocked());
     }
 
 
@@ -359,6 +381,7 @@ class UserInteractionServiceImplTest {
         userInteractionService.blockUser(blockerId, blockedId);
 
         verify(userRepository, never()).save(blocker);
+        verify(eventPublisher, never()).publishEvent(any());
     }
 
 
@@ -373,6 +396,7 @@ class UserInteractionServiceImplTest {
 
         assertFalse(blocker.getBlockedUsers().contains(blocked));
         verify(userRepository).save(blocker);
+        verify(eventPublisher).publishEvent(any(UserBlockChangedEvent.class));
     }
 
     @Test
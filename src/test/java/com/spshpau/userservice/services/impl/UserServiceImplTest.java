@@ -1,21 +1,57 @@
 package com.spshpau.userservice.services.impl;
 
+import com.spshpau.userservice.config.CacheConfig;
+import com.spshpau.userservice.dto.matchdto.MatchCriteria;
+import com.spshpau.userservice.dto.matchdto.MatchStreamEvent;
 import com.spshpau.userservice.dto.userdto.UserDetailDto;
 import com.spshpau.userservice.dto.userdto.UserSearchCriteria;
 import com.spshpau.userservice.dto.userdto.UserSummaryDto;
 import com.spshpau.userservice.model.*;
 import com.spshpau.userservice.model.enums.ConnectionStatus;
 import com.spshpau.userservice.model.enums.ExperienceLevel;
+import com.spshpau.userservice.model.enums.ProfileType;
+import com.spshpau.userservice.repositories.MatchListInvalidationRepository;
 import com.spshpau.userservice.repositories.UserConnectionRepository;
+import com.spshpau.userservice.repositories.UserMatchRepository;
 import com.spshpau.userservice.repositories.UserRepository;
+import com.spshpau.userservice.repositories.projections.MatchScoreRow;
 import com.spshpau.userservice.repositories.specifications.UserSpecification;
+import com.spshpau.userservice.services.events.MatchingProfileChangedEvent;
+import com.spshpau.userservice.services.exceptions.CursorExpiredException;
+import com.spshpau.userservice.services.exceptions.InvalidCursorException;
 import com.spshpau.userservice.services.exceptions.UserNotFoundException;
-
+import com.spshpau.userservice.services.geo.Gazetteer;
+import com.spshpau.userservice.services.matching.CallerRelationsLoader;
+import com.spshpau.userservice.services.matching.IndexMatchEngine;
+import com.spshpau.userservice.services.matching.MatchCursor;
+import com.spshpau.userservice.services.matching.MatchDeadline;
+import com.spshpau.userservice.services.matching.MatchEngine;
+import com.spshpau.userservice.services.matching.MatchRanker;
+import com.spshpau.userservice.services.matching.MatchRankingCache;
+import com.spshpau.userservice.services.matching.MatchScorer;
+import com.spshpau.userservice.services.matching.MatchSnapshotStore;
+import com.spshpau.userservice.services.matching.MatchThresholds;
+import com.spshpau.userservice.services.matching.MatchWeights;
+import com.spshpau.userservice.services.matching.MatchingIndex;
+import com.spshpau.userservice.services.matching.MatchingSnapshot;
+import com.spshpau.userservice.services.matching.SqlMatchEngine;
+import com.spshpau.userservice.services.matching.TopKMatchEvaluator;
+import com.spshpau.userservice.services.matching.UserMatchStore;
+import com.spshpau.userservice.services.wrappers.CursorPage;
+import com.spshpau.userservice.services.wrappers.MatchPage;
+import com.spshpau.userservice.services.wrappers.RankedMatch;
+
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.caffeine.CaffeineCache;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.test.util.ReflectionTestUtils;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.ArgumentCaptor;
-import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.mockito.junit.jupiter.MockitoSettings;
@@ -23,7 +59,10 @@ import org.mockito.quality.Strictness;
 import org.springframework.data.domain.*;
 import org.springframework.data.jpa.domain.Specification;
 
+import java.time.Duration;
+import java.time.Instant;
 import java.util.*;
+import java.util.concurrent.ForkJoinPool;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.any;
@@ -39,15 +78,43 @@ class UserServiceImplTest {
     @Mock
     private UserConnectionRepository userConnectionRepository;
 
-    @InjectMocks
+    @Mock
+    private UserMatchRepository userMatchRepository;
+
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+
+    private MatchingIndex matchingIndex;
+
+    private final Gazetteer gazetteer = new Gazetteer(new ClassPathResource("geo/gazetteer.csv"));
+
+    private CacheManager cacheManager;
+
     private UserServiceImpl userService;
 
     private User sampleUser;
     private UUID userId;
     private UUID keycloakId;
 
+    private void indexUsers(List<User> users) {
+        matchingIndex.replaceAll(users.stream().map(MatchingSnapshot::of).toList(), Map.of());
+    }
+
     @BeforeEach
     void setUp() {
+        matchingIndex = new MatchingIndex();
+        cacheManager = new CacheConfig().cacheManager(Duration.ofHours(4));
+        userService = new UserServiceImpl(userRepository,
+                new MatchRanker(new IndexMatchEngine(matchingIndex,
+                        new CallerRelationsLoader(matchingIndex, userConnectionRepository),
+                        new TopKMatchEvaluator(matchingIndex, new MatchScorer(matchingIndex), ForkJoinPool.commonPool(),
+                                ForkJoinPool.commonPool(), Integer.MAX_VALUE)),
+                        new MatchThresholds(10)),
+                new MatchSnapshotStore(Duration.ofMinutes(10), 500, 100),
+                new MatchRankingCache(cacheManager, new SimpleMeterRegistry()),
+                new UserMatchStore(userMatchRepository, mock(MatchListInvalidationRepository.class), Duration.ofHours(6), 500, new MatchThresholds(10)),
+                eventPublisher, gazetteer, matchingIndex);
+
         userId = UUID.randomUUID();
         keycloakId = UUID.randomUUID();
 
@@ -105,6 +172,41 @@ class UserServiceImplTest {
         assertTrue(savedUser.isActive());
     }
 
+    @Test
+    void syncUserFromKeycloak_whenNothingMatchingChanged_shouldNotPublishEvent() {
+        when(userRepository.findById(keycloakId)).thenReturn(Optional.of(sampleUser));
+        when(userRepository.save(any(User.class))).thenAnswer(invocation -> invocation.getArgument(0));
+
+        userService.syncUserFromKeycloak(keycloakId, sampleUser.getUsername(), "changed@example.com", "Changed", "Name");
+
+        verify(eventPublisher, never()).publishEvent(any(MatchingProfileChangedEvent.class));
+    }
+
+    @Test
+    void syncUserFromKeycloak_whenUsernameChanged_shouldPublishEvent() {
+        when(userRepository.findById(keycloakId)).thenReturn(Optional.of(sampleUser));
+        when(userRepository.save(any(User.class))).thenAnswer(invocation -> invocation.getArgument(0));
+
+        userService.syncUserFromKeycloak(keycloakId, "renamed", sampleUser.getEmail(), "Test", "User");
+
+        ArgumentCaptor<MatchingProfileChangedEvent> captor = ArgumentCaptor.forClass(MatchingProfileChangedEvent.class);
+        verify(eventPublisher).publishEvent(captor.capture());
+        assertFalse(captor.getValue().isActivationChanged());
+    }
+
+    @Test
+    void syncUserFromKeycloak_whenInactiveUserReturns_shouldPublishActivation() {
+        sampleUser.setActive(false);
+        when(userRepository.findById(keycloakId)).thenReturn(Optional.of(sampleUser));
+        when(userRepository.save(any(User.class))).thenAnswer(invocation -> invocation.getArgument(0));
+
+        userService.syncUserFromKeycloak(keycloakId, sampleUser.getUsername(), sampleUser.getEmail(), "Test", "User");
+
+        ArgumentCaptor<MatchingProfileChangedEvent> captor = ArgumentCaptor.forClass(MatchingProfileChangedEvent.class);
+        verify(eventPublisher).publishEvent(captor.capture());
+        assertTrue(captor.getValue().isActivationChanged());
+    }
+
     @Test
     void syncUserFromKeycloak_whenUserDoesNotExist_shouldCreateAndReturnDto() {
         when(userRepository.findById(keycloakId)).thenReturn(Optional.empty());
@@ -166,8 +268,31 @@ class UserServiceImplTest {
         assertNotNull(resultDto);
         assertEquals(userId, resultDto.getId());
         assertEquals("New Location", resultDto.getLocation());
+        assertNull(sampleUser.getLatitude());
         verify(userRepository).findById(userId);
         verify(userRepository).save(sampleUser);
+        verify(eventPublisher, never()).publishEvent(any(MatchingProfileChangedEvent.class));
+    }
+
+    @Test
+    void updateUserLocation_whenLocationKnown_shouldStoreCoordinatesAndPublishEvent() {
+        sampleUser.setLocation("Somewhere");
+        when(userRepository.findById(userId)).thenReturn(Optional.of(sampleUser));
+        when(userRepository.save(any(User.class))).thenAnswer(invocation -> invocation.getArgument(0));
+
+        UserDetailDto resultDto = userService.updateUserLocation(userId, "Praha, CZ");
+
+        assertEquals("Praha, CZ", resultDto.getLocation());
+        assertEquals(50.0755, sampleUser.getLatitude(), 1e-9);
+        assertEquals(14.4378, sampleUser.getLongitude(), 1e-9);
+        ArgumentCaptor<MatchingProfileChangedEvent> captor = ArgumentCaptor.forClass(MatchingProfileChangedEvent.class);
+        verify(eventPublisher).publishEvent(captor.capture());
+        assertEquals(userId, captor.getValue().getSnapshot().getUserId());
+        assertNotNull(captor.getValue().getSnapshot().getLocation());
+
+        // Same city, different spelling: nothing for matching to update
+        userService.updateUserLocation(userId, "Prague");
+        verify(eventPublisher, times(1)).publishEvent(any(MatchingProfileChangedEvent.class));
     }
 
     @Test
@@ -277,6 +402,10 @@ class UserServiceImplTest {
         assertFalse(sampleUser.isActive());
         verify(userRepository).findById(userId);
         verify(userRepository).save(sampleUser);
+
+        ArgumentCaptor<MatchingProfileChangedEvent> eventCaptor = ArgumentCaptor.forClass(MatchingProfileChangedEvent.class);
+        verify(eventPublisher).publishEvent(eventCaptor.capture());
+        assertFalse(eventCaptor.getValue().getSnapshot().isActive());
     }
 
     @Test
@@ -329,6 +458,35 @@ class UserServiceImplTest {
         verify(userRepository).findAll(any(UserSpecification.class), eq(pageable));
     }
 
+    @Test
+    void findActiveUsers_withinKm_shouldRestrictToUsersNearTheCaller() {
+        UUID currentUserId = UUID.randomUUID();
+        User caller = new User(); caller.setId(currentUserId); caller.setUsername("caller"); caller.setActive(true);
+        caller.setLatitude(50.0755); caller.setLongitude(14.4378); // Prague
+        User near = new User(); near.setId(UUID.randomUUID()); near.setUsername("near"); near.setActive(true);
+        near.setLatitude(50.2092); near.setLongitude(15.8328); // Hradec Kralove, ~100 km
+        User far = new User(); far.setId(UUID.randomUUID()); far.setUsername("far"); far.setActive(true);
+        far.setLatitude(48.2082); far.setLongitude(16.3738); // Vienna, ~250 km
+        User unknown = new User(); unknown.setId(UUID.randomUUID()); unknown.setUsername("unknown"); unknown.setActive(true);
+        indexUsers(List.of(caller, near, far, unknown));
+
+        UserSearchCriteria criteria = new UserSearchCriteria();
+        criteria.setWithinKm(150.0);
+        Pageable pageable = PageRequest.of(0, 10);
+        when(userRepository.findAll(any(Specification.class), any(Pageable.class))).thenReturn(Page.empty(pageable));
+
+        userService.findActiveUsers(currentUserId, criteria, pageable);
+
+        ArgumentCaptor<UserSpecification> captor = ArgumentCaptor.forClass(UserSpecification.class);
+        verify(userRepository).findAll(captor.capture(), eq(pageable));
+        assertEquals(Set.of(near.getId()), ReflectionTestUtils.getField(captor.getValue(), "nearbyUserIds"));
+
+        // A caller without a known location has nobody near them
+        userService.findActiveUsers(unknown.getId(), criteria, pageable);
+        verify(userRepository, times(2)).findAll(captor.capture(), eq(pageable));
+        assertEquals(Set.of(), ReflectionTestUtils.getField(captor.getValue(), "nearbyUserIds"));
+    }
+
     // --- Tests for findMatches ---
     @Test
     void findMatches_whenCurrentUserNotFound_shouldThrowUserNotFoundException() {
@@ -337,7 +495,7 @@ class UserServiceImplTest {
         when(userRepository.findById(currentUserId)).thenReturn(Optional.empty());
 
         assertThrows(UserNotFoundException.class, () -> {
-            userService.findMatches(currentUserId, pageable);
+            userService.findMatches(currentUserId, null, pageable);
         });
     }
 
@@ -350,7 +508,7 @@ class UserServiceImplTest {
         when(userRepository.findById(currentUserId)).thenReturn(Optional.of(sampleUser));
 
         assertThrows(UserNotFoundException.class, () -> {
-            userService.findMatches(currentUserId, pageable);
+            userService.findMatches(currentUserId, null, pageable);
         });
     }
 
@@ -397,20 +555,15 @@ class UserServiceImplTest {
 
         // --- Mocking ---
         when(userRepository.findById(currentUserId)).thenReturn(Optional.of(sampleUser));
-        when(userRepository.findBlockerUserIdsByBlockedId(currentUserId)).thenReturn(Collections.emptySet());
-        when(userRepository.findBlockedUserIdsByBlockerId(currentUserId)).thenReturn(Collections.emptySet());
-        when(userRepository.findAll(any(Specification.class))).thenReturn(allCandidatesInDb);
-
-        // Mock connections
-        UserConnection connectionToCandidate2 = new UserConnection(sampleUser, candidate2);
-        connectionToCandidate2.setStatus(ConnectionStatus.ACCEPTED);
+        indexUsers(allCandidatesInDb);
+        when(userRepository.findAllById(any())).thenReturn(allCandidatesInDb);
 
-        when(userConnectionRepository.findConnectionBetweenUsers(eq(currentUserId), eq(candidate1.getId()))).thenReturn(Optional.empty());
-        when(userConnectionRepository.findConnectionBetweenUsers(eq(currentUserId), eq(candidate2.getId()))).thenReturn(Optional.of(connectionToCandidate2));
-        when(userConnectionRepository.findConnectionBetweenUsers(eq(currentUserId), eq(candidate3.getId()))).thenReturn(Optional.empty());
+        // Mock connections: only candidate2 is connected
+        when(userConnectionRepository.findConnectedUserIds(currentUserId, ConnectionStatus.ACCEPTED))
+                .thenReturn(Set.of(candidate2.getId()));
 
         // --- Execute ---
-        Page<UserSummaryDto> result = userService.findMatches(currentUserId, pageable);
+        Page<UserSummaryDto> result = userService.findMatches(currentUserId, null, pageable).getPage();
 
         // --- Assert ---
         assertNotNull(result);
@@ -424,12 +577,11 @@ class UserServiceImplTest {
 
 
         verify(userRepository).findById(currentUserId);
-        verify(userRepository).findAll(any(Specification.class)); // The main one should be called
-        verify(userRepository, never()).findAll(any(Specification.class), any(Pageable.class)); // Fallback should not be called
+        verify(userRepository, never()).findAll(any(Specification.class)); // Candidates come from the matching index
+        verify(userRepository, never()).findAll(any(Specification.class), any(Pageable.class));
 
-        verify(userConnectionRepository, times(1)).findConnectionBetweenUsers(currentUserId, candidate1.getId());
-        verify(userConnectionRepository, times(1)).findConnectionBetweenUsers(currentUserId, candidate2.getId());
-        verify(userConnectionRepository, times(1)).findConnectionBetweenUsers(currentUserId, candidate3.getId());
+        verify(userConnectionRepository, times(1)).findConnectedUserIds(currentUserId, ConnectionStatus.ACCEPTED);
+        verify(userConnectionRepository, never()).findConnectionBetweenUsers(any(), any());
     }
 
     @Test
@@ -496,16 +648,15 @@ class UserServiceImplTest {
         List<User> allCandidatesInDb = Arrays.asList(candidate1, candidate2, candidate3);
 
         when(userRepository.findById(currentUserId)).thenReturn(Optional.of(currentUser));
-        when(userRepository.findBlockerUserIdsByBlockedId(currentUserId)).thenReturn(Collections.emptySet());
-        when(userRepository.findBlockedUserIdsByBlockerId(currentUserId)).thenReturn(Collections.emptySet());
 
-        when(userRepository.findAll(any(Specification.class))).thenReturn(allCandidatesInDb);
+        indexUsers(allCandidatesInDb);
+        when(userRepository.findAllById(any())).thenReturn(allCandidatesInDb);
 
-        when(userConnectionRepository.findConnectionBetweenUsers(eq(currentUserId), any(UUID.class)))
-                .thenReturn(Optional.empty());
+        when(userConnectionRepository.findConnectedUserIds(currentUserId, ConnectionStatus.ACCEPTED))
+                .thenReturn(Set.of());
 
         // --- Execute ---
-        Page<UserSummaryDto> resultPage = userService.findMatches(currentUserId, pageable);
+        Page<UserSummaryDto> resultPage = userService.findMatches(currentUserId, null, pageable).getPage();
 
         // --- Assert ---
         assertNotNull(resultPage);
@@ -517,8 +668,416 @@ class UserServiceImplTest {
         assertEquals("candidateArtistOnly", resultPage.getContent().get(2).getUsername());
 
 
-        verify(userRepository).findAll(any(Specification.class));
-        verify(userConnectionRepository, times(allCandidatesInDb.size()))
-                .findConnectionBetweenUsers(eq(currentUserId), any(UUID.class));
+        verify(userRepository, never()).findAll(any(Specification.class));
+        verify(userConnectionRepository, times(1)).findConnectedUserIds(currentUserId, ConnectionStatus.ACCEPTED);
+        verify(userConnectionRepository, never()).findConnectionBetweenUsers(any(), any());
+    }
+
+    @Test
+    void findMatches_withCallerMissingFromIndex_ranksItWithoutIndexingIt() {
+        UUID currentUserId = UUID.randomUUID();
+        sampleUser.setId(currentUserId);
+        User candidate = new User();
+        candidate.setId(UUID.randomUUID());
+        candidate.setUsername("candidate");
+        candidate.setActive(true);
+        indexUsers(List.of(candidate));
+        when(userRepository.findById(currentUserId)).thenReturn(Optional.of(sampleUser));
+        when(userRepository.findAllById(any())).thenReturn(List.of(candidate));
+        when(userConnectionRepository.findConnectedUserIds(currentUserId, ConnectionStatus.ACCEPTED)).thenReturn(Set.of());
+
+        Page<UserSummaryDto> resultPage = userService.findMatches(currentUserId, null, PageRequest.of(0, 10)).getPage();
+
+        assertEquals(List.of("candidate"), resultPage.getContent().stream().map(UserSummaryDto::getUsername).toList());
+        assertTrue(matchingIndex.get(currentUserId).isEmpty());
+    }
+
+    @Test
+    void findMatches_withBudget_flagsRankingCutShortAndKeepsItForTheCursor() {
+        UUID currentUserId = UUID.randomUUID();
+        sampleUser.setId(currentUserId);
+        User candidate = new User();
+        candidate.setId(UUID.randomUUID());
+        candidate.setUsername("promising");
+        MatchEngine engine = mock(MatchEngine.class);
+        when(engine.findMatches(any(), anyInt(), anyInt(), any(), any(), any())).thenReturn(
+                new MatchPage(List.of(new RankedMatch(candidate.getId(), "promising", 5.0)), 40, true));
+        when(engine.findMatches(any(), anyInt(), anyInt(), any())).thenReturn(new MatchPage(List.of(), 40));
+        UserServiceImpl budgetedService = new UserServiceImpl(userRepository, new MatchRanker(engine, new MatchThresholds(10)),
+                new MatchSnapshotStore(Duration.ofMinutes(10), 500, 100),
+                new MatchRankingCache(new CacheConfig().cacheManager(Duration.ofHours(4)), new SimpleMeterRegistry()),
+                new UserMatchStore(userMatchRepository, mock(MatchListInvalidationRepository.class), Duration.ofHours(6), 500, new MatchThresholds(10)), eventPublisher,
+                gazetteer, matchingIndex);
+        when(userRepository.findById(currentUserId)).thenReturn(Optional.of(sampleUser));
+        when(userRepository.findAllById(any())).thenReturn(List.of(candidate));
+
+        CursorPage<UserSummaryDto> first = budgetedService.findMatches(currentUserId, null, null, PageRequest.of(0, 1),
+                Duration.ofMillis(50));
+        CursorPage<UserSummaryDto> next = budgetedService.findMatches(currentUserId, first.getNextCursor(), PageRequest.of(0, 1));
+
+        assertTrue(first.isPartial());
+        assertEquals(List.of("promising"), first.getPage().getContent().stream().map(UserSummaryDto::getUsername).toList());
+        assertEquals(40, first.getPage().getTotalElements());
+        assertTrue(next.isPartial());
+        ArgumentCaptor<MatchDeadline> deadline = ArgumentCaptor.forClass(MatchDeadline.class);
+        verify(engine).findMatches(any(), eq(0), eq(500), any(), any(), deadline.capture());
+        assertNotSame(MatchDeadline.NONE, deadline.getValue());
+    }
+
+    @Test
+    void findMatches_withSqlEngine_pagesThroughSnapshotWithCursor() {
+        UUID currentUserId = UUID.randomUUID();
+        sampleUser.setId(currentUserId);
+        UserServiceImpl sqlUserService = new UserServiceImpl(userRepository, new MatchRanker(new SqlMatchEngine(userRepository, new MatchScorer(matchingIndex)), new MatchThresholds(10)),
+                new MatchSnapshotStore(Duration.ofMinutes(10), 4, 100),
+                new MatchRankingCache(new CacheConfig().cacheManager(Duration.ofHours(4)), new SimpleMeterRegistry()),
+                new UserMatchStore(userMatchRepository, mock(MatchListInvalidationRepository.class), Duration.ofHours(6), 500, new MatchThresholds(10)), eventPublisher,
+                gazetteer, matchingIndex);
+
+        List<User> ranked = new ArrayList<>();
+        List<MatchScoreRow> rows = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            User user = new User();
+            user.setId(UUID.randomUUID());
+            user.setUsername("match" + i);
+            ranked.add(user);
+            rows.add(scoreRow(user, 10.0 - i));
+        }
+
+        MatchWeights w = MatchWeights.DEFAULTS;
+        when(userRepository.findById(currentUserId)).thenReturn(Optional.of(sampleUser));
+        when(userRepository.findMatchPage(currentUserId, 4, 0, w.getConnectedPenalty(), w.getOppositeRole(),
+                w.getExperienceArray(), w.getSpecificGenre(), w.getAvailability(), w.getSharedGenre(), w.getSharedSkill(),
+                true, "", false, -1, "{}")).thenReturn(rows.subList(0, 4));
+        when(userRepository.findMatchPage(currentUserId, 2, 4, w.getConnectedPenalty(), w.getOppositeRole(),
+                w.getExperienceArray(), w.getSpecificGenre(), w.getAvailability(), w.getSharedGenre(), w.getSharedSkill(),
+                true, "", false, -1, "{}")).thenReturn(rows.subList(4, 5));
+        when(userRepository.countMatchCandidates(currentUserId, true, "", false, -1, "{}")).thenReturn(5L);
+        when(userRepository.findAllById(any())).thenAnswer(invocation -> {
+            Iterable<UUID> ids = invocation.getArgument(0);
+            Set<UUID> requested = new HashSet<>();
+            ids.forEach(requested::add);
+            return ranked.stream().filter(user -> requested.contains(user.getId())).toList();
+        });
+
+        // Second page of a fresh ranking is sliced from the snapshot
+        CursorPage<UserSummaryDto> second = sqlUserService.findMatches(currentUserId, null, PageRequest.of(1, 2));
+        assertEquals(5, second.getPage().getTotalElements());
+        assertEquals(List.of("match2", "match3"), second.getPage().getContent().stream().map(UserSummaryDto::getUsername).toList());
+        assertNotNull(second.getNextCursor());
+
+        // Last page lies beyond the snapshot depth and is ranked on demand
+        CursorPage<UserSummaryDto> last = sqlUserService.findMatches(currentUserId, second.getNextCursor(), PageRequest.of(0, 2));
+        assertEquals(List.of("match4"), last.getPage().getContent().stream().map(UserSummaryDto::getUsername).toList());
+        assertEquals(2, last.getPage().getNumber());
+        assertNull(last.getNextCursor());
+
+        verify(userRepository, times(1)).findMatchPage(currentUserId, 4, 0, w.getConnectedPenalty(), w.getOppositeRole(),
+                w.getExperienceArray(), w.getSpecificGenre(), w.getAvailability(), w.getSharedGenre(), w.getSharedSkill(),
+                true, "", false, -1, "{}");
+        verify(userRepository, times(1)).findMatchPage(currentUserId, 2, 4, w.getConnectedPenalty(), w.getOppositeRole(),
+                w.getExperienceArray(), w.getSpecificGenre(), w.getAvailability(), w.getSharedGenre(), w.getSharedSkill(),
+                true, "", false, -1, "{}");
+        verifyNoInteractions(userConnectionRepository);
+    }
+
+    @Test
+    void findMatches_withCursor_servesLaterPagesFromSnapshotWithoutReRanking() {
+        UUID currentUserId = UUID.randomUUID();
+        sampleUser.setId(currentUserId);
+        List<User> candidates = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            User candidate = new User();
+            candidate.setId(UUID.randomUUID());
+            candidate.setUsername("candidate" + i);
+            candidate.setActive(true);
+            candidates.add(candidate);
+        }
+        indexUsers(candidates);
+        when(userRepository.findById(currentUserId)).thenReturn(Optional.of(sampleUser));
+        when(userRepository.findAllById(any())).thenAnswer(invocation -> {
+            Iterable<UUID> ids = invocation.getArgument(0);
+            Set<UUID> requested = new HashSet<>();
+            ids.forEach(requested::add);
+            return candidates.stream().filter(user -> requested.contains(user.getId())).toList();
+        });
+        when(userConnectionRepository.findConnectedUserIds(currentUserId, ConnectionStatus.ACCEPTED)).thenReturn(Set.of());
+
+        CursorPage<UserSummaryDto> first = userService.findMatches(currentUserId, null, PageRequest.of(0, 2));
+        // A new user joining afterwards must not shift the frozen ranking
+        User latecomer = new User();
+        latecomer.setId(UUID.randomUUID());
+        latecomer.setUsername("a_latecomer");
+        latecomer.setActive(true);
+        matchingIndex.put(MatchingSnapshot.of(latecomer));
+        CursorPage<UserSummaryDto> second = userService.findMatches(currentUserId, first.getNextCursor(), PageRequest.of(0, 2));
+
+        assertEquals(List.of("candidate0", "candidate1"), first.getPage().getContent().stream().map(UserSummaryDto::getUsername).toList());
+        assertEquals(List.of("candidate2"), second.getPage().getContent().stream().map(UserSummaryDto::getUsername).toList());
+        assertEquals(3, second.getPage().getTotalElements());
+        assertNull(second.getNextCursor());
+        verify(userConnectionRepository, times(1)).findConnectedUserIds(currentUserId, ConnectionStatus.ACCEPTED);
+    }
+
+    @Test
+    void findMatches_servesEveryPageAndPageSizeFromOneCachedRanking() {
+        UUID currentUserId = UUID.randomUUID();
+        sampleUser.setId(currentUserId);
+        List<User> candidates = new ArrayList<>();
+        for (int i = 0; i < 7; i++) {
+            User candidate = new User();
+            candidate.setId(UUID.randomUUID());
+            candidate.setUsername("candidate" + i);
+            candidate.setActive(true);
+            candidates.add(candidate);
+        }
+        indexUsers(candidates);
+        when(userRepository.findById(currentUserId)).thenReturn(Optional.of(sampleUser));
+        when(userRepository.findAllById(any())).thenAnswer(invocation -> {
+            Iterable<UUID> ids = invocation.getArgument(0);
+            Set<UUID> requested = new HashSet<>();
+            ids.forEach(requested::add);
+            return candidates.stream().filter(user -> requested.contains(user.getId())).toList();
+        });
+        when(userConnectionRepository.findConnectedUserIds(currentUserId, ConnectionStatus.ACCEPTED)).thenReturn(Set.of());
+
+        List<String> scrolled = new ArrayList<>();
+        for (int page = 0; page < 4; page++) {
+            userService.findMatches(currentUserId, null, PageRequest.of(page, 2)).getPage().getContent()
+                    .forEach(dto -> scrolled.add(dto.getUsername()));
+        }
+        Page<UserSummaryDto> resized = userService.findMatches(currentUserId, null, PageRequest.of(1, 3)).getPage();
+
+        assertEquals(candidates.stream().map(User::getUsername).toList(), scrolled);
+        assertEquals(List.of("candidate3", "candidate4", "candidate5"), resized.getContent().stream().map(UserSummaryDto::getUsername).toList());
+        verify(userConnectionRepository, times(1)).findConnectedUserIds(currentUserId, ConnectionStatus.ACCEPTED);
+    }
+
+    @Test
+    void findMatches_withCriteria_ranksAndCountsOnlyPassingCandidates_inItsOwnRanking() {
+        UUID currentUserId = UUID.randomUUID();
+        sampleUser.setId(currentUserId);
+        List<User> candidates = new ArrayList<>();
+        for (int i = 0; i < 6; i++) {
+            User candidate = new User();
+            candidate.setId(UUID.randomUUID());
+            candidate.setUsername("candidate" + i);
+            candidate.setActive(true);
+            if (i < 4) {
+                ArtistProfile artistProfile = new ArtistProfile();
+                artistProfile.setId(candidate.getId());
+                artistProfile.setUser(candidate);
+                artistProfile.setAvailability(i % 2 == 0);
+                artistProfile.setExperienceLevel(ExperienceLevel.ADVANCED);
+                candidate.setArtistProfile(artistProfile);
+            } else {
+                // Available, but as a producer only
+                ProducerProfile producerProfile = new ProducerProfile();
+                producerProfile.setId(candidate.getId());
+                producerProfile.setUser(candidate);
+                producerProfile.setAvailability(true);
+                candidate.setProducerProfile(producerProfile);
+            }
+            candidates.add(candidate);
+        }
+        indexUsers(candidates);
+        when(userRepository.findById(currentUserId)).thenReturn(Optional.of(sampleUser));
+        when(userRepository.findAllById(any())).thenAnswer(invocation -> {
+            Iterable<UUID> ids = invocation.getArgument(0);
+            Set<UUID> requested = new HashSet<>();
+            ids.forEach(requested::add);
+            return candidates.stream().filter(user -> requested.contains(user.getId())).toList();
+        });
+        when(userConnectionRepository.findConnectedUserIds(currentUserId, ConnectionStatus.ACCEPTED)).thenReturn(Set.of());
+
+        MatchCriteria availableArtists = new MatchCriteria(true, ExperienceLevel.INTERMEDIATE, ProfileType.ARTIST, null);
+        CursorPage<UserSummaryDto> filtered = userService.findMatches(currentUserId, availableArtists, null,
+                PageRequest.of(0, 10), null);
+        // Persisted lists are unfiltered, so a filtered ranking never comes from them
+        verifyNoInteractions(userMatchRepository);
+        CursorPage<UserSummaryDto> all = userService.findMatches(currentUserId, null, PageRequest.of(0, 10));
+
+        assertEquals(List.of("candidate0", "candidate2"),
+                filtered.getPage().getContent().stream().map(UserSummaryDto::getUsername).toList());
+        assertEquals(2, filtered.getPage().getTotalElements());
+        assertEquals(6, all.getPage().getTotalElements());
+    }
+
+    @Test
+    void streamMatches_sendsPartialRankingsThenTheCursorPage_andOnlyThePageOnceCached() {
+        UUID currentUserId = UUID.randomUUID();
+        sampleUser.setId(currentUserId);
+        List<User> candidates = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            User candidate = new User();
+            candidate.setId(UUID.randomUUID());
+            // Best usernames come last, so early partitions hold worse matches
+            candidate.setUsername(String.format("candidate%03d", 199 - i));
+            candidate.setActive(true);
+            candidates.add(candidate);
+        }
+        indexUsers(candidates);
+        when(userRepository.findById(currentUserId)).thenReturn(Optional.of(sampleUser));
+        when(userRepository.findAllById(any())).thenAnswer(invocation -> {
+            Iterable<UUID> ids = invocation.getArgument(0);
+            Set<UUID> requested = new HashSet<>();
+            ids.forEach(requested::add);
+            return candidates.stream().filter(user -> requested.contains(user.getId())).toList();
+        });
+        when(userConnectionRepository.findConnectedUserIds(currentUserId, ConnectionStatus.ACCEPTED)).thenReturn(Set.of());
+
+        List<MatchStreamEvent> events = new ArrayList<>();
+        userService.streamMatches(currentUserId, PageRequest.of(0, 3), events::add);
+
+        MatchStreamEvent page = events.get(events.size() - 1);
+        List<MatchStreamEvent> partials = events.subList(0, events.size() - 1);
+        assertFalse(partials.isEmpty());
+        partials.forEach(event -> {
+            assertEquals(MatchStreamEvent.PARTIAL, event.getType());
+            assertTrue(event.getCompleted() < event.getPartitions());
+            assertEquals(3, event.getMatches().size());
+        });
+        assertEquals(MatchStreamEvent.PAGE, page.getType());
+        assertEquals(List.of("candidate000", "candidate001", "candidate002"),
+                page.getMatches().stream().map(UserSummaryDto::getUsername).toList());
+        assertEquals(200L, page.getTotalElements());
+
+        CursorPage<UserSummaryDto> second = userService.findMatches(currentUserId, page.getNextCursor(), PageRequest.of(0, 3));
+        assertEquals(List.of("candidate003", "candidate004", "candidate005"),
+                second.getPage().getContent().stream().map(UserSummaryDto::getUsername).toList());
+
+        List<MatchStreamEvent> cached = new ArrayList<>();
+        userService.streamMatches(currentUserId, PageRequest.of(0, 3), cached::add);
+        assertEquals(List.of(MatchStreamEvent.PAGE), cached.stream().map(MatchStreamEvent::getType).toList());
+        verify(userConnectionRepository, times(1)).findConnectedUserIds(currentUserId, ConnectionStatus.ACCEPTED);
+    }
+
+    @Test
+    void findMatches_withFreshPersistedList_servesItWithoutRanking() {
+        UUID currentUserId = UUID.randomUUID();
+        sampleUser.setId(currentUserId);
+        User candidate = new User();
+        candidate.setId(UUID.randomUUID());
+        candidate.setUsername("persisted");
+        candidate.setActive(true);
+        UserMatch row = new UserMatch();
+        row.setId(new UserMatchId(currentUserId, 0));
+        row.setMatchUserId(candidate.getId());
+        row.setScore(12f);
+        row.setTotalCandidates(1);
+        row.setComputedAt(Instant.now().minus(Duration.ofHours(1)));
+        when(userRepository.findById(currentUserId)).thenReturn(Optional.of(sampleUser));
+        when(userMatchRepository.findByIdUserIdOrderByIdRankAsc(eq(currentUserId), any())).thenReturn(List.of(row));
+        when(userRepository.findAllById(any())).thenReturn(List.of(candidate));
+
+        CursorPage<UserSummaryDto> result = userService.findMatches(currentUserId, null, PageRequest.of(0, 10));
+
+        assertEquals(List.of("persisted"), result.getPage().getContent().stream().map(UserSummaryDto::getUsername).toList());
+        assertEquals(1, result.getPage().getTotalElements());
+        verify(userConnectionRepository, never()).findConnectedUserIds(any(), any());
+    }
+
+    @Test
+    void findMatches_repeatedCallsWithEqualButDistinctKeys_areServedFromCache() {
+        UUID currentUserId = UUID.randomUUID();
+        sampleUser.setId(currentUserId);
+        User candidate = new User();
+        candidate.setId(UUID.randomUUID());
+        candidate.setUsername("candidate");
+        candidate.setActive(true);
+        indexUsers(List.of(candidate));
+        when(userRepository.findById(any())).thenReturn(Optional.of(sampleUser));
+        when(userRepository.findAllById(any())).thenReturn(List.of(candidate));
+        when(userConnectionRepository.findConnectedUserIds(any(), eq(ConnectionStatus.ACCEPTED))).thenReturn(Set.of());
+
+        for (int i = 0; i < 10; i++) {
+            // A fresh but equal UUID instance per request, as deserialized from each JWT
+            UUID requestUserId = UUID.fromString(currentUserId.toString());
+            userService.findMatches(requestUserId, null, PageRequest.of(i % 3, 10));
+        }
+
+        CacheStats stats = ((CaffeineCache) cacheManager.getCache(CacheConfig.USER_MATCHES_CACHE)).getNativeCache().stats();
+        assertEquals(1, stats.missCount());
+        assertEquals(9, stats.hitCount());
+        assertEquals(0.9, stats.hitRate(), 1e-9);
+        verify(userConnectionRepository, times(1)).findConnectedUserIds(any(), any());
+    }
+
+    @Test
+    void findMatches_withCursorOfAnotherUser_shouldThrowInvalidCursorException() {
+        UUID currentUserId = UUID.randomUUID();
+        sampleUser.setId(currentUserId);
+        User candidate1 = new User();
+        candidate1.setId(UUID.randomUUID());
+        candidate1.setUsername("candidate1");
+        candidate1.setActive(true);
+        User candidate2 = new User();
+        candidate2.setId(UUID.randomUUID());
+        candidate2.setUsername("candidate2");
+        candidate2.setActive(true);
+        indexUsers(List.of(candidate1, candidate2));
+        when(userRepository.findById(currentUserId)).thenReturn(Optional.of(sampleUser));
+        when(userConnectionRepository.findConnectedUserIds(any(), any())).thenReturn(Set.of());
+
+        String cursor = userService.findMatches(currentUserId, null, PageRequest.of(0, 1)).getNextCursor();
+
+        assertNotNull(cursor);
+        assertThrows(InvalidCursorException.class,
+                () -> userService.findMatches(UUID.randomUUID(), cursor, PageRequest.of(0, 1)));
+    }
+
+    @Test
+    void findMatches_withMalformedOrUnknownCursor_shouldThrow() {
+        Pageable pageable = PageRequest.of(0, 10);
+
+        assertThrows(InvalidCursorException.class, () -> userService.findMatches(userId, "not a cursor", pageable));
+        assertThrows(CursorExpiredException.class, () -> userService.findMatches(userId,
+                new MatchCursor(UUID.randomUUID(), 10).encode(), pageable));
+    }
+
+    private MatchScoreRow scoreRow(User user, double score) {
+        MatchScoreRow row = mock(MatchScoreRow.class);
+        when(row.getId()).thenReturn(user.getId());
+        when(row.getUsername()).thenReturn(user.getUsername());
+        when(row.getScore()).thenReturn(score);
+        return row;
+    }
+
+    @Test
+    void findMatches_excludesUsersWithBlockRelationInIndex() {
+        UUID currentUserId = UUID.randomUUID();
+        sampleUser.setId(currentUserId);
+        Pageable pageable = PageRequest.of(0, 10);
+
+        User blockedByCaller = new User();
+        blockedByCaller.setId(UUID.randomUUID());
+        blockedByCaller.setUsername("blockedByCaller");
+        blockedByCaller.setActive(true);
+
+        User blockingCaller = new User();
+        blockingCaller.setId(UUID.randomUUID());
+        blockingCaller.setUsername("blockingCaller");
+        blockingCaller.setActive(true);
+
+        User visible = new User();
+        visible.setId(UUID.randomUUID());
+        visible.setUsername("visible");
+        visible.setActive(true);
+
+        indexUsers(Arrays.asList(sampleUser, blockedByCaller, blockingCaller, visible));
+        matchingIndex.addBlock(currentUserId, blockedByCaller.getId());
+        matchingIndex.addBlock(blockingCaller.getId(), currentUserId);
+
+        when(userRepository.findById(currentUserId)).thenReturn(Optional.of(sampleUser));
+        when(userRepository.findAllById(any())).thenReturn(List.of(visible));
+        when(userConnectionRepository.findConnectedUserIds(currentUserId, ConnectionStatus.ACCEPTED))
+                .thenReturn(Set.of());
+
+        Page<UserSummaryDto> result = userService.findMatches(currentUserId, null, pageable).getPage();
+
+        assertEquals(1, result.getTotalElements());
+        assertEquals("visible", result.getContent().get(0).getUsername());
+        verify(userRepository, never()).findBlockerUserIdsByBlockedId(any());
+        verify(userRepository, never()).findBlockedUserIdsByBlockerId(any());
     }
-}
\ No newline at end of file
+}
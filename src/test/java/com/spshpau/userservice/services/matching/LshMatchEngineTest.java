@@ -0,0 +1,181 @@
+package com.spshpau.userservice.services.matching;
+
+import com.spshpau.userservice.model.enums.ExperienceLevel;
+import com.spshpau.userservice.repositories.UserConnectionRepository;
+import com.spshpau.userservice.services.wrappers.MatchedUser;
+import com.spshpau.userservice.services.wrappers.TopKMatches;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+
+class LshMatchEngineTest {
+
+    private final Random random = new Random(7);
+    private final List<UUID> genres = IntStream.range(0, 12).mapToObj(i -> UUID.randomUUID()).toList();
+    private final List<UUID> skills = IntStream.range(0, 8).mapToObj(i -> UUID.randomUUID()).toList();
+
+    private MatchingIndex matchingIndex;
+    private MatchScorer matchScorer;
+    private TopKMatchEvaluator evaluator;
+    private CallerRelationsLoader relationsLoader;
+    private List<MatchingSnapshot> snapshots;
+
+    @BeforeEach
+    void setUp() {
+        matchingIndex = new MatchingIndex();
+        matchScorer = new MatchScorer(matchingIndex);
+        evaluator = new TopKMatchEvaluator(matchingIndex, matchScorer, ForkJoinPool.commonPool(), ForkJoinPool.commonPool(),
+                Integer.MAX_VALUE);
+        relationsLoader = new CallerRelationsLoader(matchingIndex, mock(UserConnectionRepository.class));
+        snapshots = IntStream.range(0, 300).mapToObj(i -> randomSnapshot("user" + i)).toList();
+        matchingIndex.replaceAll(snapshots, Map.of());
+    }
+
+    @Test
+    void findTopK_ranksThePoolExactly() {
+        LshMatchEngine engine = engine(8, 2);
+
+        for (int i = 0; i < 20; i++) {
+            IndexedUser caller = matchingIndex.get(snapshots.get(i).getUserId()).orElseThrow();
+            Set<UUID> excluded = Set.of(caller.getId());
+            Set<UUID> connected = Set.of(snapshots.get(i + 1).getUserId());
+            if (MinHashLsh.isEmpty(caller)) {
+                continue;
+            }
+            Set<UUID> pool = matchingIndex.readLocked(() -> Arrays.stream(matchingIndex.lshCandidates(caller))
+                    .mapToObj(slot -> matchingIndex.userAt(slot).getId())
+                    .collect(Collectors.toSet()));
+            List<MatchedUser> expected = pool.stream()
+                    .filter(id -> !excluded.contains(id))
+                    .map(id -> matchingIndex.get(id).orElseThrow())
+                    .map(candidate -> new MatchedUser(candidate,
+                            matchScorer.calculateMatchScore(caller, candidate, connected.contains(candidate.getId()))))
+                    .sorted(TopKMatchEvaluator.RANKING)
+                    .toList();
+
+            TopKMatches actual = engine.findTopK(caller, new CallerRelations(excluded, connected), 10);
+
+            assertEquals(ids(expected.subList(0, Math.min(10, expected.size()))), ids(actual.getRanked()));
+            assertEquals(expected.size(), actual.getTotalCandidates());
+        }
+    }
+
+    @Test
+    void lshCandidates_holdIdenticalSetsAndNeverDisjointOnes() {
+        engine(16, 1);
+        Set<UUID> set = Set.of(genres.get(0), genres.get(1));
+        MatchingSnapshot caller = snapshot("caller", set, Set.of());
+        MatchingSnapshot twin = snapshot("twin", Set.of(), set);
+        MatchingSnapshot stranger = snapshot("stranger", Set.of(genres.get(2)), Set.of());
+        matchingIndex.replaceAll(List.of(caller, twin, stranger), Map.of());
+
+        Set<UUID> pool = pool(caller.getUserId());
+
+        assertEquals(Set.of(caller.getUserId(), twin.getUserId()), pool);
+    }
+
+    @Test
+    void lshCandidates_followIncrementalUpdatesAndDeactivation() {
+        engine(16, 1);
+        MatchingSnapshot caller = snapshot("caller", Set.of(genres.get(0)), Set.of());
+        MatchingSnapshot other = snapshot("other", Set.of(genres.get(1)), Set.of());
+        matchingIndex.replaceAll(List.of(caller, other), Map.of());
+        assertFalse(pool(caller.getUserId()).contains(other.getUserId()));
+
+        MatchingSnapshot moved = snapshot(other.getUserId(), "other", true, Set.of(genres.get(0)), Set.of());
+        matchingIndex.put(moved);
+        assertTrue(pool(caller.getUserId()).contains(other.getUserId()));
+
+        matchingIndex.put(snapshot(other.getUserId(), "other", false, Set.of(genres.get(0)), Set.of()));
+        assertFalse(pool(caller.getUserId()).contains(other.getUserId()));
+    }
+
+    @Test
+    void findTopK_fallsBackToExactRankingForCallerWithoutGenresOrSkills() {
+        LshMatchEngine engine = engine(8, 2);
+        MatchingSnapshot bare = snapshot("bare", Set.of(), Set.of());
+        IndexedUser caller = matchingIndex.put(bare);
+        CallerRelations relations = new CallerRelations(Set.of(caller.getId()), Set.of());
+
+        TopKMatches expected = evaluator.findTopK(caller, relations, 10);
+        TopKMatches actual = engine.findTopK(caller, relations, 10);
+
+        assertEquals(ids(expected.getRanked()), ids(actual.getRanked()));
+        assertEquals(expected.getTotalCandidates(), actual.getTotalCandidates());
+    }
+
+    @Test
+    void measure_reportsHigherRecallForLooserBanding() {
+        LshRecallSampler.Recall strict = sampler(engine(2, 4)).measure(60, 10);
+        LshRecallSampler.Recall loose = sampler(engine(32, 1)).measure(60, 10);
+
+        assertTrue(strict.getSampled() > 0);
+        assertTrue(loose.getRecall() > strict.getRecall(),
+                () -> "loose " + loose.getRecall() + " vs strict " + strict.getRecall());
+        assertTrue(loose.getPoolFraction() > strict.getPoolFraction());
+        assertTrue(loose.getRecall() <= 1.0 && strict.getRecall() >= 0.0);
+    }
+
+    private LshMatchEngine engine(int bands, int rows) {
+        LshMatchEngine engine = new LshMatchEngine(matchingIndex, relationsLoader, evaluator, matchScorer,
+                "lsh", false, bands, rows);
+        engine.enableBuckets();
+        return engine;
+    }
+
+    private LshRecallSampler sampler(LshMatchEngine engine) {
+        return new LshRecallSampler(matchingIndex, relationsLoader, evaluator, engine, 60, 10, new SimpleMeterRegistry());
+    }
+
+    private Set<UUID> pool(UUID callerId) {
+        IndexedUser caller = matchingIndex.get(callerId).orElseThrow();
+        return matchingIndex.readLocked(() -> Arrays.stream(matchingIndex.lshCandidates(caller))
+                .mapToObj(slot -> matchingIndex.userAt(slot).getId())
+                .collect(Collectors.toSet()));
+    }
+
+    private List<UUID> ids(List<MatchedUser> matches) {
+        return matches.stream().map(mu -> mu.getUser().getId()).toList();
+    }
+
+    private MatchingSnapshot snapshot(String username, Set<UUID> artistGenres, Set<UUID> producerGenres) {
+        return snapshot(UUID.randomUUID(), username, true, artistGenres, producerGenres);
+    }
+
+    private MatchingSnapshot snapshot(UUID id, String username, boolean active, Set<UUID> artistGenres, Set<UUID> producerGenres) {
+        return new MatchingSnapshot(id, username, active,
+                new MatchingSnapshot.Profile(true, ExperienceLevel.INTERMEDIATE, artistGenres, Set.of()),
+                new MatchingSnapshot.Profile(true, ExperienceLevel.INTERMEDIATE, producerGenres, Set.of()));
+    }
+
+    private MatchingSnapshot randomSnapshot(String username) {
+        MatchingSnapshot.Profile artist = random.nextInt(3) == 0 ? null
+                : new MatchingSnapshot.Profile(random.nextBoolean(), randomExperience(), pick(genres, 3), pick(skills, 3));
+        MatchingSnapshot.Profile producer = random.nextInt(3) == 0 ? null
+                : new MatchingSnapshot.Profile(random.nextBoolean(), randomExperience(), pick(genres, 3), Set.of());
+        return new MatchingSnapshot(UUID.randomUUID(), username, random.nextInt(10) > 0, artist, producer);
+    }
+
+    private ExperienceLevel randomExperience() {
+        ExperienceLevel[] levels = ExperienceLevel.values();
+        int i = random.nextInt(levels.length + 1);
+        return i == levels.length ? null : levels[i];
+    }
+
+    private Set<UUID> pick(List<UUID> ids, int max) {
+        Set<UUID> result = new HashSet<>();
+        int n = random.nextInt(max + 1);
+        for (int i = 0; i < n; i++) {
+            result.add(ids.get(random.nextInt(ids.size())));
+        }
+        return result;
+    }
+}
@@ -0,0 +1,110 @@
+package com.spshpau.userservice.services.matching;
+
+import com.spshpau.userservice.config.CacheConfig;
+import com.spshpau.userservice.services.events.MatchingProfileChangedEvent;
+import com.spshpau.userservice.services.events.UserBlockChangedEvent;
+import com.spshpau.userservice.services.events.UserConnectionChangedEvent;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MatchCacheEvictorTest {
+
+    private final UUID alice = UUID.randomUUID();
+    private final UUID bob = UUID.randomUUID();
+    private final UUID carol = UUID.randomUUID();
+    private final UUID dave = UUID.randomUUID();
+
+    private Cache cache;
+    private MatchSnapshotStore snapshotStore;
+    private MatchCacheEvictor evictor;
+    private UUID carolSnapshot;
+
+    @BeforeEach
+    void setUp() {
+        CacheManager cacheManager = new CacheConfig().cacheManager(Duration.ofHours(4));
+        cache = cacheManager.getCache(CacheConfig.USER_MATCHES_CACHE);
+        snapshotStore = new MatchSnapshotStore(Duration.ofMinutes(10), 500, 100);
+        evictor = new MatchCacheEvictor(cacheManager, snapshotStore);
+
+        cache.put(key(alice), ranking(alice, bob));
+        cache.put(key(bob), ranking(bob, alice));
+        cache.put(key(carol), ranking(carol, dave));
+        cache.put(key(dave), ranking(dave, carol));
+        carolSnapshot = snapshotStore.put(ranking(carol, dave));
+    }
+
+    @Test
+    void blockChange_evictsBothPartiesOnly() {
+        evictor.onUserBlockChanged(new UserBlockChangedEvent(alice, carol, true));
+
+        assertNull(cache.get(key(alice)));
+        assertNull(cache.get(key(carol)));
+        assertTrue(snapshotStore.get(carolSnapshot).isEmpty());
+        assertNotNull(cache.get(key(bob)));
+        assertNotNull(cache.get(key(dave)));
+    }
+
+    @Test
+    void connectionChange_evictsBothPartiesOnly() {
+        evictor.onUserConnectionChanged(new UserConnectionChangedEvent(alice, bob, true));
+
+        assertNull(cache.get(key(alice)));
+        assertNull(cache.get(key(bob)));
+        assertNotNull(cache.get(key(carol)));
+        assertTrue(snapshotStore.get(carolSnapshot).isPresent());
+    }
+
+    @Test
+    void profileChange_evictsOwnRankingOnly() {
+        MatchingSnapshot edited = new MatchingSnapshot(dave, "dave", true, null, null);
+
+        evictor.onMatchingProfileChanged(new MatchingProfileChangedEvent(edited));
+
+        assertNull(cache.get(key(dave)));
+        assertNotNull(cache.get(key(carol)));
+        assertTrue(snapshotStore.get(carolSnapshot).isPresent());
+    }
+
+    @Test
+    void deactivation_evictsOwnRankingAndRankingsContainingTheUser() {
+        MatchingSnapshot deactivated = new MatchingSnapshot(dave, "dave", false, null, null);
+
+        evictor.onMatchingProfileChanged(new MatchingProfileChangedEvent(deactivated, true));
+
+        assertNull(cache.get(key(dave)));
+        assertNull(cache.get(key(carol)));
+        assertTrue(snapshotStore.get(carolSnapshot).isEmpty());
+        assertNotNull(cache.get(key(alice)));
+        assertNotNull(cache.get(key(bob)));
+    }
+
+    @Test
+    void activation_evictsOwnRankingOnly_leavingOthersToThePatcher() {
+        MatchingSnapshot reactivated = new MatchingSnapshot(dave, "dave", true, null, null);
+        // As patched by MatchListPatcher, which runs first
+        cache.put(key(alice), ranking(alice, dave, bob));
+
+        evictor.onMatchingProfileChanged(new MatchingProfileChangedEvent(reactivated, true));
+
+        assertNull(cache.get(key(dave)));
+        assertNotNull(cache.get(key(alice)));
+        assertNotNull(cache.get(key(carol)));
+        assertTrue(snapshotStore.get(carolSnapshot).isPresent());
+    }
+
+    private MatchCacheKey key(UUID userId) {
+        return new MatchCacheKey(userId, 500, "UNSORTED");
+    }
+
+    private RankedMatches ranking(UUID userId, UUID... matchIds) {
+        return new RankedMatches(userId, matchIds, new float[matchIds.length], matchIds.length, Instant.now());
+    }
+}
@@ -0,0 +1,275 @@
+package com.spshpau.userservice.services.matching;
+
+import com.spshpau.userservice.config.CacheConfig;
+import com.spshpau.userservice.model.enums.ExperienceLevel;
+import com.spshpau.userservice.repositories.MatchListInvalidationRepository;
+import com.spshpau.userservice.repositories.UserConnectionRepository;
+import com.spshpau.userservice.repositories.UserMatchRepository;
+import com.spshpau.userservice.services.events.MatchingIndexUpdatedEvent;
+import com.spshpau.userservice.services.wrappers.MatchedUser;
+import com.spshpau.userservice.services.wrappers.TopKMatches;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+class MatchListPatcherTest {
+
+    private static final int DEPTH = 8;
+
+    private final Random random = new Random(7);
+    private final List<UUID> genres = IntStream.range(0, 6).mapToObj(i -> UUID.randomUUID()).toList();
+    private final List<UUID> skills = IntStream.range(0, 4).mapToObj(i -> UUID.randomUUID()).toList();
+
+    private MatchingIndex matchingIndex;
+    private MatchScorer matchScorer;
+    private TopKMatchEvaluator evaluator;
+    private MatchRankingCache rankingCache;
+    private UserConnectionRepository userConnectionRepository;
+    private UserMatchRepository userMatchRepository;
+    private MatchListPatcher patcher;
+    private List<MatchingSnapshot> snapshots;
+
+    @BeforeEach
+    void setUp() {
+        matchingIndex = new MatchingIndex();
+        matchScorer = new MatchScorer(matchingIndex);
+        evaluator = new TopKMatchEvaluator(matchingIndex, matchScorer, ForkJoinPool.commonPool(), ForkJoinPool.commonPool(),
+                Integer.MAX_VALUE);
+        rankingCache = new MatchRankingCache(new CacheConfig().cacheManager(Duration.ofHours(4)), new SimpleMeterRegistry());
+        userConnectionRepository = mock(UserConnectionRepository.class);
+        when(userConnectionRepository.findConnectedUserIds(any(), any())).thenReturn(Set.of());
+        userMatchRepository = mock(UserMatchRepository.class);
+        patcher = patcher(Runnable::run, new SimpleMeterRegistry());
+        snapshots = IntStream.range(0, 60).mapToObj(i -> randomSnapshot("user" + i)).toList();
+        matchingIndex.replaceAll(snapshots, Map.of());
+    }
+
+    @Test
+    void profileChange_patchedRankingsMatchRecomputedRankings() {
+        List<UUID> owners = snapshots.stream().limit(30).map(MatchingSnapshot::getUserId).toList();
+        for (int i = 0; i < owners.size(); i++) {
+            // Half of the rankings hold every candidate, half are truncated
+            cache(owners.get(i), i % 2 == 0 ? 1000 : DEPTH);
+        }
+
+        for (int round = 0; round < 10; round++) {
+            // Other users only, since the own ranking of a changed user is evicted rather than patched
+            MatchingSnapshot changed = snapshots.get(30 + random.nextInt(snapshots.size() - 30));
+            MatchingSnapshot edited = new MatchingSnapshot(changed.getUserId(), changed.getUsername(), changed.isActive(),
+                    randomProfile(true), randomProfile(false));
+            apply(edited);
+
+            for (UUID ownerId : owners) {
+                RankedMatches patched = rankingCache.completed().get(key(ownerId));
+                List<UUID> recomputed = Arrays.asList(rank(ownerId, 1000).getMatchIds());
+                List<UUID> patchedIds = Arrays.asList(patched.getMatchIds());
+                if (patched.isComplete()) {
+                    assertEquals(recomputed, patchedIds);
+                } else {
+                    assertEquals(recomputed.subList(0, patchedIds.size()), patchedIds);
+                }
+            }
+        }
+        verify(userMatchRepository, atLeastOnce()).findListOwnersContaining(any());
+    }
+
+    @Test
+    void deactivation_isLeftToEviction() {
+        UUID ownerId = snapshots.get(0).getUserId();
+        RankedMatches cached = cache(ownerId, DEPTH);
+        MatchingSnapshot changed = snapshots.get(1);
+        MatchingSnapshot deactivated = new MatchingSnapshot(changed.getUserId(), changed.getUsername(), false,
+                changed.getArtistProfile(), changed.getProducerProfile());
+
+        apply(deactivated);
+
+        assertSame(cached, rankingCache.completed().get(key(ownerId)));
+        verifyNoInteractions(userMatchRepository);
+    }
+
+    @Test
+    void activation_insertsTheUserAsNewCandidate_likeRecomputedRankings() {
+        MatchingSnapshot user = snapshots.get(45);
+        MatchingSnapshot inactive = new MatchingSnapshot(user.getUserId(), user.getUsername(), false,
+                randomProfile(true), randomProfile(false));
+        matchingIndex.put(inactive);
+        List<UUID> owners = snapshots.stream().limit(30).map(MatchingSnapshot::getUserId).toList();
+        for (int i = 0; i < owners.size(); i++) {
+            cache(owners.get(i), i % 2 == 0 ? 1000 : DEPTH);
+        }
+
+        MatchingSnapshot activated = new MatchingSnapshot(user.getUserId(), user.getUsername(), true,
+                inactive.getArtistProfile(), inactive.getProducerProfile());
+        apply(activated);
+
+        for (UUID ownerId : owners) {
+            RankedMatches patched = rankingCache.completed().get(key(ownerId));
+            RankedMatches recomputed = rank(ownerId, 1000);
+            List<UUID> patchedIds = Arrays.asList(patched.getMatchIds());
+            assertEquals(recomputed.getTotalCandidates(), patched.getTotalCandidates());
+            assertEquals(Arrays.asList(recomputed.getMatchIds()).subList(0, patchedIds.size()), patchedIds);
+            if (patched.isComplete()) {
+                assertTrue(patched.contains(user.getUserId()));
+            }
+        }
+        verify(userMatchRepository).findCompleteListOwners(DEPTH);
+        verify(userMatchRepository, never()).findListOwnersContaining(any());
+    }
+
+    @Test
+    void profileChange_userNewlyPassingAFilter_isInsertedLikeRecomputedRankings() {
+        MatchFilter availableOnly = new MatchFilter(true, null, null, Set.of());
+        MatchingSnapshot user = snapshots.get(45);
+        MatchingSnapshot unavailable = new MatchingSnapshot(user.getUserId(), user.getUsername(), true,
+                new MatchingSnapshot.Profile(false, ExperienceLevel.values()[0], pick(genres, 3), pick(skills, 2)), null);
+        matchingIndex.put(unavailable);
+        List<UUID> owners = snapshots.stream().limit(30).map(MatchingSnapshot::getUserId).toList();
+        for (int i = 0; i < owners.size(); i++) {
+            cache(owners.get(i), i % 2 == 0 ? 1000 : DEPTH, availableOnly);
+        }
+
+        apply(new MatchingSnapshot(user.getUserId(), user.getUsername(), true,
+                new MatchingSnapshot.Profile(true, ExperienceLevel.values()[0], pick(genres, 3), pick(skills, 2)), null));
+        assertFilteredRankingsMatchRecomputed(owners, availableOnly);
+        assertTrue(owners.stream().map(ownerId -> rankingCache.completed().get(key(ownerId, availableOnly)))
+                .anyMatch(ranking -> ranking.contains(user.getUserId())));
+
+        // ...and leaving it again is counted out as well
+        apply(unavailable);
+        assertFilteredRankingsMatchRecomputed(owners, availableOnly);
+    }
+
+    private void assertFilteredRankingsMatchRecomputed(List<UUID> owners, MatchFilter filter) {
+        for (UUID ownerId : owners) {
+            RankedMatches patched = rankingCache.completed().get(key(ownerId, filter));
+            RankedMatches recomputed = rank(ownerId, 1000, filter);
+            List<UUID> patchedIds = Arrays.asList(patched.getMatchIds());
+            assertEquals(recomputed.getTotalCandidates(), patched.getTotalCandidates());
+            assertEquals(Arrays.asList(recomputed.getMatchIds()).subList(0, patchedIds.size()), patchedIds);
+        }
+    }
+
+    @Test
+    void persistedLists_onlyTailsUpToTheBestScoreOfTheChangedUserAreRead() {
+        MatchingSnapshot changed = snapshots.get(40);
+        MatchingSnapshot edited = new MatchingSnapshot(changed.getUserId(), changed.getUsername(), true,
+                randomProfile(true), randomProfile(false));
+
+        apply(edited);
+
+        IndexedUser current = matchingIndex.get(changed.getUserId()).orElseThrow();
+        float best = 0.0f;
+        for (MatchingSnapshot owner : snapshots) {
+            IndexedUser indexed = matchingIndex.get(owner.getUserId()).orElseThrow();
+            if (indexed.isActive() && !owner.getUserId().equals(changed.getUserId())) {
+                best = Math.max(best, (float) matchScorer.calculateMatchScore(indexed, current, false));
+            }
+        }
+        verify(userMatchRepository).findTruncatedListTailsAtMost(DEPTH, best);
+    }
+
+    @Test
+    void fullPatchQueue_leavesListsAsTheyAre_andCountsTheChange() {
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        patcher = patcher(task -> {
+            throw new RejectedExecutionException("full");
+        }, meterRegistry);
+        UUID ownerId = snapshots.get(0).getUserId();
+        RankedMatches cached = cache(ownerId, DEPTH);
+        MatchingSnapshot changed = snapshots.get(1);
+
+        apply(new MatchingSnapshot(changed.getUserId(), changed.getUsername(), true,
+                randomProfile(true), randomProfile(false)));
+
+        assertSame(cached, rankingCache.completed().get(key(ownerId)));
+        assertEquals(1.0, meterRegistry.counter("matching.patch.skipped").count());
+        verifyNoInteractions(userMatchRepository);
+    }
+
+    private MatchListPatcher patcher(Executor patchExecutor, MeterRegistry meterRegistry) {
+        return new MatchListPatcher(matchingIndex, matchScorer, userConnectionRepository, rankingCache,
+                new UserMatchStore(userMatchRepository, mock(MatchListInvalidationRepository.class), Duration.ofHours(6), DEPTH, new MatchThresholds(10)), new MatchThresholds(10),
+                mock(PlatformTransactionManager.class), patchExecutor, meterRegistry);
+    }
+
+    /**
+     * Applies {@code snapshot} to the index and patches the cached rankings, as {@link MatchingIndexMaintainer} does.
+     */
+    private void apply(MatchingSnapshot snapshot) {
+        IndexedUser previous = matchingIndex.get(snapshot.getUserId()).orElse(null);
+        IndexedUser current = matchingIndex.put(snapshot);
+        patcher.onMatchingIndexUpdated(new MatchingIndexUpdatedEvent(previous, current));
+    }
+
+    private RankedMatches cache(UUID ownerId, int depth) {
+        return cache(ownerId, depth, MatchFilter.NONE);
+    }
+
+    private RankedMatches cache(UUID ownerId, int depth, MatchFilter filter) {
+        RankedMatches ranking = rank(ownerId, depth, filter);
+        rankingCache.get(key(ownerId, filter), () -> ranking);
+        return ranking;
+    }
+
+    private RankedMatches rank(UUID ownerId, int depth) {
+        return rank(ownerId, depth, MatchFilter.NONE);
+    }
+
+    private RankedMatches rank(UUID ownerId, int depth, MatchFilter filter) {
+        IndexedUser owner = matchingIndex.get(ownerId).orElseThrow();
+        TopKMatches top = evaluator.findTopK(owner, new CallerRelations(Set.of(ownerId), Set.of()), depth, filter,
+                MatchDeadline.NONE);
+        List<MatchedUser> ranked = top.getRanked();
+        UUID[] ids = new UUID[ranked.size()];
+        float[] scores = new float[ranked.size()];
+        for (int i = 0; i < ranked.size(); i++) {
+            ids[i] = ranked.get(i).getUser().getId();
+            scores[i] = (float) ranked.get(i).getScore();
+        }
+        return new RankedMatches(ownerId, ids, scores, top.getTotalCandidates(), Instant.now(), false, filter);
+    }
+
+    private MatchCacheKey key(UUID userId) {
+        return key(userId, MatchFilter.NONE);
+    }
+
+    private MatchCacheKey key(UUID userId, MatchFilter filter) {
+        return new MatchCacheKey(userId, DEPTH, "UNSORTED", filter);
+    }
+
+    private MatchingSnapshot randomSnapshot(String username) {
+        return new MatchingSnapshot(UUID.randomUUID(), username, random.nextInt(10) > 0, randomProfile(true), randomProfile(false));
+    }
+
+    private MatchingSnapshot.Profile randomProfile(boolean artist) {
+        if (random.nextInt(3) == 0) {
+            return null;
+        }
+        ExperienceLevel[] levels = ExperienceLevel.values();
+        return new MatchingSnapshot.Profile(random.nextBoolean(), levels[random.nextInt(levels.length)],
+                pick(genres, 3), artist ? pick(skills, 2) : Set.of());
+    }
+
+    private Set<UUID> pick(List<UUID> ids, int max) {
+        Set<UUID> result = new HashSet<>();
+        int n = random.nextInt(max + 1);
+        for (int i = 0; i < n; i++) {
+            result.add(ids.get(random.nextInt(ids.size())));
+        }
+        return result;
+    }
+}
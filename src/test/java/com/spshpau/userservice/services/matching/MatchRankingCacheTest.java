@@ -0,0 +1,88 @@
+package com.spshpau.userservice.services.matching;
+
+import com.spshpau.userservice.config.CacheConfig;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MatchRankingCacheTest {
+
+    private SimpleMeterRegistry meterRegistry;
+    private MatchRankingCache rankingCache;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        rankingCache = new MatchRankingCache(new CacheConfig().cacheManager(Duration.ofHours(4)), meterRegistry);
+    }
+
+    @Test
+    void get_concurrentMissesForSameKey_computeOnceAndShareResult() throws Exception {
+        UUID userId = UUID.randomUUID();
+        int callers = 8;
+        CountDownLatch computing = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger computations = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(callers);
+        try {
+            List<Future<RankedMatches>> results = new ArrayList<>();
+            for (int i = 0; i < callers; i++) {
+                results.add(executor.submit(() -> rankingCache.get(new MatchCacheKey(userId, 500, "UNSORTED"), () -> {
+                    computations.incrementAndGet();
+                    computing.countDown();
+                    await(release);
+                    return new RankedMatches(userId, new UUID[0], new float[0], 0, Instant.now());
+                })));
+            }
+            assertTrue(computing.await(5, TimeUnit.SECONDS));
+            // Let the other callers reach the pending entry before the computation finishes
+            while (meterRegistry.counter("matching.ranking.coalesced").count() < callers - 1) {
+                Thread.sleep(5);
+            }
+            release.countDown();
+
+            RankedMatches first = results.get(0).get(5, TimeUnit.SECONDS);
+            for (Future<RankedMatches> result : results) {
+                assertSame(first, result.get(5, TimeUnit.SECONDS));
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertEquals(1, computations.get());
+        assertEquals(1.0, meterRegistry.counter("matching.ranking.computed").count());
+        assertEquals(callers - 1, meterRegistry.counter("matching.ranking.coalesced").count());
+    }
+
+    @Test
+    void get_failedComputation_isNotCachedAndPropagates() {
+        MatchCacheKey key = new MatchCacheKey(UUID.randomUUID(), 500, "UNSORTED");
+
+        assertThrows(IllegalStateException.class, () -> rankingCache.get(key, () -> {
+            throw new IllegalStateException("boom");
+        }));
+        RankedMatches ranking = rankingCache.get(key,
+                () -> new RankedMatches(key.getUserId(), new UUID[0], new float[0], 0, Instant.now()));
+
+        assertNotNull(ranking);
+        assertEquals(1.0, meterRegistry.counter("matching.ranking.computed").count());
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
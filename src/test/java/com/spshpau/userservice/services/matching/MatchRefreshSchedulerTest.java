@@ -0,0 +1,133 @@
+package com.spshpau.userservice.services.matching;
+
+import com.spshpau.userservice.config.CacheConfig;
+import com.spshpau.userservice.model.User;
+import com.spshpau.userservice.repositories.UserRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.*;
+
+class MatchRefreshSchedulerTest {
+
+    private final UUID activeUserId = UUID.randomUUID();
+    private final UUID idleUserId = UUID.randomUUID();
+    private final UUID freshUserId = UUID.randomUUID();
+
+    private UserRepository userRepository;
+    private MatchRanker matchRanker;
+    private MatchRankingCache rankingCache;
+
+    @BeforeEach
+    void setUp() {
+        userRepository = mock(UserRepository.class);
+        matchRanker = mock(MatchRanker.class);
+        rankingCache = new MatchRankingCache(new CacheConfig().cacheManager(Duration.ofHours(4)), new SimpleMeterRegistry());
+        when(userRepository.findById(any())).thenAnswer(invocation -> {
+            User user = new User();
+            user.setId(invocation.getArgument(0));
+            user.setActive(true);
+            return Optional.of(user);
+        });
+        when(matchRanker.rank(any(), anyInt(), any(), any(), any())).thenAnswer(invocation ->
+                ranking(invocation.<User>getArgument(0).getId(), Instant.now()));
+    }
+
+    @Test
+    void refreshDueRankings_refreshesOnlyStaleRankingsServedRecently() {
+        Instant fiveHoursAgo = Instant.now().minus(Duration.ofHours(5));
+        RankedMatches active = cache(activeUserId, fiveHoursAgo);
+        active.markServed();
+        RankedMatches idle = cache(idleUserId, fiveHoursAgo);
+        RankedMatches fresh = cache(freshUserId, Instant.now());
+        fresh.markServed();
+
+        scheduler(Runnable::run).refreshDueRankings();
+
+        assertNotSame(active, rankingCache.completed().get(key(activeUserId)));
+        assertSame(idle, rankingCache.completed().get(key(idleUserId)));
+        assertSame(fresh, rankingCache.completed().get(key(freshUserId)));
+        verify(matchRanker, times(1)).rank(any(), anyInt(), any(), any(), any());
+        // The refresh itself does not count as activity
+        assertEquals(active.getLastServedAt(), rankingCache.completed().get(key(activeUserId)).getLastServedAt());
+    }
+
+    @Test
+    void refreshDueRankings_refreshesPartialRankingsRightAway() {
+        RankedMatches partial = new RankedMatches(activeUserId, new UUID[0], new float[0], 3, Instant.now(), true);
+        rankingCache.get(key(activeUserId), () -> partial);
+
+        scheduler(Runnable::run).refreshDueRankings();
+
+        RankedMatches refreshed = rankingCache.completed().get(key(activeUserId));
+        assertNotSame(partial, refreshed);
+        assertFalse(refreshed.isPartial());
+    }
+
+    @Test
+    void refreshDueRankings_rankingReplacedMeanwhile_isNotOverwritten() {
+        RankedMatches stale = cache(activeUserId, Instant.now().minus(Duration.ofHours(5)));
+        stale.markServed();
+        RankedMatches[] recomputed = new RankedMatches[1];
+
+        scheduler(task -> {
+            // A request recomputes the ranking after an eviction while the refresh is still queued
+            rankingCache.replace(key(activeUserId), stale, recomputed[0] = ranking(activeUserId, Instant.now()));
+            task.run();
+        }).refreshDueRankings();
+
+        assertSame(recomputed[0], rankingCache.completed().get(key(activeUserId)));
+    }
+
+    @Test
+    void refreshDueRankings_fullQueue_retriesOnNextRun() {
+        cache(activeUserId, Instant.now().minus(Duration.ofHours(5))).markServed();
+
+        AtomicBoolean queueFull = new AtomicBoolean(true);
+        MatchRefreshScheduler scheduler = scheduler(task -> {
+            if (queueFull.get()) {
+                throw new RejectedExecutionException();
+            }
+            task.run();
+        });
+
+        scheduler.refreshDueRankings();
+        verifyNoInteractions(matchRanker);
+        queueFull.set(false);
+        scheduler.refreshDueRankings();
+
+        verify(matchRanker, times(1)).rank(any(), anyInt(), any(), any(), any());
+    }
+
+    private MatchRefreshScheduler scheduler(Executor executor) {
+        return new MatchRefreshScheduler(rankingCache, matchRanker, userRepository, mock(PlatformTransactionManager.class),
+                executor, Duration.ofHours(3), Duration.ofMinutes(30), 1000, new SimpleMeterRegistry());
+    }
+
+    private RankedMatches cache(UUID userId, Instant computedAt) {
+        RankedMatches ranking = ranking(userId, computedAt);
+        rankingCache.get(key(userId), () -> ranking);
+        return ranking;
+    }
+
+    private MatchCacheKey key(UUID userId) {
+        return new MatchCacheKey(userId, 500, "UNSORTED");
+    }
+
+    private RankedMatches ranking(UUID userId, Instant computedAt) {
+        return new RankedMatches(userId, new UUID[0], new float[0], 0, computedAt);
+    }
+}
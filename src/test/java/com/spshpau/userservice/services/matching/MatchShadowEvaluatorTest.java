@@ -0,0 +1,122 @@
+package com.spshpau.userservice.services.matching;
+
+import com.spshpau.userservice.model.User;
+import com.spshpau.userservice.repositories.UserRepository;
+import com.spshpau.userservice.services.events.MatchRankingComputedEvent;
+import com.spshpau.userservice.services.wrappers.MatchPage;
+import com.spshpau.userservice.services.wrappers.RankedMatch;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+class MatchShadowEvaluatorTest {
+
+    private final UUID userId = UUID.randomUUID();
+    private final List<UUID> ids = IntStream.range(0, 6).mapToObj(i -> UUID.randomUUID()).toList();
+
+    private MatchEngine shadowEngine;
+    private UserRepository userRepository;
+
+    @BeforeEach
+    void setUp() {
+        shadowEngine = mock(MatchEngine.class);
+        userRepository = mock(UserRepository.class);
+        User user = new User();
+        user.setId(userId);
+        user.setActive(true);
+        when(userRepository.findById(userId)).thenReturn(Optional.of(user));
+    }
+
+    @Test
+    void compare_measuresOverlapAndRankCorrelation() {
+        List<UUID> live = ids.subList(0, 4);
+
+        MatchShadowEvaluator.Comparison same = MatchShadowEvaluator.compare(live, live);
+        MatchShadowEvaluator.Comparison reversed = MatchShadowEvaluator.compare(live,
+                List.of(ids.get(3), ids.get(2), ids.get(1), ids.get(0)));
+        MatchShadowEvaluator.Comparison half = MatchShadowEvaluator.compare(live,
+                List.of(ids.get(4), ids.get(1), ids.get(5), ids.get(0)));
+        MatchShadowEvaluator.Comparison disjoint = MatchShadowEvaluator.compare(live, ids.subList(4, 6));
+
+        assertEquals(1.0, same.getOverlap());
+        assertEquals(1.0, same.getRankCorrelation(), 1e-9);
+        assertEquals(1.0, reversed.getOverlap());
+        assertEquals(-1.0, reversed.getRankCorrelation(), 1e-9);
+        assertEquals(0.5, half.getOverlap());
+        assertEquals(2, half.getSharedMatches());
+        assertEquals(-1.0, half.getRankCorrelation(), 1e-9);
+        assertEquals(0.0, disjoint.getOverlap());
+        assertTrue(Double.isNaN(disjoint.getRankCorrelation()));
+    }
+
+    @Test
+    void onRankingComputed_shadowsSampledRankingsAndReportsTheComparison() {
+        when(shadowEngine.findMatches(any(), eq(0), eq(4), eq(MatchFilter.NONE))).thenReturn(new MatchPage(List.of(
+                match(ids.get(0)), match(ids.get(2)), match(ids.get(1)), match(ids.get(5))), 6));
+        MatchShadowEvaluator evaluator = evaluator(Runnable::run, 1.0);
+
+        evaluator.onRankingComputed(new MatchRankingComputedEvent(ranking(false), Duration.ofMillis(8)));
+
+        MatchShadowEvaluator.Report report = evaluator.report();
+        assertEquals(1, report.getCompared());
+        assertEquals(0.75, report.getMeanOverlap(), 1e-9);
+        assertEquals(0.5, report.getMeanRankCorrelation(), 1e-9);
+        assertEquals(8.0, report.getMeanLiveLatencyMs(), 1e-9);
+        assertEquals(0, report.getFailures());
+    }
+
+    @Test
+    void onRankingComputed_dropsSamplesWhileShadowThreadsAreBusyAndSkipsPartialOrUnsampledRankings() {
+        MatchShadowEvaluator saturated = evaluator(task -> {
+            throw new RejectedExecutionException();
+        }, 1.0);
+        saturated.onRankingComputed(new MatchRankingComputedEvent(ranking(false), Duration.ofMillis(8)));
+        assertEquals(1, saturated.report().getSkipped());
+
+        MatchShadowEvaluator evaluator = evaluator(Runnable::run, 1.0);
+        evaluator.onRankingComputed(new MatchRankingComputedEvent(ranking(true), Duration.ofMillis(8)));
+        evaluator(Runnable::run, 0.0).onRankingComputed(new MatchRankingComputedEvent(ranking(false), Duration.ofMillis(8)));
+
+        verifyNoInteractions(shadowEngine);
+        assertEquals(0, evaluator.report().getCompared());
+    }
+
+    @Test
+    void onRankingComputed_countsFailingShadowRankings() {
+        when(shadowEngine.findMatches(any(), anyInt(), anyInt(), any())).thenThrow(new IllegalStateException("boom"));
+        MatchShadowEvaluator evaluator = evaluator(Runnable::run, 1.0);
+
+        evaluator.onRankingComputed(new MatchRankingComputedEvent(ranking(false), Duration.ofMillis(8)));
+
+        assertEquals(1, evaluator.report().getFailures());
+        assertEquals(0, evaluator.report().getCompared());
+    }
+
+    private MatchShadowEvaluator evaluator(Executor executor, double sampleRate) {
+        return new MatchShadowEvaluator(shadowEngine, userRepository, mock(PlatformTransactionManager.class), executor,
+                "sql", sampleRate, 4, new SimpleMeterRegistry());
+    }
+
+    private RankedMatches ranking(boolean partial) {
+        UUID[] top = ids.subList(0, 4).toArray(UUID[]::new);
+        return new RankedMatches(userId, top, new float[]{4f, 3f, 2f, 1f}, 6, Instant.now(), partial);
+    }
+
+    private static RankedMatch match(UUID id) {
+        return new RankedMatch(id, id.toString(), 1.0);
+    }
+}
@@ -0,0 +1,57 @@
+package com.spshpau.userservice.services.matching;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.client.MockRestServiceServer;
+import org.springframework.web.client.RestClient;
+
+import java.util.Map;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.test.web.client.match.MockRestRequestMatchers.*;
+import static org.springframework.test.web.client.response.MockRestResponseCreators.withSuccess;
+
+class MatchShardTokenProviderTest {
+
+    private static final String TOKEN_URI = "http://idp.test/realms/app/protocol/openid-connect/token";
+
+    @Test
+    void token_isObtainedWithClientCredentials_andReusedUntilItExpires() {
+        RestClient.Builder builder = RestClient.builder();
+        MockRestServiceServer server = MockRestServiceServer.bindTo(builder).build();
+        server.expect(requestTo(TOKEN_URI))
+                .andExpect(content().formDataContains(Map.of(
+                        "grant_type", "client_credentials", "client_id", "userservice", "scope", "matching-shard")))
+                .andRespond(withSuccess("{\"access_token\":\"abc\",\"expires_in\":300}", MediaType.APPLICATION_JSON));
+        MatchShardTokenProvider provider = new MatchShardTokenProvider(builder, TOKEN_URI, "userservice", "s3cret",
+                "matching-shard");
+
+        assertEquals(Optional.of("abc"), provider.token());
+        assertEquals(Optional.of("abc"), provider.token());
+        server.verify();
+    }
+
+    @Test
+    void token_aboutToExpire_isRenewed() {
+        RestClient.Builder builder = RestClient.builder();
+        MockRestServiceServer server = MockRestServiceServer.bindTo(builder).build();
+        server.expect(requestTo(TOKEN_URI))
+                .andRespond(withSuccess("{\"access_token\":\"first\",\"expires_in\":10}", MediaType.APPLICATION_JSON));
+        server.expect(requestTo(TOKEN_URI))
+                .andRespond(withSuccess("{\"access_token\":\"second\",\"expires_in\":300}", MediaType.APPLICATION_JSON));
+        MatchShardTokenProvider provider = new MatchShardTokenProvider(builder, TOKEN_URI, "userservice", "s3cret",
+                "matching-shard");
+
+        assertEquals(Optional.of("first"), provider.token());
+        assertEquals(Optional.of("second"), provider.token());
+        server.verify();
+    }
+
+    @Test
+    void token_withoutTokenUri_isEmpty() {
+        MatchShardTokenProvider provider = new MatchShardTokenProvider(RestClient.builder(), "", "", "", "matching-shard");
+
+        assertTrue(provider.token().isEmpty());
+    }
+}
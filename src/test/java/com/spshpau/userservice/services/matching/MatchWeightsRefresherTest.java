@@ -0,0 +1,115 @@
+package com.spshpau.userservice.services.matching;
+
+import com.spshpau.userservice.config.CacheConfig;
+import com.spshpau.userservice.repositories.MatchListInvalidationRepository;
+import com.spshpau.userservice.repositories.UserMatchRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.cloud.context.environment.EnvironmentChangeEvent;
+import org.springframework.mock.env.MockEnvironment;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Set;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class MatchWeightsRefresherTest {
+
+    private final UUID alice = UUID.randomUUID();
+    private final UUID bob = UUID.randomUUID();
+
+    private MockEnvironment environment;
+    private MatchScorer matchScorer;
+    private Cache cache;
+    private MatchThresholds matchThresholds;
+    private UserMatchRepository userMatchRepository;
+    private MatchWeightsRefresher refresher;
+
+    @BeforeEach
+    void setUp() {
+        environment = new MockEnvironment();
+        matchScorer = new MatchScorer(new MatchingIndex());
+        CacheManager cacheManager = new CacheConfig().cacheManager(Duration.ofHours(4));
+        cache = cacheManager.getCache(CacheConfig.USER_MATCHES_CACHE);
+        matchThresholds = new MatchThresholds(1);
+        userMatchRepository = mock(UserMatchRepository.class);
+        refresher = new MatchWeightsRefresher(environment, matchScorer,
+                new MatchCacheEvictor(cacheManager, new MatchSnapshotStore(Duration.ofMinutes(10), 500, 100)),
+                matchThresholds,
+                new UserMatchStore(userMatchRepository, mock(MatchListInvalidationRepository.class), Duration.ofHours(6), 500, matchThresholds));
+
+        cache.put(new MatchCacheKey(alice, 500, "UNSORTED"), ranking(alice, bob));
+        matchThresholds.record(ranking(alice, bob));
+    }
+
+    @Test
+    void load_withoutConfiguredWeights_keepsOriginalScoringRules() {
+        refresher.load();
+
+        MatchWeights weights = matchScorer.getWeights();
+        assertEquals(MatchWeights.DEFAULTS, weights);
+        assertEquals(32.0, weights.roleBound());
+        byte[] levels = {0, 1, 2, 3};
+        double[] byDistance = {20, 16, 12, 8};
+        for (byte a : levels) {
+            for (byte b : levels) {
+                assertEquals(byDistance[Math.abs(a - b)], weights.experience(a, b));
+            }
+            assertEquals(0.0, weights.experience(a, IndexedUser.NO_EXPERIENCE));
+            assertEquals(0.0, weights.experience(IndexedUser.NO_EXPERIENCE, a));
+        }
+        assertEquals("{20.0,16.0,12.0,8.0}", weights.getExperienceArray());
+    }
+
+    @Test
+    void weightChange_swapsWeightsAndDropsMatchCaches() {
+        refresher.load();
+        environment.setProperty("matching.weights.shared-genre", "3");
+        environment.setProperty("matching.weights.experience-by-distance", "10,5");
+
+        refresher.onEnvironmentChange(new EnvironmentChangeEvent(Set.of("matching.weights.shared-genre",
+                "matching.weights.experience-by-distance")));
+
+        MatchWeights weights = matchScorer.getWeights();
+        assertEquals(3.0, weights.getSharedGenre());
+        assertEquals(5.0, weights.experience((byte) 1, (byte) 2));
+        assertEquals(0.0, weights.experience((byte) 0, (byte) 2));
+        assertNull(cache.get(new MatchCacheKey(alice, 500, "UNSORTED")));
+        assertNull(matchThresholds.kthScore(alice));
+        verify(userMatchRepository).deleteAllInBatch();
+    }
+
+    @Test
+    void unrelatedOrUnchangedProperties_leaveCachesAlone() {
+        refresher.load();
+        environment.setProperty("matching.weights.shared-genre", "1.0");
+
+        refresher.onEnvironmentChange(new EnvironmentChangeEvent(Set.of("matching.cache.ttl")));
+        refresher.onEnvironmentChange(new EnvironmentChangeEvent(Set.of("matching.weights.shared-genre")));
+
+        assertNotNull(cache.get(new MatchCacheKey(alice, 500, "UNSORTED")));
+        assertNotNull(matchThresholds.kthScore(alice));
+        verifyNoInteractions(userMatchRepository);
+    }
+
+    @Test
+    void invalidWeights_areIgnored() {
+        refresher.load();
+        environment.setProperty("matching.weights.availability", "-1");
+
+        refresher.onEnvironmentChange(new EnvironmentChangeEvent(Set.of("matching.weights.availability")));
+
+        assertEquals(MatchWeights.DEFAULTS, matchScorer.getWeights());
+        assertNotNull(cache.get(new MatchCacheKey(alice, 500, "UNSORTED")));
+        verifyNoInteractions(userMatchRepository);
+    }
+
+    private RankedMatches ranking(UUID userId, UUID... matchIds) {
+        return new RankedMatches(userId, matchIds, new float[matchIds.length], matchIds.length, Instant.now());
+    }
+}
@@ -0,0 +1,135 @@
+package com.spshpau.userservice.services.matching;
+
+import com.spshpau.userservice.model.enums.ExperienceLevel;
+import com.spshpau.userservice.services.wrappers.MatchedUser;
+import com.spshpau.userservice.services.wrappers.TopKMatches;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ReverseTopKFinderTest {
+
+    private static final int K = 5;
+
+    private final Random random = new Random(11);
+    private final List<UUID> genres = IntStream.range(0, 10).mapToObj(i -> UUID.randomUUID()).toList();
+    private final List<UUID> skills = IntStream.range(0, 6).mapToObj(i -> UUID.randomUUID()).toList();
+
+    private MatchingIndex matchingIndex;
+    private MatchScorer matchScorer;
+    private TopKMatchEvaluator evaluator;
+    private MatchThresholds thresholds;
+    private ReverseTopKFinder finder;
+    private List<MatchingSnapshot> snapshots;
+
+    @BeforeEach
+    void setUp() {
+        matchingIndex = new MatchingIndex();
+        matchScorer = new MatchScorer(matchingIndex);
+        evaluator = new TopKMatchEvaluator(matchingIndex, matchScorer, ForkJoinPool.commonPool(), ForkJoinPool.commonPool(),
+                Integer.MAX_VALUE);
+        thresholds = new MatchThresholds(K);
+        finder = new ReverseTopKFinder(matchingIndex, matchScorer, thresholds);
+        snapshots = IntStream.range(0, 200).mapToObj(i -> randomSnapshot("user" + i)).toList();
+        matchingIndex.replaceAll(snapshots, Map.of());
+    }
+
+    @Test
+    void findOwnersRanking_matchesOwnersWhoseRecomputedTopKNowHoldTheNewcomer() {
+        for (MatchingSnapshot snapshot : snapshots) {
+            thresholds.record(rank(snapshot.getUserId()));
+        }
+        Map<UUID, Float> before = snapshots.stream()
+                .collect(Collectors.toMap(MatchingSnapshot::getUserId, s -> thresholds.kthScore(s.getUserId())));
+
+        int notified = 0;
+        for (int round = 0; round < 5; round++) {
+            MatchingSnapshot newcomer = new MatchingSnapshot(UUID.randomUUID(), "newcomer" + round, true,
+                    randomProfile(true), randomProfile(false));
+            IndexedUser candidate = matchingIndex.put(newcomer);
+
+            Set<UUID> found = finder.findOwnersRanking(candidate, Set.of(), Set.of()).stream()
+                    .map(mu -> mu.getUser().getId())
+                    .collect(Collectors.toSet());
+
+            Set<UUID> expected = new HashSet<>();
+            for (MatchingSnapshot owner : snapshots) {
+                IndexedUser indexedOwner = matchingIndex.get(owner.getUserId()).orElseThrow();
+                if (!indexedOwner.isActive()) {
+                    continue;
+                }
+                RankedMatches recomputed = rank(owner.getUserId());
+                float score = (float) matchScorer.calculateMatchScore(indexedOwner, candidate, false);
+                if (Arrays.asList(recomputed.getMatchIds()).subList(0, Math.min(K, recomputed.size())).contains(candidate.getId())
+                        && score != before.get(owner.getUserId())) {
+                    expected.add(owner.getUserId());
+                }
+            }
+            assertEquals(expected, found);
+            notified += found.size();
+            // Later rounds compare against the original population only
+            matchingIndex.put(new MatchingSnapshot(newcomer.getUserId(), newcomer.getUsername(), false, null, null));
+        }
+        assertTrue(notified > 0);
+    }
+
+    @Test
+    void findOwnersRanking_skipsOwnersWithUnknownRankingAndExcludedOwners() {
+        MatchingSnapshot newcomer = new MatchingSnapshot(UUID.randomUUID(), "newcomer", true,
+                new MatchingSnapshot.Profile(true, ExperienceLevel.EXPERT, Set.copyOf(genres), Set.copyOf(skills)),
+                new MatchingSnapshot.Profile(true, ExperienceLevel.EXPERT, Set.copyOf(genres), Set.of()));
+        List<UUID> withProfiles = snapshots.stream()
+                .filter(s -> s.isActive() && (s.getArtistProfile() != null || s.getProducerProfile() != null))
+                .map(MatchingSnapshot::getUserId)
+                .toList();
+        UUID known = withProfiles.get(0);
+        UUID excluded = withProfiles.get(1);
+        thresholds.record(new RankedMatches(known, new UUID[0], new float[0], 0, Instant.now()));
+        thresholds.record(new RankedMatches(excluded, new UUID[0], new float[0], 0, Instant.now()));
+        IndexedUser candidate = matchingIndex.put(newcomer);
+
+        List<MatchedUser> found = finder.findOwnersRanking(candidate, Set.of(excluded), Set.of());
+
+        assertEquals(List.of(known), found.stream().map(mu -> mu.getUser().getId()).toList());
+    }
+
+    private RankedMatches rank(UUID ownerId) {
+        IndexedUser owner = matchingIndex.get(ownerId).orElseThrow();
+        TopKMatches top = evaluator.findTopK(owner, new CallerRelations(Set.of(ownerId), Set.of()), K);
+        UUID[] ids = top.getRanked().stream().map(mu -> mu.getUser().getId()).toArray(UUID[]::new);
+        float[] scores = new float[ids.length];
+        for (int i = 0; i < ids.length; i++) {
+            scores[i] = (float) top.getRanked().get(i).getScore();
+        }
+        return new RankedMatches(ownerId, ids, scores, top.getTotalCandidates(), Instant.now());
+    }
+
+    private MatchingSnapshot randomSnapshot(String username) {
+        return new MatchingSnapshot(UUID.randomUUID(), username, random.nextInt(10) > 0, randomProfile(true), randomProfile(false));
+    }
+
+    private MatchingSnapshot.Profile randomProfile(boolean artist) {
+        if (random.nextInt(3) == 0) {
+            return null;
+        }
+        ExperienceLevel[] levels = ExperienceLevel.values();
+        return new MatchingSnapshot.Profile(random.nextBoolean(), levels[random.nextInt(levels.length)],
+                pick(genres, 3), artist ? pick(skills, 2) : Set.of());
+    }
+
+    private Set<UUID> pick(List<UUID> ids, int max) {
+        Set<UUID> result = new HashSet<>();
+        int n = random.nextInt(max + 1);
+        for (int i = 0; i < n; i++) {
+            result.add(ids.get(random.nextInt(ids.size())));
+        }
+        return result;
+    }
+}
@@ -0,0 +1,238 @@
+package com.spshpau.userservice.services.matching;
+
+import com.spshpau.userservice.controller.impl.MatchShardControllerImpl;
+import com.spshpau.userservice.config.MatchingConfig;
+import com.spshpau.userservice.model.enums.ExperienceLevel;
+import com.spshpau.userservice.repositories.UserConnectionRepository;
+import com.spshpau.userservice.services.wrappers.MatchPage;
+import com.spshpau.userservice.services.wrappers.RankedMatch;
+import com.spshpau.userservice.services.wrappers.TopKMatches;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.SpringBootConfiguration;
+import org.springframework.boot.autoconfigure.EnableAutoConfiguration;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.cloud.client.discovery.simple.SimpleDiscoveryProperties;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Import;
+import org.springframework.web.client.RestClient;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class ShardedMatchEngineTest {
+
+    private static final String SECRET = "test-shard-secret";
+
+    private final Random random = new Random(23);
+    private final List<UUID> genres = IntStream.range(0, 12).mapToObj(i -> UUID.randomUUID()).toList();
+    private final List<UUID> skills = IntStream.range(0, 8).mapToObj(i -> UUID.randomUUID()).toList();
+    private final List<ConfigurableApplicationContext> nodes = new ArrayList<>();
+
+    @AfterEach
+    void stopNodes() {
+        nodes.forEach(ConfigurableApplicationContext::close);
+    }
+
+    @Test
+    void ring_spreadsUsersAndMovesOnlyThoseOfTheChangedMember() {
+        MatchShardRing three = new MatchShardRing(List.of("node-2", "node-0", "node-1"));
+        MatchShardRing four = new MatchShardRing(List.of("node-0", "node-1", "node-2", "node-3"));
+        assertEquals(new MatchShardRing(List.of("node-0", "node-1", "node-2")), three);
+
+        int[] owned = new int[3];
+        for (int i = 0; i < 3000; i++) {
+            UUID userId = UUID.randomUUID();
+            owned[three.ownerIndex(userId)]++;
+            String before = three.owner(userId);
+            String after = four.owner(userId);
+            assertTrue(after.equals(before) || after.equals("node-3"), "only moves to the new member");
+        }
+        for (int count : owned) {
+            assertTrue(count > 800 && count < 1200, () -> "unbalanced shards " + Arrays.toString(owned));
+        }
+    }
+
+    @Test
+    void findMatches_acrossInstancesMatchesTheUnshardedRankingAndSurvivesMembershipChanges() throws IOException {
+        int[] ports = {freePort(), freePort(), freePort()};
+        for (int i = 0; i < ports.length; i++) {
+            nodes.add(startNode(i, ports));
+        }
+        List<MatchingSnapshot> snapshots = IntStream.range(0, 400).mapToObj(i -> randomSnapshot("user" + i)).toList();
+        for (ConfigurableApplicationContext node : nodes) {
+            node.getBean(MatchingIndex.class).replaceAll(snapshots, Map.of());
+            node.getBean(MatchShardMembership.class).refresh();
+        }
+        ConfigurableApplicationContext coordinator = nodes.get(0);
+        assertEquals(3, coordinator.getBean(MatchingIndex.class).shardRing().size());
+
+        assertMatchesUnsharded(coordinator, snapshots);
+        assertEquals(0.0, fallbacks(coordinator), "every shard answered remotely");
+
+        // node-2 goes away without deregistering: its shard is ranked locally instead
+        nodes.remove(2).close();
+        assertMatchesUnsharded(coordinator, snapshots);
+        assertTrue(fallbacks(coordinator) > 0);
+
+        // ...until discovery drops it and the survivors reshard
+        double fallbacksBefore = fallbacks(coordinator);
+        for (ConfigurableApplicationContext node : nodes) {
+            node.getBean(SimpleDiscoveryProperties.class).getInstances().get("userservice")
+                    .removeIf(instance -> instance.getInstanceId().equals("node-2"));
+            node.getBean(MatchShardMembership.class).refresh();
+        }
+        assertEquals(List.of("node-0", "node-1"), coordinator.getBean(MatchingIndex.class).shardRing().getMembers());
+        assertMatchesUnsharded(coordinator, snapshots);
+        assertEquals(fallbacksBefore, fallbacks(coordinator));
+    }
+
+    @Test
+    void findMatches_withoutARing_ranksTheLocalIndexAsOneShard() {
+        MatchingIndex index = new MatchingIndex();
+        List<MatchingSnapshot> snapshots = IntStream.range(0, 200).mapToObj(i -> randomSnapshot("user" + i)).toList();
+        index.replaceAll(snapshots, Map.of());
+        TopKMatchEvaluator evaluator = new TopKMatchEvaluator(index, new MatchScorer(index), ForkJoinPool.commonPool(),
+                ForkJoinPool.commonPool(), Integer.MAX_VALUE);
+        MatchShardMembership membership = mock(MatchShardMembership.class);
+        when(membership.selfId()).thenReturn("node-0");
+        doThrow(new IllegalStateException("registry unavailable")).when(membership).refresh();
+        ShardedMatchEngine engine = new ShardedMatchEngine(index, membership, new MatchShardService(index, evaluator),
+                mock(CallerRelationsLoader.class), mock(MatchShardTokenProvider.class), Runnable::run, RestClient.builder(),
+                SECRET, Duration.ofSeconds(1), new SimpleMeterRegistry());
+
+        assertMatchesUnsharded(engine, index, evaluator, snapshots);
+        assertNull(index.shardRing());
+    }
+
+    private void assertMatchesUnsharded(ConfigurableApplicationContext coordinator, List<MatchingSnapshot> snapshots) {
+        assertMatchesUnsharded(coordinator.getBean(ShardedMatchEngine.class), coordinator.getBean(MatchingIndex.class),
+                coordinator.getBean(TopKMatchEvaluator.class), snapshots);
+    }
+
+    private void assertMatchesUnsharded(ShardedMatchEngine engine, MatchingIndex index, TopKMatchEvaluator evaluator,
+                                        List<MatchingSnapshot> snapshots) {
+        for (int i = 0; i < 15; i++) {
+            MatchingSnapshot caller = snapshots.get(i);
+            CallerRelations relations = new CallerRelations(Set.of(caller.getUserId(), snapshots.get(i + 20).getUserId()),
+                    Set.of(snapshots.get(i + 1).getUserId()));
+
+            TopKMatches expected = evaluator.findTopK(index.get(caller.getUserId()).orElseThrow(), relations, 15);
+            MatchPage actual = engine.findMatches(caller, relations, 5, 10, MatchFilter.NONE);
+
+            assertEquals(expected.getRanked().subList(5, 15).stream().map(mu -> mu.getUser().getId()).toList(),
+                    actual.getMatches().stream().map(RankedMatch::getUserId).toList());
+            assertEquals(expected.getTotalCandidates(), actual.getTotalCandidates());
+        }
+    }
+
+    private ConfigurableApplicationContext startNode(int node, int[] ports) {
+        List<String> properties = new ArrayList<>(List.of(
+                "server.port=" + ports[node],
+                "spring.cloud.config.enabled=false",
+                "spring.config.import=",
+                "eureka.client.enabled=false",
+                "matching.engine=sharded",
+                "matching.shard.instance-id=node-" + node,
+                "matching.shard.secret=" + SECRET,
+                "matching.shard.timeout=1s"));
+        for (int i = 0; i < ports.length; i++) {
+            properties.add("spring.cloud.discovery.client.simple.instances.userservice[" + i + "].instance-id=node-" + i);
+            properties.add("spring.cloud.discovery.client.simple.instances.userservice[" + i + "].uri=http://localhost:" + ports[i]);
+        }
+        return new SpringApplicationBuilder(ShardNode.class)
+                .properties(properties.toArray(String[]::new))
+                .run();
+    }
+
+    private static double fallbacks(ConfigurableApplicationContext node) {
+        return node.getBean(MeterRegistry.class).counter("matching.shard.fallbacks").count();
+    }
+
+    private static int freePort() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+
+    private MatchingSnapshot randomSnapshot(String username) {
+        MatchingSnapshot.Profile artist = random.nextInt(3) == 0 ? null
+                : new MatchingSnapshot.Profile(random.nextBoolean(), randomExperience(), pick(genres, 3), pick(skills, 3));
+        MatchingSnapshot.Profile producer = random.nextInt(3) == 0 ? null
+                : new MatchingSnapshot.Profile(random.nextBoolean(), randomExperience(), pick(genres, 3), Set.of());
+        return new MatchingSnapshot(UUID.randomUUID(), username, random.nextInt(10) > 0, artist, producer);
+    }
+
+    private ExperienceLevel randomExperience() {
+        ExperienceLevel[] levels = ExperienceLevel.values();
+        int i = random.nextInt(levels.length + 1);
+        return i == levels.length ? null : levels[i];
+    }
+
+    private Set<UUID> pick(List<UUID> ids, int max) {
+        Set<UUID> result = new HashSet<>();
+        int n = random.nextInt(max + 1);
+        for (int i = 0; i < n; i++) {
+            result.add(ids.get(random.nextInt(ids.size())));
+        }
+        return result;
+    }
+
+    /**
+     * One service instance, reduced to sharded matching over the web: no database, security or registry client.
+     */
+    @SpringBootConfiguration
+    @EnableAutoConfiguration(excludeName = {
+            "org.springframework.boot.autoconfigure.jdbc.DataSourceAutoConfiguration",
+            "org.springframework.boot.autoconfigure.orm.jpa.HibernateJpaAutoConfiguration",
+            "org.springframework.boot.autoconfigure.security.servlet.SecurityAutoConfiguration",
+            "org.springframework.boot.autoconfigure.security.servlet.SecurityFilterAutoConfiguration",
+            "org.springframework.boot.autoconfigure.security.servlet.UserDetailsServiceAutoConfiguration",
+            "org.springframework.boot.autoconfigure.security.oauth2.resource.servlet.OAuth2ResourceServerAutoConfiguration",
+            "org.springframework.boot.actuate.autoconfigure.security.servlet.ManagementWebSecurityAutoConfiguration"})
+    @Import({MatchingIndex.class, MatchScorer.class, TopKMatchEvaluator.class, CallerRelationsLoader.class,
+            MatchShardService.class, MatchShardMembership.class, MatchShardTokenProvider.class, ShardedMatchEngine.class,
+            MatchShardControllerImpl.class})
+    static class ShardNode {
+
+        @Bean(name = MatchingConfig.MATCH_SCORING_POOL)
+        ForkJoinPool matchScoringPool() {
+            return ForkJoinPool.commonPool();
+        }
+
+        @Bean(name = MatchingConfig.MATCH_STREAM_EXECUTOR, destroyMethod = "shutdownNow")
+        ThreadPoolExecutor matchStreamExecutor() {
+            return new ThreadPoolExecutor(2, 2, 0L, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<>());
+        }
+
+        @Bean(name = MatchingConfig.MATCH_SHARD_EXECUTOR, destroyMethod = "shutdownNow")
+        ThreadPoolExecutor matchShardExecutor() {
+            return new ThreadPoolExecutor(4, 4, 0L, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<>());
+        }
+
+        @Bean
+        UserConnectionRepository userConnectionRepository() {
+            return mock(UserConnectionRepository.class);
+        }
+
+        @Bean
+        MeterRegistry meterRegistry() {
+            return new SimpleMeterRegistry();
+        }
+    }
+}
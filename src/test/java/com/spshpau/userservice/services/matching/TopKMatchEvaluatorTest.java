@@ -0,0 +1,468 @@
+package com.spshpau.userservice.services.matching;
+
+import com.spshpau.userservice.config.MatchWeightProperties;
+import com.spshpau.userservice.model.enums.ExperienceLevel;
+import com.spshpau.userservice.model.enums.ProfileType;
+import com.spshpau.userservice.services.geo.GeoPoint;
+import com.spshpau.userservice.services.wrappers.MatchedUser;
+import com.spshpau.userservice.services.wrappers.RankedMatch;
+import com.spshpau.userservice.services.wrappers.TopKMatches;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TopKMatchEvaluatorTest {
+
+    private final Random random = new Random(42);
+    private final List<UUID> genres = IntStream.range(0, 12).mapToObj(i -> UUID.randomUUID()).toList();
+    private final List<UUID> skills = IntStream.range(0, 8).mapToObj(i -> UUID.randomUUID()).toList();
+
+    private MatchingIndex matchingIndex;
+    private MatchScorer matchScorer;
+    private TopKMatchEvaluator evaluator;
+    private List<MatchingSnapshot> snapshots;
+
+    @BeforeEach
+    void setUp() {
+        matchingIndex = new MatchingIndex();
+        matchScorer = new MatchScorer(matchingIndex);
+        evaluator = new TopKMatchEvaluator(matchingIndex, matchScorer, ForkJoinPool.commonPool(), ForkJoinPool.commonPool(),
+                Integer.MAX_VALUE);
+        snapshots = IntStream.range(0, 300).mapToObj(i -> randomSnapshot("user" + i)).toList();
+        matchingIndex.replaceAll(snapshots, Map.of());
+    }
+
+    @Test
+    void findTopK_matchesBruteForceRanking() {
+        for (int i = 0; i < 40; i++) {
+            IndexedUser caller = matchingIndex.get(snapshots.get(i).getUserId()).orElseThrow();
+            Set<UUID> excluded = new HashSet<>(Set.of(caller.getId(), snapshots.get(i + 1).getUserId()));
+            Set<UUID> connected = Set.of(snapshots.get(i + 2).getUserId(), snapshots.get(i + 3).getUserId());
+
+            List<MatchedUser> expected = bruteForce(caller, excluded, connected);
+            for (int k : new int[]{1, 10, 25, 400}) {
+                TopKMatches actual = evaluator.findTopK(caller, new CallerRelations(excluded, connected), k);
+
+                assertEquals(expected.size(), actual.getTotalCandidates());
+                assertEquals(ids(expected.subList(0, Math.min(k, expected.size()))), ids(actual.getRanked()));
+            }
+        }
+    }
+
+    @Test
+    void findTopK_parallelPartitionsMatchSequentialRanking() {
+        ForkJoinPool pool = new ForkJoinPool(3);
+        try {
+            TopKMatchEvaluator parallel = new TopKMatchEvaluator(matchingIndex, matchScorer, pool, pool, 0);
+            for (int i = 0; i < 20; i++) {
+                IndexedUser caller = matchingIndex.get(snapshots.get(i).getUserId()).orElseThrow();
+                CallerRelations relations = new CallerRelations(Set.of(caller.getId()), Set.of(snapshots.get(i + 1).getUserId()));
+                for (int k : new int[]{1, 10, 400}) {
+                    TopKMatches expected = evaluator.findTopK(caller, relations, k);
+                    TopKMatches actual = parallel.findTopK(caller, relations, k);
+
+                    assertEquals(expected.getTotalCandidates(), actual.getTotalCandidates());
+                    assertEquals(ids(expected.getRanked()), ids(actual.getRanked()));
+                }
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    void findTopK_progressivelyReportsPartitionsAndEndsWithTheSameRanking() {
+        ForkJoinPool pool = new ForkJoinPool(2);
+        try {
+            TopKMatchEvaluator progressive = new TopKMatchEvaluator(matchingIndex, matchScorer, pool, pool, Integer.MAX_VALUE);
+            for (int i = 0; i < 20; i++) {
+                IndexedUser caller = matchingIndex.get(snapshots.get(i).getUserId()).orElseThrow();
+                CallerRelations relations = new CallerRelations(Set.of(caller.getId()), Set.of(snapshots.get(i + 1).getUserId()));
+                for (int k : new int[]{1, 10, 400}) {
+                    List<List<UUID>> reported = new ArrayList<>();
+                    List<Integer> completed = new ArrayList<>();
+                    TopKMatches expected = evaluator.findTopK(caller, relations, k);
+                    TopKMatches actual = progressive.findTopK(caller, relations, k, MatchFilter.NONE, (ranked, done, partitions) -> {
+                        assertEquals(4, partitions);
+                        reported.add(ranked.stream().map(RankedMatch::getUserId).toList());
+                        completed.add(done);
+                    }, MatchDeadline.NONE);
+
+                    assertEquals(expected.getTotalCandidates(), actual.getTotalCandidates());
+                    assertEquals(ids(expected.getRanked()), ids(actual.getRanked()));
+                    assertEquals(List.of(1, 2, 3, 4), completed);
+                    assertEquals(ids(expected.getRanked()), reported.get(reported.size() - 1));
+                    // Sizes never shrink as partitions complete
+                    for (int p = 1; p < reported.size(); p++) {
+                        assertTrue(reported.get(p).size() >= reported.get(p - 1).size());
+                    }
+                }
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    void findTopK_streamingAndParallelRankingsAlongsideAWriter_allComplete() throws Exception {
+        ForkJoinPool pool = new ForkJoinPool(2);
+        ExecutorService streamExecutor = Executors.newFixedThreadPool(2);
+        ExecutorService callers = Executors.newFixedThreadPool(3);
+        try {
+            TopKMatchEvaluator shared = new TopKMatchEvaluator(matchingIndex, matchScorer, pool, streamExecutor, 0);
+            IndexedUser caller = matchingIndex.get(snapshots.get(0).getUserId()).orElseThrow();
+            CallerRelations relations = new CallerRelations(Set.of(caller.getId()), Set.of());
+            List<MatchingSnapshot> edits = snapshots.subList(100, 300).stream()
+                    .map(s -> {
+                        MatchingSnapshot edited = randomSnapshot(s.getUsername());
+                        return new MatchingSnapshot(s.getUserId(), s.getUsername(), true,
+                                edited.getArtistProfile(), edited.getProducerProfile());
+                    })
+                    .toList();
+
+            List<Future<?>> runs = List.of(
+                    callers.submit(() -> {
+                        for (int i = 0; i < 200; i++) {
+                            shared.findTopK(caller, relations, 10, MatchFilter.NONE, (ranked, done, partitions) -> {
+                            }, MatchDeadline.NONE);
+                        }
+                    }),
+                    callers.submit(() -> {
+                        for (int i = 0; i < 200; i++) {
+                            shared.findTopK(caller, relations, 10);
+                        }
+                    }),
+                    callers.submit(() -> edits.forEach(matchingIndex::put)));
+
+            for (Future<?> run : runs) {
+                run.get(30, TimeUnit.SECONDS);
+            }
+        } finally {
+            callers.shutdownNow();
+            streamExecutor.shutdownNow();
+            pool.shutdownNow();
+        }
+    }
+
+    @Test
+    void findTopK_underAReachedDeadline_returnsFullListOfCorrectlyScoredMatches() {
+        for (int i = 0; i < 20; i++) {
+            IndexedUser caller = matchingIndex.get(snapshots.get(i).getUserId()).orElseThrow();
+            Set<UUID> excluded = Set.of(caller.getId());
+            CallerRelations relations = new CallerRelations(excluded, Set.of());
+            List<MatchedUser> expected = bruteForce(caller, excluded, Set.of());
+
+            MatchDeadline reached = MatchDeadline.after(Duration.ZERO);
+            TopKMatches partial = evaluator.findTopK(caller, relations, 10, MatchFilter.NONE, reached);
+            MatchDeadline generous = MatchDeadline.after(Duration.ofHours(1));
+            TopKMatches complete = evaluator.findTopK(caller, relations, 10, MatchFilter.NONE, generous);
+
+            assertEquals(expected.size(), partial.getTotalCandidates());
+            assertEquals(10, partial.getRanked().size());
+            for (MatchedUser match : partial.getRanked()) {
+                assertEquals(matchScorer.calculateMatchScore(caller, match.getUser(), false), match.getScore(), 1e-9);
+            }
+            assertEquals(partial.getRanked().stream().sorted(TopKMatchEvaluator.RANKING).toList(), partial.getRanked());
+            assertFalse(generous.wasReached());
+            assertEquals(ids(expected.subList(0, 10)), ids(complete.getRanked()));
+        }
+    }
+
+    @Test
+    void findTopK_withFilter_matchesBruteForceRankingOfPassingCandidatesOnly() {
+        List<MatchFilter> filters = List.of(
+                new MatchFilter(true, null, null, Set.of()),
+                new MatchFilter(false, ExperienceLevel.ADVANCED, ProfileType.ARTIST, Set.of()),
+                new MatchFilter(true, ExperienceLevel.INTERMEDIATE, ProfileType.PRODUCER, Set.of(genres.get(0), genres.get(1))),
+                new MatchFilter(false, null, null, Set.of(genres.get(2), UUID.randomUUID())),
+                new MatchFilter(false, null, null, Set.of(UUID.randomUUID())));
+        Map<UUID, MatchingSnapshot> byId = snapshots.stream()
+                .collect(Collectors.toMap(MatchingSnapshot::getUserId, snapshot -> snapshot));
+        ForkJoinPool pool = new ForkJoinPool(2);
+        try {
+            TopKMatchEvaluator partitioned = new TopKMatchEvaluator(matchingIndex, matchScorer, pool, pool, 0);
+            for (int i = 0; i < 20; i++) {
+                IndexedUser caller = matchingIndex.get(snapshots.get(i).getUserId()).orElseThrow();
+                Set<UUID> excluded = Set.of(caller.getId(), snapshots.get(i + 1).getUserId());
+                Set<UUID> connected = Set.of(snapshots.get(i + 2).getUserId());
+                CallerRelations relations = new CallerRelations(excluded, connected);
+                for (MatchFilter filter : filters) {
+                    List<MatchedUser> expected = bruteForce(caller, excluded, connected).stream()
+                            .filter(mu -> passes(byId.get(mu.getUser().getId()), filter))
+                            .toList();
+                    for (int k : new int[]{1, 10, 400}) {
+                        List<UUID> expectedIds = ids(expected.subList(0, Math.min(k, expected.size())));
+                        TopKMatches sequential = evaluator.findTopK(caller, relations, k, filter, MatchDeadline.NONE);
+                        TopKMatches parallel = partitioned.findTopK(caller, relations, k, filter, MatchDeadline.NONE);
+                        TopKMatches progressive = partitioned.findTopK(caller, relations, k, filter,
+                                MatchProgressListener.NONE, MatchDeadline.NONE);
+
+                        assertEquals(expected.size(), sequential.getTotalCandidates());
+                        assertEquals(expectedIds, ids(sequential.getRanked()));
+                        assertEquals(expected.size(), parallel.getTotalCandidates());
+                        assertEquals(expectedIds, ids(parallel.getRanked()));
+                        assertEquals(expected.size(), progressive.getTotalCandidates());
+                        assertEquals(expectedIds, ids(progressive.getRanked()));
+                    }
+                }
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    void findTopK_matchesBruteForceRankingWithCustomWeights() {
+        MatchWeightProperties properties = new MatchWeightProperties();
+        properties.setOppositeRole(0.5);
+        properties.setAvailability(3.0);
+        properties.setSpecificGenre(9.0);
+        properties.setSharedGenre(2.5);
+        properties.setSharedSkill(4.0);
+        properties.setExperienceByDistance(List.of(1.0, 7.0));
+        matchScorer.setWeights(MatchWeights.compile(properties));
+
+        for (int i = 0; i < 20; i++) {
+            IndexedUser caller = matchingIndex.get(snapshots.get(i).getUserId()).orElseThrow();
+            Set<UUID> excluded = Set.of(caller.getId());
+            Set<UUID> connected = Set.of(snapshots.get(i + 1).getUserId());
+
+            List<MatchedUser> expected = bruteForce(caller, excluded, connected);
+            TopKMatches actual = evaluator.findTopK(caller, new CallerRelations(excluded, connected), 10);
+
+            assertEquals(ids(expected.subList(0, 10)), ids(actual.getRanked()));
+        }
+    }
+
+    @Test
+    void findTopK_matchesBruteForceRankingWithRarityWeights() {
+        MatchWeightProperties properties = new MatchWeightProperties();
+        properties.setRarityWeighted(true);
+        matchScorer.setWeights(MatchWeights.compile(properties));
+
+        for (int i = 0; i < 20; i++) {
+            IndexedUser caller = matchingIndex.get(snapshots.get(i).getUserId()).orElseThrow();
+            Set<UUID> excluded = Set.of(caller.getId());
+            Set<UUID> connected = Set.of(snapshots.get(i + 1).getUserId());
+
+            List<MatchedUser> expected = bruteForce(caller, excluded, connected);
+            for (int k : new int[]{1, 10, 400}) {
+                TopKMatches actual = evaluator.findTopK(caller, new CallerRelations(excluded, connected), k);
+
+                assertEquals(ids(expected.subList(0, Math.min(k, expected.size()))), ids(actual.getRanked()));
+            }
+        }
+    }
+
+    @Test
+    void findTopK_matchesBruteForceRankingWithRelatedGenres() {
+        int[][] pairs = new int[10][];
+        float[] similarities = new float[10];
+        for (int i = 0; i < pairs.length; i++) {
+            pairs[i] = new int[]{matchingIndex.genreId(genres.get(i)), matchingIndex.genreId(genres.get((i * 5 + 3) % genres.size()))};
+            similarities[i] = 0.1f + random.nextFloat() * 0.8f;
+        }
+        assertTrue(matchingIndex.replaceGenreSimilarity(GenreSimilarityMatrix.of(pairs, similarities)));
+
+        for (boolean rarityWeighted : new boolean[]{false, true}) {
+            MatchWeightProperties properties = new MatchWeightProperties();
+            properties.setRarityWeighted(rarityWeighted);
+            matchScorer.setWeights(MatchWeights.compile(properties));
+            for (int i = 0; i < 20; i++) {
+                IndexedUser caller = matchingIndex.get(snapshots.get(i).getUserId()).orElseThrow();
+                Set<UUID> excluded = Set.of(caller.getId());
+
+                List<MatchedUser> expected = bruteForce(caller, excluded, Set.of());
+                for (int k : new int[]{1, 10, 400}) {
+                    TopKMatches actual = evaluator.findTopK(caller, new CallerRelations(excluded, Set.of()), k);
+
+                    assertEquals(ids(expected.subList(0, Math.min(k, expected.size()))), ids(actual.getRanked()));
+                }
+            }
+        }
+    }
+
+    @Test
+    void relatedGenres_givePartialCreditForTheBestRelatedGenre() {
+        UUID techno = genres.get(0);
+        UUID house = genres.get(1);
+        UUID trance = genres.get(2);
+        matchingIndex.replaceGenreSimilarity(GenreSimilarityMatrix.of(
+                new int[][]{{matchingIndex.genreId(techno), matchingIndex.genreId(house)},
+                        {matchingIndex.genreId(techno), matchingIndex.genreId(trance)}},
+                new float[]{0.5f, 0.25f}));
+        IndexedUser producer = matchingIndex.put(new MatchingSnapshot(UUID.randomUUID(), "producer", true, null,
+                new MatchingSnapshot.Profile(false, null, Set.of(techno), Set.of())));
+        IndexedUser houseArtist = matchingIndex.put(new MatchingSnapshot(UUID.randomUUID(), "house", true,
+                new MatchingSnapshot.Profile(false, null, Set.of(house, trance), Set.of()), null));
+        IndexedUser technoArtist = matchingIndex.put(new MatchingSnapshot(UUID.randomUUID(), "techno", true,
+                new MatchingSnapshot.Profile(false, null, Set.of(techno), Set.of()), null));
+
+        // 2 for the opposite role, plus 5 per specific genre credit, plus 1 per exactly shared genre
+        assertEquals(2.0 + 5.0 * 0.5, matchScorer.calculateMatchScore(producer, houseArtist, false), 1e-6);
+        assertEquals(2.0 + 5.0 + 1.0, matchScorer.calculateMatchScore(producer, technoArtist, false), 1e-6);
+    }
+
+    @Test
+    void rarityWeights_followIncrementalUpdatesAndFavourRareGenres() {
+        UUID common = genres.get(0);
+        UUID rare = UUID.randomUUID();
+        List<MatchingSnapshot> current = new ArrayList<>(snapshots);
+        for (int i = 0; i < 40; i++) {
+            MatchingSnapshot user = snapshots.get(i);
+            Set<UUID> artistGenres = i == 0 ? Set.of(common, rare) : Set.of(common);
+            MatchingSnapshot updated = new MatchingSnapshot(user.getUserId(), user.getUsername(), i != 1,
+                    new MatchingSnapshot.Profile(true, ExperienceLevel.BEGINNER, artistGenres, Set.of(skills.get(0))),
+                    user.getProducerProfile());
+            matchingIndex.put(updated);
+            current.set(i, updated);
+        }
+
+        MatchingIndex rebuilt = new MatchingIndex();
+        rebuilt.replaceAll(current, Map.of());
+
+        for (UUID genre : genres) {
+            assertEquals(rebuilt.genreRarity()[rebuilt.genreId(genre)],
+                    matchingIndex.genreRarity()[matchingIndex.genreId(genre)], 1e-6f);
+        }
+        for (UUID skill : skills) {
+            assertEquals(rebuilt.skillRarity()[rebuilt.skillId(skill)],
+                    matchingIndex.skillRarity()[matchingIndex.skillId(skill)], 1e-6f);
+        }
+        float[] rarity = matchingIndex.genreRarity();
+        assertTrue(rarity[matchingIndex.genreId(rare)] > rarity[matchingIndex.genreId(common)]);
+        assertTrue(rarity[matchingIndex.genreId(common)] >= 1.0f);
+    }
+
+    @Test
+    void findTopK_matchesBruteForceRankingWithProximity() {
+        snapshots = snapshots.stream().map(this::randomlyLocated).toList();
+        matchingIndex.replaceAll(snapshots, Map.of());
+        MatchWeightProperties properties = new MatchWeightProperties();
+        properties.setProximity(6.0);
+        properties.setProximityRadiusKm(120.0);
+        matchScorer.setWeights(MatchWeights.compile(properties));
+
+        for (int i = 0; i < 20; i++) {
+            IndexedUser caller = matchingIndex.get(snapshots.get(i).getUserId()).orElseThrow();
+            Set<UUID> excluded = Set.of(caller.getId());
+            Set<UUID> connected = Set.of(snapshots.get(i + 1).getUserId());
+
+            List<MatchedUser> expected = bruteForce(caller, excluded, connected);
+            for (int k : new int[]{1, 10, 400}) {
+                TopKMatches actual = evaluator.findTopK(caller, new CallerRelations(excluded, connected), k);
+
+                assertEquals(ids(expected.subList(0, Math.min(k, expected.size()))), ids(actual.getRanked()));
+            }
+        }
+    }
+
+    @Test
+    void usersNear_matchesBruteForceDistances() {
+        snapshots = snapshots.stream().map(this::randomlyLocated).toList();
+        matchingIndex.replaceAll(snapshots, Map.of());
+
+        for (MatchingSnapshot caller : snapshots.subList(0, 30)) {
+            for (double km : new double[]{10, 75, 300}) {
+                Set<UUID> expected = caller.getLocation() == null ? null : snapshots.stream()
+                        .filter(s -> s.isActive() && s.getLocation() != null && s != caller)
+                        .filter(s -> s.getLocation().distanceKm(caller.getLocation()) <= km)
+                        .map(MatchingSnapshot::getUserId)
+                        .collect(Collectors.toSet());
+
+                assertEquals(Optional.ofNullable(expected), matchingIndex.usersNear(caller.getUserId(), km));
+            }
+        }
+    }
+
+    @Test
+    void findTopK_reflectsUpdatedAndDeactivatedUsers() {
+        IndexedUser caller = matchingIndex.get(snapshots.get(0).getUserId()).orElseThrow();
+        MatchingSnapshot changed = snapshots.get(5);
+        matchingIndex.put(new MatchingSnapshot(changed.getUserId(), changed.getUsername(), true,
+                new MatchingSnapshot.Profile(true, ExperienceLevel.BEGINNER, Set.copyOf(genres), Set.copyOf(skills)),
+                new MatchingSnapshot.Profile(true, ExperienceLevel.BEGINNER, Set.copyOf(genres), Set.of())));
+        MatchingSnapshot deactivated = snapshots.get(6);
+        matchingIndex.put(new MatchingSnapshot(deactivated.getUserId(), deactivated.getUsername(), false,
+                deactivated.getArtistProfile(), deactivated.getProducerProfile()));
+
+        Set<UUID> excluded = Set.of(caller.getId());
+        List<MatchedUser> expected = bruteForce(caller, excluded, Set.of());
+        TopKMatches actual = evaluator.findTopK(caller, new CallerRelations(excluded, Set.of()), 10);
+
+        assertEquals(ids(expected.subList(0, 10)), ids(actual.getRanked()));
+        assertEquals(expected.size(), actual.getTotalCandidates());
+        assertTrue(actual.getRanked().stream().noneMatch(mu -> mu.getUser().getId().equals(deactivated.getUserId())));
+    }
+
+    private List<MatchedUser> bruteForce(IndexedUser caller, Set<UUID> excluded, Set<UUID> connected) {
+        return snapshots.stream()
+                .map(snapshot -> matchingIndex.get(snapshot.getUserId()).orElseThrow())
+                .filter(IndexedUser::isActive)
+                .filter(candidate -> !excluded.contains(candidate.getId()))
+                .map(candidate -> new MatchedUser(candidate,
+                        matchScorer.calculateMatchScore(caller, candidate, connected.contains(candidate.getId()))))
+                .sorted(TopKMatchEvaluator.RANKING)
+                .collect(Collectors.toList());
+    }
+
+    /** The filter rules, spelled out on the snapshot rather than on the encoded user. */
+    private boolean passes(MatchingSnapshot snapshot, MatchFilter filter) {
+        return (filter.getRole() != ProfileType.PRODUCER && passes(snapshot.getArtistProfile(), filter))
+                || (filter.getRole() != ProfileType.ARTIST && passes(snapshot.getProducerProfile(), filter));
+    }
+
+    private boolean passes(MatchingSnapshot.Profile profile, MatchFilter filter) {
+        return profile != null
+                && (!filter.isAvailableOnly() || profile.isAvailability())
+                && (filter.getMinExperience() == null || (profile.getExperienceLevel() != null
+                && profile.getExperienceLevel().compareTo(filter.getMinExperience()) >= 0))
+                && (filter.getGenreIds().isEmpty() || !Collections.disjoint(profile.getGenreIds(), filter.getGenreIds()));
+    }
+
+    private List<UUID> ids(List<MatchedUser> matches) {
+        return matches.stream().map(mu -> mu.getUser().getId()).toList();
+    }
+
+    private MatchingSnapshot randomSnapshot(String username) {
+        MatchingSnapshot.Profile artist = random.nextInt(3) == 0 ? null
+                : new MatchingSnapshot.Profile(random.nextBoolean(), randomExperience(), pick(genres, 3), pick(skills, 3));
+        MatchingSnapshot.Profile producer = random.nextInt(3) == 0 ? null
+                : new MatchingSnapshot.Profile(random.nextBoolean(), randomExperience(), pick(genres, 3), Set.of());
+        return new MatchingSnapshot(UUID.randomUUID(), username, random.nextInt(10) > 0, artist, producer);
+    }
+
+    /** Somewhere in central Europe, or nowhere for one user in five. */
+    private MatchingSnapshot randomlyLocated(MatchingSnapshot s) {
+        GeoPoint location = random.nextInt(5) == 0 ? null
+                : new GeoPoint(47.0 + random.nextDouble() * 5.0, 12.0 + random.nextDouble() * 8.0);
+        return new MatchingSnapshot(s.getUserId(), s.getUsername(), s.isActive(),
+                s.getArtistProfile(), s.getProducerProfile(), location);
+    }
+
+    private ExperienceLevel randomExperience() {
+        ExperienceLevel[] levels = ExperienceLevel.values();
+        int i = random.nextInt(levels.length + 1);
+        return i == levels.length ? null : levels[i];
+    }
+
+    private Set<UUID> pick(List<UUID> ids, int max) {
+        Set<UUID> result = new HashSet<>();
+        int n = random.nextInt(max + 1);
+        for (int i = 0; i < n; i++) {
+            result.add(ids.get(random.nextInt(ids.size())));
+        }
+        return result;
+    }
+}
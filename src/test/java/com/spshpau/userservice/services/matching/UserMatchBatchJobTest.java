@@ -0,0 +1,98 @@
+package com.spshpau.userservice.services.matching;
+
+import com.spshpau.userservice.model.User;
+import com.spshpau.userservice.repositories.MatchListInvalidationRepository;
+import com.spshpau.userservice.repositories.UserMatchRepository;
+import com.spshpau.userservice.repositories.UserRepository;
+import com.spshpau.userservice.services.events.UserBlockChangedEvent;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+class UserMatchBatchJobTest {
+
+    private final UUID alice = UUID.randomUUID();
+    private final UUID bob = UUID.randomUUID();
+    private final UUID carol = UUID.randomUUID();
+    // Stands in for match_list_invalidations
+    private final Map<UUID, Instant> invalidations = new ConcurrentHashMap<>();
+
+    private UserMatchRepository userMatchRepository;
+    private MatchRanker matchRanker;
+    private UserMatchStore store;
+    private UserMatchBatchJob job;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        userMatchRepository = mock(UserMatchRepository.class);
+        when(userMatchRepository.tryPartitionLock(anyLong())).thenReturn(true);
+        when(userMatchRepository.findUserIdsDueForBatch(any(), any(), any())).thenReturn(List.of(alice, bob));
+        MatchListInvalidationRepository invalidationRepository = mock(MatchListInvalidationRepository.class);
+        when(invalidationRepository.invalidate(any(), any())).thenAnswer(invocation -> {
+            List<UUID> userIds = invocation.getArgument(0);
+            userIds.forEach(userId -> invalidations.merge(userId, invocation.getArgument(1), (a, b) -> a.isAfter(b) ? a : b));
+            return userIds.size();
+        });
+        when(invalidationRepository.existsByUserIdAndInvalidatedAtGreaterThanEqual(any(), any())).thenAnswer(invocation -> {
+            Instant invalidatedAt = invalidations.get(invocation.<UUID>getArgument(0));
+            return invalidatedAt != null && !invalidatedAt.isBefore(invocation.getArgument(1));
+        });
+        UserRepository userRepository = mock(UserRepository.class);
+        when(userRepository.findById(any())).thenAnswer(invocation -> Optional.of(user(invocation.getArgument(0))));
+        store = new UserMatchStore(userMatchRepository, invalidationRepository, Duration.ofHours(6), 500, new MatchThresholds(10));
+        matchRanker = mock(MatchRanker.class);
+        when(matchRanker.rank(any(), eq(500))).thenAnswer(invocation -> ranking(invocation.<User>getArgument(0).getId()));
+        job = new UserMatchBatchJob(userMatchRepository, userRepository, store, matchRanker,
+                mock(PlatformTransactionManager.class), Runnable::run, true, 4, Duration.ofHours(3), new SimpleMeterRegistry());
+    }
+
+    @Test
+    void computePartition_listInvalidatedWhileItIsRanked_isNotSaved() {
+        when(matchRanker.rank(argThat(user -> user != null && alice.equals(user.getId())), eq(500))).thenAnswer(invocation -> {
+            // A block commits while Alice's list is ranked from the index as it was before
+            store.onUserBlockChanged(new UserBlockChangedEvent(alice, carol, true));
+            return ranking(alice);
+        });
+
+        assertEquals(1, job.computePartition(0, Instant.now()));
+
+        verify(userMatchRepository, never()).insertList(eq(alice), any(), any(), anyLong(), any());
+        verify(userMatchRepository).insertList(eq(bob), any(), any(), anyLong(), any());
+    }
+
+    @Test
+    void computePartition_listRankedAfterAnInvalidation_isSaved() {
+        invalidations.put(alice, Instant.now().minusSeconds(1));
+
+        assertEquals(2, job.computePartition(0, Instant.now()));
+
+        verify(userMatchRepository).insertList(eq(alice), any(), any(), anyLong(), any());
+    }
+
+    private static User user(UUID id) {
+        User user = new User();
+        user.setId(id);
+        user.setActive(true);
+        return user;
+    }
+
+    private RankedMatches ranking(UUID userId) {
+        return new RankedMatches(userId, new UUID[]{carol}, new float[]{1f}, 1, Instant.now());
+    }
+}
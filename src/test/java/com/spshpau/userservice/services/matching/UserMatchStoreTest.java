@@ -0,0 +1,207 @@
+package com.spshpau.userservice.services.matching;
+
+import com.spshpau.userservice.model.UserMatch;
+import com.spshpau.userservice.model.UserMatchId;
+import com.spshpau.userservice.repositories.MatchListInvalidationRepository;
+import com.spshpau.userservice.repositories.UserMatchRepository;
+import com.spshpau.userservice.repositories.projections.MatchListTailRow;
+import com.spshpau.userservice.services.events.MatchingProfileChangedEvent;
+import com.spshpau.userservice.services.events.UserConnectionChangedEvent;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.UUID;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+class UserMatchStoreTest {
+
+    private final UUID userId = UUID.randomUUID();
+
+    private UserMatchRepository userMatchRepository;
+    private MatchListInvalidationRepository invalidationRepository;
+    private UserMatchStore store;
+
+    @BeforeEach
+    void setUp() {
+        userMatchRepository = mock(UserMatchRepository.class);
+        invalidationRepository = mock(MatchListInvalidationRepository.class);
+        store = new UserMatchStore(userMatchRepository, invalidationRepository, Duration.ofHours(6), 500, new MatchThresholds(10));
+    }
+
+    @Test
+    void loadFresh_returnsListInRankOrder() {
+        List<UserMatch> rows = rows(3, 3, Instant.now().minus(Duration.ofHours(1)));
+        when(userMatchRepository.findByIdUserIdOrderByIdRankAsc(eq(userId), any())).thenReturn(rows);
+
+        RankedMatches ranking = store.loadFresh(userId, 500).orElseThrow();
+
+        assertArrayEquals(rows.stream().map(UserMatch::getMatchUserId).toArray(), ranking.getMatchIds());
+        assertEquals(3, ranking.getTotalCandidates());
+        assertTrue(ranking.isComplete());
+    }
+
+    @Test
+    void loadFresh_staleOrTooShallowList_isNotUsed() {
+        when(userMatchRepository.findByIdUserIdOrderByIdRankAsc(eq(userId), any()))
+                .thenReturn(rows(3, 3, Instant.now().minus(Duration.ofHours(7))))
+                .thenReturn(rows(3, 50, Instant.now()))
+                .thenReturn(List.of());
+
+        assertTrue(store.loadFresh(userId, 10).isEmpty());
+        assertTrue(store.loadFresh(userId, 10).isEmpty());
+        assertTrue(store.loadFresh(userId, 10).isEmpty());
+    }
+
+    @Test
+    void loadFresh_listInvalidatedSinceItWasRanked_isNotUsed() {
+        Instant rankedAt = Instant.now().minus(Duration.ofMinutes(5));
+        when(userMatchRepository.findByIdUserIdOrderByIdRankAsc(eq(userId), any())).thenReturn(rows(3, 3, rankedAt));
+        when(invalidationRepository.existsByUserIdAndInvalidatedAtGreaterThanEqual(userId, rankedAt)).thenReturn(true);
+
+        assertTrue(store.loadFresh(userId, 10).isEmpty());
+    }
+
+    @Test
+    void save_replacesListWithOneInsert() {
+        UUID first = UUID.randomUUID();
+        UUID second = UUID.randomUUID();
+        Instant computedAt = Instant.now();
+
+        store.save(new RankedMatches(userId, new UUID[]{first, second}, new float[]{40f, 2.5f}, 9, computedAt));
+
+        verify(userMatchRepository).deleteListsOf(List.of(userId));
+        verify(userMatchRepository).insertList(userId, "{" + first + "," + second + "}", "{40.0,2.5}", 9, computedAt);
+    }
+
+    @Test
+    void writes_dropAffectedLists() {
+        UUID other = UUID.randomUUID();
+        when(userMatchRepository.findListOwnersContaining(userId)).thenReturn(List.of(other));
+
+        store.onMatchingProfileChanged(new MatchingProfileChangedEvent(new MatchingSnapshot(userId, "user", true, null, null)));
+        verify(userMatchRepository, never()).deleteListsContaining(any());
+        store.onMatchingProfileChanged(new MatchingProfileChangedEvent(new MatchingSnapshot(userId, "user", false, null, null), true));
+        store.onUserConnectionChanged(new UserConnectionChangedEvent(userId, other, true));
+
+        verify(userMatchRepository).deleteListsContaining(userId);
+        verify(userMatchRepository, times(2)).deleteListsOf(List.of(userId));
+        verify(userMatchRepository).deleteListsOf(List.of(userId, other));
+        verify(invalidationRepository, times(2)).invalidate(eq(List.of(userId)), any());
+        verify(invalidationRepository).invalidate(eq(List.of(userId, other)), any());
+        verify(invalidationRepository).invalidate(eq(List.of(other)), any());
+    }
+
+    @Test
+    void activation_ofUserInNoList_touchesNoOtherList() {
+        when(userMatchRepository.findListOwnersContaining(userId)).thenReturn(List.of());
+
+        store.onMatchingProfileChanged(new MatchingProfileChangedEvent(new MatchingSnapshot(userId, "user", true, null, null), true));
+
+        verify(invalidationRepository).invalidate(eq(List.of(userId)), any());
+        verifyNoMoreInteractions(invalidationRepository);
+        verify(userMatchRepository, never()).deleteListsContaining(any());
+    }
+
+    @Test
+    void patch_movesUserWithinListAndIntoTruncatedListItNowBeats() {
+        store = new UserMatchStore(userMatchRepository, invalidationRepository, Duration.ofHours(6), 3, new MatchThresholds(10));
+        UUID changed = UUID.randomUUID();
+        UUID holder = UUID.randomUUID();
+        UUID newcomer = UUID.randomUUID();
+        List<UserMatch> holderRows = rows(holder, List.of(UUID.randomUUID(), changed, UUID.randomUUID()), 3);
+        List<UserMatch> newcomerRows = rows(newcomer, List.of(UUID.randomUUID(), UUID.randomUUID(), UUID.randomUUID()), 10);
+        MatchListTailRow tail = mock(MatchListTailRow.class);
+        when(tail.getUserId()).thenReturn(newcomer);
+        when(tail.getScore()).thenReturn(98f);
+        when(userMatchRepository.findListOwnersContaining(changed)).thenReturn(List.of(holder));
+        when(userMatchRepository.findTruncatedListTailsAtMost(3, 99.5f)).thenReturn(List.of(tail));
+        when(userMatchRepository.findByIdUserIdOrderByIdRankAsc(eq(holder), any())).thenReturn(holderRows);
+        when(userMatchRepository.findByIdUserIdOrderByIdRankAsc(eq(newcomer), any())).thenReturn(newcomerRows);
+
+        int patched = store.patch(changed, false, 99.5f, owner -> 99.5f, id -> id.toString());
+
+        assertEquals(2, patched);
+        verify(userMatchRepository).insertList(eq(holder), eq("{" + holderRows.get(0).getMatchUserId() + "," + changed
+                + "," + holderRows.get(2).getMatchUserId() + "}"), eq("{100.0,99.5,98.0}"), eq(3L), any());
+        verify(userMatchRepository).insertList(eq(newcomer), eq("{" + newcomerRows.get(0).getMatchUserId() + "," + changed
+                + "," + newcomerRows.get(1).getMatchUserId() + "}"), eq("{100.0,99.5,99.0}"), eq(10L), any());
+    }
+
+    @Test
+    void patch_userDroppingOutOfTruncatedList_deletesIt() {
+        store = new UserMatchStore(userMatchRepository, invalidationRepository, Duration.ofHours(6), 3, new MatchThresholds(10));
+        UUID changed = UUID.randomUUID();
+        UUID holder = UUID.randomUUID();
+        when(userMatchRepository.findListOwnersContaining(changed)).thenReturn(List.of(holder));
+        when(userMatchRepository.findByIdUserIdOrderByIdRankAsc(eq(holder), any()))
+                .thenReturn(rows(holder, List.of(changed, UUID.randomUUID(), UUID.randomUUID()), 10));
+
+        store.patch(changed, false, 1f, owner -> 1f, id -> id.toString());
+
+        verify(userMatchRepository).deleteListsOf(List.of(holder));
+        verify(userMatchRepository, never()).insertList(any(), any(), any(), anyLong(), any());
+    }
+
+    @Test
+    void patch_lastPlaceOfTruncatedListRisingWithoutOvertaking_staysInIt() {
+        store = new UserMatchStore(userMatchRepository, invalidationRepository, Duration.ofHours(6), 3, new MatchThresholds(10));
+        UUID changed = UUID.randomUUID();
+        UUID holder = UUID.randomUUID();
+        List<UserMatch> holderRows = rows(holder, List.of(UUID.randomUUID(), UUID.randomUUID(), changed), 10);
+        when(userMatchRepository.findListOwnersContaining(changed)).thenReturn(List.of(holder));
+        when(userMatchRepository.findByIdUserIdOrderByIdRankAsc(eq(holder), any())).thenReturn(holderRows);
+
+        store.patch(changed, false, 98.5f, owner -> 98.5f, id -> id.toString());
+
+        verify(userMatchRepository).insertList(eq(holder), eq("{" + holderRows.get(0).getMatchUserId() + ","
+                + holderRows.get(1).getMatchUserId() + "," + changed + "}"), eq("{100.0,99.0,98.5}"), eq(10L), any());
+    }
+
+    @Test
+    void patch_lastPlaceOfTruncatedListFalling_deletesIt() {
+        store = new UserMatchStore(userMatchRepository, invalidationRepository, Duration.ofHours(6), 3, new MatchThresholds(10));
+        UUID changed = UUID.randomUUID();
+        UUID holder = UUID.randomUUID();
+        when(userMatchRepository.findListOwnersContaining(changed)).thenReturn(List.of(holder));
+        when(userMatchRepository.findByIdUserIdOrderByIdRankAsc(eq(holder), any()))
+                .thenReturn(rows(holder, List.of(UUID.randomUUID(), UUID.randomUUID(), changed), 10));
+
+        store.patch(changed, false, 97.5f, owner -> 97.5f, id -> id.toString());
+
+        verify(userMatchRepository).deleteListsOf(List.of(holder));
+        verify(userMatchRepository, never()).insertList(any(), any(), any(), anyLong(), any());
+    }
+
+    private List<UserMatch> rows(UUID ownerId, List<UUID> matchIds, long totalCandidates) {
+        return IntStream.range(0, matchIds.size()).mapToObj(rank -> {
+            UserMatch row = new UserMatch();
+            row.setId(new UserMatchId(ownerId, rank));
+            row.setMatchUserId(matchIds.get(rank));
+            row.setScore(100f - rank);
+            row.setTotalCandidates(totalCandidates);
+            row.setComputedAt(Instant.now());
+            return row;
+        }).toList();
+    }
+
+    private List<UserMatch> rows(int count, long totalCandidates, Instant computedAt) {
+        return IntStream.range(0, count).mapToObj(rank -> {
+            UserMatch row = new UserMatch();
+            row.setId(new UserMatchId(userId, rank));
+            row.setMatchUserId(UUID.randomUUID());
+            row.setScore(100f - rank);
+            row.setTotalCandidates(totalCandidates);
+            row.setComputedAt(computedAt);
+            return row;
+        }).toList();
+    }
+}